@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+
+import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.variability_model.VariabilityModel;
+import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor.ConstraintFileType;
+import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
+
+/**
+ * Input data for the benchmarks. All data is generated from a fixed seed, so that results of different runs are
+ * comparable.
+ *
+ * @author Adam
+ */
+public class BenchmarkData {
+
+    /**
+     * Prefix for model specifications that should be generated, instead of read from a file. Followed by the number
+     * of variables, e.g. <code>generated:1000</code>.
+     */
+    public static final @NonNull String GENERATED_PREFIX = "generated:";
+
+    /**
+     * Ratio of clauses to variables for generated models. Random 3-SAT problems with this ratio are almost always
+     * satisfiable and well below the hard region (around 4.26); like real variability models, they are easy to solve.
+     */
+    private static final double CLAUSE_RATIO = 2.0;
+
+    private static final long SEED = 0x4b48L;
+
+    /**
+     * Don't allow any instances.
+     */
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates a new random number generator with the fixed seed.
+     *
+     * @return The random number generator.
+     */
+    public static @NonNull Random createRandom() {
+        return new Random(SEED);
+    }
+
+    /**
+     * Generates a random formula. The formula is a tree of conjunctions and disjunctions with the given depth; about
+     * one in four operands is negated.
+     *
+     * @param random The random number generator to use.
+     * @param depth The depth of the formula; 0 means a single variable.
+     * @param width The number of different variables to use.
+     *
+     * @return The random formula.
+     */
+    public static @NonNull Formula generateFormula(@NonNull Random random, int depth, int width) {
+        Formula result;
+        if (depth == 0) {
+            result = new Variable("VAR_" + random.nextInt(width));
+        } else {
+            Formula left = generateFormula(random, depth - 1, width);
+            Formula right = generateFormula(random, depth - 1, width);
+            result = random.nextBoolean() ? new Conjunction(left, right) : new Disjunction(left, right);
+        }
+
+        if (random.nextInt(4) == 0) {
+            result = new Negation(result);
+        }
+        return result;
+    }
+
+    /**
+     * Generates a random query: a CNF with a few short rows over the given variables.
+     *
+     * @param random The random number generator to use.
+     * @param numVariables The number of variables of the model to query.
+     *
+     * @return The random query.
+     */
+    public static @NonNull Cnf generateQuery(@NonNull Random random, int numVariables) {
+        Cnf query = new Cnf(3);
+        for (int i = 0; i < 3; i++) {
+            query.addRow(randomVariable(random, numVariables), randomVariable(random, numVariables));
+        }
+        return query;
+    }
+
+    /**
+     * Creates a random, possibly negated variable named like {@link VmToCnfConverter} names unnamed variables.
+     *
+     * @param random The random number generator to use.
+     * @param numVariables The number of variables.
+     *
+     * @return A random variable.
+     */
+    private static @NonNull CnfVariable randomVariable(@NonNull Random random, int numVariables) {
+        return new CnfVariable(random.nextBoolean(), "VARIABLE_" + (random.nextInt(numVariables) + 1));
+    }
+
+    /**
+     * Returns the DIMACS file for the given model specification. Either a path to an existing file, or
+     * {@link #GENERATED_PREFIX} followed by the number of variables; in the latter case, a random 3-SAT model is
+     * written to a temporary file.
+     *
+     * @param model The model specification.
+     *
+     * @return The DIMACS file.
+     *
+     * @throws IOException If writing the generated model fails.
+     */
+    public static @NonNull File getDimacsFile(@NonNull String model) throws IOException {
+        File result;
+        if (model.startsWith(GENERATED_PREFIX)) {
+            int numVariables = Integer.parseInt(model.substring(GENERATED_PREFIX.length()));
+            result = File.createTempFile("benchmark_model", ".dimacs");
+            result.deleteOnExit();
+            writeRandomDimacs(result, numVariables);
+        } else {
+            result = new File(model);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a random 3-SAT model in DIMACS format.
+     *
+     * @param file The file to write to.
+     * @param numVariables The number of variables.
+     *
+     * @throws IOException If writing fails.
+     */
+    private static void writeRandomDimacs(@NonNull File file, int numVariables) throws IOException {
+        Random random = createRandom();
+        int numClauses = (int) (numVariables * CLAUSE_RATIO);
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write("p cnf " + numVariables + " " + numClauses + "\n");
+            for (int i = 0; i < numClauses; i++) {
+                for (int j = 0; j < 3; j++) {
+                    int variable = random.nextInt(numVariables) + 1;
+                    out.write((random.nextBoolean() ? -variable : variable) + " ");
+                }
+                out.write("0\n");
+            }
+        }
+    }
+
+    /**
+     * Reads the given DIMACS file with the {@link VmToCnfConverter}.
+     *
+     * @param dimacsFile The DIMACS file.
+     *
+     * @return The CNF of the model.
+     *
+     * @throws FormatException If the file is not a valid DIMACS file.
+     */
+    public static @NonNull Cnf readModel(@NonNull File dimacsFile) throws FormatException {
+        VariabilityModel vm = new VariabilityModel(dimacsFile, new HashSet<VariabilityVariable>());
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        return new VmToCnfConverter().convertVmToCnf(vm);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.ssehub.kernel_haven.cnf.FormulaToCnfConverterFactory.Strategy;
+import net.ssehub.kernel_haven.util.logic.Formula;
+
+/**
+ * Benchmarks the {@link IFormulaToCnfConverter}s on random formulas of increasing depth and width.
+ * <p>
+ * The recursive strategies are exponential in the worst case, so the default depths are small. Larger depths can be
+ * passed on the command line, e.g. <code>-p depth=12 -p strategy=TSEITIN</code>.
+ *
+ * @author Adam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CnfConverterBenchmark {
+
+    private static final int NUM_FORMULAS = 16;
+
+    @Param({"RECURISVE", "RECURISVE_REPLACING", "TSEITIN", "PLAISTED_GREENBAUM"})
+    private Strategy strategy;
+
+    @Param({"2", "4", "6"})
+    private int depth;
+
+    @Param({"4", "32"})
+    private int width;
+
+    private IFormulaToCnfConverter converter;
+
+    private Formula[] formulas;
+
+    private int next;
+
+    /**
+     * Generates the formulas and creates the converter.
+     */
+    @Setup
+    public void setup() {
+        converter = FormulaToCnfConverterFactory.create(strategy);
+
+        Random random = BenchmarkData.createRandom();
+        formulas = new Formula[NUM_FORMULAS];
+        for (int i = 0; i < NUM_FORMULAS; i++) {
+            formulas[i] = BenchmarkData.generateFormula(random, depth, width);
+        }
+    }
+
+    /**
+     * Converts one of the formulas.
+     *
+     * @return The resulting CNF.
+     *
+     * @throws ConverterException unwanted.
+     */
+    @Benchmark
+    public Cnf convert() throws ConverterException {
+        next = (next + 1) % NUM_FORMULAS;
+        return converter.convert(formulas[next]);
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.ssehub.kernel_haven.cnf.SatSolverFactory.SolverType;
+import net.ssehub.kernel_haven.util.FormatException;
+
+/**
+ * Benchmarks the SAT solvers: checks small random queries against a base model, as done when checking presence
+ * conditions against a variability model.
+ * <p>
+ * The <code>model</code> parameter is either a DIMACS file (e.g. <code>testdata/huge.dimacs</code>) or a generated
+ * model (see {@link BenchmarkData#GENERATED_PREFIX}).
+ *
+ * @author Adam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SatSolverBenchmark {
+
+    /**
+     * The number of different queries. Smaller than the number of calls per iteration, so that the cached solver has
+     * a realistic amount of hits.
+     */
+    private static final int NUM_QUERIES = 256;
+
+    @Param({"testdata/vm_to_cnf_converter/testmodel.dimacs", "generated:1000", "generated:10000"})
+    private String model;
+
+    @Param({"SAT4J", "SAT4J_INCREMENTAL"})
+    private SolverType solverType;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private Cnf base;
+
+    private Cnf[] queries;
+
+    private int next;
+
+    /**
+     * Reads the model and generates the queries.
+     *
+     * @throws IOException If generating the model fails.
+     * @throws FormatException If reading the model fails.
+     */
+    @Setup
+    public void setup() throws IOException, FormatException {
+        File dimacsFile = BenchmarkData.getDimacsFile(model);
+        base = BenchmarkData.readModel(dimacsFile);
+
+        Random random = BenchmarkData.createRandom();
+        int numVariables = base.getAllVarNames().size();
+        queries = new Cnf[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            queries[i] = BenchmarkData.generateQuery(random, numVariables);
+        }
+    }
+
+    /**
+     * Creates a solver with the model as base CNF. This is measured separately, since e.g. the incremental solver does
+     * more work here.
+     *
+     * @return The solver.
+     */
+    @Benchmark
+    public ISatSolver createSolver() {
+        return SatSolverFactory.createSolver(solverType, base, cached);
+    }
+
+    /**
+     * Creates a solver with the model as base CNF and checks all queries against it.
+     *
+     * @return The number of satisfiable queries.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Benchmark
+    public int solveAllQueries() throws SolverException {
+        ISatSolver solver = SatSolverFactory.createSolver(solverType, base, cached);
+        int numSat = 0;
+        for (int i = 0; i < 4 * NUM_QUERIES; i++) {
+            next = (next + 1) % NUM_QUERIES;
+            if (solver.isSatisfiable(queries[next])) {
+                numSat++;
+            }
+        }
+        return numSat;
+    }
+
+    /**
+     * Checks the model and one query without a base CNF, i.e. the model is passed in each call.
+     *
+     * @return Whether the query is satisfiable.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Benchmark
+    public boolean solveWithoutBase() throws SolverException {
+        next = (next + 1) % NUM_QUERIES;
+        return SatSolverFactory.createSolver(solverType, null, false).isSatisfiable(base.combine(queries[next]));
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.ssehub.kernel_haven.util.FormatException;
+
+/**
+ * Benchmarks reading DIMACS models with the {@link VmToCnfConverter}.
+ *
+ * @author Adam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VmToCnfConverterBenchmark {
+
+    @Param({"testdata/vm_to_cnf_converter/testmodel.dimacs", "generated:10000", "generated:100000"})
+    private String model;
+
+    private File dimacsFile;
+
+    /**
+     * Generates the model, if necessary.
+     *
+     * @throws IOException If generating the model fails.
+     */
+    @Setup
+    public void setup() throws IOException {
+        dimacsFile = BenchmarkData.getDimacsFile(model);
+    }
+
+    /**
+     * Reads the model.
+     *
+     * @return The CNF of the model.
+     *
+     * @throws FormatException unwanted.
+     */
+    @Benchmark
+    public Cnf convert() throws FormatException {
+        return BenchmarkData.readModel(dimacsFile);
+    }
+
+}
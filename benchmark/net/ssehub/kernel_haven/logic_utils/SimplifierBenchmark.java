@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.ssehub.kernel_haven.cnf.BenchmarkData;
+import net.ssehub.kernel_haven.util.logic.Formula;
+
+/**
+ * Benchmarks the {@link AdamsAwesomeSimplifier} and the {@link SimplifyingDisjunctionQueue} on random formulas of
+ * increasing depth and width.
+ *
+ * @author Adam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimplifierBenchmark {
+
+    private static final int NUM_FORMULAS = 16;
+
+    @Param({"2", "4", "6", "8"})
+    private int depth;
+
+    @Param({"4", "32"})
+    private int width;
+
+    private Formula[] formulas;
+
+    private int next;
+
+    /**
+     * Generates the formulas.
+     */
+    @Setup
+    public void setup() {
+        Random random = BenchmarkData.createRandom();
+        formulas = new Formula[NUM_FORMULAS];
+        for (int i = 0; i < NUM_FORMULAS; i++) {
+            formulas[i] = BenchmarkData.generateFormula(random, depth, width);
+        }
+    }
+
+    /**
+     * Simplifies one of the formulas with the {@link AdamsAwesomeSimplifier}.
+     *
+     * @return The simplified formula.
+     */
+    @Benchmark
+    public Formula adamsAwesomeSimplifier() {
+        next = (next + 1) % NUM_FORMULAS;
+        return AdamsAwesomeSimplifier.simplify(formulas[next]);
+    }
+
+    /**
+     * Creates the disjunction of all formulas with the {@link SimplifyingDisjunctionQueue}, which removes formulas
+     * that are already implied by the others.
+     *
+     * @return The disjunction.
+     */
+    @Benchmark
+    public Formula simplifyingDisjunctionQueue() {
+        SimplifyingDisjunctionQueue queue = new SimplifyingDisjunctionQueue();
+        for (Formula formula : formulas) {
+            queue.add(formula);
+        }
+        return queue.getDisjunction("benchmark");
+    }
+
+}
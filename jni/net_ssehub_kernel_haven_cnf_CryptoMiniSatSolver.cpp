@@ -19,6 +19,19 @@
 #include <cryptominisat5/cryptominisat.h>
 #include <vector>
 
+/*
+ * The version of this library; must match LIBRARY_VERSION in CryptoMiniSatSolver
+ * and the version node in cryptominisat5-jni.version
+ */
+static const jint LIBRARY_VERSION = 2;
+
+/*
+ * Return values of solveImpl(); must match the constants in CryptoMiniSatSolver
+ */
+static const jint RESULT_UNSAT = 0;
+static const jint RESULT_SAT = 1;
+static const jint RESULT_UNKNOWN = 2;
+
 /*
  * Helper method for throwing a new SolverException.
  * After this method is called, the JNI call should return so that the exception
@@ -50,17 +63,16 @@ static bool checkBufferOverflow(JNIEnv *env, jint capacaity, jint index) {
 	return false;
 }
 
-JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_isSatisfiableImpl(
-		JNIEnv *env, jclass clazz, jint numVars, jint numClauses, jobject intBuffer) {
-
-	/*
-	 * Check parameters
-	 */
-
-	if (numVars <= 0) {
-		throwSolverException(env, "numVars is <= 0");
-		return false;
-	}
+/*
+ * Helper method for reading clauses from a direct IntBuffer and adding them to
+ * the given solver. Each clause in the buffer is stored as its length followed
+ * by its literals. Variables must be in the range 1 to numVars, and must
+ * already exist in the solver. Returns false if a SolverException has been
+ * thrown; the calling JNI call should return, so that the exception is
+ * propagated to Java.
+ */
+static bool addClausesFromBuffer(JNIEnv *env, CMSat::SATSolver &solver, jint numVars, jint numClauses,
+		jobject intBuffer) {
 
 	if (numClauses <= 0) {
 		throwSolverException(env, "numClauses is <= 0");
@@ -87,21 +99,6 @@ JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver
 		return false;
 	}
 
-	/*
-	 * Create solver
-	 */
-
-	CMSat::SATSolver solver;
-	try {
-		solver.new_vars(numVars);
-	} catch (CMSat::TooManyVarsError) {
-		throwSolverException(env, "Got TooManyVarsError");
-		return false;
-	} catch (...) {
-		throwSolverException(env, "Exception while allocating variables");
-		return false;
-	}
-
 	/*
 	 * Read clauses from buffer and add them to the solver
 	 */
@@ -148,6 +145,55 @@ JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver
 		clause.clear();
 	}
 
+	return true;
+}
+
+/*
+ * Helper method for adding variables to the given solver, so that it has at
+ * least numVars variables. Returns false if a SolverException has been thrown.
+ */
+static bool ensureVars(JNIEnv *env, CMSat::SATSolver &solver, jint numVars) {
+	if (numVars <= 0) {
+		throwSolverException(env, "numVars is <= 0");
+		return false;
+	}
+
+	try {
+		if ((jlong) solver.nVars() < numVars) {
+			solver.new_vars(numVars - solver.nVars());
+		}
+	} catch (CMSat::TooManyVarsError) {
+		throwSolverException(env, "Got TooManyVarsError");
+		return false;
+	} catch (...) {
+		throwSolverException(env, "Exception while allocating variables");
+		return false;
+	}
+	return true;
+}
+
+JNIEXPORT jint JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getVersionImpl(
+		JNIEnv *env, jclass clazz) {
+
+	return LIBRARY_VERSION;
+}
+
+JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_isSatisfiableImpl(
+		JNIEnv *env, jclass clazz, jint numVars, jint numClauses, jobject intBuffer) {
+
+	/*
+	 * Create solver
+	 */
+
+	CMSat::SATSolver solver;
+	if (!ensureVars(env, solver, numVars)) {
+		return false;
+	}
+
+	if (!addClausesFromBuffer(env, solver, numVars, numClauses, intBuffer)) {
+		return false;
+	}
+
 	/*
 	 * Solve
 	 */
@@ -162,3 +208,203 @@ JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver
 
 	return result == CMSat::l_True ? true : false;
 }
+
+JNIEXPORT jlong JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_createSolverImpl(
+		JNIEnv *env, jclass clazz, jint numThreads) {
+
+	if (numThreads <= 0) {
+		throwSolverException(env, "numThreads is <= 0");
+		return 0;
+	}
+
+	CMSat::SATSolver *solver;
+	try {
+		solver = new CMSat::SATSolver();
+	} catch (...) {
+		throwSolverException(env, "Exception while creating solver");
+		return 0;
+	}
+
+	/*
+	 * Must be set before any variables are added
+	 */
+
+	if (numThreads > 1) {
+		try {
+			solver->set_num_threads(numThreads);
+		} catch (...) {
+			delete solver;
+			throwSolverException(env, "Exception while setting number of threads");
+			return 0;
+		}
+	}
+
+	return (jlong) solver;
+}
+
+JNIEXPORT void JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_destroySolverImpl(
+		JNIEnv *env, jclass clazz, jlong handle) {
+
+	delete (CMSat::SATSolver *) handle;
+}
+
+JNIEXPORT void JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_addClausesImpl(
+		JNIEnv *env, jclass clazz, jlong handle, jint numVars, jint numClauses, jobject intBuffer) {
+
+	if (handle == 0) {
+		throwSolverException(env, "handle is 0");
+		return;
+	}
+	CMSat::SATSolver *solver = (CMSat::SATSolver *) handle;
+
+	if (!ensureVars(env, *solver, numVars)) {
+		return;
+	}
+
+	addClausesFromBuffer(env, *solver, numVars, numClauses, intBuffer);
+}
+
+JNIEXPORT jint JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_solveImpl(
+		JNIEnv *env, jclass clazz, jlong handle, jintArray assumptions, jlong maxConflicts, jlong timeoutMs) {
+
+	if (handle == 0) {
+		throwSolverException(env, "handle is 0");
+		return RESULT_UNSAT;
+	}
+	CMSat::SATSolver *solver = (CMSat::SATSolver *) handle;
+
+	if (assumptions == nullptr) {
+		throwSolverException(env, "assumptions is NULL");
+		return RESULT_UNSAT;
+	}
+
+	/*
+	 * Read assumptions
+	 */
+
+	jsize length = env->GetArrayLength(assumptions);
+	std::vector<CMSat::Lit> literals;
+	literals.reserve(length);
+
+	if (length > 0) {
+		jint *elements = env->GetIntArrayElements(assumptions, nullptr);
+		if (elements == nullptr) {
+			throwSolverException(env, "GetIntArrayElements() returned NULL");
+			return RESULT_UNSAT;
+		}
+
+		for (jsize i = 0; i < length; i++) {
+			jint element = elements[i];
+
+			jboolean negated = false;
+			if (element < 0) {
+				negated = true;
+				element *= -1;
+			}
+
+			if (element == 0 || (jlong) element > (jlong) solver->nVars()) {
+				env->ReleaseIntArrayElements(assumptions, elements, JNI_ABORT);
+				throwSolverException(env, "Trying to assume unknown variable");
+				return RESULT_UNSAT;
+			}
+
+			literals.push_back(CMSat::Lit(element - 1, negated));
+		}
+
+		env->ReleaseIntArrayElements(assumptions, elements, JNI_ABORT);
+	}
+
+	/*
+	 * Solve
+	 */
+
+	CMSat::lbool result;
+	try {
+		/*
+		 * The limits are relative to the current state of the solver, so they
+		 * have to be set before each call
+		 */
+		if (maxConflicts > 0) {
+			solver->set_max_confl(maxConflicts);
+		}
+		if (timeoutMs > 0) {
+			solver->set_max_time(timeoutMs / 1000.0);
+		}
+
+		result = solver->solve(&literals);
+	} catch (...) {
+		throwSolverException(env, "Exception while solving");
+		return RESULT_UNSAT;
+	}
+
+	if (result == CMSat::l_True) {
+		return RESULT_SAT;
+	} else if (result == CMSat::l_False) {
+		return RESULT_UNSAT;
+	} else {
+		return RESULT_UNKNOWN;
+	}
+}
+
+JNIEXPORT jbooleanArray JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getModelImpl(
+		JNIEnv *env, jclass clazz, jlong handle) {
+
+	if (handle == 0) {
+		throwSolverException(env, "handle is 0");
+		return nullptr;
+	}
+	CMSat::SATSolver *solver = (CMSat::SATSolver *) handle;
+
+	/*
+	 * Copy the model of the last (satisfiable) solve() call; index 0 is
+	 * unused, so that the indices are the variable numbers
+	 */
+
+	const std::vector<CMSat::lbool> &model = solver->get_model();
+
+	jbooleanArray result = env->NewBooleanArray((jsize) model.size() + 1);
+	if (result == nullptr) {
+		// OutOfMemoryError is pending
+		return nullptr;
+	}
+
+	std::vector<jboolean> values(model.size() + 1, JNI_FALSE);
+	for (size_t i = 0; i < model.size(); i++) {
+		values[i + 1] = model[i] == CMSat::l_True ? JNI_TRUE : JNI_FALSE;
+	}
+	env->SetBooleanArrayRegion(result, 0, (jsize) values.size(), values.data());
+
+	return result;
+}
+
+JNIEXPORT jintArray JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getConflictImpl(
+		JNIEnv *env, jclass clazz, jlong handle) {
+
+	if (handle == 0) {
+		throwSolverException(env, "handle is 0");
+		return nullptr;
+	}
+	CMSat::SATSolver *solver = (CMSat::SATSolver *) handle;
+
+	/*
+	 * Copy the conflict of the last (unsatisfiable) solve() call; it contains
+	 * the negations of the assumptions that are responsible for the conflict
+	 */
+
+	const std::vector<CMSat::Lit> &conflict = solver->get_conflict();
+
+	jintArray result = env->NewIntArray((jsize) conflict.size());
+	if (result == nullptr) {
+		// OutOfMemoryError is pending
+		return nullptr;
+	}
+
+	std::vector<jint> literals(conflict.size());
+	for (size_t i = 0; i < conflict.size(); i++) {
+		jint variable = (jint) conflict[i].var() + 1;
+		literals[i] = conflict[i].sign() ? -variable : variable;
+	}
+	env->SetIntArrayRegion(result, 0, (jsize) literals.size(), literals.data());
+
+	return result;
+}
@@ -7,6 +7,14 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    getVersionImpl
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getVersionImpl
+  (JNIEnv *, jclass);
+
 /*
  * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
  * Method:    isSatisfiableImpl
@@ -15,6 +23,54 @@ extern "C" {
 JNIEXPORT jboolean JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_isSatisfiableImpl
   (JNIEnv *, jclass, jint, jint, jobject);
 
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    createSolverImpl
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_createSolverImpl
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    destroySolverImpl
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_destroySolverImpl
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    addClausesImpl
+ * Signature: (JIILjava/nio/IntBuffer;)V
+ */
+JNIEXPORT void JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_addClausesImpl
+  (JNIEnv *, jclass, jlong, jint, jint, jobject);
+
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    solveImpl
+ * Signature: (J[IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_solveImpl
+  (JNIEnv *, jclass, jlong, jintArray, jlong, jlong);
+
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    getModelImpl
+ * Signature: (J)[Z
+ */
+JNIEXPORT jbooleanArray JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getModelImpl
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     net_ssehub_kernel_haven_cnf_CryptoMiniSatSolver
+ * Method:    getConflictImpl
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_net_ssehub_kernel_1haven_cnf_CryptoMiniSatSolver_getConflictImpl
+  (JNIEnv *, jclass, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -17,9 +17,13 @@ package net.ssehub.kernel_haven.cnf;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
@@ -27,6 +31,14 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
 /**
  * Super class for all SAT solvers that execute their solver in a "single shot". That is, the underlying solver
  * does not have an internal state and is re-created for each isSatisfiable() call.
+ * <p>
+ * Sub-classes whose underlying solver can keep the base CNF loaded between calls can override
+ * {@link #solveWithBase(int, int[][], int[])} and {@link #solveWithBase(Cnf, int[], int)}.
+ * <p>
+ * Sub-classes have to enforce the {@link SolverLimits} returned by {@link #getLimits()} for each call. Sub-classes
+ * that can return a model override {@link #findModel(int, int[][])} or
+ * {@link #findModelWithBase(int, int[][])}; the model is mapped back to the variable names here. Likewise, sub-classes
+ * that can find unsatisfiable cores override {@link #findCore(int, int[][])}.
  *
  * @author Adam
  */
@@ -34,9 +46,45 @@ abstract class AbstractSingleShotSatSolver implements ISatSolver {
 
     private int[][] clauses;
     
-    private @Nullable Map<String, Integer> mapping;
+    /**
+     * The base CNF, if its clauses are not kept on the heap by this solver: if it is stored off-heap, or if the
+     * sub-class does not need the clauses for each call (see {@link #AbstractSingleShotSatSolver(Cnf, boolean)}). In
+     * this case, {@link #clauses} is <code>null</code> and the clauses are read from this CNF when they are needed.
+     * This CNF is frozen, see {@link Cnf#freeze()}; a heap base CNF is a private copy of the CNF of the caller.
+     */
+    private @Nullable Cnf referencedBase;
+    
+    /**
+     * The clauses of {@link #referencedBase}, if it is stored on the heap; created on first use, and shared by all
+     * copies of this solver. <code>null</code> for an off-heap base CNF, whose clauses are read for each call.
+     */
+    private @Nullable LazyClauses lazyClauses;
     
-    private @Nullable Integer maxMapping;
+    /**
+     * The number of rows of the base CNF, when this solver was created.
+     */
+    private int baseRowCount;
+    
+    /**
+     * The dictionary of the base CNF. The IDs of this dictionary are directly used as the variable numbers for the
+     * solver.
+     */
+    private @Nullable VariableDictionary baseDictionary;
+    
+    /**
+     * The highest ID of {@link #baseDictionary} when this solver was created. The dictionary may grow afterwards, if
+     * other CNFs share it; IDs above this are not part of the base CNF, and are treated like variables of any other
+     * dictionary.
+     */
+    private int baseMaxId;
+    
+    private @NonNull SolverLimits limits = SolverLimits.NONE;
+    
+    /**
+     * The base dictionary IDs of the variables of the last dictionary (other than the base dictionary) that was
+     * mapped; see {@link #getMapping(Cnf)}.
+     */
+    private volatile @Nullable Translation translation;
     
     /**
      * Creates a new and empty Sat solver.
@@ -49,25 +97,97 @@ abstract class AbstractSingleShotSatSolver implements ISatSolver {
      * Creates a SAT solver with the given CNF. This CNF will be used as a basis for each successive call
      * to isSatisfiable(). This version is more performant if the same CNF is checked against a lot
      * of other CNFs.
+     * <p>
+     * Checking CNFs that share the {@link VariableDictionary} with the base CNF (see
+     * {@link Cnf#Cnf(VariableDictionary, int)}) is the fastest, as no variable names need to be mapped.
+     * <p>
+     * An off-heap base CNF (see {@link Cnf#createOffHeap(VariableDictionary, int)}) is not copied onto the heap; this
+     * solver keeps a reference to it instead, and freezes it (see {@link Cnf#freeze()}), so that no rows can be added
+     * to it afterwards.
      * 
      * @param cnf The base CNF.
      */
     public AbstractSingleShotSatSolver(@NonNull Cnf cnf) {
-        Map<String, Integer> mapping = getMapping(cnf);
+        this(cnf, true);
+    }
+    
+    /**
+     * Creates a SAT solver with the given CNF; see {@link #AbstractSingleShotSatSolver(Cnf)}. Sub-classes that keep
+     * the base CNF in their own form (e.g. loaded into a native solver) and only rarely need the clauses of
+     * {@link #getBaseClauses()} can avoid holding a second copy of the base CNF on the heap: if
+     * <code>keepClauses</code> is <code>false</code>, this solver keeps a compact private copy of the base CNF
+     * instead (see {@link Cnf#copy()}), which needs much less memory than the clauses, and only creates the clauses on
+     * the first call of {@link #getBaseClauses()}. The given CNF is not frozen in this case, unless it is stored
+     * off-heap (see {@link #AbstractSingleShotSatSolver(Cnf)}).
+     * 
+     * @param cnf The base CNF.
+     * @param keepClauses Whether to create the clauses of the base CNF right away.
+     */
+    protected AbstractSingleShotSatSolver(@NonNull Cnf cnf, boolean keepClauses) {
+        this.baseDictionary = cnf.getDictionary();
+        this.baseMaxId = cnf.getDictionary().getMaxId();
+        this.baseRowCount = cnf.getRowCount();
         
-        Integer maxMapping = 0;
-        for (Integer entry : mapping.values()) {
-            if (entry > maxMapping) {
-                maxMapping = entry;
-            }
+        if (cnf.isOffHeap()) {
+            cnf.freeze();
+            this.referencedBase = cnf;
+            
+        } else if (!keepClauses) {
+            // the caller may still modify its CNF, so a private copy is kept
+            Cnf copy = cnf.copy();
+            copy.freeze();
+            this.referencedBase = copy;
+            this.lazyClauses = new LazyClauses();
+            
+        } else {
+            // the literals of the base CNF are used unchanged
+            this.clauses = toClauses(cnf, baseRowCount);
         }
-        
-        this.clauses = getClauses(cnf, mapping);
-        
-        this.mapping = mapping;
-        this.maxMapping = maxMapping;
     }
     
+    /**
+     * Creates a SAT solver with the same base CNF as the given solver. The clauses of the base CNF are shared, and
+     * not re-computed.
+     * 
+     * @param other The solver to copy the base CNF from.
+     */
+    protected AbstractSingleShotSatSolver(@NonNull AbstractSingleShotSatSolver other) {
+        // the clauses are never modified, so they can be shared
+        this.baseDictionary = other.baseDictionary;
+        this.baseMaxId = other.baseMaxId;
+        this.baseRowCount = other.baseRowCount;
+        this.clauses = other.clauses;
+        this.referencedBase = other.referencedBase;
+        this.lazyClauses = other.lazyClauses;
+        this.limits = other.limits;
+    }
+    
+    /**
+     * Sets the limits for each call to this solver. By default, there are no limits.
+     * 
+     * @param limits The limits for each call.
+     */
+    void setLimits(@NonNull SolverLimits limits) {
+        this.limits = limits;
+    }
+    
+    /**
+     * Returns the limits for each call to this solver.
+     * 
+     * @return The limits for each call.
+     */
+    @NonNull SolverLimits getLimits() {
+        return limits;
+    }
+    
+    /**
+     * Creates a new solver of the same type and with the same base CNF as this solver. The copy shares the clauses
+     * of the base CNF with this solver, so creating it is cheap. The copy and this solver can be used concurrently.
+     * 
+     * @return A copy of this solver.
+     */
+    abstract @NonNull AbstractSingleShotSatSolver copy();
+    
     /**
      * Checks if the given clauses are satisfiable.
      * 
@@ -75,82 +195,642 @@ abstract class AbstractSingleShotSatSolver implements ISatSolver {
      * @param clauses A list (first dimension) of clauses with variables (second dimension). Negated values are
      *      negative. The first variable is 1.
      *      
-     * @return Whether this CNF is satisfiable.
+     * @return Whether this CNF is satisfiable; {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving this CNF fails.
+     */
+    protected abstract @NonNull SatResult solve(int numVars, int[][] clauses) throws SolverException;
+    
+    /**
+     * Checks if the given clauses are satisfiable under the given assumptions. The default implementation adds one
+     * unit clause per assumption; sub-classes can override this to pass the assumptions to the solver directly.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the clauses and assumptions.
+     * @param clauses A list (first dimension) of clauses with variables (second dimension). Negated values are
+     *      negative. The first variable is 1.
+     * @param assumptions The literals that are assumed to be true.
+     *      
+     * @return Whether this CNF is satisfiable under the given assumptions; {@link SatResult#UNKNOWN} if a limit was
+     *      reached.
      * 
      * @throws SolverException If solving this CNF fails.
      */
-    protected abstract boolean isSatisfiable(int numVars, int[][] clauses) throws SolverException; 
+    protected @NonNull SatResult solve(int numVars, int[][] clauses, int @NonNull [] assumptions)
+            throws SolverException {
+        
+        int[][] withUnitClauses = new int[clauses.length + assumptions.length][];
+        System.arraycopy(clauses, 0, withUnitClauses, 0, clauses.length);
+        for (int i = 0; i < assumptions.length; i++) {
+            withUnitClauses[clauses.length + i] = new int[] {assumptions[i]};
+        }
+        
+        return solve(numVars, withUnitClauses);
+    }
+    
+    /**
+     * Checks if the base CNF together with the given additional clauses is satisfiable under the given assumptions.
+     * The default implementation passes the clauses of the base CNF and the additional clauses to
+     * {@link #solve(int, int[][])}, or {@link #solve(int, int[][], int[])} if there are assumptions.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the base CNF, the additional
+     *      clauses and the assumptions.
+     * @param additionalClauses The clauses to check in addition to the base CNF. Variable numbers up to
+     *      {@link #getBaseMaxNumber()} are the variables of the base CNF.
+     * @param assumptions The literals that are assumed to be true.
+     * 
+     * @return Whether the base CNF and the additional clauses are satisfiable under the given assumptions;
+     *      {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    protected @NonNull SatResult solveWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses,
+            int @NonNull [] assumptions) throws SolverException {
+        
+        int[][] clauses = withBase(additionalClauses);
+        
+        SatResult result;
+        if (assumptions.length == 0) {
+            result = solve(numVars, clauses);
+        } else {
+            result = solve(numVars, clauses, assumptions);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks if the base CNF together with the given CNF is satisfiable. The default implementation converts the CNF
+     * into clauses and passes them to {@link #solveWithBase(int, int[][], int[])}; sub-classes can override this to
+     * read the CNF directly (see {@link Cnf#writeClauses(java.nio.IntBuffer, int[], int)}).
+     * 
+     * @param cnf The CNF to check in addition to the base CNF.
+     * @param mapping The mapping from the variable IDs of the CNF to solver numbers, see {@link #getMapping(Cnf)}.
+     * @param numVars The number of variables used. I.e. this is the highest number in the base CNF and the mapping.
+     * 
+     * @return Whether the base CNF and the CNF are satisfiable; {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    protected @NonNull SatResult solveWithBase(@NonNull Cnf cnf, int @NonNull [] mapping, int numVars)
+            throws SolverException {
+        
+        return solveWithBase(numVars, getClauses(cnf, mapping), new int[0]);
+    }
+    
+    /**
+     * Finds a model for the given clauses. The default implementation throws an
+     * {@link UnsupportedOperationException}.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the clauses array.
+     * @param clauses A list (first dimension) of clauses with variables (second dimension). Negated values are
+     *      negative. The first variable is 1.
+     * 
+     * @return The value of each variable in the model, indexed by the variable number (index 0 is unused);
+     *      <code>null</code> if the clauses are not satisfiable.
+     * 
+     * @throws SolverException If solving fails, or a limit was reached.
+     * @throws UnsupportedOperationException If this solver does not support model extraction.
+     */
+    protected boolean @Nullable [] findModel(int numVars, int[][] clauses)
+            throws SolverException, UnsupportedOperationException {
+        
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support model extraction");
+    }
+    
+    /**
+     * Finds a model for the base CNF together with the given additional clauses. The default implementation passes
+     * the clauses of the base CNF and the additional clauses to {@link #findModel(int, int[][])}.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the base CNF and the
+     *      additional clauses.
+     * @param additionalClauses The clauses to check in addition to the base CNF.
+     * 
+     * @return The value of each variable in the model, indexed by the variable number (index 0 is unused);
+     *      <code>null</code> if the clauses are not satisfiable.
+     * 
+     * @throws SolverException If solving fails, or a limit was reached.
+     * @throws UnsupportedOperationException If this solver does not support model extraction.
+     */
+    protected boolean @Nullable [] findModelWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses)
+            throws SolverException, UnsupportedOperationException {
+        
+        return findModel(numVars, withBase(additionalClauses));
+    }
+    
+    /**
+     * Finds an unsatisfiable core of the given clauses. The default implementation throws an
+     * {@link UnsupportedOperationException}.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the clauses array.
+     * @param clauses A list (first dimension) of clauses with variables (second dimension). Negated values are
+     *      negative. The first variable is 1.
+     * 
+     * @return The indices of the clauses that form the core, preferably a minimal one; <code>null</code> if the
+     *      clauses are satisfiable.
+     * 
+     * @throws SolverException If solving fails, or a limit was reached.
+     * @throws UnsupportedOperationException If this solver does not support explanations.
+     */
+    protected int @Nullable [] findCore(int numVars, int[][] clauses)
+            throws SolverException, UnsupportedOperationException {
+        
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support explanations");
+    }
+    
+    /**
+     * Returns the clauses of the base CNF followed by the given additional clauses.
+     * 
+     * @param additionalClauses The clauses to append to the base CNF.
+     * 
+     * @return The combined clauses; the additional clauses if this solver has no base CNF.
+     */
+    private int[][] withBase(int @NonNull [] @NonNull [] additionalClauses) {
+        return withBase(getBaseClauses(), additionalClauses);
+    }
+    
+    /**
+     * Returns the given clauses of the base CNF followed by the given additional clauses.
+     * 
+     * @param baseClauses The clauses of the base CNF, as returned by {@link #getBaseClauses()}.
+     * @param additionalClauses The clauses to append to the base CNF.
+     * 
+     * @return The combined clauses; the additional clauses if this solver has no base CNF.
+     */
+    private static int[][] withBase(int @NonNull [] @NonNull [] baseClauses,
+            int @NonNull [] @NonNull [] additionalClauses) {
+        
+        int[][] clauses = additionalClauses;
+        if (baseClauses.length > 0) {
+            clauses = new int[baseClauses.length + additionalClauses.length][];
+            System.arraycopy(baseClauses, 0, clauses, 0, baseClauses.length);
+            System.arraycopy(additionalClauses, 0, clauses, baseClauses.length, additionalClauses.length);
+        }
+        return clauses;
+    }
+    
+    /**
+     * Returns the clauses of the base CNF. If the base CNF is stored off-heap, the clauses are read from it for each
+     * call. If the clauses are created lazily, they are created on the first call.
+     * 
+     * @return The clauses of the base CNF, as used by the solver; empty if this solver has no base CNF. Must not be
+     *      modified.
+     */
+    protected int @NonNull [] @NonNull [] getBaseClauses() {
+        int[][] clauses = this.clauses;
+        if (clauses == null) {
+            Cnf referencedBase = this.referencedBase;
+            LazyClauses lazyClauses = this.lazyClauses;
+            if (referencedBase == null) {
+                clauses = new int[0][];
+            } else if (lazyClauses != null) {
+                clauses = lazyClauses.get(referencedBase, baseRowCount);
+            } else {
+                clauses = toClauses(referencedBase, baseRowCount);
+            }
+        }
+        return clauses;
+    }
+    
+    /**
+     * The clauses of a heap base CNF, created on first use. Shared by all copies of a solver, so that they are only
+     * created once.
+     */
+    private static final class LazyClauses {
+        
+        private int @Nullable [] @NonNull [] clauses;
+        
+        /**
+         * Returns the clauses of the given base CNF. Creates them on the first call.
+         * 
+         * @param cnf The base CNF.
+         * @param rowCount The number of rows of the base CNF.
+         * 
+         * @return The clauses of the base CNF.
+         */
+        synchronized int @NonNull [] @NonNull [] get(@NonNull Cnf cnf, int rowCount) {
+            int[][] result = this.clauses;
+            if (result == null) {
+                result = toClauses(cnf, rowCount);
+                this.clauses = result;
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * Copies the literals of the first rows of the given CNF into clauses, without mapping the variable IDs.
+     * 
+     * @param cnf The CNF to copy.
+     * @param rowCount The number of rows to copy.
+     * 
+     * @return The clauses of the CNF.
+     */
+    private static int @NonNull [] @NonNull [] toClauses(@NonNull Cnf cnf, int rowCount) {
+        int[][] clauses = new int[rowCount][];
+        for (int i = 0; i < clauses.length; i++) {
+            clauses[i] = cnf.getLiteralRow(i);
+        }
+        return clauses;
+    }
+    
+    /**
+     * Returns the currently cached translation of a dictionary to base IDs; see {@link #getMapping(Cnf)}. Only used by
+     * test cases, to check that the translation is re-used.
+     * 
+     * @return The cached translation; <code>null</code> if no CNF with another dictionary than the base CNF was
+     *      checked yet.
+     */
+    @Nullable Translation getTranslation() {
+        return translation;
+    }
+    
+    /**
+     * Returns the highest variable number of the base CNF.
+     * 
+     * @return The highest variable number used by the base CNF; 0 if this solver has no base CNF.
+     */
+    protected int getBaseMaxNumber() {
+        return baseMaxId;
+    }
     
     @Override
     public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
-        Map<String, Integer> numberVarMapping = getMapping(cnf);
-
-        int[][] newClauses = getClauses(cnf, numberVarMapping);
+        return solve(cnf).isSatisfiable();
+    }
+    
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        int[] mapping = getMapping(cnf);
+        return solveWithBase(cnf, mapping, getNumVars(mapping));
+    }
+    
+    /**
+     * Finds a model for the base CNF together with the given CNF. The model contains all variables of the base CNF
+     * (including all variables that its {@link VariableDictionary} had when this solver was created) and of the given
+     * CNF.
+     */
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf)
+            throws SolverException, UnsupportedOperationException {
+        
+        int[] mapping = getMapping(cnf);
+        int[][] newClauses = getClauses(cnf, mapping);
         
-        if (this.clauses != null) {
-            int[][] tmp = new int[this.clauses.length + newClauses.length][];
-            System.arraycopy(this.clauses, 0, tmp, 0, this.clauses.length);
-            System.arraycopy(newClauses, 0, tmp, this.clauses.length, newClauses.length);
-            newClauses = tmp;
+        boolean[] model = findModelWithBase(getNumVars(mapping), newClauses);
+        
+        Map<@NonNull String, @NonNull Boolean> result = null;
+        if (model != null) {
+            result = toNamedModel(cnf.getDictionary(), mapping, model);
         }
         
-        int maxMapping = 0;
-        for (Integer entry : numberVarMapping.values()) {
-            if (entry > maxMapping) {
-                maxMapping = entry;
+        return result;
+    }
+    
+    /**
+     * Enumerates the models of the base CNF together with the given CNF. The models contain the same variables as
+     * the model of {@link #findModel(Cnf)}; the mapping of the variable names is only created once, and the models
+     * are found by {@link #enumerateModelsWithBase(int, int[][], int, Consumer)}.
+     */
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer)
+            throws SolverException, UnsupportedOperationException {
+        
+        int[] mapping = getMapping(cnf);
+        int[][] newClauses = getClauses(cnf, mapping);
+        VariableDictionary dictionary = cnf.getDictionary();
+        
+        return enumerateModelsWithBase(getNumVars(mapping), newClauses, limit,
+            (model) -> consumer.accept(toNamedModel(dictionary, mapping, model)));
+    }
+    
+    /**
+     * Enumerates the models of the base CNF together with the given additional clauses. Each model is distinct in
+     * the variables 1 to <code>numVars</code>, i.e. the variables of the base CNF and the additional clauses. The
+     * default implementation calls {@link #findModelWithBase(int, int[][])} repeatedly, and adds a clause that
+     * blocks each found model to the additional clauses; sub-classes that keep the base CNF loaded can override
+     * this to add the blocking clauses incrementally.
+     * 
+     * @param numVars The number of variables used. I.e. this is the highest number in the base CNF and the
+     *      additional clauses.
+     * @param additionalClauses The clauses to check in addition to the base CNF.
+     * @param limit The maximum number of models to enumerate; 0 means no limit.
+     * @param consumer Receives each model, indexed by the variable number (index 0 is unused).
+     * 
+     * @return The number of models passed to the consumer.
+     * 
+     * @throws SolverException If solving fails, or a limit was reached.
+     * @throws UnsupportedOperationException If this solver does not support model extraction.
+     */
+    protected int enumerateModelsWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses, int limit,
+            @NonNull Consumer<boolean @NonNull []> consumer) throws SolverException, UnsupportedOperationException {
+        
+        List<int @NonNull []> clauses = new ArrayList<>(Arrays.asList(additionalClauses));
+        
+        int count = 0;
+        boolean[] model;
+        while ((limit == 0 || count < limit)
+                && (model = findModelWithBase(numVars, notNull(clauses.toArray(new int[clauses.size()][])))) != null) {
+            
+            consumer.accept(model);
+            count++;
+            
+            if (numVars == 0) {
+                // there are no variables, so this is the only model
+                break;
             }
+            clauses.add(getBlockingClause(numVars, model));
         }
         
-        return isSatisfiable(maxMapping, newClauses);
+        return count;
     }
     
     /**
-     * Creates a number mapping for the given CNF. This also includes the pre-existing CNF if it 
-     * was defined.
+     * Creates a clause that excludes the given model.
      * 
-     * @param cnf The CNF to create the mapping for.
-     * @return The mapping for the given CNF (plus the pre-existing).
+     * @param numVars The number of variables of the model.
+     * @param model The model, indexed by the variable number (index 0 is unused).
+     * 
+     * @return A clause that is satisfied by every assignment of the variables 1 to <code>numVars</code>, except the
+     *      given model.
      */
-    private @NonNull Map<String, Integer> getMapping(@NonNull Cnf cnf) {
-        Map<String, Integer> numberVarMapping = new HashMap<>();
-        int i = 1;
+    protected static int @NonNull [] getBlockingClause(int numVars, boolean @NonNull [] model) {
+        int[] clause = new int[numVars];
+        for (int number = 1; number <= numVars; number++) {
+            clause[number - 1] = model[number] ? -number : number;
+        }
+        return clause;
+    }
+    
+    /**
+     * Converts a model from solver numbers to variable names. The result contains all variables of the base CNF and
+     * the variables of the given mapping.
+     * 
+     * @param dictionary The dictionary of the CNF that the mapping was created for.
+     * @param mapping The mapping of the CNF, see {@link #getMapping(Cnf)}.
+     * @param model The model, indexed by the variable number (index 0 is unused).
+     * 
+     * @return The model with variable names.
+     */
+    private @NonNull Map<@NonNull String, @NonNull Boolean> toNamedModel(@NonNull VariableDictionary dictionary,
+            int @NonNull [] mapping, boolean @NonNull [] model) {
+        
+        Map<@NonNull String, @NonNull Boolean> result = new HashMap<>();
         
-        Map<String, Integer> mapping = this.mapping;
-        if (mapping != null) {
-            numberVarMapping.putAll(mapping);
-            i = notNull(maxMapping) + 1;
+        VariableDictionary baseDictionary = this.baseDictionary;
+        if (baseDictionary != null) {
+            for (int number = 1; number <= baseMaxId; number++) {
+                result.put(baseDictionary.getName(number), model[number]);
+            }
         }
         
-        for (String varName : cnf.getAllVarNames()) {
-            if (!numberVarMapping.containsKey(varName)) {
-                numberVarMapping.put(varName, i);
-                i++;
+        for (int id = 1; id < mapping.length; id++) {
+            if (mapping[id] != 0) {
+                result.put(dictionary.getName(id), model[mapping[id]]);
             }
         }
         
-        return numberVarMapping;
+        return result;
+    }
+    
+    /**
+     * Explains the base CNF together with the given CNF by the core found by {@link #findCore(int, int[][])}. The
+     * rows of the base CNF come first in the result, followed by the rows of the given CNF.
+     */
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException, UnsupportedOperationException {
+        int[] mapping = getMapping(cnf);
+        int[][] newClauses = getClauses(cnf, mapping);
+        int[][] baseClauses = getBaseClauses();
+        
+        int[] core = findCore(getNumVars(mapping), withBase(baseClauses, newClauses));
+        
+        Cnf result = null;
+        if (core != null) {
+            Arrays.sort(core);
+            result = new Cnf();
+            
+            for (int index : core) {
+                if (index < baseClauses.length) {
+                    // the literals of the base CNF are IDs of the base dictionary
+                    VariableDictionary baseDictionary = notNull(this.baseDictionary);
+                    int[] clause = baseClauses[index];
+                    @NonNull CnfVariable[] row = new @NonNull CnfVariable[clause.length];
+                    for (int i = 0; i < clause.length; i++) {
+                        row[i] = baseDictionary.getVariable(clause[i]);
+                    }
+                    result.addRow(row);
+                    
+                } else {
+                    List<@NonNull CnfVariable> row = cnf.getRow(index - baseClauses.length);
+                    result.addRow(notNull(row.toArray(new @NonNull CnfVariable[row.size()])));
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Calculates the number of variables used by the solver for a CNF with the given mapping.
+     * 
+     * @param mapping The mapping of the CNF, see {@link #getMapping(Cnf)}.
+     * 
+     * @return The highest variable number of the base CNF and the mapped CNF.
+     */
+    private int getNumVars(int @NonNull [] mapping) {
+        int numVars = baseMaxId;
+        for (int number : mapping) {
+            if (number > numVars) {
+                numVars = number;
+            }
+        }
+        return numVars;
+    }
+    
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        for (int literal : assumptions) {
+            if (literal == 0 || Math.abs(literal) > baseMaxId) {
+                throw new SolverException("Literal " + literal + " is not a variable of the base CNF");
+            }
+        }
+        
+        return solveWithAssumptions(assumptions).isSatisfiable();
+    }
+    
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        VariableDictionary baseDictionary = this.baseDictionary;
+        
+        // variables that are not part of the base CNF get fresh numbers
+        Map<String, Integer> additionalVariables = new HashMap<>();
+        int nextNumber = baseMaxId + 1;
+        
+        int[] literals = new int[assumptions.size()];
+        int i = 0;
+        for (CnfVariable assumption : assumptions) {
+            int number = baseDictionary != null ? baseDictionary.lookupId(assumption.getName()) : 0;
+            if (number == 0 || number > baseMaxId) {
+                Integer additional = additionalVariables.get(assumption.getName());
+                if (additional == null) {
+                    additional = nextNumber++;
+                    additionalVariables.put(assumption.getName(), additional);
+                }
+                number = additional;
+            }
+            literals[i++] = assumption.isNegation() ? -number : number;
+        }
+        
+        return solveWithAssumptions(literals).isSatisfiable();
+    }
+    
+    /**
+     * Checks if the base CNF is satisfiable under the given assumptions.
+     * 
+     * @param assumptions The assumptions, as solver numbers.
+     * 
+     * @return Whether the base CNF is satisfiable under the given assumptions; {@link SatResult#UNKNOWN} if a limit
+     *      was reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    private @NonNull SatResult solveWithAssumptions(int @NonNull [] assumptions) throws SolverException {
+        int numVars = baseMaxId;
+        for (int literal : assumptions) {
+            if (Math.abs(literal) > numVars) {
+                numVars = Math.abs(literal);
+            }
+        }
+        
+        return solveWithBase(numVars, new int[0][], assumptions);
+    }
+    
+    /**
+     * Creates a number mapping for the given CNF. The result maps the variable IDs of the dictionary of the given CNF
+     * to the variable numbers used by the solver. Variables that also appear in the base CNF (if defined) get the
+     * same number as in the base CNF; all other variables get numbers above {@link #getBaseMaxNumber()}.
+     * 
+     * @param cnf The CNF to create the mapping for.
+     * @return The mapping for the given CNF; the index is the ID in the dictionary of the CNF, 0 for unused IDs.
+     */
+    private int @NonNull [] getMapping(@NonNull Cnf cnf) {
+        VariableDictionary dictionary = cnf.getDictionary();
+        VariableDictionary baseDictionary = this.baseDictionary;
+        
+        int[] mapping = new int[dictionary.getMaxId() + 1];
+        
+        if (dictionary == baseDictionary) {
+            // shared dictionary: IDs of the base CNF are already the solver numbers; the dictionary may also contain
+            // the variables of unrelated CNFs, so only the IDs that occur in the given CNF are mapped, and IDs that
+            // were added after this solver was created get compact numbers above baseMaxId
+            int nextNumber = baseMaxId + 1;
+            for (int row = 0; row < cnf.getRowCount(); row++) {
+                for (int i = 0; i < cnf.getRowLength(row); i++) {
+                    int id = Math.abs(cnf.getLiteral(row, i));
+                    if (mapping[id] == 0) {
+                        mapping[id] = id <= baseMaxId ? id : nextNumber++;
+                    }
+                }
+            }
+            
+        } else {
+            int nextNumber = baseMaxId + 1;
+            
+            // re-use the base IDs looked up by previous calls with the same dictionary; the cached array is
+            // shared between threads, so it is copied before it is modified
+            Translation translation = this.translation;
+            int[] baseIds;
+            boolean copied;
+            if (translation != null && translation.dictionary == dictionary) {
+                baseIds = translation.baseIds;
+                copied = false;
+            } else {
+                baseIds = new int[mapping.length];
+                copied = true;
+            }
+            
+            for (int row = 0; row < cnf.getRowCount(); row++) {
+                for (int i = 0; i < cnf.getRowLength(row); i++) {
+                    int id = Math.abs(cnf.getLiteral(row, i));
+                    
+                    if (mapping[id] == 0) {
+                        int baseId = id < baseIds.length ? baseIds[id] : 0;
+                        if (baseId == 0) {
+                            if (!copied || id >= baseIds.length) {
+                                baseIds = notNull(Arrays.copyOf(baseIds, Math.max(baseIds.length, mapping.length)));
+                                copied = true;
+                            }
+                            baseId = baseDictionary != null ? baseDictionary.lookupId(dictionary.getName(id)) : 0;
+                            if (baseId == 0 || baseId > baseMaxId) {
+                                baseId = Translation.NOT_IN_BASE;
+                            }
+                            baseIds[id] = baseId;
+                        }
+                        
+                        mapping[id] = baseId != Translation.NOT_IN_BASE ? baseId : nextNumber++;
+                    }
+                }
+            }
+            
+            if (copied) {
+                this.translation = new Translation(dictionary, baseIds);
+            }
+        }
+        
+        return mapping;
+    }
+    
+    /**
+     * The IDs that the variables of a dictionary have in the base dictionary. This avoids looking up the variable
+     * names in the base dictionary again, if several CNFs with the same dictionary are checked. Instances are not
+     * modified after they are created.
+     */
+    static final class Translation {
+        
+        /**
+         * Marks a variable that is not part of the base dictionary. A name that is added to the base dictionary
+         * later is not part of the base CNF either, so it can still be treated as an additional variable.
+         */
+        private static final int NOT_IN_BASE = -1;
+        
+        private final @NonNull VariableDictionary dictionary;
+        
+        /**
+         * The base ID for each ID of the dictionary; 0 if not looked up yet, or {@link #NOT_IN_BASE}.
+         */
+        private final int @NonNull [] baseIds;
+        
+        /**
+         * Creates a new translation.
+         * 
+         * @param dictionary The dictionary that is translated.
+         * @param baseIds The base ID for each ID of the dictionary.
+         */
+        Translation(@NonNull VariableDictionary dictionary, int @NonNull [] baseIds) {
+            this.dictionary = dictionary;
+            this.baseIds = baseIds;
+        }
+        
     }
     
     /**
      * Converts the given CNF into solver clauses.
      * 
      * @param cnf The CNF to convert.
-     * @param numberMapping The mapping from name to integer to use.
+     * @param numberMapping The mapping from dictionary IDs of the CNF to solver numbers to use.
      * @return The clauses for the solver.
      */
-    private int[][] getClauses(@NonNull Cnf cnf, @NonNull Map<String, Integer> numberMapping) {
+    private int[][] getClauses(@NonNull Cnf cnf, int @NonNull [] numberMapping) {
 
         int[][] result = new int[cnf.getRowCount()][];
         
         for (int i = 0; i < cnf.getRowCount(); i++) {
-            List<CnfVariable> variables = cnf.getRow(i);
-            int[] row = new int[variables.size()];
+            int[] row = cnf.getLiteralRow(i);
             
-            for (int j = 0; j < variables.size(); j++) {
-                Integer number = numberMapping.get(variables.get(j).getName());
-                
-                row[j] = !variables.get(j).isNegation() ? number : -number;
-
+            for (int j = 0; j < row.length; j++) {
+                int number = numberMapping[Math.abs(row[j])];
+                row[j] = row[j] > 0 ? number : -number;
             }
             
             result[i] = row;
@@ -15,61 +15,140 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import net.ssehub.kernel_haven.cnf.SatResultCache.EvictionPolicy;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
- * A SAT solver that caches results.
+ * A SAT solver that caches results. The results are stored in a {@link SatResultCache}, which may be shared between
+ * several {@link CachedSatSolver}s with the same base CNF (e.g. one per thread).
  *
  * @author Adam
  */
 class CachedSatSolver implements ISatSolver {
 
-    private int cacheSize;
-    
-    private @NonNull Map<Cnf, Boolean> cache;
-    
+    private @NonNull SatResultCache cache;
+
     private @NonNull ISatSolver realSolver;
-    
+
     /**
      * Creates a new {@link CachedSatSolver} with unlimited cache size.
-     * 
+     *
      * @param realSolver The real solver to use.
      */
     public CachedSatSolver(@NonNull ISatSolver realSolver) {
-        this.cache = new HashMap<>();
-        this.realSolver = realSolver;
+        this(realSolver, new SatResultCache());
     }
-    
+
     /**
-     * Creates a {@link CachedSatSolver} with limited cache size.
-     * 
+     * Creates a {@link CachedSatSolver} with limited cache size. If the cache is full, the least recently used entries
+     * are removed.
+     *
      * @param realSolver The real solver to use.
      * @param cacheSize The maximum number of cache entries to store.
      */
     public CachedSatSolver(@NonNull ISatSolver realSolver, int cacheSize) {
-        this(realSolver);
-        this.cacheSize = cacheSize;
+        this(realSolver, new SatResultCache(EvictionPolicy.LRU, cacheSize));
+    }
+
+    /**
+     * Creates a {@link CachedSatSolver} with the given cache.
+     *
+     * @param realSolver The real solver to use.
+     * @param cache The cache to store the results in. All solvers using this cache must have the same base CNF.
+     */
+    public CachedSatSolver(@NonNull ISatSolver realSolver, @NonNull SatResultCache cache) {
+        this.realSolver = realSolver;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache used by this solver.
+     *
+     * @return The cache.
+     */
+    public @NonNull SatResultCache getCache() {
+        return cache;
     }
-    
 
     @Override
     public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
-        
+
         Boolean result = cache.get(cnf);
-        
+
         if (result == null) {
             result = realSolver.isSatisfiable(cnf);
-            
-            // TODO: maybe better remove older entries?
-            if (cacheSize <= 0 || cache.size() < cacheSize) {
-                cache.put(cnf, result);
+            cache.put(cnf, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Looks up the result in the cache, or passes the CNF to the real solver. {@link SatResult#UNKNOWN} results are
+     * not cached, since a later call may find an answer.
+     */
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+
+        Boolean cached = cache.get(cnf);
+
+        SatResult result;
+        if (cached != null) {
+            result = SatResult.of(cached);
+        } else {
+            result = realSolver.solve(cnf);
+            if (result != SatResult.UNKNOWN) {
+                cache.put(cnf, result == SatResult.SAT);
             }
         }
-        
+
         return result;
     }
-    
+
+    /**
+     * Passes the assumptions directly to the real solver. Results of assumption-based calls are not cached.
+     */
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        return realSolver.isSatisfiable(assumptions);
+    }
+
+    /**
+     * Passes the assumptions directly to the real solver. Results of assumption-based calls are not cached.
+     */
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        return realSolver.isSatisfiable(assumptions);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Models are not cached.
+     */
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        return realSolver.findModel(cnf);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Models are not cached.
+     */
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+        return realSolver.enumerateModels(cnf, limit, consumer);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Explanations are not cached.
+     */
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        return realSolver.explainUnsat(cnf);
+    }
+
 }
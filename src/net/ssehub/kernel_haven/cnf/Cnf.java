@@ -17,10 +17,12 @@ package net.ssehub.kernel_haven.cnf;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.util.ArrayList;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.Set;
 
 import net.ssehub.kernel_haven.util.logic.Conjunction;
@@ -34,7 +36,17 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * The Class Cnf Represents a CNF Table for CNF with CnfVariables as elements.
- * Performance: Initialize Arraylists to filesize, never use a linked list.
+ * <p>
+ * Internally, all clauses are stored as integer literals in one flat array (like in DIMACS: a variable is
+ * represented by its ID in the {@link VariableDictionary}, negated variables are negative). The
+ * {@link CnfVariable}-based methods ({@link #getRow(int)}, {@link #getElement(int, int)}, {@link #getTable()})
+ * are read-only views on top of this array. This keeps the memory footprint of large CNFs (e.g. the CNF of a
+ * variability model) small.
+ * <p>
+ * A Cnf created with {@link #createOffHeap(VariableDictionary, int)} stores its literals in direct buffers outside of
+ * the garbage collected heap instead. This is meant for very large CNFs that live for a long time, so that they do
+ * not increase the garbage collection pauses. The SAT solvers read the literals of such a Cnf directly; no
+ * {@link CnfVariable}s are created.
  * 
  * @author Kevin
  * @author Johannes
@@ -44,21 +56,52 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
  */
 public class Cnf {
 
+    private static final int DEFAULT_ROW_CAPACITY = 10;
+    
+    /**
+     * The mapping of variable names to the IDs used in {@link #literals}.
+     */
+    private @NonNull VariableDictionary dictionary;
+    
+    /**
+     * The literals of all rows, one after another. The variables in each row are disjuncted. A row to each other row
+     * is conjuncted.
+     */
+    private @NonNull IntStore literals;
+    
+    /**
+     * The number of used elements in {@link #literals}.
+     */
+    private int literalCount;
+    
+    /**
+     * The start offset of each row in {@link #literals}. The entry after the last row is the end of the last row,
+     * i.e. {@code rowStarts[rowCount] == literalCount}.
+     */
+    private @NonNull IntStore rowStarts;
+    
+    private int rowCount;
+    
+    /**
+     * The cached result of {@link #getFingerprint()}; only valid if {@link #fingerprintValid} is <code>true</code>.
+     */
+    private volatile long fingerprint;
+    
+    private volatile boolean fingerprintValid;
+    
     /**
-     * The internal representation of the Cnf. The Variables in each row is
-     * conjuncted. A row to each other row is disjunct.
+     * Whether rows can no longer be added to this Cnf; see {@link #freeze()}.
      */
-    private @NonNull List<@NonNull List<@NonNull CnfVariable>> table;
+    private volatile boolean frozen;
 
     /**
-     * Initializes the Cnf with an ArrayList with an initial length. This is
-     * more performant.
+     * Initializes the Cnf with an initial number of rows. This is more performant.
      * 
      * @param length
      *            the initial length.
      */
     public Cnf(int length) {
-        table = new ArrayList<>(length);
+        this(new VariableDictionary(), length);
     }
 
     /**
@@ -66,18 +109,187 @@ public class Cnf {
      * Performance.
      */
     public Cnf() {
-        table = new ArrayList<>();
+        this(DEFAULT_ROW_CAPACITY);
+    }
+    
+    /**
+     * Initializes an empty Cnf that uses the given (possibly shared) dictionary for its variable names.
+     * 
+     * @param dictionary The dictionary to use for mapping variable names to IDs.
+     * @param length The initial number of rows.
+     */
+    public Cnf(@NonNull VariableDictionary dictionary, int length) {
+        this(dictionary, length, false);
+    }
+    
+    /**
+     * Initializes an empty Cnf.
+     * 
+     * @param dictionary The dictionary to use for mapping variable names to IDs.
+     * @param length The initial number of rows.
+     * @param offHeap Whether to store the literals off-heap.
+     */
+    private Cnf(@NonNull VariableDictionary dictionary, int length, boolean offHeap) {
+        this.dictionary = dictionary;
+        // the initial capacity is only a hint, so it is silently capped
+        long rows = Math.max(length, 1);
+        this.rowStarts = IntStore.create((int) Math.min(rows + 1, IntStore.maxCapacity(offHeap)), offHeap);
+        this.literals = IntStore.create((int) Math.min(rows * 2, IntStore.maxCapacity(offHeap)), offHeap);
+    }
+    
+    /**
+     * Creates an empty Cnf that stores its literals off-heap, in direct buffers. Apart from that, it behaves exactly
+     * like a normal Cnf. Growing an off-heap Cnf is expensive (the buffers are re-allocated and copied), so the
+     * number of rows should be known beforehand.
+     * <p>
+     * SAT solvers created with an off-heap base CNF keep a reference to it, instead of copying it onto the heap; they
+     * {@link #freeze()} it, so that no rows can be added afterwards.
+     * 
+     * @param dictionary The dictionary to use for mapping variable names to IDs.
+     * @param length The initial number of rows.
+     * 
+     * @return The new, empty Cnf.
+     */
+    public static @NonNull Cnf createOffHeap(@NonNull VariableDictionary dictionary, int length) {
+        return new Cnf(dictionary, length, true);
+    }
+    
+    /**
+     * Returns whether this Cnf stores its literals off-heap; see {@link #createOffHeap(VariableDictionary, int)}.
+     * 
+     * @return Whether this Cnf is stored off-heap.
+     */
+    public boolean isOffHeap() {
+        return literals.isOffHeap();
+    }
+    
+    /**
+     * Makes this Cnf read-only: adding rows afterwards throws an {@link IllegalStateException}. This is used by SAT
+     * solvers that keep a reference to their (off-heap) base CNF instead of copying it. Note that the
+     * {@link VariableDictionary} is not frozen; other Cnfs that share it can still add variables to it.
+     */
+    void freeze() {
+        frozen = true;
+    }
+    
+    /**
+     * Returns whether this Cnf is read-only; see {@link #freeze()}.
+     * 
+     * @return Whether rows can no longer be added to this Cnf.
+     */
+    boolean isFrozen() {
+        return frozen;
     }
 
     /**
-     * ArrayList is necessary because of performance access.
+     * Adds a new row to this Cnf.
      * 
      * @param row
      *            is the row with the CnfVariables to be added.
+     *            
+     * @throws IllegalStateException If this Cnf is frozen; see {@link #freeze()}.
      */
     public void addRow(@NonNull CnfVariable /*@NonNull*/ ... row) {
         // TODO: commented out @NonNull annotation because checkstyle can't parse it
-        this.table.add(notNull(Arrays.asList(row)));
+        ensureRowCapacity(row.length);
+        for (CnfVariable variable : row) {
+            int id = dictionary.getId(variable.getName());
+            literals.set(literalCount++, variable.isNegation() ? -id : id);
+        }
+        rowStarts.set(++rowCount, literalCount);
+        fingerprintValid = false;
+    }
+    
+    /**
+     * Adds a new row of literals to this Cnf. The literals are IDs of the {@link VariableDictionary} of this Cnf;
+     * negated variables are negative.
+     * 
+     * @param row The literals of the row to add. The array is copied.
+     */
+    void addLiteralRow(int... row) {
+        addLiteralRow(row, row.length);
+    }
+    
+    /**
+     * Adds a new row of literals to this Cnf. Same as {@link #addLiteralRow(int...)}, but only the first
+     * <code>length</code> elements of the array are used; this allows callers to re-use a buffer for all rows.
+     * 
+     * @param row The array containing the literals of the row to add. The array is copied.
+     * @param length The number of literals in the row.
+     */
+    void addLiteralRow(int @NonNull [] row, int length) {
+        ensureRowCapacity(length);
+        literals.set(literalCount, row, 0, length);
+        literalCount += length;
+        rowStarts.set(++rowCount, literalCount);
+        fingerprintValid = false;
+    }
+    
+    /**
+     * Makes sure that the internal arrays can store one more row with the given number of literals.
+     * 
+     * @param rowLength The number of literals in the row that will be added.
+     * 
+     * @throws IllegalStateException If this Cnf is frozen; see {@link #freeze()}.
+     */
+    private void ensureRowCapacity(int rowLength) {
+        if (frozen) {
+            throw new IllegalStateException("This Cnf is used as the base CNF of a SAT solver and can't be modified");
+        }
+        if (rowCount + 2L > rowStarts.capacity()) {
+            rowStarts = rowStarts.copy(rowCount + 1, grownCapacity(rowStarts, rowCount + 2L));
+        }
+        if ((long) literalCount + rowLength > literals.capacity()) {
+            literals = literals.copy(literalCount, grownCapacity(literals, (long) literalCount + rowLength));
+        }
+    }
+    
+    /**
+     * Calculates the new capacity for a store that has to grow: the doubled capacity, so that adding rows takes
+     * amortized constant time, but not more than a store can hold.
+     * 
+     * @param store The store that has to grow.
+     * @param required The number of ints that the store has to hold.
+     * 
+     * @return The new capacity; at least <code>required</code>.
+     * 
+     * @throws IllegalStateException If the required number of ints does not fit into a single store.
+     */
+    private static int grownCapacity(@NonNull IntStore store, long required) throws IllegalStateException {
+        int max = checkCapacity(required, store.isOffHeap());
+        return (int) Math.max(required, Math.min(2L * store.capacity(), max));
+    }
+    
+    /**
+     * Checks that the given number of ints fits into a single store.
+     * 
+     * @param required The number of ints that a store has to hold.
+     * @param offHeap Whether the store keeps its ints off-heap.
+     * 
+     * @return The maximum capacity of the store; see {@link IntStore#maxCapacity(boolean)}.
+     * 
+     * @throws IllegalStateException If the required number of ints does not fit into a single store.
+     */
+    private static int checkCapacity(long required, boolean offHeap) throws IllegalStateException {
+        int max = IntStore.maxCapacity(offHeap);
+        if (required > max) {
+            throw new IllegalStateException("Cnf is too large: " + required + " ints are needed, but an "
+                    + (offHeap ? "off-heap" : "on-heap") + " Cnf can only store " + max);
+        }
+        return max;
+    }
+    
+    /**
+     * Checks that the given row index exists.
+     * 
+     * @param row The row index to check.
+     * 
+     * @throws IndexOutOfBoundsException If the row does not exist.
+     */
+    private void checkRow(int row) throws IndexOutOfBoundsException {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " does not exist; row count is " + rowCount);
+        }
     }
 
     /**
@@ -86,12 +298,11 @@ public class Cnf {
      * 
      * @param row
      *            the existing row index. Not null.
-     * @return the row. Not null.
+     * @return an unmodifiable view on the row. Not null.
      */
     public @NonNull List<@NonNull CnfVariable> getRow(int row) {
-        List<@NonNull CnfVariable> toReturn = null;
-        toReturn = notNull(table.get(row));
-        return toReturn;
+        checkRow(row);
+        return new RowView(row);
     }
 
     /**
@@ -104,18 +315,16 @@ public class Cnf {
      * @return the element which is a single cnf variable.
      */
     public @NonNull CnfVariable getElement(int row, int number) {
-        CnfVariable toReturn = null;
-        toReturn = notNull(notNull(table.get(row)).get(number));
-        return toReturn;
+        return toVariable(getLiteral(row, number));
     }
 
     /**
      * Gets the table which is a List of a List of cnf variables.
      *
-     * @return the table of variables.
+     * @return an unmodifiable view on the table of variables.
      */
     public @NonNull List<@NonNull List<@NonNull CnfVariable>> getTable() {
-        return table;
+        return new TableView();
     }
 
     /**
@@ -124,7 +333,147 @@ public class Cnf {
      * @return the row count
      */
     public int getRowCount() {
-        return table.size();
+        return rowCount;
+    }
+    
+    /**
+     * Returns the dictionary that maps the variable names of this Cnf to the IDs used in the literals.
+     * 
+     * @return The dictionary of this Cnf.
+     */
+    @NonNull VariableDictionary getDictionary() {
+        return dictionary;
+    }
+    
+    /**
+     * Returns the number of literals in the given row.
+     * 
+     * @param row The row index.
+     * 
+     * @return The length of the row.
+     * 
+     * @throws IndexOutOfBoundsException If the row does not exist.
+     */
+    int getRowLength(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return rowStarts.get(row + 1) - rowStarts.get(row);
+    }
+    
+    /**
+     * Returns a single literal. This is the ID of the variable in the {@link VariableDictionary} of this Cnf,
+     * negative if the variable is negated.
+     * 
+     * @param row The row index.
+     * @param number The index of the literal in the row.
+     * 
+     * @return The literal.
+     * 
+     * @throws IndexOutOfBoundsException If the row or the element does not exist.
+     */
+    int getLiteral(int row, int number) throws IndexOutOfBoundsException {
+        if (number < 0 || number >= getRowLength(row)) {
+            throw new IndexOutOfBoundsException("Element " + number + " does not exist in row " + row);
+        }
+        return literals.get(rowStarts.get(row) + number);
+    }
+    
+    /**
+     * Copies the literals of the given row into a new array.
+     * 
+     * @param row The row index.
+     * 
+     * @return The literals of the row.
+     * 
+     * @throws IndexOutOfBoundsException If the row does not exist.
+     */
+    int @NonNull [] getLiteralRow(int row) throws IndexOutOfBoundsException {
+        checkRow(row);
+        return copyRow(row);
+    }
+    
+    /**
+     * Returns the number of literals in all rows of this Cnf.
+     * 
+     * @return The number of literals.
+     */
+    int getLiteralCount() {
+        return literalCount;
+    }
+    
+    /**
+     * Returns the number of ints that {@link #writeClauses(IntBuffer, int[], int)} writes without a guard literal.
+     * 
+     * @return The number of rows plus the number of literals.
+     */
+    int getClauseBufferSize() {
+        return rowCount + literalCount;
+    }
+    
+    /**
+     * Writes the rows of this Cnf into the given buffer, in the flat, length-prefixed form that the JNI bridge of
+     * {@link CryptoMiniSatSolver} reads: each row is stored as its length, followed by its literals. Since this Cnf
+     * already stores its literals in one flat array, no intermediate per-row arrays are needed; writing into a direct
+     * buffer puts the rows off-heap, where native code can read them without another copy.
+     * 
+     * @param buffer The buffer to write to. Must have at least {@link #getClauseBufferSize()} ints remaining, plus
+     *      one per row if a guard literal is appended.
+     * @param mapping Maps the variable IDs (index) to the numbers to write; <code>null</code> to write the IDs
+     *      unchanged.
+     * @param guard A literal to append to each row; 0 to append nothing.
+     */
+    void writeClauses(@NonNull IntBuffer buffer, int @Nullable [] mapping, int guard) {
+        for (int row = 0; row < rowCount; row++) {
+            int start = rowStarts.get(row);
+            int length = rowStarts.get(row + 1) - start;
+            
+            buffer.put(guard != 0 ? length + 1 : length);
+            if (mapping == null) {
+                literals.writeTo(buffer, start, length);
+            } else {
+                for (int i = start; i < start + length; i++) {
+                    int literal = literals.get(i);
+                    buffer.put(literal < 0 ? -mapping[-literal] : mapping[literal]);
+                }
+            }
+            if (guard != 0) {
+                buffer.put(guard);
+            }
+        }
+    }
+    
+    /**
+     * Estimates the memory used by this Cnf in bytes. The (possibly shared) {@link VariableDictionary} is not counted.
+     *
+     * @return The estimated memory size in bytes.
+     */
+    long getEstimatedMemorySize() {
+        // object header and fields, plus the two stores
+        return 40 + literals.getEstimatedMemorySize() + rowStarts.getEstimatedMemorySize();
+    }
+    
+    /**
+     * Copies the literals of the given row into a new array, without checking the row index.
+     * 
+     * @param row The row index.
+     * 
+     * @return The literals of the row.
+     */
+    private int @NonNull [] copyRow(int row) {
+        int start = rowStarts.get(row);
+        int[] result = new int[rowStarts.get(row + 1) - start];
+        literals.get(start, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Converts a literal of this Cnf into a {@link CnfVariable}.
+     * 
+     * @param literal The literal to convert.
+     * 
+     * @return The shared {@link CnfVariable} of the dictionary representing the literal.
+     */
+    private @NonNull CnfVariable toVariable(int literal) {
+        return dictionary.getVariable(literal);
     }
 
     /**
@@ -134,10 +483,13 @@ public class Cnf {
      * @return all variable names as a set. Not null.
      */
     public @NonNull Set<@NonNull String> getAllVarNames() {
+        boolean[] seen = new boolean[dictionary.getMaxId() + 1];
         Set<@NonNull String> allVars = new HashSet<>();
-        for (List<CnfVariable> arrayList : table) {
-            for (CnfVariable cnfVariable : arrayList) {
-                allVars.add(cnfVariable.getName());
+        for (int i = 0; i < literalCount; i++) {
+            int id = Math.abs(literals.get(i));
+            if (!seen[id]) {
+                seen[id] = true;
+                allVars.add(dictionary.getName(id));
             }
         }
         return allVars;
@@ -146,6 +498,9 @@ public class Cnf {
     /**
      * Creates a new Cnf which contains both, this and the other given Cnf
      * combined. The two Cnf objects are combined with an implicit logical AND.
+     * The result uses a copy of the dictionary of this Cnf, so neither combining nor adding rows to the result
+     * modifies the dictionary of this Cnf; thus, several threads may combine the same Cnf concurrently, as long as
+     * nobody adds new variables to it. The result is stored off-heap if one of the two Cnfs is.
      * 
      * @param cnf
      *            the other cnf to be combined with this cnf. Must not be
@@ -153,12 +508,136 @@ public class Cnf {
      * @return a new cnf.
      */
     public @NonNull Cnf combine(@NonNull Cnf cnf) {
-        Cnf result = new Cnf(cnf.getRowCount() + this.getRowCount());
-        for (List<CnfVariable> list : table) {
-            result.addRow(notNull(list.toArray(new @NonNull CnfVariable[0])));
+        Cnf result = new Cnf(dictionary.copy(), cnf.rowCount + this.rowCount, this.isOffHeap() || cnf.isOffHeap());
+        result.appendRows(this, true);
+        result.appendRows(cnf, cnf.dictionary == this.dictionary);
+        return result;
+    }
+
+    /**
+     * Combines the given Cnfs into a new Cnf; same as calling {@link #combine(Cnf)} repeatedly, but the rows are only
+     * copied once.
+     *
+     * @param dictionary The dictionary for the result.
+     * @param cnfs The Cnfs to combine.
+     *
+     * @return A new Cnf with the rows of all given Cnfs, in the given order.
+     */
+    static @NonNull Cnf concat(@NonNull VariableDictionary dictionary, @NonNull List<@NonNull Cnf> cnfs) {
+        long rowCount = 0;
+        long literalCount = 0;
+        for (Cnf cnf : cnfs) {
+            rowCount += cnf.rowCount;
+            literalCount += cnf.literalCount;
+        }
+        checkCapacity(rowCount + 1, false);
+        checkCapacity(literalCount, false);
+
+        Cnf result = new Cnf(dictionary, (int) rowCount);
+        if (literalCount > result.literals.capacity()) {
+            result.literals = result.literals.copy(0, (int) literalCount);
+        }
+        for (Cnf cnf : cnfs) {
+            result.appendRows(cnf, cnf.dictionary == dictionary);
+        }
+        return result;
+    }
+
+    /**
+     * Appends all rows of the given Cnf to this Cnf. If the IDs of the other Cnf do not match the IDs of this Cnf,
+     * the literals are translated into the dictionary of this Cnf.
+     * 
+     * @param other The Cnf to copy the rows from.
+     * @param sameIds Whether the dictionary of this Cnf assigns the same IDs as the dictionary of the other Cnf (i.e.
+     *      it is the same dictionary or a copy of it).
+     */
+    private void appendRows(@NonNull Cnf other, boolean sameIds) {
+        long requiredRows = (long) rowCount + other.rowCount + 1;
+        if (requiredRows > rowStarts.capacity()) {
+            checkCapacity(requiredRows, rowStarts.isOffHeap());
+            rowStarts = rowStarts.copy(rowCount + 1, (int) requiredRows);
+        }
+        long requiredLiterals = (long) literalCount + other.literalCount;
+        if (requiredLiterals > literals.capacity()) {
+            checkCapacity(requiredLiterals, literals.isOffHeap());
+            literals = literals.copy(literalCount, (int) requiredLiterals);
+        }
+        
+        if (!sameIds) {
+            // translate each variable of the other dictionary only once
+            VariableDictionary otherDictionary = other.dictionary;
+            int[] translation = new int[otherDictionary.getMaxId() + 1];
+            for (int i = 0; i < other.literalCount; i++) {
+                int literal = other.literals.get(i);
+                int id = Math.abs(literal);
+                if (translation[id] == 0) {
+                    translation[id] = dictionary.getId(otherDictionary.getName(id));
+                }
+                literals.set(literalCount + i, literal < 0 ? -translation[id] : translation[id]);
+            }
+        } else {
+            other.literals.copyTo(0, literals, literalCount, other.literalCount);
+        }
+        
+        for (int i = 1; i <= other.rowCount; i++) {
+            rowStarts.set(rowCount + i, literalCount + other.rowStarts.get(i));
+        }
+        literalCount += other.literalCount;
+        rowCount += other.rowCount;
+        fingerprintValid = false;
+    }
+    
+    /**
+     * Creates a compact copy of this Cnf, e.g. to keep it as the key of a cache. In contrast to {@link #copy()}, the
+     * copy gets its own dictionary that only contains the variables used in this Cnf, so it does not keep the (possibly
+     * large and growing) dictionary of this Cnf alive. The copy is stored on the heap, and its arrays are trimmed to the
+     * actual size. It is {@link #equals(Object) equal} to this Cnf and has the same fingerprint.
+     * 
+     * @return A compact copy of this Cnf.
+     */
+    @NonNull Cnf compactCopy() {
+        VariableDictionary compactDictionary = new VariableDictionary();
+        int[] translation = new int[dictionary.getMaxId() + 1];
+        
+        Cnf result = new Cnf(compactDictionary, 0);
+        result.literals = IntStore.create(literalCount, false);
+        for (int i = 0; i < literalCount; i++) {
+            int literal = literals.get(i);
+            int id = Math.abs(literal);
+            if (translation[id] == 0) {
+                translation[id] = compactDictionary.getId(dictionary.getName(id));
+            }
+            result.literals.set(i, literal < 0 ? -translation[id] : translation[id]);
+        }
+        result.literalCount = literalCount;
+        result.rowStarts = IntStore.create(rowCount + 1, false);
+        rowStarts.copyTo(0, result.rowStarts, 0, rowCount + 1);
+        result.rowCount = rowCount;
+        
+        if (fingerprintValid) {
+            // the fingerprint only depends on the variable names
+            result.fingerprint = fingerprint;
+            result.fingerprintValid = true;
         }
-        for (List<CnfVariable> list : cnf.table) {
-            result.addRow(notNull(list.toArray(new @NonNull CnfVariable[0])));
+        return result;
+    }
+    
+    /**
+     * Creates a copy of this Cnf. The copy uses the same dictionary, and its arrays are trimmed to the actual size.
+     * It is stored off-heap if this Cnf is. Modifying one of the two does not affect the other.
+     * 
+     * @return A copy of this Cnf.
+     */
+    @NonNull Cnf copy() {
+        Cnf result = new Cnf(dictionary, 0);
+        result.literals = literals.copy(literalCount, literalCount);
+        result.literalCount = literalCount;
+        result.rowStarts = rowStarts.copy(rowCount + 1, rowCount + 1);
+        result.rowCount = rowCount;
+        
+        if (fingerprintValid) {
+            result.fingerprint = fingerprint;
+            result.fingerprintValid = true;
         }
         return result;
     }
@@ -203,11 +682,11 @@ public class Cnf {
         
         Formula result = True.INSTANCE;
         
-        if (table.size() > 0) {
-            result = rowAsFormula(table.get(0), cache);
+        if (rowCount > 0) {
+            result = rowAsFormula(getRow(0), cache);
             
-            for (int i = 1; i < table.size(); i++) {
-                result = new Conjunction(result, rowAsFormula(table.get(i), cache));
+            for (int i = 1; i < rowCount; i++) {
+                result = new Conjunction(result, rowAsFormula(getRow(i), cache));
             }
             
         }
@@ -219,37 +698,222 @@ public class Cnf {
     public @NonNull String toString() {
         StringBuilder result = new StringBuilder();
         
-        for (List<CnfVariable> row : table) {
-            result.append(row).append("\n");
+        for (int i = 0; i < rowCount; i++) {
+            result.append(getRow(i)).append("\n");
         }
         
         return notNull(result.toString());
     }
     
+    /**
+     * Returns a 64 bit fingerprint of this Cnf. The fingerprint only depends on the variable names, and not on the
+     * order of the rows or the order of the variables in each row; rows and the variables in a row are treated as
+     * sets (i.e. duplicates do not change the fingerprint). Thus, two Cnfs that are {@link #equals(Object)} have the
+     * same fingerprint.
+     * <p>
+     * The fingerprint is computed once and cached until this Cnf is modified.
+     * 
+     * @return The fingerprint of this Cnf.
+     */
+    public long getFingerprint() {
+        if (!fingerprintValid) {
+            fingerprint = computeFingerprint();
+            fingerprintValid = true;
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Computes the value for {@link #getFingerprint()}.
+     * 
+     * @return The fingerprint of this Cnf.
+     */
+    private long computeFingerprint() {
+        long[] rowHashes = new long[rowCount];
+        int[] buffer = new int[0];
+        
+        for (int i = 0; i < rowCount; i++) {
+            int length = rowStarts.get(i + 1) - rowStarts.get(i);
+            if (buffer.length < length) {
+                buffer = new int[length];
+            }
+            literals.get(rowStarts.get(i), buffer, 0, length);
+            Arrays.sort(buffer, 0, length);
+            
+            // the sum is independent of the order of the variables; sorting removes duplicates
+            long rowHash = 0;
+            for (int j = 0; j < length; j++) {
+                if (j == 0 || buffer[j] != buffer[j - 1]) {
+                    int literal = buffer[j];
+                    long hash = dictionary.getHash(Math.abs(literal));
+                    rowHash += literal < 0 ? VariableDictionary.mix(~hash) : hash;
+                }
+            }
+            rowHashes[i] = VariableDictionary.mix(rowHash);
+        }
+        
+        // same for the rows
+        Arrays.sort(rowHashes);
+        long hash = 0;
+        int numDistinct = 0;
+        for (int i = 0; i < rowHashes.length; i++) {
+            if (i == 0 || rowHashes[i] != rowHashes[i - 1]) {
+                hash += rowHashes[i];
+                numDistinct++;
+            }
+        }
+        
+        return VariableDictionary.mix(hash ^ numDistinct);
+    }
+    
+    /**
+     * Creates a canonical representation of the rows of this Cnf: each row is sorted and free of duplicates, and the
+     * rows are sorted and free of duplicates.
+     * 
+     * @param translation A translation of the IDs of this Cnf into the IDs of another dictionary, or <code>null</code>
+     *      if the IDs should not be translated.
+     * 
+     * @return The canonical rows; <code>null</code> if a variable is missing in the translation (i.e. it is 0).
+     */
+    private int @Nullable [] @NonNull [] getCanonicalRows(int @Nullable [] translation) {
+        int[][] rows = new int[rowCount][];
+        
+        for (int i = 0; i < rowCount; i++) {
+            int[] row = copyRow(i);
+            if (translation != null) {
+                for (int j = 0; j < row.length; j++) {
+                    int id = translation[Math.abs(row[j])];
+                    if (id == 0) {
+                        return null;
+                    }
+                    row[j] = row[j] < 0 ? -id : id;
+                }
+            }
+            Arrays.sort(row);
+            rows[i] = removeDuplicates(row);
+        }
+        
+        Arrays.sort(rows, (row1, row2) -> {
+            int result = Integer.compare(row1.length, row2.length);
+            for (int i = 0; result == 0 && i < row1.length; i++) {
+                result = Integer.compare(row1[i], row2[i]);
+            }
+            return result;
+        });
+        
+        int numDistinct = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (i == 0 || !Arrays.equals(rows[i], rows[i - 1])) {
+                rows[numDistinct++] = rows[i];
+            }
+        }
+        
+        return notNull(Arrays.copyOf(rows, numDistinct));
+    }
+    
+    /**
+     * Removes duplicates from the given sorted array.
+     * 
+     * @param sorted The sorted array.
+     * 
+     * @return The given array, or a shorter copy if it contained duplicates.
+     */
+    private static int @NonNull [] removeDuplicates(int @NonNull [] sorted) {
+        int numDistinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[numDistinct++] = sorted[i];
+            }
+        }
+        return numDistinct == sorted.length ? sorted : notNull(Arrays.copyOf(sorted, numDistinct));
+    }
+    
+    /**
+     * Checks whether the given object is a structurally equal Cnf. Two Cnfs are equal if they contain the same set of
+     * rows, where each row is a set of (possibly negated) variable names. The order of rows and of variables in a
+     * row does not matter, and neither does the {@link VariableDictionary} of the two Cnfs.
+     * <p>
+     * This is a purely syntactical comparison; semantically equivalent Cnfs (e.g. one containing an additional
+     * subsumed row) are not considered equal.
+     */
     @Override
     public boolean equals(@Nullable Object obj) {
-        return super.equals(obj);
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Cnf)) {
+            return false;
+        }
+        
+        Cnf other = (Cnf) obj;
+        if (other.getFingerprint() != this.getFingerprint()) {
+            return false;
+        }
+        
+        int[] translation = null;
+        if (other.dictionary != this.dictionary) {
+            translation = new int[other.dictionary.getMaxId() + 1];
+            for (int i = 1; i < translation.length; i++) {
+                translation[i] = this.dictionary.lookupId(other.dictionary.getName(i));
+            }
+        }
+        
+        int[][] otherRows = other.getCanonicalRows(translation);
+        return otherRows != null && Arrays.deepEquals(getCanonicalRows(null), otherRows);
     }
     
+    /**
+     * Consistent with {@link #equals(Object)}; derived from {@link #getFingerprint()}.
+     */
     @Override
     public int hashCode() {
-        int hash = 3244324;
+        long fingerprint = getFingerprint();
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+    
+    /**
+     * A read-only view on a single row of this Cnf.
+     */
+    private class RowView extends AbstractList<@NonNull CnfVariable> implements RandomAccess {
         
-        // sum up the hashes of the rows; this has the benefit that the order of the rows doesn't matter for hash
-        // (since it also doesn't matter for semantics)
-        for (List<CnfVariable> row : table) {
-            
-            int lineHash = 675433;
-            
-            // again, simply sum up the CnfVariables, since order doesn't matter semantically
-            for (CnfVariable variable : row) {
-                lineHash += variable.hashCode(); 
-            }
-            
-            hash += lineHash * 5434543;
+        private int row;
+        
+        /**
+         * Creates a view on the given row.
+         * 
+         * @param row The index of the row.
+         */
+        public RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public @NonNull CnfVariable get(int index) {
+            return getElement(row, index);
+        }
+
+        @Override
+        public int size() {
+            return rowStarts.get(row + 1) - rowStarts.get(row);
+        }
+        
+    }
+    
+    /**
+     * A read-only view on all rows of this Cnf.
+     */
+    private class TableView extends AbstractList<@NonNull List<@NonNull CnfVariable>> implements RandomAccess {
+
+        @Override
+        public @NonNull List<@NonNull CnfVariable> get(int index) {
+            return getRow(index);
+        }
+
+        @Override
+        public int size() {
+            return rowCount;
         }
         
-        return hash * 573495334;
     }
     
 }
@@ -21,6 +21,9 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
 /**
  * Represents an element of the CNF combining a negation (<b>true if negated</b>
  * ) and the name of the variable.
+ * <p>
+ * Instances are immutable. The {@link CnfVariable}s returned by a {@link Cnf} are shared flyweights of its
+ * {@link VariableDictionary}, one per variable and polarity.
  * 
  * @author Kevin
  * @author Johannes
@@ -33,12 +36,12 @@ public class CnfVariable {
     /**
      * The negation of the variables. Not null. Default Value = false.
      */
-    private boolean negation;
+    private final boolean negation;
 
     /**
      * The name of the variables. Not null.
      */
-    private @NonNull String name;
+    private final @NonNull String name;
 
     /**
      * Instanciates a new cnf Variable.
@@ -86,7 +89,7 @@ public class CnfVariable {
 
     @Override
     public int hashCode() {
-        return name.hashCode() + new Boolean(negation).hashCode();
+        return name.hashCode() + Boolean.hashCode(negation);
     }
     
     @Override
@@ -17,12 +17,20 @@ package net.ssehub.kernel_haven.cnf;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.Util;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
@@ -30,18 +38,129 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
 /**
  * SAT solver based on <a href="https://github.com/msoos/cryptominisat">CryptoMiniSat</a>. This currently runs only on
  * Linux 64 bit, since it requires JNI bindings.
+ * <p>
+ * The base CNF is loaded once into a native CryptoMiniSat instance, which is kept for all isSatisfiable() calls; only
+ * the clauses of the checked CNFs are passed to it. These are guarded by a fresh selector variable <code>s</code>
+ * (see {@link IncrementalSat4jSolver}), and disabled after the call by adding the unit clause <code>!s</code>. The
+ * disabled clauses, selectors and additional variables stay in the native instance; to bound its memory, it is freed
+ * and re-loaded with the base CNF once the number of these extra variables exceeds the number of base variables (but
+ * at least {@link #MIN_REBUILD_THRESHOLD}), like in {@link IncrementalSat4jSolver}. The native instance is freed by
+ * {@link #close()}, or when this object is garbage collected. If the JNI library does not support this, each call
+ * creates a new native instance with all clauses. Models are enumerated in the native instance as well: the blocking
+ * clauses of all models of one call are guarded by the same selector as the checked CNF.
+ * <p>
+ * The clauses are passed to the JNI library in flat, length-prefixed direct buffers. The buffer of the base CNF is
+ * built once, directly from the {@link Cnf}, and shared by all copies of this solver; the checked CNFs are also
+ * written directly into a (re-used) direct buffer (see {@link Cnf#writeClauses(IntBuffer, int[], int)}). The base CNF
+ * is not additionally kept as heap clauses; these are only created if {@link #explainUnsat(Cnf)} needs them (see
+ * {@link AbstractSingleShotSatSolver#AbstractSingleShotSatSolver(Cnf, boolean)}). In the single-shot fallback, the
+ * base CNF is copied once into a buffer that is re-used for all calls, and only the checked clauses are written
+ * behind it for each call.
+ * <p>
+ * The native instance can use several threads (see {@link SatSolverFactory#THREADS_SETTING}). In this case, each
+ * solve call first reserves its threads in a {@link SolverThreadBudget}, which is shared by all solvers.
+ * <p>
+ * The {@link SolverLimits} are passed to CryptoMiniSat before each solve call (<code>set_max_confl()</code> and
+ * <code>set_max_time()</code>). Note that CryptoMiniSat measures the time as CPU time, not wall-clock time. The
+ * fallback for older builds of the JNI library does not support limits.
  * 
  * @author Adam
  */
-class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
+class CryptoMiniSatSolver extends AbstractSingleShotSatSolver implements Closeable {
 
     /**
      * Whether we have loaded the native library yet.
      */
     private static boolean initiailized = false;
     
+    /**
+     * The version of the JNI library that this class needs; see {@link #getVersionImpl()}. Must match the version in
+     * <code>jni/cryptominisat5-jni.version</code>.
+     */
+    static final int LIBRARY_VERSION = 2;
+    
+    /**
+     * The version of the loaded JNI library. Builds of the library before {@link #getVersionImpl()} was added are
+     * version 1.
+     */
+    private static int libraryVersion;
+    
+    /**
+     * Whether the JNI library supports keeping native solver instances. Older builds of the library only provide
+     * {@link #isSatisfiableImpl(int, int, IntBuffer)}.
+     */
+    private static volatile boolean nativeInstancesSupported = true;
+    
+    /**
+     * Return value of {@link #solveImpl(long, int[], long, long)} for satisfiable clauses.
+     */
+    private static final int RESULT_SAT = 1;
+    
+    /**
+     * Return value of {@link #solveImpl(long, int[], long, long)} for unsatisfiable clauses.
+     */
+    private static final int RESULT_UNSAT = 0;
+    
+    /**
+     * The minimum number of selector and additional variables in the native solver, after which it is rebuilt.
+     */
+    static final int MIN_REBUILD_THRESHOLD = 10000;
+    
     private @Nullable IntBuffer directBuffer;
     
+    /**
+     * For the single-shot fallback: a copy of {@link #baseBuffer}, followed by room for the clauses of a call. The
+     * base clauses are only copied when this buffer is (re-)allocated.
+     */
+    private @Nullable IntBuffer fallbackBuffer;
+    
+    /**
+     * The clauses of the base CNF in the flat form of {@link #isSatisfiableImpl(int, int, IntBuffer)}; its capacity
+     * is exactly the size of the clauses. Built once and shared with all copies, so it must not be modified.
+     * <code>null</code> if the base CNF has no clauses.
+     */
+    private @Nullable IntBuffer baseBuffer;
+    
+    private int numBaseClauses;
+    
+    /**
+     * The number of threads that the native solver uses.
+     */
+    private int numThreads;
+    
+    /**
+     * The budget to reserve the threads of the native solver in. <code>null</code> if the threads are not limited.
+     */
+    private @Nullable SolverThreadBudget threadBudget;
+    
+    /**
+     * The native solver, with the base CNF loaded. Created on the first call.
+     */
+    private @Nullable NativeSolver nativeSolver;
+    
+    /**
+     * The number of variables in {@link #nativeSolver}.
+     */
+    private int nativeNumVars;
+    
+    /**
+     * The numbers in {@link #nativeSolver} of variables that are not part of the base CNF. The variable with number
+     * <code>getBaseMaxNumber() + 1 + i</code> in a checked CNF uses <code>additionalVariables[i]</code>. These can be
+     * re-used for all calls, since all clauses of previous calls are disabled.
+     * <p>
+     * This relies on {@link #getBaseMaxNumber()} being fixed when this solver is created: the dictionary of the base
+     * CNF may grow afterwards (if checked CNFs share it), but the new IDs are mapped through this array like any
+     * other additional variable, instead of being used as native numbers that may already be taken by additional
+     * variables or selectors of previous calls.
+     */
+    private int @NonNull [] additionalVariables;
+    
+    /**
+     * The number of selector and additional variables in {@link #nativeSolver} after which it is rebuilt before the
+     * next call.
+     */
+    private int rebuildThreshold;
+    
     /**
      * Creates a new and empty Sat solver.
      * 
@@ -49,6 +168,24 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
      */
     public CryptoMiniSatSolver() {
         init();
+        this.additionalVariables = new int[0];
+        this.numThreads = 1;
+        this.rebuildThreshold = MIN_REBUILD_THRESHOLD;
+    }
+    
+    /**
+     * Creates a new and empty Sat solver, which uses the given number of threads.
+     * 
+     * @param numThreads The number of threads that CryptoMiniSat uses. Must be at least 1.
+     * @param threadBudget The budget to reserve the threads in before each solve call; <code>null</code> if the
+     *      threads should not be limited.
+     * 
+     * @throws UnsupportedOperationException If loading the JNI library fails.
+     */
+    public CryptoMiniSatSolver(int numThreads, @Nullable SolverThreadBudget threadBudget)
+            throws UnsupportedOperationException {
+        this();
+        setThreads(numThreads, threadBudget);
     }
     
     
@@ -62,8 +199,118 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
      * @throws UnsupportedOperationException If loading the JNI library fails.
      */
     public CryptoMiniSatSolver(@NonNull Cnf cnf) throws UnsupportedOperationException {
-        super(cnf);
+        // the base buffer is used instead of heap clauses for all calls but explainUnsat()
+        super(cnf, false);
         init();
+        this.additionalVariables = new int[0];
+        this.numThreads = 1;
+        this.rebuildThreshold = Math.max(getBaseMaxNumber(), MIN_REBUILD_THRESHOLD);
+        
+        this.numBaseClauses = cnf.getRowCount();
+        if (numBaseClauses > 0) {
+            // the literals of the base CNF are used unchanged, see AbstractSingleShotSatSolver
+            IntBuffer baseBuffer = allocateDirectBuffer(cnf.getClauseBufferSize());
+            cnf.writeClauses(baseBuffer, null, 0);
+            baseBuffer.rewind();
+            this.baseBuffer = baseBuffer;
+        }
+    }
+    
+    /**
+     * Creates a SAT solver with the given CNF, which uses the given number of threads. See
+     * {@link #CryptoMiniSatSolver(Cnf)}.
+     * 
+     * @param cnf The base CNF.
+     * @param numThreads The number of threads that CryptoMiniSat uses. Must be at least 1.
+     * @param threadBudget The budget to reserve the threads in before each solve call; <code>null</code> if the
+     *      threads should not be limited.
+     * 
+     * @throws UnsupportedOperationException If loading the JNI library fails.
+     */
+    public CryptoMiniSatSolver(@NonNull Cnf cnf, int numThreads, @Nullable SolverThreadBudget threadBudget)
+            throws UnsupportedOperationException {
+        this(cnf);
+        setThreads(numThreads, threadBudget);
+    }
+    
+    /**
+     * Creates a copy of the given solver; see {@link #copy()}. The copy shares the buffer of the base CNF, but uses its
+     * own direct buffer and native solver.
+     * 
+     * @param other The solver to copy.
+     */
+    private CryptoMiniSatSolver(@NonNull CryptoMiniSatSolver other) {
+        super(other);
+        this.baseBuffer = other.baseBuffer;
+        this.numBaseClauses = other.numBaseClauses;
+        this.additionalVariables = new int[0];
+        this.numThreads = other.numThreads;
+        this.threadBudget = other.threadBudget;
+        this.rebuildThreshold = other.rebuildThreshold;
+    }
+    
+    /**
+     * Sets the number of selector and additional variables after which the native solver is rebuilt. By default,
+     * this is the number of base variables, but at least {@link #MIN_REBUILD_THRESHOLD}.
+     * 
+     * @param rebuildThreshold The number of extra variables after which the native solver is rebuilt.
+     */
+    void setRebuildThreshold(int rebuildThreshold) {
+        this.rebuildThreshold = rebuildThreshold;
+    }
+    
+    /**
+     * Returns the number of selector and additional variables in the current native solver.
+     * 
+     * @return The number of extra variables; 0 if there is no native solver.
+     */
+    int getExtraVariableCount() {
+        return nativeSolver != null ? nativeNumVars - getBaseMaxNumber() : 0;
+    }
+    
+    /**
+     * Sets the number of threads that the native solver uses.
+     * 
+     * @param numThreads The number of threads. Must be at least 1.
+     * @param threadBudget The budget to reserve the threads in; <code>null</code> if the threads are not limited.
+     */
+    private void setThreads(int numThreads, @Nullable SolverThreadBudget threadBudget) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, got " + numThreads);
+        }
+        int limited = numThreads;
+        if (threadBudget != null) {
+            // we can never reserve more than the whole budget
+            limited = Math.min(numThreads, threadBudget.getSize());
+        }
+        this.numThreads = limited;
+        this.threadBudget = threadBudget;
+    }
+    
+    /**
+     * Returns the number of threads that the native solver uses.
+     * 
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+    
+    /**
+     * Sets the limits for each call to this solver. Frees the native solver instance, since it may still use the
+     * old limits.
+     * 
+     * @param limits The limits for each call.
+     */
+    @Override
+    void setLimits(@NonNull SolverLimits limits) {
+        super.setLimits(limits);
+        close();
+    }
+    
+    @Override
+    @NonNull CryptoMiniSatSolver copy() {
+        return new CryptoMiniSatSolver(this);
     }
     
     /**
@@ -83,10 +330,42 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
                 throw new UnsupportedOperationException("Can't load JNI library", e);
             }
             
+            try {
+                libraryVersion = getVersionImpl();
+            } catch (UnsatisfiedLinkError e) {
+                libraryVersion = 1;
+            }
+            if (libraryVersion < LIBRARY_VERSION) {
+                nativeInstancesSupported = false;
+                Logger.get().logWarning("CryptoMiniSat JNI library has version " + libraryVersion + ", expected "
+                        + LIBRARY_VERSION + "; only single-shot calls without limits, threads, models and "
+                        + "explanations are supported. Rebuild the library, see jni/README");
+            }
+            
             initiailized = true;
         }
     }
     
+    /**
+     * Returns the version of the loaded JNI library. Loads the library, if it is not loaded yet. If this is lower than
+     * {@link #LIBRARY_VERSION}, all calls fall back to single-shot calls.
+     * 
+     * @return The version of the JNI library.
+     * 
+     * @throws UnsupportedOperationException If loading the JNI library fails.
+     */
+    static synchronized int getLibraryVersion() throws UnsupportedOperationException {
+        init();
+        return libraryVersion;
+    }
+    
+    /**
+     * Returns the version of the JNI library.
+     * 
+     * @return The version of the JNI library; see {@link #LIBRARY_VERSION}.
+     */
+    private static native int getVersionImpl();
+    
     /**
      * The native implementation that calls the CMS solver.
      * 
@@ -103,6 +382,76 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
     private static native boolean isSatisfiableImpl(int numVars, int numClauses, @NonNull IntBuffer intBuffer)
             throws SolverException;
     
+    /**
+     * Creates a new native CryptoMiniSat instance.
+     * 
+     * @param numThreads The number of threads that the instance uses. Must be > 0.
+     * 
+     * @return The handle of the native instance.
+     * 
+     * @throws SolverException If creating the instance fails.
+     */
+    private static native long createSolverImpl(int numThreads) throws SolverException;
+    
+    /**
+     * Frees a native CryptoMiniSat instance.
+     * 
+     * @param handle The handle of the native instance, as returned by {@link #createSolverImpl(int)}.
+     */
+    private static native void destroySolverImpl(long handle);
+    
+    /**
+     * Adds clauses to a native CryptoMiniSat instance.
+     * 
+     * @param handle The handle of the native instance.
+     * @param numVars The number of the highest variable used; new variables are added to the instance as needed.
+     * @param numClauses The number of clauses in the buffer. Must be > 0.
+     * @param intBuffer A flat buffer of the clauses, see {@link #isSatisfiableImpl(int, int, IntBuffer)}.
+     * 
+     * @throws SolverException If JNI communication fails or the CMS solver throws an exception.
+     */
+    private static native void addClausesImpl(long handle, int numVars, int numClauses, @NonNull IntBuffer intBuffer)
+            throws SolverException;
+    
+    /**
+     * Solves the clauses of a native CryptoMiniSat instance under the given assumptions.
+     * 
+     * @param handle The handle of the native instance.
+     * @param assumptions The literals that are assumed to be true; only variables that exist in the instance.
+     * @param maxConflicts The maximum number of conflicts for this call; 0 means no limit.
+     * @param timeoutMs The maximum (CPU) time for this call in milliseconds; 0 means no limit.
+     * 
+     * @return {@link #RESULT_SAT} or {@link #RESULT_UNSAT}; any other value if a limit was reached.
+     * 
+     * @throws SolverException If JNI communication fails or the CMS solver throws an exception.
+     */
+    private static native int solveImpl(long handle, int @NonNull [] assumptions, long maxConflicts, long timeoutMs)
+            throws SolverException;
+    
+    /**
+     * Returns the model of the last call to {@link #solveImpl(long, int[], long, long)}, which must have returned
+     * {@link #RESULT_SAT}.
+     * 
+     * @param handle The handle of the native instance.
+     * 
+     * @return The value of each variable in the model, indexed by the variable number (index 0 is unused).
+     * 
+     * @throws SolverException If JNI communication fails.
+     */
+    private static native boolean @NonNull [] getModelImpl(long handle) throws SolverException;
+    
+    /**
+     * Returns the conflict of the last call to {@link #solveImpl(long, int[], long, long)}, which must have returned
+     * {@link #RESULT_UNSAT}.
+     * 
+     * @param handle The handle of the native instance.
+     * 
+     * @return The negations of the assumptions that are responsible for the unsatisfiability.
+     * 
+     * @throws SolverException If JNI communication fails.
+     */
+    private static native int @NonNull [] getConflictImpl(long handle) throws SolverException;
+    
     /**
      * Returns a direct {@link IntBuffer} with at least the specified capacity. If applicable, old buffers are re-used
      * so that we don't have to allocate new buffers all the time.
@@ -123,8 +472,7 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
             result = previousBuffer;
             
         } else {
-            result = notNull(
-                    ByteBuffer.allocateDirect(requiredCapacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer());
+            result = allocateDirectBuffer(requiredCapacity);
             
             if (!result.isDirect()) {
                 throw new SolverException("Unable to create direct IntBuffer");
@@ -137,8 +485,54 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
         return result;
     }
     
+    /**
+     * Returns the buffer for the single-shot fallback, positioned directly behind the clauses of the base CNF. If the
+     * previous buffer is too small, a larger one is allocated, and the base clauses are copied into it.
+     * 
+     * @param additionalCapacity The number of ints that need to be stored behind the base clauses.
+     * 
+     * @return A direct {@link IntBuffer} that starts with the base clauses, with room for at least the specified
+     *      number of ints.
+     */
+    private @NonNull IntBuffer getFallbackBuffer(int additionalCapacity) {
+        IntBuffer baseBuffer = this.baseBuffer;
+        int baseSize = baseBuffer != null ? baseBuffer.capacity() : 0;
+        
+        IntBuffer result = this.fallbackBuffer;
+        if (result == null || result.capacity() < baseSize + additionalCapacity) {
+            int capacity = baseSize + additionalCapacity;
+            if (result != null) {
+                // grow generously, so that the base clauses are rarely copied again
+                capacity = Math.max(capacity, baseSize + 2 * (result.capacity() - baseSize));
+            }
+            result = allocateDirectBuffer(capacity);
+            if (baseBuffer != null) {
+                result.put(baseBuffer.duplicate());
+            }
+            this.fallbackBuffer = result;
+        }
+        
+        result.limit(result.capacity());
+        result.position(baseSize);
+        return result;
+    }
+    
+    /**
+     * Allocates a new direct {@link IntBuffer} in the native byte order.
+     * 
+     * @param capacity The number of ints that need to be stored.
+     * 
+     * @return A new {@link IntBuffer} with exactly the given capacity.
+     * 
+     * @throws ArithmeticException If the ints don't fit into a direct buffer.
+     */
+    private static @NonNull IntBuffer allocateDirectBuffer(int capacity) throws ArithmeticException {
+        return notNull(ByteBuffer.allocateDirect(Math.multiplyExact(capacity, 4)).order(ByteOrder.nativeOrder())
+                .asIntBuffer());
+    }
+    
     @Override
-    protected boolean isSatisfiable(int numVars, int[][] clauses) throws SolverException {
+    protected @NonNull SatResult solve(int numVars, int[][] clauses) throws SolverException {
         // store the clauses as a flat list in an IntBuffer, so that JNI can directly access the memory
         
         // first calculate the capacity: for each row the number of elements + 1 for the size
@@ -154,7 +548,699 @@ class CryptoMiniSatSolver extends AbstractSingleShotSatSolver {
             buffer.put(clause);
         }
         
-        return isSatisfiableImpl(numVars, clauses.length, buffer);
+        return SatResult.of(isSatisfiableImpl(numVars, clauses.length, buffer));
     }
-
+    
+    /**
+     * Writes the CNF directly into the direct buffer, without creating clause arrays first.
+     */
+    @Override
+    protected @NonNull SatResult solveWithBase(@NonNull Cnf cnf, int @NonNull [] mapping, int numVars)
+            throws SolverException {
+        
+        NativeSolver solver = getNativeSolver();
+        if (solver == null) {
+            // single shot: the CNF is written behind the base clauses
+            int numClauses = numBaseClauses + cnf.getRowCount();
+            if (numClauses == 0) {
+                return SatResult.SAT;
+            }
+            
+            IntBuffer buffer = getFallbackBuffer(cnf.getClauseBufferSize());
+            cnf.writeClauses(buffer, mapping, 0);
+            
+            return SatResult.of(isSatisfiableImpl(numVars, numClauses, buffer));
+        }
+        
+        int baseMaxNumber = getBaseMaxNumber();
+        mapAdditionalVariables(numVars, baseMaxNumber);
+        
+        if (cnf.getRowCount() == 0) {
+            return solveNative(solver, new int[0], new int[0], baseMaxNumber, null);
+        }
+        
+        // combine the mapping to solver numbers with the mapping to native numbers
+        int[] nativeMapping = new int[mapping.length];
+        for (int id = 1; id < mapping.length; id++) {
+            if (mapping[id] != 0) {
+                nativeMapping[id] = toNativeLiteral(mapping[id], baseMaxNumber);
+            }
+        }
+        
+        int selector = ++nativeNumVars;
+        IntBuffer buffer = getDirectBuffer(cnf.getClauseBufferSize() + cnf.getRowCount());
+        cnf.writeClauses(buffer, nativeMapping, -selector);
+        
+        return solveGuarded(solver, cnf.getRowCount(), buffer, selector, new int[0], baseMaxNumber, null);
+    }
+    
+    @Override
+    protected @NonNull SatResult solveWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses,
+            int @NonNull [] assumptions) throws SolverException {
+        
+        NativeSolver solver = getNativeSolver();
+        if (solver == null) {
+            // single shot: the clauses and one unit clause per assumption are written behind the base clauses
+            int numClauses = numBaseClauses + additionalClauses.length + assumptions.length;
+            if (numClauses == 0) {
+                return SatResult.SAT;
+            }
+            
+            int capacity = 2 * assumptions.length;
+            for (int[] clause : additionalClauses) {
+                capacity += clause.length + 1;
+            }
+            IntBuffer buffer = getFallbackBuffer(capacity);
+            for (int[] clause : additionalClauses) {
+                buffer.put(clause.length);
+                buffer.put(clause);
+            }
+            for (int assumption : assumptions) {
+                buffer.put(1);
+                buffer.put(assumption);
+            }
+            
+            return SatResult.of(isSatisfiableImpl(numVars, numClauses, buffer));
+        }
+        
+        return solveWithBase(solver, numVars, additionalClauses, assumptions, null);
+    }
+    
+    @Override
+    protected boolean @Nullable [] findModelWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses)
+            throws SolverException, UnsupportedOperationException {
+        
+        NativeSolver solver = getNativeSolver();
+        if (solver == null) {
+            // the single-shot fallback can't return models; don't create the heap clauses of the base CNF for this
+            throw new UnsupportedOperationException("The JNI library does not support model extraction");
+        }
+        
+        boolean[] model = new boolean[numVars + 1];
+        return solveWithBase(solver, numVars, additionalClauses, new int[0], model).isSatisfiable() ? model : null;
+    }
+    
+    /**
+     * Enumerates the models in the native solver. The additional clauses and the blocking clauses of all models are
+     * guarded by the same selector variable, so that the native solver keeps what it learned between the models; the
+     * selector is disabled after the last model.
+     */
+    @Override
+    protected int enumerateModelsWithBase(int numVars, int @NonNull [] @NonNull [] additionalClauses, int limit,
+            @NonNull Consumer<boolean @NonNull []> consumer) throws SolverException, UnsupportedOperationException {
+        
+        NativeSolver solver = getNativeSolver();
+        if (solver == null) {
+            throw new UnsupportedOperationException("The JNI library does not support model extraction");
+        }
+        
+        int baseMaxNumber = getBaseMaxNumber();
+        mapAdditionalVariables(numVars, baseMaxNumber);
+        
+        int selector = ++nativeNumVars;
+        int[] nativeAssumptions = {selector};
+        
+        int count = 0;
+        try {
+            if (additionalClauses.length > 0) {
+                addGuardedClauses(solver, additionalClauses, selector, baseMaxNumber);
+            }
+            
+            while (limit == 0 || count < limit) {
+                boolean[] model = new boolean[numVars + 1];
+                if (!solveNative(solver, new int[0], nativeAssumptions, baseMaxNumber, model).isSatisfiable()) {
+                    break;
+                }
+                
+                consumer.accept(model);
+                count++;
+                
+                if (numVars == 0) {
+                    // there are no variables, so this is the only model
+                    break;
+                }
+                addGuardedClauses(solver, new int[][] {getBlockingClause(numVars, model)}, selector, baseMaxNumber);
+            }
+            
+        } finally {
+            disableSelector(solver, selector);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Adds the given clauses to the native solver, each guarded by the given selector variable.
+     * 
+     * @param solver The native solver.
+     * @param clauses The clauses to add. Must not be empty.
+     * @param selector The selector variable of the clauses.
+     * @param baseMaxNumber The highest variable number of the base CNF.
+     * 
+     * @throws SolverException If adding the clauses fails.
+     */
+    private void addGuardedClauses(@NonNull NativeSolver solver, int @NonNull [] @NonNull [] clauses, int selector,
+            int baseMaxNumber) throws SolverException {
+        
+        int capacity = 0;
+        for (int[] clause : clauses) {
+            capacity += clause.length + 2;
+        }
+        IntBuffer buffer = getDirectBuffer(capacity);
+        for (int[] clause : clauses) {
+            buffer.put(clause.length + 1);
+            for (int literal : clause) {
+                buffer.put(toNativeLiteral(literal, baseMaxNumber));
+            }
+            buffer.put(-selector);
+        }
+        
+        solver.addClauses(nativeNumVars, clauses.length, buffer);
+    }
+    
+    /**
+     * Disables all clauses that are guarded by the given selector variable, by adding the unit clause
+     * <code>!selector</code> to the native solver.
+     * 
+     * @param solver The native solver.
+     * @param selector The selector variable to disable.
+     * 
+     * @throws SolverException If adding the unit clause fails.
+     */
+    private void disableSelector(@NonNull NativeSolver solver, int selector) throws SolverException {
+        IntBuffer disable = getDirectBuffer(2);
+        disable.put(1);
+        disable.put(-selector);
+        solver.addClauses(nativeNumVars, 1, disable);
+    }
+    
+    /**
+     * Solves the base CNF together with the additional clauses in the native solver.
+     * 
+     * @param solver The native solver.
+     * @param numVars The number of variables used. I.e. this is the highest number in the base CNF and the
+     *      additional clauses.
+     * @param additionalClauses The clauses to check in addition to the base CNF.
+     * @param assumptions The literals that are assumed to be true.
+     * @param model If not <code>null</code>, the model is stored in this array (indexed by the variable number) if
+     *      the result is satisfiable. Must have a length of at least <code>numVars + 1</code>.
+     * 
+     * @return Whether the clauses are satisfiable under the assumptions; {@link SatResult#UNKNOWN} if a limit was
+     *      reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    private @NonNull SatResult solveWithBase(@NonNull NativeSolver solver, int numVars,
+            int @NonNull [] @NonNull [] additionalClauses, int @NonNull [] assumptions, boolean @Nullable [] model)
+            throws SolverException {
+        
+        int baseMaxNumber = getBaseMaxNumber();
+        mapAdditionalVariables(numVars, baseMaxNumber);
+        
+        if (additionalClauses.length == 0) {
+            return solveNative(solver, assumptions, new int[assumptions.length], baseMaxNumber, model);
+        }
+        
+        int selector = ++nativeNumVars;
+        
+        int capacity = 0;
+        for (int[] clause : additionalClauses) {
+            capacity += clause.length + 2;
+        }
+        IntBuffer buffer = getDirectBuffer(capacity);
+        for (int[] clause : additionalClauses) {
+            buffer.put(clause.length + 1);
+            for (int literal : clause) {
+                buffer.put(toNativeLiteral(literal, baseMaxNumber));
+            }
+            buffer.put(-selector);
+        }
+        
+        return solveGuarded(solver, additionalClauses.length, buffer, selector, assumptions, baseMaxNumber, model);
+    }
+    
+    /**
+     * Maps the variables that are not part of the base CNF to numbers in the native solver. New native variables are
+     * created as needed.
+     * 
+     * @param numVars The number of variables used in the current call.
+     * @param baseMaxNumber The highest variable number of the base CNF.
+     */
+    private void mapAdditionalVariables(int numVars, int baseMaxNumber) {
+        if (numVars - baseMaxNumber > additionalVariables.length) {
+            int oldLength = additionalVariables.length;
+            additionalVariables = notNull(Arrays.copyOf(additionalVariables, numVars - baseMaxNumber));
+            for (int i = oldLength; i < additionalVariables.length; i++) {
+                additionalVariables[i] = ++nativeNumVars;
+            }
+        }
+    }
+    
+    /**
+     * Adds the given guarded clauses to the native solver, solves it, and disables the clauses again.
+     * 
+     * @param solver The native solver.
+     * @param numClauses The number of clauses in the buffer. Must be &gt; 0.
+     * @param buffer The clauses, as native literals. Each clause contains the negated selector.
+     * @param selector The selector variable of the clauses; must be a new variable in the native solver.
+     * @param assumptions The assumptions, as numbers of {@link AbstractSingleShotSatSolver}.
+     * @param baseMaxNumber The highest variable number of the base CNF.
+     * @param model If not <code>null</code>, the model is stored in this array if the result is satisfiable.
+     * 
+     * @return Whether the clauses are satisfiable under the assumptions; {@link SatResult#UNKNOWN} if a limit was
+     *      reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    private @NonNull SatResult solveGuarded(@NonNull NativeSolver solver, int numClauses, @NonNull IntBuffer buffer,
+            int selector, int @NonNull [] assumptions, int baseMaxNumber, boolean @Nullable [] model)
+            throws SolverException {
+        
+        solver.addClauses(nativeNumVars, numClauses, buffer);
+        
+        int[] nativeAssumptions = new int[assumptions.length + 1];
+        nativeAssumptions[assumptions.length] = selector;
+        
+        try {
+            return solveNative(solver, assumptions, nativeAssumptions, baseMaxNumber, model);
+        } finally {
+            // disable the clauses of this call for all following calls
+            disableSelector(solver, selector);
+        }
+    }
+    
+    /**
+     * Solves the native solver under the given assumptions.
+     * 
+     * @param solver The native solver.
+     * @param assumptions The assumptions, as numbers of {@link AbstractSingleShotSatSolver}.
+     * @param nativeAssumptions The array to store the native assumptions in; at least as long as the assumptions.
+     *      Further elements are already filled.
+     * @param baseMaxNumber The highest variable number of the base CNF.
+     * @param model If not <code>null</code>, the model is stored in this array if the result is satisfiable.
+     * 
+     * @return Whether the clauses of the native solver are satisfiable under the assumptions;
+     *      {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    private @NonNull SatResult solveNative(@NonNull NativeSolver solver, int @NonNull [] assumptions,
+            int @NonNull [] nativeAssumptions, int baseMaxNumber, boolean @Nullable [] model) throws SolverException {
+        
+        for (int i = 0; i < assumptions.length; i++) {
+            nativeAssumptions[i] = toNativeLiteral(assumptions[i], baseMaxNumber);
+        }
+        
+        SatResult result = solveNative(solver, nativeAssumptions);
+        
+        if (model != null && result == SatResult.SAT) {
+            // the native model has to be read before the clauses of this call are disabled
+            boolean[] nativeModel = solver.getModel();
+            for (int number = 1; number < model.length; number++) {
+                model[number] = nativeModel[toNativeLiteral(number, baseMaxNumber)];
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Solves the native solver under the given native assumptions, within the limits and the thread budget of this
+     * solver.
+     * 
+     * @param solver The native solver.
+     * @param nativeAssumptions The assumptions, as literals of the native solver.
+     * 
+     * @return Whether the clauses of the native solver are satisfiable under the assumptions;
+     *      {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    private @NonNull SatResult solveNative(@NonNull NativeSolver solver, int @NonNull [] nativeAssumptions)
+            throws SolverException {
+        
+        SolverLimits limits = getLimits();
+        
+        SatResult result;
+        SolverThreadBudget threadBudget = this.threadBudget;
+        if (numThreads == 1 || threadBudget == null) {
+            result = solver.solve(nativeAssumptions, limits);
+            
+        } else {
+            int reserved = threadBudget.acquire(numThreads);
+            try {
+                result = solver.solve(nativeAssumptions, limits);
+            } finally {
+                threadBudget.release(reserved);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Finds a minimal core in a new native instance, in which each clause is guarded by its own selector variable.
+     * The solver is called with all selectors assumed to be true; the conflicting assumptions then form a core. This
+     * core is minimized by removing one clause at a time: if the rest is still unsatisfiable, its (smaller) conflict
+     * replaces the core; otherwise, the clause is part of the minimal core.
+     * <p>
+     * If a limit is reached during the minimization, the clause is kept, so the core may not be minimal.
+     */
+    @Override
+    protected int @Nullable [] findCore(int numVars, int[][] clauses)
+            throws SolverException, UnsupportedOperationException {
+        
+        NativeSolver solver = null;
+        if (nativeInstancesSupported) {
+            try {
+                solver = new NativeSolver(this, numThreads);
+            } catch (UnsatisfiedLinkError e) {
+                nativeInstancesSupported = false;
+                Logger.get().logExceptionDebug("JNI library does not support native CryptoMiniSat instances", e);
+            }
+        }
+        if (solver == null) {
+            return super.findCore(numVars, clauses);
+        }
+        
+        try {
+            // the selector of clause i is numVars + 1 + i
+            int[] selectors = new int[clauses.length];
+            if (clauses.length > 0) {
+                int capacity = 0;
+                for (int[] clause : clauses) {
+                    capacity += clause.length + 2;
+                }
+                IntBuffer buffer = getDirectBuffer(capacity);
+                for (int i = 0; i < clauses.length; i++) {
+                    selectors[i] = numVars + 1 + i;
+                    buffer.put(clauses[i].length + 1);
+                    buffer.put(clauses[i]);
+                    buffer.put(-selectors[i]);
+                }
+                solver.addClauses(numVars + clauses.length, clauses.length, buffer);
+                
+                // the clauses may be large, and the following calls only need a small buffer
+                this.directBuffer = null;
+            }
+            
+            if (solveNative(solver, selectors).isSatisfiable()) {
+                return null;
+            }
+            
+            int[] core = solver.getConflictingAssumptions();
+            
+            // the first numRequired selectors of the core are known to be part of the minimal core
+            int numRequired = 0;
+            while (numRequired < core.length) {
+                int[] rest = new int[core.length - 1];
+                System.arraycopy(core, 0, rest, 0, numRequired);
+                System.arraycopy(core, numRequired + 1, rest, numRequired, rest.length - numRequired);
+                
+                if (solveNative(solver, rest) == SatResult.UNSAT) {
+                    // the conflict is a subset of rest, and contains all required selectors; keep them at the start
+                    int[] conflict = solver.getConflictingAssumptions();
+                    
+                    int[] smaller = new int[conflict.length];
+                    System.arraycopy(core, 0, smaller, 0, numRequired);
+                    int size = numRequired;
+                    for (int selector : conflict) {
+                        if (Arrays.binarySearch(core, numRequired + 1, core.length, selector) >= 0) {
+                            smaller[size++] = selector;
+                        }
+                    }
+                    core = notNull(Arrays.copyOf(smaller, size));
+                    
+                } else {
+                    numRequired++;
+                }
+            }
+            
+            for (int i = 0; i < core.length; i++) {
+                core[i] -= numVars + 1;
+            }
+            return core;
+            
+        } finally {
+            solver.close();
+        }
+    }
+    
+    /**
+     * Converts a literal of {@link AbstractSingleShotSatSolver} to a literal of the native solver.
+     * 
+     * @param literal The literal to convert.
+     * @param baseMaxNumber The highest variable number of the base CNF.
+     * 
+     * @return The literal in the native solver.
+     */
+    private int toNativeLiteral(int literal, int baseMaxNumber) {
+        int number = Math.abs(literal);
+        if (number > baseMaxNumber) {
+            number = additionalVariables[number - baseMaxNumber - 1];
+        }
+        return literal < 0 ? -number : number;
+    }
+    
+    /**
+     * Returns the native solver with the base CNF loaded. Creates it on the first call, and re-creates it if too many
+     * selector and additional variables have accumulated in it.
+     * 
+     * @return The native solver; <code>null</code> if the JNI library does not support native solver instances.
+     * 
+     * @throws SolverException If creating the native solver or loading the base CNF fails.
+     */
+    private @Nullable NativeSolver getNativeSolver() throws SolverException {
+        if (getExtraVariableCount() > rebuildThreshold) {
+            // frees the disabled clauses of all previous calls; the base CNF is loaded again below
+            close();
+        }
+        NativeSolver result = this.nativeSolver;
+        
+        if (result == null && nativeInstancesSupported) {
+            try {
+                result = new NativeSolver(this, numThreads);
+            } catch (UnsatisfiedLinkError e) {
+                nativeInstancesSupported = false;
+                Logger.get().logExceptionDebug("JNI library does not support native CryptoMiniSat instances; "
+                        + "creating a new instance for each call", e);
+            }
+            
+            if (result != null) {
+                nativeNumVars = getBaseMaxNumber();
+                IntBuffer baseBuffer = this.baseBuffer;
+                if (baseBuffer != null) {
+                    try {
+                        result.addClauses(nativeNumVars, numBaseClauses, baseBuffer);
+                    } catch (SolverException e) {
+                        result.close();
+                        throw e;
+                    }
+                }
+                
+                this.nativeSolver = result;
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Frees the native solver instance. This solver can still be used afterwards; a new native instance is created
+     * on the next call.
+     */
+    @Override
+    public void close() {
+        NativeSolver nativeSolver = this.nativeSolver;
+        if (nativeSolver != null) {
+            nativeSolver.close();
+            this.nativeSolver = null;
+            this.additionalVariables = new int[0];
+        }
+    }
+    
+    /**
+     * A native CryptoMiniSat instance. The instance is freed when {@link #close()} is called, or when the
+     * {@link CryptoMiniSatSolver} that owns it is garbage collected.
+     * <p>
+     * (This uses a {@link PhantomReference}, since we are limited to Java 8 and thus can't use
+     * <code>java.lang.ref.Cleaner</code>.)
+     */
+    static final class NativeSolver implements Closeable {
+        
+        private static final @NonNull ReferenceQueue<CryptoMiniSatSolver> CLEANUP_QUEUE = new ReferenceQueue<>();
+        
+        /**
+         * Keeps the references to the owners reachable until they are enqueued.
+         */
+        private static final @NonNull Set<@NonNull OwnerReference> OWNER_REFERENCES = ConcurrentHashMap.newKeySet();
+        
+        private static boolean cleanupThreadStarted;
+        
+        private long handle;
+        
+        private @NonNull OwnerReference ownerReference;
+        
+        /**
+         * Creates a new native CryptoMiniSat instance.
+         * 
+         * @param owner The object whose lifetime the native instance is tied to. The native instance must not
+         *      reference the owner.
+         * @param numThreads The number of threads that the native instance uses.
+         * 
+         * @throws SolverException If creating the native instance fails.
+         * @throws UnsatisfiedLinkError If the JNI library does not support native instances.
+         */
+        NativeSolver(@NonNull CryptoMiniSatSolver owner, int numThreads)
+                throws SolverException, UnsatisfiedLinkError {
+            startCleanupThread();
+            this.handle = createSolverImpl(numThreads);
+            this.ownerReference = new OwnerReference(owner, this);
+            OWNER_REFERENCES.add(ownerReference);
+        }
+        
+        /**
+         * Starts the thread that frees the native instances of garbage collected owners, if not already done.
+         */
+        private static synchronized void startCleanupThread() {
+            if (!cleanupThreadStarted) {
+                Thread thread = new Thread(() -> {
+                    while (true) {
+                        try {
+                            OwnerReference reference = (OwnerReference) CLEANUP_QUEUE.remove();
+                            OWNER_REFERENCES.remove(reference);
+                            reference.nativeSolver.close();
+                        } catch (InterruptedException e) {
+                            // ignore, this thread runs forever
+                        }
+                    }
+                }, "CryptoMiniSat-Cleanup");
+                thread.setDaemon(true);
+                thread.start();
+                cleanupThreadStarted = true;
+            }
+        }
+        
+        /**
+         * Checks that this instance is not closed yet.
+         * 
+         * @throws SolverException If this instance is closed.
+         */
+        private void checkOpen() throws SolverException {
+            if (handle == 0) {
+                throw new SolverException("Native solver is already closed");
+            }
+        }
+        
+        /**
+         * Adds clauses to this native instance.
+         * 
+         * @param numVars The number of the highest variable used; new variables are added as needed.
+         * @param numClauses The number of clauses in the buffer. Must be > 0.
+         * @param buffer A flat buffer of the clauses, see {@link CryptoMiniSatSolver#isSatisfiableImpl(int, int,
+         *      IntBuffer)}.
+         * 
+         * @throws SolverException If adding the clauses fails, or this instance is closed.
+         */
+        public synchronized void addClauses(int numVars, int numClauses, @NonNull IntBuffer buffer)
+                throws SolverException {
+            checkOpen();
+            addClausesImpl(handle, numVars, numClauses, buffer);
+        }
+        
+        /**
+         * Solves the clauses of this native instance under the given assumptions.
+         * 
+         * @param assumptions The literals that are assumed to be true.
+         * @param limits The limits for this call.
+         * 
+         * @return Whether the clauses are satisfiable under the given assumptions; {@link SatResult#UNKNOWN} if a
+         *      limit was reached.
+         * 
+         * @throws SolverException If solving fails, or this instance is closed.
+         */
+        public synchronized @NonNull SatResult solve(int @NonNull [] assumptions, @NonNull SolverLimits limits)
+                throws SolverException {
+            checkOpen();
+            
+            int result = solveImpl(handle, assumptions, limits.getMaxConflicts(), limits.getTimeoutMs());
+            
+            SatResult satResult;
+            if (result == RESULT_SAT) {
+                satResult = SatResult.SAT;
+            } else if (result == RESULT_UNSAT) {
+                satResult = SatResult.UNSAT;
+            } else {
+                satResult = SatResult.UNKNOWN;
+            }
+            return satResult;
+        }
+        
+        /**
+         * Returns the model of the last call to {@link #solve(int[], SolverLimits)}, which must have been satisfiable.
+         * 
+         * @return The value of each variable in the model, indexed by the variable number (index 0 is unused).
+         * 
+         * @throws SolverException If reading the model fails, or this instance is closed.
+         */
+        public synchronized boolean @NonNull [] getModel() throws SolverException {
+            checkOpen();
+            return getModelImpl(handle);
+        }
+        
+        /**
+         * Returns the assumptions that are responsible for the unsatisfiability of the last call to
+         * {@link #solve(int[], SolverLimits)}, which must have been unsatisfiable.
+         * 
+         * @return The conflicting assumptions, sorted ascending; a subset of the assumptions of the last call.
+         * 
+         * @throws SolverException If reading the conflict fails, or this instance is closed.
+         */
+        public synchronized int @NonNull [] getConflictingAssumptions() throws SolverException {
+            checkOpen();
+            
+            // the conflict contains the negated assumptions
+            int[] result = getConflictImpl(handle);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = -result[i];
+            }
+            Arrays.sort(result);
+            return result;
+        }
+        
+        /**
+         * Frees this native instance. Does nothing if it is already freed.
+         */
+        @Override
+        public synchronized void close() {
+            if (handle != 0) {
+                destroySolverImpl(handle);
+                handle = 0;
+                OWNER_REFERENCES.remove(ownerReference);
+                ownerReference.clear();
+            }
+        }
+        
+    }
+    
+    /**
+     * A reference to the owner of a {@link NativeSolver}, which is enqueued when the owner is garbage collected.
+     */
+    private static final class OwnerReference extends PhantomReference<CryptoMiniSatSolver> {
+        
+        private @NonNull NativeSolver nativeSolver;
+        
+        /**
+         * Creates a reference to the given owner.
+         * 
+         * @param owner The owner.
+         * @param nativeSolver The native solver to free when the owner is garbage collected.
+         */
+        OwnerReference(@NonNull CryptoMiniSatSolver owner, @NonNull NativeSolver nativeSolver) {
+            super(owner, NativeSolver.CLEANUP_QUEUE);
+            this.nativeSolver = nativeSolver;
+        }
+        
+    }
+    
 }
@@ -26,7 +26,8 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 public class FormulaToCnfConverterFactory {
     
     /**
-     * The strategies possible to convert formulas to CNF.
+     * The strategies possible to convert formulas to CNF. All strategies first bring the formula into negation normal
+     * form, with constants propagated away and chains of conjunctions and disjunctions flattened, in a single pass.
      */
     public static enum Strategy {
         
@@ -42,6 +43,20 @@ public class FormulaToCnfConverterFactory {
          * See https://www.cs.jhu.edu/~jason/tutorials/convert-to-CNF.html
          */
         RECURISVE_REPLACING,
+        
+        /**
+         * Use the Tseitin transformation: replace each sub-formula with a new variable. The resulting CNF is linear
+         * in the size of the formula. Does not use recursion, so it also works for very deep formulas.
+         * See {@link TseitinCnfConverter}.
+         */
+        TSEITIN,
+        
+        /**
+         * Same as {@linkplain #TSEITIN}, but the new variables are only defined in the direction required by the
+         * polarity of the sub-formula (Plaisted-Greenbaum). This creates fewer rows.
+         * See {@link PlaistedGreenbaumCnfConverter}.
+         */
+        PLAISTED_GREENBAUM,
     }
     
     /**
@@ -68,6 +83,14 @@ public class FormulaToCnfConverterFactory {
             result = new RecursiveReplacingCnfConverter();
             break;
             
+        case TSEITIN:
+            result = new TseitinCnfConverter();
+            break;
+            
+        case PLAISTED_GREENBAUM:
+            result = new PlaistedGreenbaumCnfConverter();
+            break;
+            
         default:
             throw new RuntimeException("Unkown strategy: " + strategy);
         }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A SAT solver that checks whole batches of independent CNFs against the same base CNF. Implementations can solve
+ * the CNFs of a batch in parallel.
+ *
+ * @author Adam
+ */
+public interface IBatchSatSolver extends ISatSolver {
+
+    /**
+     * Checks which of the given CNFs are satisfiable. Each CNF is checked on its own, in conjunction with the base
+     * CNF of this solver.
+     * <p>
+     * If the solver reaches its limits (see {@link SolverLimits}) for any of the CNFs, this throws a
+     * {@link SolverException}, like {@link #isSatisfiable(Cnf)}. Use {@link #solveBatch(List)} to get the results of
+     * the other CNFs in this case.
+     * 
+     * @param cnfs The CNFs to check. Must not be modified while this call runs.
+     * 
+     * @return Whether each CNF is satisfiable; the array has the same order as the given list.
+     * 
+     * @throws SolverException If solving any of the CNFs fails, or the solver reached its limits for any of them.
+     */
+    public boolean @NonNull [] isSatisfiableBatch(@NonNull List<@NonNull Cnf> cnfs) throws SolverException;
+    
+    /**
+     * Asynchronously checks which of the given CNFs are satisfiable. See {@link #isSatisfiableBatch(List)}.
+     * 
+     * @param cnfs The CNFs to check. Must not be modified until the returned future is completed.
+     * 
+     * @return A future for the results; it is completed exceptionally with a {@link SolverException} if solving
+     *      any of the CNFs fails.
+     */
+    public @NonNull CompletableFuture<boolean @NonNull []> isSatisfiableBatchAsync(@NonNull List<@NonNull Cnf> cnfs);
+    
+    /**
+     * Checks which of the given CNFs are satisfiable, like {@link #isSatisfiableBatch(List)}. If the solver reaches
+     * its limits (see {@link SolverLimits}) for a CNF, only the result of this CNF is {@link SatResult#UNKNOWN}; the
+     * other CNFs of the batch are still answered.
+     * 
+     * @param cnfs The CNFs to check. Must not be modified while this call runs.
+     * 
+     * @return The result for each CNF; the array has the same order as the given list.
+     * 
+     * @throws SolverException If solving any of the CNFs fails.
+     */
+    public @NonNull SatResult @NonNull [] solveBatch(@NonNull List<@NonNull Cnf> cnfs) throws SolverException;
+    
+    /**
+     * Asynchronously checks which of the given CNFs are satisfiable. See {@link #solveBatch(List)}.
+     * 
+     * @param cnfs The CNFs to check. Must not be modified until the returned future is completed.
+     * 
+     * @return A future for the results; it is completed exceptionally with a {@link SolverException} if solving
+     *      any of the CNFs fails.
+     */
+    public @NonNull CompletableFuture<@NonNull SatResult @NonNull []> solveBatchAsync(
+            @NonNull List<@NonNull Cnf> cnfs);
+    
+}
@@ -15,6 +15,10 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.Arrays;
+
 import net.ssehub.kernel_haven.util.logic.Formula;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
@@ -35,5 +39,27 @@ public interface IFormulaToCnfConverter {
      * @throws ConverterException If the conversion fails.
      */
     public @NonNull Cnf convert(@NonNull Formula formula) throws ConverterException;
+    
+    /**
+     * Converts the given boolean formula to CNF, using the given {@link VariableDictionary} for the result. The
+     * dictionary is extended with the variables of the formula. If several formulas are converted with the same
+     * dictionary, a SAT solver only has to map their variable names once: e.g. if the dictionary is the one of the
+     * base CNF of the solver, no names need to be mapped at all (see
+     * {@link AbstractSingleShotSatSolver#AbstractSingleShotSatSolver(Cnf)}).
+     * <p>
+     * The default implementation converts the formula with {@link #convert(Formula)}, and copies the result into the
+     * given dictionary.
+     * 
+     * @param formula The formula to convert. Must not be <code>null</code>.
+     * @param dictionary The dictionary for the resulting CNF.
+     * @return The CNF representing the formula. Never <code>null</code>.
+     * 
+     * @throws ConverterException If the conversion fails.
+     */
+    public default @NonNull Cnf convert(@NonNull Formula formula, @NonNull VariableDictionary dictionary)
+            throws ConverterException {
+        
+        return Cnf.concat(dictionary, notNull(Arrays.asList(convert(formula))));
+    }
 
 }
@@ -15,7 +15,12 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * A solver for the satisfiability problem.
@@ -35,4 +40,149 @@ public interface ISatSolver {
      */
     public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException;
     
+    /**
+     * Checks if the given CNF (conjunctive normal form) is satisfiable, within the limits of this solver (see
+     * {@link SolverLimits}). In contrast to {@link #isSatisfiable(Cnf)}, reaching a limit is not an error, but results
+     * in {@link SatResult#UNKNOWN}. {@link #isSatisfiable(Cnf)} throws a {@link SolverException} in this case.
+     * <p>
+     * The default implementation calls {@link #isSatisfiable(Cnf)}, and thus never returns {@link SatResult#UNKNOWN}.
+     * 
+     * @param cnf The CNF to check.
+     * 
+     * @return Whether the CNF is satisfiable, or {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If solving the CNF fails.
+     */
+    public default @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        return SatResult.of(isSatisfiable(cnf));
+    }
+    
+    /**
+     * Checks if the base CNF of this solver is satisfiable under the given assumptions. This is equivalent to
+     * checking a CNF with one unit clause per assumption, but solvers can implement this without changing their
+     * clause database.
+     * <p>
+     * The default implementation creates a CNF with one unit clause per assumption.
+     * 
+     * @param assumptions The (possibly negated) variables that are assumed to be true.
+     * 
+     * @return Whether the base CNF is satisfiable under the given assumptions.
+     * 
+     * @throws SolverException If solving fails.
+     */
+    public default boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions)
+            throws SolverException {
+        
+        Cnf cnf = new Cnf(assumptions.size());
+        for (CnfVariable assumption : assumptions) {
+            cnf.addRow(assumption);
+        }
+        return isSatisfiable(cnf);
+    }
+    
+    /**
+     * Checks if the base CNF of this solver is satisfiable under the given assumptions. The assumptions are literals
+     * of the {@link VariableDictionary} of the base CNF that this solver was created with: a positive number is the ID
+     * of a variable that is assumed to be true, a negative number is the negated ID of a variable that is assumed to
+     * be false.
+     * <p>
+     * The default implementation throws an {@link UnsupportedOperationException}, since the base CNF is not known
+     * here.
+     * 
+     * @param assumptions The literals that are assumed to be true.
+     * 
+     * @return Whether the base CNF is satisfiable under the given assumptions.
+     * 
+     * @throws SolverException If solving fails.
+     * @throws UnsupportedOperationException If this solver does not support literal assumptions.
+     */
+    public default boolean isSatisfiable(int @NonNull [] assumptions)
+            throws SolverException, UnsupportedOperationException {
+        
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support literal assumptions");
+    }
+    
+    /**
+     * Finds a model (i.e. a satisfying assignment) for the base CNF of this solver together with the given CNF. The
+     * model assigns a value to all variables of the given CNF and the base CNF.
+     * <p>
+     * The default implementation throws an {@link UnsupportedOperationException}.
+     * 
+     * @param cnf The CNF to find a model for.
+     * 
+     * @return The value of each variable in the model; <code>null</code> if the CNF is not satisfiable.
+     * 
+     * @throws SolverException If solving fails, or a limit of this solver was reached.
+     * @throws UnsupportedOperationException If this solver does not support model extraction.
+     */
+    public default @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf)
+            throws SolverException, UnsupportedOperationException {
+        
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support model extraction");
+    }
+    
+    /**
+     * Enumerates different models for the base CNF of this solver together with the given CNF. Each model is passed
+     * to the given consumer as soon as it is found. Two models differ in the value of at least one variable.
+     * <p>
+     * The default implementation calls {@link #findModel(Cnf)} repeatedly, and adds a blocking clause (which
+     * excludes the previous model) to the CNF after each model.
+     * 
+     * @param cnf The CNF to find models for.
+     * @param limit The maximum number of models to enumerate; 0 means no limit.
+     * @param consumer The consumer that receives each model.
+     * 
+     * @return The number of models passed to the consumer. If this is less than the limit, there are no more models.
+     * 
+     * @throws SolverException If solving fails, or a limit of this solver was reached.
+     * @throws UnsupportedOperationException If this solver does not support model extraction.
+     */
+    public default int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer)
+            throws SolverException, UnsupportedOperationException {
+        
+        Cnf blocked = cnf.combine(new Cnf());
+        
+        int count = 0;
+        Map<@NonNull String, @NonNull Boolean> model;
+        while ((limit == 0 || count < limit) && (model = findModel(blocked)) != null) {
+            consumer.accept(model);
+            count++;
+            
+            if (model.isEmpty()) {
+                // there are no variables, so this is the only model
+                break;
+            }
+            
+            CnfVariable[] blockingClause = new CnfVariable[model.size()];
+            int i = 0;
+            for (Map.Entry<@NonNull String, @NonNull Boolean> entry : model.entrySet()) {
+                // the negated assignment; a variable that is true in the model is negated in the clause
+                blockingClause[i++] = new CnfVariable(entry.getValue(), entry.getKey());
+            }
+            blocked.addRow(blockingClause);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Explains why the base CNF of this solver together with the given CNF is not satisfiable. The explanation is an
+     * unsatisfiable core: a subset of the rows of the base CNF and the given CNF, which alone is already not
+     * satisfiable. Implementations try to find a minimal core, i.e. one that becomes satisfiable if any of its rows
+     * is removed.
+     * <p>
+     * The default implementation throws an {@link UnsupportedOperationException}.
+     * 
+     * @param cnf The CNF to explain.
+     * 
+     * @return A CNF with the rows of the unsatisfiable core; <code>null</code> if the CNF is satisfiable.
+     * 
+     * @throws SolverException If solving fails, or a limit of this solver was reached.
+     * @throws UnsupportedOperationException If this solver does not support explanations.
+     */
+    public default @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException, UnsupportedOperationException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support explanations");
+    }
+    
 }
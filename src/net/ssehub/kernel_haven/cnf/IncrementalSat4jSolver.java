@@ -0,0 +1,475 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import net.ssehub.kernel_haven.cnf.Sat4jSolver.InterruptListener;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * SAT solver based on <a href="https://www.sat4j.org/">Sat4j</a> that keeps a single Sat4j instance for all
+ * isSatisfiable() calls. The base CNF is only loaded once, and clauses learned while solving one CNF are re-used for
+ * all following calls.
+ * <p>
+ * Each checked CNF is added to the solver guarded by a fresh selector variable <code>s</code>: every clause
+ * <code>c</code> is added as <code>(c || !s)</code>, and the solver is called with the assumption <code>s</code>.
+ * Afterwards, the guarded clauses are removed again. Clauses learned from them contain <code>!s</code>, and thus are
+ * trivially satisfied in all later calls (which never assume <code>s</code> again).
+ * <p>
+ * Selector variables can't be re-used, since the learned clauses that contain them would become active again. Thus,
+ * each call allocates a new solver variable, and so does each variable that is not part of the base CNF (these are
+ * remembered, so each name is only allocated once). To keep the solver from growing without bounds, it is rebuilt
+ * from the base CNF once the number of these extra variables exceeds the number of base variables (but at least
+ * {@link #MIN_REBUILD_THRESHOLD}). Rebuilding discards the learned clauses.
+ * <p>
+ * Reaching the {@link SolverLimits} of this solver only aborts the current call; the learned clauses are kept.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Adam
+ */
+class IncrementalSat4jSolver implements ISatSolver {
+
+    /**
+     * The minimum number of selector and additional variables, after which the solver is rebuilt.
+     */
+    static final int MIN_REBUILD_THRESHOLD = 10000;
+
+    private @NonNull ISolver solver;
+
+    private @NonNull InterruptListener listener;
+
+    /**
+     * The dictionary of the base CNF. The IDs of this dictionary up to {@link #baseMaxId} are directly used as the
+     * variable numbers for the solver.
+     */
+    private @NonNull VariableDictionary baseDictionary;
+
+    private int baseMaxId;
+
+    private int baseRowCount;
+
+    /**
+     * The solver numbers of all variables that were not part of the base dictionary.
+     */
+    private @NonNull Map<String, Integer> additionalVariables;
+
+    /**
+     * The number of selector and additional variables allocated since the solver was (re-)built.
+     */
+    private int extraVariables;
+
+    /**
+     * The number of extra variables after which the solver is rebuilt before the next call.
+     */
+    private int rebuildThreshold;
+
+    /**
+     * Whether the base CNF alone is already unsatisfiable.
+     */
+    private boolean baseUnsat;
+
+    /**
+     * The base CNF; used by {@link #explainUnsat(Cnf)} and for rebuilding the solver.
+     */
+    private @NonNull Cnf baseCnf;
+
+    private @NonNull SolverLimits limits = SolverLimits.NONE;
+
+    /**
+     * Creates a new and empty Sat solver.
+     */
+    public IncrementalSat4jSolver() {
+        this(new Cnf());
+    }
+
+    /**
+     * Creates a SAT solver with the given CNF. This CNF will be loaded once into the solver, and will be used as a
+     * basis for each successive call to isSatisfiable().
+     *
+     * @param cnf The base CNF.
+     */
+    public IncrementalSat4jSolver(@NonNull Cnf cnf) {
+        this.baseCnf = cnf;
+        this.baseDictionary = cnf.getDictionary();
+        this.baseMaxId = baseDictionary.getMaxId();
+        this.baseRowCount = cnf.getRowCount();
+        this.rebuildThreshold = Math.max(baseMaxId, MIN_REBUILD_THRESHOLD);
+        load();
+    }
+
+    /**
+     * Creates a new Sat4j instance and loads the base CNF into it. All learned clauses, selector variables and
+     * additional variables of the previous instance are discarded.
+     */
+    private void load() {
+        solver = SolverFactory.newDefault();
+        solver.setDBSimplificationAllowed(false);
+        listener = new InterruptListener(solver);
+        // replaces the default timeout of Sat4j, like in Sat4jSolver
+        listener.setLimits(limits);
+        solver.setSearchListener(listener);
+
+        additionalVariables = new HashMap<>();
+        extraVariables = 0;
+        baseUnsat = false;
+
+        solver.newVar(baseMaxId);
+        try {
+            for (int i = 0; i < baseRowCount; i++) {
+                solver.addClause(new VecInt(baseCnf.getLiteralRow(i)));
+            }
+        } catch (ContradictionException e) {
+            baseUnsat = true;
+        }
+    }
+
+    /**
+     * Rebuilds the solver, if too many selector and additional variables have been allocated. Must only be called
+     * before a call, when no guarded clauses are loaded.
+     */
+    private void rebuildIfNeeded() {
+        if (extraVariables > rebuildThreshold) {
+            load();
+        }
+    }
+
+    /**
+     * Allocates a new solver variable that is not part of the base CNF.
+     *
+     * @return The number of the new variable.
+     */
+    private int newExtraVariable() {
+        extraVariables++;
+        return solver.nextFreeVarId(true);
+    }
+
+    /**
+     * Sets the number of selector and additional variables after which the solver is rebuilt. By default, this is the
+     * number of base variables, but at least {@link #MIN_REBUILD_THRESHOLD}.
+     *
+     * @param rebuildThreshold The number of extra variables after which the solver is rebuilt.
+     */
+    void setRebuildThreshold(int rebuildThreshold) {
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    /**
+     * Returns the number of selector and additional variables allocated since the solver was (re-)built.
+     *
+     * @return The number of extra variables.
+     */
+    int getExtraVariableCount() {
+        return extraVariables;
+    }
+
+    /**
+     * Sets the limits for each call to this solver. By default, there are no limits, apart from the built-in timeout
+     * of Sat4j (see {@link Sat4jSolver.InterruptListener#setLimits(SolverLimits)}).
+     *
+     * @param limits The limits for each call.
+     */
+    void setLimits(@NonNull SolverLimits limits) {
+        this.limits = limits;
+        listener.setLimits(limits);
+    }
+
+    /**
+     * Returns the solver number for the given variable of the given dictionary.
+     *
+     * @param dictionary The dictionary that contains the variable.
+     * @param id The ID of the variable in the dictionary.
+     *
+     * @return The number of the variable for the solver.
+     */
+    private int getNumber(@NonNull VariableDictionary dictionary, int id) {
+        int number;
+        if (dictionary == baseDictionary && id <= baseMaxId) {
+            number = id;
+
+        } else {
+            number = getNumber(dictionary.getName(id));
+        }
+
+        return number;
+    }
+
+    /**
+     * Returns the solver number for the variable with the given name.
+     *
+     * @param name The name of the variable.
+     *
+     * @return The number of the variable for the solver.
+     */
+    private int getNumber(@NonNull String name) {
+        int number = baseDictionary.lookupId(name);
+
+        if (number == 0 || number > baseMaxId) {
+            Integer additional = additionalVariables.get(name);
+            if (additional == null) {
+                additional = newExtraVariable();
+                additionalVariables.put(name, additional);
+            }
+            number = additional;
+        }
+
+        return number;
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+        return solve(cnf).isSatisfiable();
+    }
+
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        rebuildIfNeeded();
+        if (baseUnsat) {
+            return SatResult.UNSAT;
+        }
+
+        int[] mapping = new int[cnf.getDictionary().getMaxId() + 1];
+        int selector = newExtraVariable();
+
+        List<IConstr> added = new ArrayList<>(cnf.getRowCount());
+        SatResult result = SatResult.UNSAT;
+
+        try {
+            addGuarded(cnf, mapping, selector, added);
+            result = callSolver(new VecInt(new int[] {selector}));
+
+        } catch (ContradictionException e) {
+            // result is already UNSAT; can't happen, since each clause contains the fresh selector variable
+
+        } finally {
+            removeGuarded(added);
+        }
+
+        return result;
+    }
+
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        List<@NonNull Map<@NonNull String, @NonNull Boolean>> models = new ArrayList<>(1);
+        enumerateModels(cnf, 1, models::add);
+        return models.isEmpty() ? null : models.get(0);
+    }
+
+    /**
+     * Enumerates the models incrementally: the blocking clauses are guarded by the same selector as the clauses of
+     * the given CNF, so they are added to the loaded solver, and removed again after the enumeration.
+     */
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+
+        rebuildIfNeeded();
+        if (baseUnsat) {
+            return 0;
+        }
+
+        int[] mapping = new int[cnf.getDictionary().getMaxId() + 1];
+        int selector = newExtraVariable();
+
+        List<IConstr> added = new ArrayList<>(cnf.getRowCount());
+        int count = 0;
+
+        try {
+            addGuarded(cnf, mapping, selector, added);
+
+            // the model contains all variables of the base dictionary and of the given CNF
+            Map<@NonNull String, Integer> variables = new HashMap<>();
+            for (int id = 1; id <= baseMaxId; id++) {
+                variables.put(baseDictionary.getName(id), id);
+            }
+            for (int id = 1; id < mapping.length; id++) {
+                if (mapping[id] != 0) {
+                    variables.put(cnf.getDictionary().getName(id), mapping[id]);
+                }
+            }
+
+            VecInt assumptions = new VecInt(new int[] {selector});
+            while ((limit == 0 || count < limit) && callSolver(assumptions).isSatisfiable()) {
+                Map<@NonNull String, @NonNull Boolean> model = new HashMap<>();
+                VecInt blockingClause = new VecInt(variables.size() + 1);
+
+                for (Map.Entry<@NonNull String, Integer> entry : variables.entrySet()) {
+                    int number = entry.getValue();
+                    boolean value = solver.model(number);
+                    model.put(entry.getKey(), value);
+                    blockingClause.push(value ? -number : number);
+                }
+
+                consumer.accept(model);
+                count++;
+
+                if (variables.isEmpty()) {
+                    // there are no variables, so this is the only model
+                    break;
+                }
+
+                blockingClause.push(-selector);
+                added.add(solver.addClause(blockingClause));
+            }
+
+        } catch (ContradictionException e) {
+            // no more models; can't happen, since each clause contains the fresh selector variable
+
+        } finally {
+            removeGuarded(added);
+        }
+
+        return count;
+    }
+
+    /**
+     * Explains the CNF with a new {@link Sat4jSolver}. The loaded solver can't find cores that contain clauses of the
+     * base CNF, since only the clauses of the given CNF are guarded by a selector.
+     */
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        Sat4jSolver explainer = new Sat4jSolver(baseCnf);
+        explainer.setLimits(limits);
+        return explainer.explainUnsat(cnf);
+    }
+
+    /**
+     * Adds the clauses of the given CNF to the solver, guarded by the given selector variable.
+     *
+     * @param cnf The CNF to add.
+     * @param mapping The mapping of the variable IDs of the CNF to solver numbers; filled by this method.
+     * @param selector The selector variable that guards the clauses.
+     * @param added The list to add the created constraints to.
+     *
+     * @throws ContradictionException If the solver detects a trivial contradiction.
+     */
+    private void addGuarded(@NonNull Cnf cnf, int @NonNull [] mapping, int selector, @NonNull List<IConstr> added)
+            throws ContradictionException {
+
+        for (int i = 0; i < cnf.getRowCount(); i++) {
+            int[] row = cnf.getLiteralRow(i);
+            VecInt clause = new VecInt(row.length + 1);
+
+            for (int literal : row) {
+                int id = Math.abs(literal);
+                if (mapping[id] == 0) {
+                    mapping[id] = getNumber(cnf.getDictionary(), id);
+                }
+                clause.push(literal > 0 ? mapping[id] : -mapping[id]);
+            }
+            clause.push(-selector);
+
+            added.add(solver.addClause(clause));
+        }
+    }
+
+    /**
+     * Removes the given guarded clauses from the solver again. Learned clauses are kept.
+     *
+     * @param added The constraints that have been added by {@link #addGuarded(Cnf, int[], int, List)}.
+     */
+    private void removeGuarded(@NonNull List<IConstr> added) {
+        // remove in reverse order
+        for (int i = added.size() - 1; i >= 0; i--) {
+            IConstr constr = added.get(i);
+            if (constr != null) {
+                solver.removeSubsumedConstr(constr);
+            }
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        rebuildIfNeeded();
+        VecInt literals = new VecInt(assumptions.length);
+        for (int literal : assumptions) {
+            if (literal == 0 || Math.abs(literal) > baseMaxId) {
+                throw new SolverException("Literal " + literal + " is not a variable of the base CNF");
+            }
+            int number = getNumber(baseDictionary, Math.abs(literal));
+            literals.push(literal > 0 ? number : -number);
+        }
+
+        return solve(literals);
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        rebuildIfNeeded();
+        VecInt literals = new VecInt(assumptions.size());
+        for (CnfVariable assumption : assumptions) {
+            int number = getNumber(assumption.getName());
+            literals.push(assumption.isNegation() ? -number : number);
+        }
+
+        return solve(literals);
+    }
+
+    /**
+     * Calls the solver with the given assumptions, without adding any clauses.
+     *
+     * @param assumptions The assumptions, already translated to solver numbers.
+     *
+     * @return Whether the base CNF is satisfiable under the given assumptions.
+     *
+     * @throws SolverException If the solver fails.
+     */
+    private boolean solve(@NonNull VecInt assumptions) throws SolverException {
+        boolean sat = false;
+        if (!baseUnsat) {
+            sat = callSolver(assumptions).isSatisfiable();
+        }
+        return sat;
+    }
+
+    /**
+     * Calls the solver with the given assumptions, within the limits of this solver.
+     *
+     * @param assumptions The assumptions, already translated to solver numbers.
+     *
+     * @return Whether the clauses of the solver are satisfiable under the given assumptions;
+     *      {@link SatResult#UNKNOWN} if a limit was reached.
+     *
+     * @throws SolverException If the calling thread is interrupted.
+     */
+    private @NonNull SatResult callSolver(@NonNull VecInt assumptions) throws SolverException {
+        SatResult result;
+        try {
+            result = SatResult.of(solver.isSatisfiable(assumptions));
+        } catch (TimeoutException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new SolverException("Solving was interrupted");
+            }
+            result = SatResult.UNKNOWN;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A fixed-capacity array of ints, which is the storage of the literals and row offsets of a {@link Cnf}. The ints are
+ * either stored in a normal array on the heap, or off-heap in a direct buffer. Off-heap storage keeps very large
+ * CNFs (e.g. the variability models of several architectures) out of the garbage collected heap.
+ *
+ * @author Adam
+ */
+abstract class IntStore {
+
+    /**
+     * The maximum capacity of a store on the heap. Some VMs reserve a few header words in arrays, so arrays with
+     * {@link Integer#MAX_VALUE} elements can't be allocated.
+     */
+    private static final int MAX_HEAP_CAPACITY = Integer.MAX_VALUE - 8;
+    
+    /**
+     * The maximum capacity of an off-heap store. A direct buffer holds at most {@link Integer#MAX_VALUE} bytes.
+     */
+    private static final int MAX_DIRECT_CAPACITY = Integer.MAX_VALUE / 4;
+    
+    /**
+     * Creates a new store, initialized with zeros.
+     *
+     * @param capacity The number of ints in the store. Must not be greater than {@link #maxCapacity(boolean)}.
+     * @param offHeap Whether to store the ints off-heap.
+     *
+     * @return The new store.
+     * 
+     * @throws IllegalArgumentException If the capacity is negative or too large.
+     */
+    static @NonNull IntStore create(int capacity, boolean offHeap) throws IllegalArgumentException {
+        return offHeap ? new DirectStore(capacity) : new HeapStore(capacity);
+    }
+    
+    /**
+     * Returns the maximum number of ints that a single store can hold.
+     * 
+     * @param offHeap Whether the store keeps its ints off-heap.
+     * 
+     * @return The maximum capacity of a store.
+     */
+    static int maxCapacity(boolean offHeap) {
+        return offHeap ? MAX_DIRECT_CAPACITY : MAX_HEAP_CAPACITY;
+    }
+
+    /**
+     * Returns the int at the given index.
+     *
+     * @param index The index. Must be smaller than {@link #capacity()}.
+     *
+     * @return The int at the index.
+     */
+    abstract int get(int index);
+
+    /**
+     * Sets the int at the given index.
+     *
+     * @param index The index. Must be smaller than {@link #capacity()}.
+     * @param value The new value.
+     */
+    abstract void set(int index, int value);
+
+    /**
+     * Copies ints from this store into an array.
+     *
+     * @param index The index of the first int to copy.
+     * @param dest The array to copy to.
+     * @param destPos The index of the first int in the array.
+     * @param length The number of ints to copy.
+     */
+    abstract void get(int index, int @NonNull [] dest, int destPos, int length);
+
+    /**
+     * Copies ints from an array into this store.
+     *
+     * @param index The index of the first int to overwrite.
+     * @param src The array to copy from.
+     * @param srcPos The index of the first int in the array.
+     * @param length The number of ints to copy.
+     */
+    abstract void set(int index, int @NonNull [] src, int srcPos, int length);
+
+    /**
+     * Writes ints of this store into the given buffer, at its current position.
+     *
+     * @param buffer The buffer to write to.
+     * @param index The index of the first int to write.
+     * @param length The number of ints to write.
+     */
+    abstract void writeTo(@NonNull IntBuffer buffer, int index, int length);
+
+    /**
+     * Copies ints from this store into another store.
+     *
+     * @param index The index of the first int to copy.
+     * @param dest The store to copy to.
+     * @param destIndex The index of the first int in the other store.
+     * @param length The number of ints to copy.
+     */
+    abstract void copyTo(int index, @NonNull IntStore dest, int destIndex, int length);
+
+    /**
+     * Returns the number of ints in this store.
+     *
+     * @return The capacity.
+     */
+    abstract int capacity();
+
+    /**
+     * Returns whether this store keeps its ints off-heap.
+     *
+     * @return Whether this is an off-heap store.
+     */
+    abstract boolean isOffHeap();
+
+    /**
+     * Creates a new store of the same kind, with the first <code>size</code> ints of this store.
+     *
+     * @param size The number of ints to copy.
+     * @param capacity The capacity of the new store. Must be at least <code>size</code>.
+     *
+     * @return The new store.
+     */
+    abstract @NonNull IntStore copy(int size, int capacity);
+
+    /**
+     * Estimates the memory used by this store in bytes, both on and off the heap.
+     *
+     * @return The estimated memory size in bytes.
+     */
+    long getEstimatedMemorySize() {
+        // object header plus array header (or buffer object)
+        return 16 + 16 + 4L * capacity();
+    }
+
+    /**
+     * A store backed by a normal int array.
+     */
+    private static final class HeapStore extends IntStore {
+
+        private final int @NonNull [] array;
+
+        /**
+         * Creates a new store.
+         *
+         * @param capacity The number of ints.
+         */
+        HeapStore(int capacity) {
+            this.array = new int[capacity];
+        }
+
+        /**
+         * Creates a store with the given array.
+         *
+         * @param array The array; not copied.
+         */
+        private HeapStore(int @NonNull [] array) {
+            this.array = array;
+        }
+
+        @Override
+        int get(int index) {
+            return array[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            array[index] = value;
+        }
+
+        @Override
+        void get(int index, int @NonNull [] dest, int destPos, int length) {
+            System.arraycopy(array, index, dest, destPos, length);
+        }
+
+        @Override
+        void set(int index, int @NonNull [] src, int srcPos, int length) {
+            System.arraycopy(src, srcPos, array, index, length);
+        }
+
+        @Override
+        void writeTo(@NonNull IntBuffer buffer, int index, int length) {
+            buffer.put(array, index, length);
+        }
+
+        @Override
+        void copyTo(int index, @NonNull IntStore dest, int destIndex, int length) {
+            dest.set(destIndex, array, index, length);
+        }
+
+        @Override
+        int capacity() {
+            return array.length;
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return false;
+        }
+
+        @Override
+        @NonNull IntStore copy(int size, int capacity) {
+            // Arrays.copyOf() truncates or pads with zeros, as needed
+            return new HeapStore(notNull(Arrays.copyOf(array, capacity)));
+        }
+
+    }
+
+    /**
+     * A store backed by a direct buffer, i.e. outside of the garbage collected heap. The memory is freed when the
+     * store is garbage collected.
+     */
+    private static final class DirectStore extends IntStore {
+
+        private final @NonNull IntBuffer buffer;
+
+        /**
+         * Creates a new store.
+         *
+         * @param capacity The number of ints.
+         * 
+         * @throws IllegalArgumentException If the capacity is negative, or the ints don't fit into a direct buffer.
+         */
+        DirectStore(int capacity) throws IllegalArgumentException {
+            if (capacity < 0 || capacity > MAX_DIRECT_CAPACITY) {
+                throw new IllegalArgumentException("An off-heap store can hold between 0 and " + MAX_DIRECT_CAPACITY
+                        + " ints, got " + capacity);
+            }
+            this.buffer = notNull(ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer());
+        }
+
+        @Override
+        int get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        void set(int index, int value) {
+            buffer.put(index, value);
+        }
+
+        @Override
+        void get(int index, int @NonNull [] dest, int destPos, int length) {
+            IntBuffer view = buffer.duplicate();
+            view.position(index);
+            view.get(dest, destPos, length);
+        }
+
+        @Override
+        void set(int index, int @NonNull [] src, int srcPos, int length) {
+            IntBuffer view = buffer.duplicate();
+            view.position(index);
+            view.put(src, srcPos, length);
+        }
+
+        @Override
+        void writeTo(@NonNull IntBuffer target, int index, int length) {
+            IntBuffer view = buffer.duplicate();
+            view.position(index);
+            view.limit(index + length);
+            target.put(view);
+        }
+
+        @Override
+        void copyTo(int index, @NonNull IntStore dest, int destIndex, int length) {
+            if (dest instanceof HeapStore) {
+                get(index, ((HeapStore) dest).array, destIndex, length);
+            } else {
+                IntBuffer target = ((DirectStore) dest).buffer.duplicate();
+                target.position(destIndex);
+                writeTo(target, index, length);
+            }
+        }
+
+        @Override
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        @Override
+        boolean isOffHeap() {
+            return true;
+        }
+
+        @Override
+        @NonNull IntStore copy(int size, int capacity) {
+            DirectStore result = new DirectStore(capacity);
+            writeTo(result.buffer.duplicate(), 0, size);
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A {@link Formula} in negation normal form, in a compact representation that all CNF converters work on. It is
+ * created in a single pass over the formula, which at the same time:
+ * <ul>
+ *      <li>propagates the constants {@link True} and {@link False} away (only the whole formula can be constant),</li>
+ *      <li>pushes all negations down to the variables (De Morgan, double negation), and</li>
+ *      <li>flattens chains of conjunctions and disjunctions into single n-ary nodes.</li>
+ * </ul>
+ * <p>
+ * The nodes are stored in arrays and numbered in post-order, i.e. the operands of a node always have a smaller
+ * number than the node itself; thus, converters can handle the nodes with a simple loop instead of recursion. A node
+ * is either a literal (a possibly negated variable), or an n-ary AND or OR with at least two operands. Variables are
+ * numbered from 1; negated literals are negative. Structurally equal sub-formulas (in the same polarity) are mapped
+ * to the same node, so every distinct sub-formula is only converted once.
+ * <p>
+ * The pass does not use recursion, so arbitrarily deep formulas can be handled.
+ *
+ * @author Adam
+ */
+final class NnfFormula {
+
+    /**
+     * The kind of a literal node.
+     */
+    static final byte LITERAL = 0;
+
+    /**
+     * The kind of an n-ary conjunction node.
+     */
+    static final byte AND = 1;
+
+    /**
+     * The kind of an n-ary disjunction node.
+     */
+    static final byte OR = 2;
+
+    /**
+     * The "node number" of a constantly true sub-formula, while creating the nodes.
+     */
+    private static final int TRUE = -1;
+
+    /**
+     * The "node number" of a constantly false sub-formula, while creating the nodes.
+     */
+    private static final int FALSE = -2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The names of the variables; index 0 is unused.
+     */
+    private final @NonNull List<@NonNull String> variables;
+
+    private byte @NonNull [] kinds;
+
+    /**
+     * For literal nodes, the literal. For AND and OR nodes, the start index of the operands in {@link #operands}.
+     */
+    private int @NonNull [] values;
+
+    /**
+     * The number of operands of each node; 0 for literal nodes.
+     */
+    private int @NonNull [] sizes;
+
+    /**
+     * The operands of all AND and OR nodes, one after another.
+     */
+    private int @NonNull [] operands;
+
+    private int numNodes;
+
+    private int numOperands;
+
+    /**
+     * The root node; {@link #TRUE} or {@link #FALSE} if the whole formula is constant.
+     */
+    private int root;
+
+    /**
+     * Creates an empty formula.
+     */
+    private NnfFormula() {
+        this.variables = new ArrayList<>();
+        this.variables.add("");
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+        this.sizes = new int[INITIAL_CAPACITY];
+        this.operands = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Converts the given formula into negation normal form.
+     *
+     * @param formula The formula to convert.
+     *
+     * @return The formula in negation normal form.
+     *
+     * @throws ConverterException If the formula contains unexpected elements.
+     */
+    static @NonNull NnfFormula create(@NonNull Formula formula) throws ConverterException {
+        NnfFormula result = new NnfFormula();
+        result.root = new Builder(result).build(formula);
+        return result;
+    }
+
+    /**
+     * Returns whether the whole formula is constantly true.
+     *
+     * @return Whether the formula is a tautology (in a trivial way).
+     */
+    boolean isTrue() {
+        return root == TRUE;
+    }
+
+    /**
+     * Returns whether the whole formula is constantly false.
+     *
+     * @return Whether the formula is a contradiction (in a trivial way).
+     */
+    boolean isFalse() {
+        return root == FALSE;
+    }
+
+    /**
+     * Returns the root node. Must not be called if the formula is constant.
+     *
+     * @return The number of the root node; this is the last node.
+     */
+    int getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Returns the kind of the given node.
+     *
+     * @param node The number of the node.
+     *
+     * @return {@link #LITERAL}, {@link #AND} or {@link #OR}.
+     */
+    byte getKind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * Returns the literal of the given literal node.
+     *
+     * @param node The number of a {@link #LITERAL} node.
+     *
+     * @return The variable number, negative if the variable is negated.
+     */
+    int getLiteral(int node) {
+        return values[node];
+    }
+
+    /**
+     * Returns the name of the given variable.
+     *
+     * @param variable The variable number (positive).
+     *
+     * @return The name of the variable.
+     */
+    @NonNull String getVariableName(int variable) {
+        return notNull(variables.get(variable));
+    }
+
+    /**
+     * Returns the number of distinct variables.
+     *
+     * @return The number of variables.
+     */
+    int getNumVariables() {
+        return variables.size() - 1;
+    }
+
+    /**
+     * Returns the number of operands of the given node.
+     *
+     * @param node The number of the node.
+     *
+     * @return The number of operands; 0 for literals.
+     */
+    int getNumOperands(int node) {
+        return sizes[node];
+    }
+
+    /**
+     * Returns an operand of the given node.
+     *
+     * @param node The number of an {@link #AND} or {@link #OR} node.
+     * @param index The index of the operand.
+     *
+     * @return The number of the operand node; always smaller than <code>node</code>.
+     */
+    int getOperand(int node, int index) {
+        return operands[values[node] + index];
+    }
+
+    /**
+     * Returns the number of parents of each node. This is the number of times that a node is used as an operand,
+     * counting only nodes that are reachable from the root. Nodes that are not reachable (e.g. left over from
+     * propagating constants) have 0; the root has 1.
+     *
+     * @return The number of uses of each node; empty if the formula is constant.
+     */
+    int @NonNull [] countUses() {
+        int[] result = new int[numNodes];
+        if (root >= 0) {
+            result[root] = 1;
+            for (int node = root; node >= 0; node--) {
+                if (result[node] > 0) {
+                    for (int i = 0; i < getNumOperands(node); i++) {
+                        result[getOperand(node, i)]++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param kind The kind of the node.
+     * @param value The literal, or the start of the operands.
+     * @param size The number of operands.
+     *
+     * @return The number of the new node.
+     */
+    private int addNode(byte kind, int value, int size) {
+        if (numNodes == kinds.length) {
+            kinds = notNull(Arrays.copyOf(kinds, numNodes * 2));
+            values = notNull(Arrays.copyOf(values, numNodes * 2));
+            sizes = notNull(Arrays.copyOf(sizes, numNodes * 2));
+        }
+        kinds[numNodes] = kind;
+        values[numNodes] = value;
+        sizes[numNodes] = size;
+        return numNodes++;
+    }
+
+    /**
+     * Adds an operand for the AND or OR node that is added next.
+     *
+     * @param operand The number of the operand node.
+     */
+    private void addOperand(int operand) {
+        if (numOperands == operands.length) {
+            operands = notNull(Arrays.copyOf(operands, numOperands * 2));
+        }
+        operands[numOperands++] = operand;
+    }
+
+    /**
+     * The single pass that creates the nodes from a {@link Formula}.
+     */
+    private static final class Builder {
+
+        private final @NonNull NnfFormula result;
+
+        private final @NonNull Map<String, Integer> variableNumbers;
+
+        /**
+         * The nodes for each literal.
+         */
+        private final @NonNull Map<Integer, Integer> literalNodes;
+
+        /**
+         * The nodes for each AND and OR, keyed by their kind and operands.
+         */
+        private final @NonNull Map<NodeKey, Integer> operatorNodes;
+
+        /**
+         * The result for each already handled (non-negated) sub-formula; keyed by identity.
+         */
+        private final @NonNull Map<Formula, Integer> positive;
+
+        /**
+         * The result for each already handled negated sub-formula; keyed by identity.
+         */
+        private final @NonNull Map<Formula, Integer> negative;
+
+        /**
+         * Creates a builder.
+         *
+         * @param result The formula to add the nodes to.
+         */
+        Builder(@NonNull NnfFormula result) {
+            this.result = result;
+            this.variableNumbers = new HashMap<>();
+            this.literalNodes = new HashMap<>();
+            this.operatorNodes = new HashMap<>();
+            this.positive = new IdentityHashMap<>();
+            this.negative = new IdentityHashMap<>();
+        }
+
+        /**
+         * Creates the nodes for the given formula.
+         *
+         * @param formula The formula.
+         *
+         * @return The root node, or {@link NnfFormula#TRUE} or {@link NnfFormula#FALSE}.
+         *
+         * @throws ConverterException If the formula contains unexpected elements.
+         */
+        int build(@NonNull Formula formula) throws ConverterException {
+            // post-order: a frame is finished once the results of all its operands are known
+            Deque<@NonNull Frame> stack = new ArrayDeque<>();
+            int rootResult = start(formula, false, stack);
+
+            while (!stack.isEmpty()) {
+                Frame top = notNull(stack.peek());
+
+                if (top.numResults < top.operands.size()) {
+                    int next = top.numResults;
+                    int operandResult = start(notNull(top.operands.get(next)), top.negatedOperands.get(next), stack);
+                    if (operandResult != Frame.PENDING) {
+                        top.results[top.numResults++] = operandResult;
+                    }
+
+                } else {
+                    stack.pop();
+                    int frameResult = finish(top);
+                    (top.negated ? negative : positive).put(top.formula, frameResult);
+
+                    Frame parent = stack.peek();
+                    if (parent != null) {
+                        parent.results[parent.numResults++] = frameResult;
+                    } else {
+                        rootResult = frameResult;
+                    }
+                }
+            }
+
+            return rootResult;
+        }
+
+        /**
+         * Starts handling the given sub-formula. Literals, constants and already handled sub-formulas are handled
+         * directly; for conjunctions and disjunctions, a new frame is pushed onto the stack.
+         *
+         * @param formula The sub-formula.
+         * @param negated Whether the sub-formula is negated.
+         * @param stack The stack of frames.
+         *
+         * @return The result for the sub-formula, or {@link Frame#PENDING} if a new frame was pushed.
+         *
+         * @throws ConverterException If the formula contains unexpected elements.
+         */
+        private int start(@NonNull Formula formula, boolean negated, @NonNull Deque<@NonNull Frame> stack)
+                throws ConverterException {
+
+            while (formula instanceof Negation) {
+                formula = ((Negation) formula).getFormula();
+                negated = !negated;
+            }
+
+            int result;
+            Integer done = (negated ? negative : positive).get(formula);
+            if (done != null) {
+                result = done;
+
+            } else if (formula instanceof Variable) {
+                result = literalNode(((Variable) formula).getName(), negated);
+
+            } else if (formula instanceof True) {
+                result = negated ? FALSE : TRUE;
+
+            } else if (formula instanceof False) {
+                result = negated ? TRUE : FALSE;
+
+            } else if (formula instanceof Conjunction || formula instanceof Disjunction) {
+                stack.push(new Frame(formula, negated));
+                result = Frame.PENDING;
+
+            } else {
+                throw new ConverterException("Invalid element in tree: " + formula.getClass());
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns the node for the given literal. Creates it, if necessary.
+         *
+         * @param name The name of the variable.
+         * @param negated Whether the variable is negated.
+         *
+         * @return The number of the literal node.
+         */
+        private int literalNode(@NonNull String name, boolean negated) {
+            Integer variable = variableNumbers.get(name);
+            if (variable == null) {
+                variable = result.variables.size();
+                result.variables.add(name);
+                variableNumbers.put(name, variable);
+            }
+
+            int literal = negated ? -variable : variable;
+            Integer node = literalNodes.get(literal);
+            if (node == null) {
+                node = result.addNode(LITERAL, literal, 0);
+                literalNodes.put(literal, node);
+            }
+            return node;
+        }
+
+        /**
+         * Creates the node for a finished frame, after propagating constants.
+         *
+         * @param frame The frame with the results for all its operands.
+         *
+         * @return The node number, or {@link NnfFormula#TRUE} or {@link NnfFormula#FALSE}.
+         */
+        private int finish(@NonNull Frame frame) {
+            // for an AND, TRUE is neutral and FALSE dominates; the other way round for an OR
+            int neutral = frame.kind == AND ? TRUE : FALSE;
+            int dominant = frame.kind == AND ? FALSE : TRUE;
+
+            int[] nodeOperands = new int[frame.numResults];
+            int size = 0;
+            boolean isDominated = false;
+            for (int i = 0; i < frame.numResults && !isDominated; i++) {
+                int operand = frame.results[i];
+                if (operand == dominant) {
+                    isDominated = true;
+
+                } else if (operand != neutral) {
+                    if (result.kinds[operand] == frame.kind) {
+                        // an operand that collapsed to a node of the same kind (e.g. A && (B && C || false))
+                        int numNested = result.getNumOperands(operand);
+                        nodeOperands = notNull(Arrays.copyOf(nodeOperands, nodeOperands.length + numNested - 1));
+                        for (int j = 0; j < numNested; j++) {
+                            nodeOperands[size++] = result.getOperand(operand, j);
+                        }
+                    } else {
+                        nodeOperands[size++] = operand;
+                    }
+                }
+            }
+
+            int node;
+            if (isDominated) {
+                node = dominant;
+            } else if (size == 0) {
+                node = neutral;
+            } else if (size == 1) {
+                node = nodeOperands[0];
+            } else {
+                NodeKey key = new NodeKey(frame.kind, notNull(Arrays.copyOf(nodeOperands, size)));
+                Integer existing = operatorNodes.get(key);
+                if (existing != null) {
+                    node = existing;
+                } else {
+                    node = result.addNode(frame.kind, result.numOperands, size);
+                    for (int i = 0; i < size; i++) {
+                        result.addOperand(nodeOperands[i]);
+                    }
+                    operatorNodes.put(key, node);
+                }
+            }
+            return node;
+        }
+
+    }
+
+    /**
+     * A conjunction or disjunction that is being handled by the {@link Builder}.
+     */
+    private static final class Frame {
+
+        /**
+         * The result of {@link Builder#start(Formula, boolean, Deque)} if a frame was pushed.
+         */
+        private static final int PENDING = Integer.MIN_VALUE;
+
+        private final @NonNull Formula formula;
+
+        private final boolean negated;
+
+        /**
+         * The kind of the node, after pushing the negation inwards.
+         */
+        private final byte kind;
+
+        /**
+         * The flattened operands.
+         */
+        private final @NonNull List<@NonNull Formula> operands;
+
+        /**
+         * Whether each operand in {@link #operands} is negated.
+         */
+        private final @NonNull List<@NonNull Boolean> negatedOperands;
+
+        private final int @NonNull [] results;
+
+        private int numResults;
+
+        /**
+         * Creates a frame, and collects the flattened operands of the given conjunction or disjunction.
+         *
+         * @param formula A {@link Conjunction} or {@link Disjunction}.
+         * @param negated Whether the formula is negated.
+         */
+        Frame(@NonNull Formula formula, boolean negated) {
+            this.formula = formula;
+            this.negated = negated;
+            this.kind = (formula instanceof Conjunction) != negated ? AND : OR;
+            this.operands = new ArrayList<>();
+            this.negatedOperands = new ArrayList<>();
+
+            // the nested sub-formulas that are expanded in this chain already; expanding them again would only add
+            // duplicates (only one polarity of a sub-formula can have the same kind as this node)
+            @Nullable Set<Formula> expanded = null;
+
+            Deque<@NonNull Formula> todo = new ArrayDeque<>();
+            Deque<@NonNull Boolean> todoNegated = new ArrayDeque<>();
+            todo.push(formula);
+            todoNegated.push(negated);
+            while (!todo.isEmpty()) {
+                Formula current = todo.pop();
+                boolean currentNegated = todoNegated.pop();
+                while (current instanceof Negation) {
+                    current = ((Negation) current).getFormula();
+                    currentNegated = !currentNegated;
+                }
+
+                if (getKind(current, currentNegated) == kind) {
+                    if (current != formula && expanded == null) {
+                        expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+                    }
+                    if (expanded == null || expanded.add(current)) {
+                        // push right first, so that the left operand comes first
+                        todo.push(getRight(current));
+                        todoNegated.push(currentNegated);
+                        todo.push(getLeft(current));
+                        todoNegated.push(currentNegated);
+                    }
+                } else {
+                    operands.add(current);
+                    negatedOperands.add(currentNegated);
+                }
+            }
+
+            this.results = new int[operands.size()];
+        }
+
+    }
+
+    /**
+     * The identity of an AND or OR node: its kind and its operands.
+     */
+    private static final class NodeKey {
+
+        private final byte kind;
+
+        private final int @NonNull [] operands;
+
+        /**
+         * Creates a key.
+         *
+         * @param kind The kind of the node.
+         * @param operands The operand nodes.
+         */
+        NodeKey(byte kind, int @NonNull [] operands) {
+            this.kind = kind;
+            this.operands = operands;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind + Arrays.hashCode(operands);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            boolean result = false;
+            if (obj instanceof NodeKey) {
+                NodeKey other = (NodeKey) obj;
+                result = kind == other.kind && Arrays.equals(operands, other.operands);
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Returns the kind of node for the given formula, after pushing the negation inwards.
+     *
+     * @param formula The formula; not a {@link Negation}.
+     * @param negated Whether the formula is negated.
+     *
+     * @return {@link #AND} or {@link #OR}; {@link #LITERAL} for all other formulas.
+     */
+    private static byte getKind(@NonNull Formula formula, boolean negated) {
+        byte result = LITERAL;
+        if (formula instanceof Conjunction) {
+            result = negated ? OR : AND;
+        } else if (formula instanceof Disjunction) {
+            result = negated ? AND : OR;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the left operand of the given conjunction or disjunction.
+     *
+     * @param formula The {@link Conjunction} or {@link Disjunction}.
+     *
+     * @return The left operand.
+     */
+    private static @NonNull Formula getLeft(@NonNull Formula formula) {
+        return formula instanceof Conjunction ? ((Conjunction) formula).getLeft() : ((Disjunction) formula).getLeft();
+    }
+
+    /**
+     * Returns the right operand of the given conjunction or disjunction.
+     *
+     * @param formula The {@link Conjunction} or {@link Disjunction}.
+     *
+     * @return The right operand.
+     */
+    private static @NonNull Formula getRight(@NonNull Formula formula) {
+        return formula instanceof Conjunction
+                ? ((Conjunction) formula).getRight() : ((Disjunction) formula).getRight();
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A batch SAT solver that distributes the CNFs of a batch over several threads. Each thread uses its own solver
+ * instance from a {@link PooledSatSolver}; solver instances are created as needed and re-used for later batches.
+ * Structurally equal CNFs in a batch are only solved once.
+ * <p>
+ * Single (non-batch) calls are also thread-safe; each concurrent call uses its own solver instance.
+ *
+ * @author Adam
+ */
+class ParallelBatchSatSolver implements IBatchSatSolver {
+
+    /**
+     * The solver instances used by the threads.
+     */
+    private @NonNull PooledSatSolver pool;
+    
+    private int numThreads;
+    
+    /**
+     * Creates a new {@link ParallelBatchSatSolver}.
+     * 
+     * @param solverSupplier Creates new solver instances; all created solvers must use the same base CNF.
+     * @param numThreads The maximum number of threads to use for a single batch. This is also the maximum number of
+     *      solver instances that are created.
+     */
+    public ParallelBatchSatSolver(@NonNull Supplier<@NonNull ISatSolver> solverSupplier, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, got " + numThreads);
+        }
+        this.pool = new PooledSatSolver(solverSupplier, numThreads);
+        this.numThreads = numThreads;
+    }
+    
+    @Override
+    public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+        return pool.isSatisfiable(cnf);
+    }
+    
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        return pool.solve(cnf);
+    }
+    
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        return pool.isSatisfiable(assumptions);
+    }
+    
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        return pool.isSatisfiable(assumptions);
+    }
+    
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        return pool.findModel(cnf);
+    }
+    
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+        return pool.enumerateModels(cnf, limit, consumer);
+    }
+    
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        return pool.explainUnsat(cnf);
+    }
+    
+    @Override
+    public boolean @NonNull [] isSatisfiableBatch(@NonNull List<@NonNull Cnf> cnfs) throws SolverException {
+        return await(isSatisfiableBatchAsync(cnfs));
+    }
+    
+    @Override
+    public @NonNull CompletableFuture<boolean @NonNull []> isSatisfiableBatchAsync(@NonNull List<@NonNull Cnf> cnfs) {
+        return notNull(solveBatchAsync(cnfs).thenApply((results) -> {
+            boolean[] result = new boolean[results.length];
+            for (int i = 0; i < result.length; i++) {
+                try {
+                    result[i] = results[i].isSatisfiable();
+                } catch (SolverException e) {
+                    throw new CompletionException(new SolverException("Solver reached its limit for CNF " + i
+                            + " of the batch"));
+                }
+            }
+            return result;
+        }));
+    }
+    
+    @Override
+    public @NonNull SatResult @NonNull [] solveBatch(@NonNull List<@NonNull Cnf> cnfs) throws SolverException {
+        return await(solveBatchAsync(cnfs));
+    }
+    
+    @Override
+    public @NonNull CompletableFuture<@NonNull SatResult @NonNull []> solveBatchAsync(
+            @NonNull List<@NonNull Cnf> cnfs) {
+        
+        // structurally equal CNFs are only solved once
+        Map<Cnf, Integer> uniqueIndices = new HashMap<>();
+        List<@NonNull Cnf> uniqueCnfs = new ArrayList<>();
+        int[] indices = new int[cnfs.size()];
+        for (int i = 0; i < indices.length; i++) {
+            Cnf cnf = cnfs.get(i);
+            Integer index = uniqueIndices.get(cnf);
+            if (index == null) {
+                index = uniqueCnfs.size();
+                uniqueIndices.put(cnf, index);
+                uniqueCnfs.add(cnf);
+            }
+            indices[i] = index;
+        }
+        
+        @NonNull SatResult[] uniqueResults = new @NonNull SatResult[uniqueCnfs.size()];
+        
+        // the workers take the next unsolved CNF until all are solved; this balances CNFs of different difficulty
+        AtomicInteger next = new AtomicInteger();
+        int numWorkers = Math.min(numThreads, uniqueCnfs.size());
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> solveBatch(uniqueCnfs, uniqueResults, next),
+                    SatSolverExecutor.get());
+        }
+        
+        return notNull(CompletableFuture.allOf(workers).thenApply((ignored) -> {
+            @NonNull SatResult[] result = new @NonNull SatResult[indices.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = uniqueResults[indices[i]];
+            }
+            return result;
+        }));
+    }
+    
+    /**
+     * Waits for the result of a batch.
+     * 
+     * @param <T> The type of the result.
+     * @param future The future of the batch.
+     * 
+     * @return The result of the batch.
+     * 
+     * @throws SolverException If solving the batch failed, or the current thread was interrupted while waiting.
+     */
+    private static <T> @NonNull T await(@NonNull CompletableFuture<T> future) throws SolverException {
+        try {
+            return notNull(future.get());
+            
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SolverException) {
+                throw (SolverException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new SolverException(cause);
+            }
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted while waiting for the batch to be solved");
+        }
+    }
+    
+    /**
+     * Solves CNFs of a batch until all are solved. Run by each worker thread.
+     * 
+     * @param cnfs The CNFs of the batch.
+     * @param results The array to store the results in. A CNF for which the solver reaches its limits is
+     *      {@link SatResult#UNKNOWN}; this does not stop the other workers.
+     * @param next The index of the next CNF that is not yet taken by any worker.
+     * 
+     * @throws CompletionException If solving a CNF fails; the cause is the {@link SolverException}.
+     */
+    private void solveBatch(@NonNull List<@NonNull Cnf> cnfs, @NonNull SatResult @NonNull [] results,
+            @NonNull AtomicInteger next) throws CompletionException {
+        
+        try {
+            int index;
+            while ((index = next.getAndIncrement()) < cnfs.size()) {
+                results[index] = pool.solve(cnfs.get(index));
+            }
+            
+        } catch (SolverException e) {
+            // stop the other workers
+            next.set(cnfs.size());
+            throw new CompletionException(e);
+        }
+    }
+    
+}
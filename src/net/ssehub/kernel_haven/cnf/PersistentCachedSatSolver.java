@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A SAT solver that stores results in a {@link SatResultFile}, so that they can be re-used in later runs. Results are
+ * stored per base CNF, so a single file can be shared by solvers with different base CNFs.
+ *
+ * @author Adam
+ */
+class PersistentCachedSatSolver implements ISatSolver {
+
+    private static final @NonNull Logger LOGGER = Logger.get();
+
+    private @NonNull ISatSolver realSolver;
+
+    private @NonNull SatResultFile file;
+
+    private long baseFingerprint;
+
+    private long baseSize;
+
+    /**
+     * Creates a {@link PersistentCachedSatSolver}.
+     *
+     * @param realSolver The real solver to use.
+     * @param baseCnf The base CNF of the real solver. An empty CNF, if the real solver has no base CNF.
+     * @param file The file to store the results in.
+     */
+    public PersistentCachedSatSolver(@NonNull ISatSolver realSolver, @NonNull Cnf baseCnf,
+            @NonNull SatResultFile file) {
+        this.realSolver = realSolver;
+        this.file = file;
+        this.baseFingerprint = baseCnf.getFingerprint();
+        this.baseSize = SatResultFile.getSize(baseCnf);
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+        long fingerprint = cnf.getFingerprint();
+        long size = SatResultFile.getSize(cnf);
+        Boolean result = file.get(baseFingerprint, baseSize, fingerprint, size);
+
+        if (result == null) {
+            result = realSolver.isSatisfiable(cnf);
+
+            try {
+                file.put(baseFingerprint, baseSize, fingerprint, size, result);
+            } catch (IOException e) {
+                // the result is still valid, it just won't be available in later runs
+                LOGGER.logExceptionWarning("Could not write SAT result to " + file.getFile(), e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Looks up the result in the file, or passes the CNF to the real solver. {@link SatResult#UNKNOWN} results are
+     * not stored, since a later run may find an answer.
+     */
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        long fingerprint = cnf.getFingerprint();
+        long size = SatResultFile.getSize(cnf);
+        Boolean stored = file.get(baseFingerprint, baseSize, fingerprint, size);
+
+        SatResult result;
+        if (stored != null) {
+            result = SatResult.of(stored);
+
+        } else {
+            result = realSolver.solve(cnf);
+
+            if (result != SatResult.UNKNOWN) {
+                try {
+                    file.put(baseFingerprint, baseSize, fingerprint, size, result == SatResult.SAT);
+                } catch (IOException e) {
+                    // the result is still valid, it just won't be available in later runs
+                    LOGGER.logExceptionWarning("Could not write SAT result to " + file.getFile(), e);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Passes the assumptions directly to the real solver. Results of assumption-based calls are not cached.
+     */
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        return realSolver.isSatisfiable(assumptions);
+    }
+
+    /**
+     * Passes the assumptions directly to the real solver. Results of assumption-based calls are not cached.
+     */
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        return realSolver.isSatisfiable(assumptions);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Models are not cached.
+     */
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        return realSolver.findModel(cnf);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Models are not cached.
+     */
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+        return realSolver.enumerateModels(cnf, limit, consumer);
+    }
+
+    /**
+     * Passes the CNF directly to the real solver. Explanations are not cached.
+     */
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        return realSolver.explainUnsat(cnf);
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+/**
+ * A CNF converter using the Plaisted-Greenbaum transformation. This is the same as the {@link TseitinCnfConverter},
+ * except that new variables are only defined in the direction required by the polarity of the sub-formula they
+ * replace. For example, a sub-formula that only occurs non-negated only needs <code>x -&gt; sub-formula</code>. This
+ * roughly halves the number of rows for the new variables; the result is still equisatisfiable to the formula.
+ *
+ * @author Adam
+ */
+public class PlaistedGreenbaumCnfConverter extends TseitinCnfConverter {
+
+    /**
+     * Creates a new {@link PlaistedGreenbaumCnfConverter}.
+     */
+    public PlaistedGreenbaumCnfConverter() {
+        super(true);
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A thread-safe SAT solver backed by a bounded pool of solver instances, which are not thread-safe themselves. Each
+ * call borrows an instance from the pool, and returns it afterwards. Instances are created as needed, up to the size
+ * of the pool; if all instances are in use, calls wait until one is returned. This bounds the memory (including native
+ * memory) used by the instances, no matter how many threads use this solver.
+ *
+ * @author Adam
+ */
+class PooledSatSolver implements ISatSolver {
+
+    private @NonNull Supplier<@NonNull ISatSolver> solverSupplier;
+
+    private @NonNull BlockingQueue<@NonNull ISatSolver> idleSolvers;
+
+    private int size;
+
+    private int numCreated;
+
+    /**
+     * Creates a new {@link PooledSatSolver}.
+     *
+     * @param solverSupplier Creates new solver instances; all created solvers must use the same base CNF.
+     * @param size The maximum number of solver instances. Must be at least 1.
+     */
+    public PooledSatSolver(@NonNull Supplier<@NonNull ISatSolver> solverSupplier, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size of the pool must be at least 1, got " + size);
+        }
+        this.solverSupplier = solverSupplier;
+        this.idleSolvers = new ArrayBlockingQueue<>(size);
+        this.size = size;
+    }
+
+    /**
+     * Returns the maximum number of solver instances in this pool.
+     *
+     * @return The size of this pool.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of solver instances that have been created so far.
+     *
+     * @return The number of created instances; at most {@link #getSize()}.
+     */
+    public synchronized int getNumCreated() {
+        return numCreated;
+    }
+
+    /**
+     * Borrows a solver instance from the pool. Creates a new one if none is idle and the pool is not full yet;
+     * otherwise waits until an instance is returned.
+     *
+     * @return A solver instance that is not used by any other thread.
+     *
+     * @throws SolverException If the thread is interrupted while waiting for an instance.
+     */
+    private @NonNull ISatSolver borrowSolver() throws SolverException {
+        ISatSolver result = idleSolvers.poll();
+
+        if (result == null) {
+            boolean create;
+            synchronized (this) {
+                create = numCreated < size;
+                if (create) {
+                    numCreated++;
+                }
+            }
+
+            if (create) {
+                try {
+                    result = solverSupplier.get();
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        numCreated--;
+                    }
+                    throw e;
+                }
+
+            } else {
+                try {
+                    result = idleSolvers.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SolverException("Interrupted while waiting for a pooled solver");
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a solver instance, that was borrowed by {@link #borrowSolver()}, to the pool.
+     *
+     * @param solver The solver that is no longer used.
+     */
+    private void returnSolver(@NonNull ISatSolver solver) {
+        idleSolvers.add(solver);
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.isSatisfiable(cnf);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.solve(cnf);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.isSatisfiable(assumptions);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.isSatisfiable(assumptions);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.findModel(cnf);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.enumerateModels(cnf, limit, consumer);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        ISatSolver solver = borrowSolver();
+        try {
+            return solver.explainUnsat(cnf);
+        } finally {
+            returnSolver(solver);
+        }
+    }
+
+}
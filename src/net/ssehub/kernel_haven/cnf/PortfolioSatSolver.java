@@ -0,0 +1,317 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import net.ssehub.kernel_haven.cnf.Sat4jSolver.Configuration;
+import net.ssehub.kernel_haven.util.Logger;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A SAT solver that runs several differently configured solvers in parallel, and returns the answer of the one that
+ * finishes first. The other solvers are cancelled. Which solver is the fastest depends on the problem, so on hard
+ * problems this is about as fast as the best solver for each problem.
+ * <p>
+ * The portfolio consists of Sat4j in its default and greedy configuration, and CryptoMiniSat if its JNI library is
+ * available. The solvers run in the {@link SatSolverExecutor}.
+ * <p>
+ * A solver that reaches its {@link SolverLimits} does not win the race; the result is only
+ * {@link SatResult#UNKNOWN} if no solver finds an answer.
+ * <p>
+ * CryptoMiniSat can't be cancelled while it is running. If it is still busy with a previous, already answered call,
+ * it does not take part in the following calls until it is finished. Therefore, it always runs with a timeout (see
+ * {@link #setLimits(SolverLimits)}), and with the threads and {@link SolverThreadBudget} of the
+ * {@link SatSolverFactory}.
+ *
+ * @author Adam
+ */
+class PortfolioSatSolver implements ISatSolver {
+
+    private static final @NonNull Logger LOGGER = Logger.get();
+
+    private @NonNull List<@NonNull Member> members;
+
+    /**
+     * Creates a new and empty portfolio SAT solver.
+     */
+    public PortfolioSatSolver() {
+        this(1, null);
+    }
+
+    /**
+     * Creates a new and empty portfolio SAT solver, in which CryptoMiniSat uses the given number of threads.
+     *
+     * @param numThreads The number of threads that CryptoMiniSat uses. Must be at least 1.
+     * @param threadBudget The budget to reserve the threads of CryptoMiniSat in before each solve call;
+     *      <code>null</code> if the threads should not be limited.
+     */
+    public PortfolioSatSolver(int numThreads, @Nullable SolverThreadBudget threadBudget) {
+        this.members = new ArrayList<>();
+        members.add(new Member(new Sat4jSolver(Configuration.DEFAULT), true));
+        members.add(new Member(new Sat4jSolver(Configuration.GREEDY), true));
+        try {
+            members.add(new Member(new CryptoMiniSatSolver(numThreads, threadBudget), false));
+        } catch (UnsupportedOperationException e) {
+            LOGGER.logExceptionDebug("CryptoMiniSat is not available for the portfolio solver", e);
+        }
+        setLimits(SolverLimits.NONE);
+    }
+
+    /**
+     * Creates a portfolio SAT solver with the given CNF. This CNF will be used as a basis for each successive call
+     * to isSatisfiable(). This version is more performant if the same CNF is checked against a lot
+     * of other CNFs.
+     *
+     * @param cnf The base CNF.
+     */
+    public PortfolioSatSolver(@NonNull Cnf cnf) {
+        this(cnf, 1, null);
+    }
+
+    /**
+     * Creates a portfolio SAT solver with the given CNF, in which CryptoMiniSat uses the given number of threads. See
+     * {@link #PortfolioSatSolver(Cnf)}.
+     *
+     * @param cnf The base CNF.
+     * @param numThreads The number of threads that CryptoMiniSat uses. Must be at least 1.
+     * @param threadBudget The budget to reserve the threads of CryptoMiniSat in before each solve call;
+     *      <code>null</code> if the threads should not be limited.
+     */
+    public PortfolioSatSolver(@NonNull Cnf cnf, int numThreads, @Nullable SolverThreadBudget threadBudget) {
+        this.members = new ArrayList<>();
+        members.add(new Member(new Sat4jSolver(cnf, Configuration.DEFAULT), true));
+        members.add(new Member(new Sat4jSolver(cnf, Configuration.GREEDY), true));
+        try {
+            members.add(new Member(new CryptoMiniSatSolver(cnf, numThreads, threadBudget), false));
+        } catch (UnsupportedOperationException e) {
+            LOGGER.logExceptionDebug("CryptoMiniSat is not available for the portfolio solver", e);
+        }
+        setLimits(SolverLimits.NONE);
+    }
+
+    /**
+     * Sets the limits for each call to the solvers of this portfolio. Solvers that can't be cancelled always get a
+     * timeout (that of {@link SolverLimits#DEFAULT}, if the given limits have none), so that they don't keep running
+     * for an unbounded time after another solver answered.
+     *
+     * @param limits The limits for each call.
+     */
+    void setLimits(@NonNull SolverLimits limits) {
+        SolverLimits uncancellableLimits = limits;
+        if (limits.getTimeoutMs() == 0) {
+            uncancellableLimits = new SolverLimits(SolverLimits.DEFAULT.getTimeoutMs(), limits.getMaxConflicts());
+        }
+        
+        for (Member member : members) {
+            if (member.solver instanceof AbstractSingleShotSatSolver) {
+                ((AbstractSingleShotSatSolver) member.solver).setLimits(
+                        member.threadSafe ? limits : uncancellableLimits);
+            }
+        }
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+        return solve(cnf).isSatisfiable();
+    }
+
+    @Override
+    public @NonNull SatResult solve(@NonNull Cnf cnf) throws SolverException {
+        return race((solver) -> solver.solve(cnf));
+    }
+
+    @Override
+    public boolean isSatisfiable(@NonNull Collection<@NonNull CnfVariable> assumptions) throws SolverException {
+        return race((solver) -> SatResult.of(solver.isSatisfiable(assumptions))).isSatisfiable();
+    }
+
+    @Override
+    public boolean isSatisfiable(int @NonNull [] assumptions) throws SolverException {
+        return race((solver) -> SatResult.of(solver.isSatisfiable(assumptions))).isSatisfiable();
+    }
+
+    /**
+     * Finds a model with the first solver of the portfolio. Models are not raced, since the solvers would return
+     * different models.
+     */
+    @Override
+    public @Nullable Map<@NonNull String, @NonNull Boolean> findModel(@NonNull Cnf cnf) throws SolverException {
+        return members.get(0).solver.findModel(cnf);
+    }
+
+    /**
+     * Enumerates the models with the first solver of the portfolio; see {@link #findModel(Cnf)}.
+     */
+    @Override
+    public int enumerateModels(@NonNull Cnf cnf, int limit,
+            @NonNull Consumer<@NonNull Map<@NonNull String, @NonNull Boolean>> consumer) throws SolverException {
+        return members.get(0).solver.enumerateModels(cnf, limit, consumer);
+    }
+
+    /**
+     * Explains the CNF with the first solver of the portfolio; see {@link #findModel(Cnf)}.
+     */
+    @Override
+    public @Nullable Cnf explainUnsat(@NonNull Cnf cnf) throws SolverException {
+        return members.get(0).solver.explainUnsat(cnf);
+    }
+
+    /**
+     * Runs the given call on all available solvers of the portfolio, and returns the first answer.
+     *
+     * @param call The call to run.
+     *
+     * @return The first answer of any solver; {@link SatResult#UNKNOWN} if all solvers reached their limits.
+     *
+     * @throws SolverException If all solvers fail, or the calling thread is interrupted.
+     */
+    private @NonNull SatResult race(@NonNull SolverCall call) throws SolverException {
+        CompletionService<SatResult> completion = new ExecutorCompletionService<>(SatSolverExecutor.get());
+        List<Future<SatResult>> futures = new ArrayList<>(members.size());
+
+        for (Member member : members) {
+            if (!member.busy.get()) {
+                futures.add(completion.submit(() -> member.run(call)));
+            }
+        }
+
+        Throwable failure = null;
+        boolean unknown = false;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    SatResult result = completion.take().get();
+                    if (result != SatResult.UNKNOWN) {
+                        return result;
+                    }
+                    // wait for the other solvers
+                    unknown = true;
+                } catch (ExecutionException e) {
+                    // wait for the other solvers
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted while waiting for the portfolio solvers");
+
+        } finally {
+            for (Future<SatResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        if (unknown) {
+            // no solver found an answer within its limits
+            return SatResult.UNKNOWN;
+        }
+
+        // all solvers failed
+        if (failure instanceof SolverException) {
+            throw (SolverException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else {
+            throw new SolverException(failure);
+        }
+    }
+
+    /**
+     * A call to one of the isSatisfiable() methods of a solver.
+     */
+    @FunctionalInterface
+    private static interface SolverCall {
+
+        /**
+         * Runs the call on the given solver.
+         *
+         * @param solver The solver.
+         *
+         * @return The answer of the solver.
+         *
+         * @throws SolverException If solving fails.
+         */
+        public @NonNull SatResult solve(@NonNull ISatSolver solver) throws SolverException;
+
+    }
+
+    /**
+     * A solver of the portfolio.
+     */
+    private static class Member {
+
+        private @NonNull ISatSolver solver;
+
+        private boolean threadSafe;
+
+        /**
+         * Whether a call to a solver that is not thread-safe is currently running.
+         */
+        private @NonNull AtomicBoolean busy;
+
+        /**
+         * Creates a member of the portfolio.
+         *
+         * @param solver The solver.
+         * @param threadSafe Whether the solver supports concurrent calls.
+         */
+        public Member(@NonNull ISatSolver solver, boolean threadSafe) {
+            this.solver = solver;
+            this.threadSafe = threadSafe;
+            this.busy = new AtomicBoolean();
+        }
+
+        /**
+         * Runs the given call on the solver of this member.
+         *
+         * @param call The call to run.
+         *
+         * @return The answer of the solver.
+         *
+         * @throws SolverException If solving fails, or the solver is busy with another call.
+         */
+        public @NonNull SatResult run(@NonNull SolverCall call) throws SolverException {
+            if (threadSafe) {
+                return call.solve(solver);
+            }
+
+            if (!busy.compareAndSet(false, true)) {
+                throw new SolverException("Solver is busy with another call");
+            }
+            try {
+                return call.solve(solver);
+            } finally {
+                busy.set(false);
+            }
+        }
+
+    }
+
+}
@@ -21,6 +21,7 @@ import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import net.ssehub.kernel_haven.util.logic.Conjunction;
@@ -31,34 +32,259 @@ import net.ssehub.kernel_haven.util.logic.Negation;
 import net.ssehub.kernel_haven.util.logic.True;
 import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * A CNF converter based on https://www.cs.jhu.edu/~jason/tutorials/convert-to-CNF.html
  * 
- * Constants in the boolean {@link Formula} are converted to {@link #PSEUDO_TRUE} and {@link #PSEUDO_TRUE}.
+ * The formula is first brought into negation normal form (see {@link NnfFormula}); this also propagates the constants
+ * away and flattens chains of conjunctions and disjunctions. Structurally equal sub-formulas are only converted once.
+ * If the whole formula is constantly false, the result is the unsatisfiable <code>PSEUDO_FALSE &amp;&amp;
+ * !PSEUDO_FALSE</code>; if it is constantly true, the result is empty. Sub-classes can override
+ * {@link #handleOr(Cnf, Cnf)}.
+ * <p>
+ * The {@link Formula} based handle methods of previous versions ({@link #handleVariable(Variable)},
+ * {@link #handleOr(Disjunction)}, {@link #handleAnd(Conjunction)} and {@link #handleNot(Negation)}) are deprecated.
+ * Sub-classes that override any of them have to opt in with {@link #RecursiveCnfConverter(boolean)}; formulas are then
+ * converted by calling these methods, like in previous versions: the formula is not brought into negation normal
+ * form, and constants are replaced by the variables <code>PSEUDO_TRUE</code> and <code>PSEUDO_FALSE</code>.
  * 
  * @author Adam (copied from KernelMiner project)
  * @author Johannes
  */
 public class RecursiveCnfConverter implements IFormulaToCnfConverter {
     
-    private static final @NonNull Variable PSEUDO_TRUE = new Variable("PSEUDO_TRUE");
-    private static final @NonNull Variable PSEUDO_FALSE = new Variable("PSEUDO_FALSE");
+    private static final @NonNull String PSEUDO_TRUE = "PSEUDO_TRUE";
+    
+    private static final @NonNull String PSEUDO_FALSE = "PSEUDO_FALSE";
+    
+    /**
+     * Whether formulas are converted by calling the deprecated {@link Formula} based handle methods.
+     */
+    private final boolean legacyHooks;
+    
+    /**
+     * Creates a new converter.
+     */
+    public RecursiveCnfConverter() {
+        this(false);
+    }
+    
+    /**
+     * Creates a new converter that optionally converts formulas by calling the deprecated {@link Formula} based
+     * handle methods; see the class comment. Sub-classes that override any of these methods have to pass
+     * <code>true</code>, otherwise their overrides are not called.
+     * 
+     * @param legacyHooks Whether to convert formulas by calling the {@link Formula} based handle methods.
+     * 
+     * @deprecated Only for sub-classes that still override the {@link Formula} based handle methods; override
+     *      {@link #handleOr(Cnf, Cnf)} instead.
+     */
+    @Deprecated
+    protected RecursiveCnfConverter(boolean legacyHooks) {
+        this.legacyHooks = legacyHooks;
+    }
     
     @Override
     public @NonNull Cnf convert(@NonNull Formula formula) throws ConverterException {
+        if (legacyHooks) {
+            return convertWithLegacyHooks(formula);
+        }
+        
+        return convert(formula, new VariableDictionary());
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The formula is converted directly into the given dictionary, unless a sub-class overrides the deprecated
+     * {@link Formula} based handle methods; see the class comment.
+     */
+    @Override
+    public @NonNull Cnf convert(@NonNull Formula formula, @NonNull VariableDictionary dictionary)
+            throws ConverterException {
+        
+        if (legacyHooks) {
+            return Cnf.concat(dictionary, notNull(Arrays.asList(convertWithLegacyHooks(formula))));
+        }
+        
+        NnfFormula nnf = NnfFormula.create(formula);
+        
+        Cnf result;
+        if (nnf.isTrue()) {
+            result = new Cnf(dictionary, 0);
+            
+        } else if (nnf.isFalse()) {
+            result = new Cnf(dictionary, 2);
+            result.addRow(new CnfVariable(false, PSEUDO_FALSE));
+            result.addRow(new CnfVariable(true, PSEUDO_FALSE));
+            
+        } else {
+            result = convert(nnf, dictionary);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Converts all nodes of the given (non-constant) formula in order; the operands of a node always come before the
+     * node itself, so no recursion is needed. The CNF of a node is dropped as soon as all its parents are converted.
+     * 
+     * @param nnf The formula to convert.
+     * @param dictionary The dictionary for the CNFs of all nodes.
+     * @return The CNF of the root node.
+     */
+    private @NonNull Cnf convert(@NonNull NnfFormula nnf, @NonNull VariableDictionary dictionary) {
+        int[] remainingUses = nnf.countUses();
+        @Nullable Cnf[] converted = new @Nullable Cnf[nnf.getNumNodes()];
+        
+        for (int node = 0; node < converted.length; node++) {
+            if (remainingUses[node] == 0) {
+                continue;
+            }
+            
+            Cnf result;
+            switch (nnf.getKind(node)) {
+            case NnfFormula.LITERAL:
+                result = handleLiteral(dictionary, nnf, nnf.getLiteral(node));
+                break;
+            
+            case NnfFormula.AND:
+                result = handleAnd(dictionary, nnf, node, converted);
+                break;
+                
+            default:
+                /*
+                 * A || B || C is converted as (A || B) || C
+                 */
+                result = notNull(converted[nnf.getOperand(node, 0)]);
+                for (int i = 1; i < nnf.getNumOperands(node); i++) {
+                    result = handleOr(result, notNull(converted[nnf.getOperand(node, i)]));
+                }
+                break;
+            }
+            converted[node] = result;
+            
+            for (int i = 0; i < nnf.getNumOperands(node); i++) {
+                int operand = nnf.getOperand(node, i);
+                if (--remainingUses[operand] == 0) {
+                    converted[operand] = null;
+                }
+            }
+        }
+        
+        return notNull(converted[nnf.getRoot()]);
+    }
+    
+    /**
+     * Converts a literal to CNF.
+     * 
+     * @param dictionary The dictionary of the conversion.
+     * @param nnf The formula that the literal belongs to.
+     * @param literal The variable number of the literal, negative if the variable is negated.
+     * @return The resulting CNF representing the literal.
+     */
+    private static @NonNull Cnf handleLiteral(@NonNull VariableDictionary dictionary, @NonNull NnfFormula nnf,
+            int literal) {
+        
+        int id = dictionary.getId(nnf.getVariableName(Math.abs(literal)));
+        Cnf result = new Cnf(dictionary, 1);
+        result.addLiteralRow(literal < 0 ? -id : id);
+        return result;
+    }
+    
+    /**
+     * Converts a conjunction to CNF.
+     * 
+     * @param dictionary The dictionary of the conversion.
+     * @param nnf The formula that the conjunction belongs to.
+     * @param node The conjunction node.
+     * @param converted The CNFs of the operands of the node.
+     * @return The resulting CNF representing the conjunction.
+     */
+    private static @NonNull Cnf handleAnd(@NonNull VariableDictionary dictionary, @NonNull NnfFormula nnf, int node,
+            @Nullable Cnf @NonNull [] converted) {
+        /*
+         * We have call = P ^ Q ^ ...
+         * 
+         * CONVERT(P) must have the form P1 ^ P2 ^ ... ^ Pm, and
+         * CONVERT(Q) must have the form Q1 ^ Q2 ^ ... ^ Qn,
+         * where all the Pi and Qi are disjunctions of literals.
+         * So return P1 ^ P2 ^ ... ^ Pm ^ Q1 ^ Q2 ^ ... ^ Qn ^ ...
+         */
+        
+        List<@NonNull Cnf> operands = new ArrayList<>(nnf.getNumOperands(node));
+        for (int i = 0; i < nnf.getNumOperands(node); i++) {
+            operands.add(notNull(converted[nnf.getOperand(node, i)]));
+        }
+        return Cnf.concat(dictionary, operands);
+    }
+    
+    /**
+     * Converts a disjunction to CNF.
+     * 
+     * @param leftSide The CNF of the left operand. Must not be modified, as it may be shared.
+     * @param rightSide The CNF of the right operand. Must not be modified, as it may be shared. Uses the same
+     *      dictionary as the left side.
+     * @return The resulting CNF representing the disjunction.
+     */
+    protected @NonNull Cnf handleOr(@NonNull Cnf leftSide, @NonNull Cnf rightSide) {
+        /*
+         * We have call = P v Q
+         * 
+         * CONVERT(P) must have the form P1 ^ P2 ^ ... ^ Pm, and
+         * CONVERT(Q) must have the form Q1 ^ Q2 ^ ... ^ Qn,
+         * where all the Pi and Qi are dijunctions of literals.
+         * So we need a CNF formula equivalent to
+         *    (P1 ^ P2 ^ ... ^ Pm) v (Q1 ^ Q2 ^ ... ^ Qn).
+         * So return (P1 v Q1) ^ (P1 v Q2) ^ ... ^ (P1 v Qn)
+         *         ^ (P2 v Q1) ^ (P2 v Q2) ^ ... ^ (P2 v Qn)
+         *           ...
+         *         ^ (Pm v Q1) ^ (Pm v Q2) ^ ... ^ (Pm v Qn)
+         */
+        
+        Cnf result = new Cnf(leftSide.getDictionary(), leftSide.getRowCount() * rightSide.getRowCount());
+        
+        int[][] qs = new int[rightSide.getRowCount()][];
+        for (int j = 0; j < qs.length; j++) {
+            qs[j] = rightSide.getLiteralRow(j);
+        }
+        
+        int[] row = new int[0];
+        for (int i = 0; i < leftSide.getRowCount(); i++) {
+            int[] p = leftSide.getLiteralRow(i);
+            for (int[] q : qs) {
+                if (row.length < p.length + q.length) {
+                    row = new int[p.length + q.length];
+                }
+                System.arraycopy(p, 0, row, 0, p.length);
+                System.arraycopy(q, 0, row, p.length, q.length);
+                result.addLiteralRow(row, p.length + q.length);
+            }
+        }
+        
+        return result;
+    }
+
+    /**
+     * Converts the given formula by calling the deprecated {@link Formula} based handle methods, like in previous
+     * versions. Constants are replaced by <code>PSEUDO_TRUE</code> and <code>PSEUDO_FALSE</code> first.
+     * 
+     * @param formula The formula to convert.
+     * @return The CNF representing the formula.
+     * @throws ConverterException If an unexpected element is found in the tree.
+     */
+    private @NonNull Cnf convertWithLegacyHooks(@NonNull Formula formula) throws ConverterException {
         Cnf result = new Cnf();
         
         if (containsConstants(formula)) {
-            result.addRow(new CnfVariable(true, PSEUDO_FALSE.getName()));
-            result.addRow(new CnfVariable(false, PSEUDO_TRUE.getName()));
+            result.addRow(new CnfVariable(true, PSEUDO_FALSE));
+            result.addRow(new CnfVariable(false, PSEUDO_TRUE));
             
             formula = replaceConstants(formula);
         }
         
-        result = result.combine(convertPrivate(formula));
-        
-        return result;
+        return result.combine(convertPrivate(formula));
     }
     
     /**
@@ -98,12 +324,11 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
     private static @NonNull Formula replaceConstants(@NonNull Formula tree) throws ConverterException {
         Formula result = null;
         
-        
         if (tree instanceof True) {
-            result = PSEUDO_TRUE;
+            result = new Variable(PSEUDO_TRUE);
             
         } else if (tree instanceof False) {
-            result = PSEUDO_FALSE;
+            result = new Variable(PSEUDO_FALSE);
             
         } else if (tree instanceof Disjunction) {
             result = new Disjunction(
@@ -129,12 +354,16 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
     }
     
     /**
-     * Internal convert method. Recursively called to parse parts of the tree.
+     * Converts a part of the tree by calling the deprecated handle method for its type. Called by the deprecated
+     * handle methods to convert their operands.
      * 
-     * @param tree The formula to convert.
+     * @param tree The formula to convert. Must not contain constants.
      * @return The CNF representing the formula.
      * @throws ConverterException If an unexpected element is found in the tree.
+     * 
+     * @deprecated Only used by the deprecated {@link Formula} based handle methods; see the class comment.
      */
+    @Deprecated
     protected final @NonNull Cnf convertPrivate(@NonNull Formula tree) throws ConverterException {
         /*
          * See https://www.cs.jhu.edu/~jason/tutorials/convert-to-CNF.html
@@ -165,52 +394,41 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
      * @param var The variable to convert.
      * @return The resulting CNF representing the variable.
      * @throws ConverterException If an unexpected element is found in the tree.
+     * 
+     * @deprecated Only called if a sub-class opts in with {@link #RecursiveCnfConverter(boolean)}; see the class
+     *      comment.
      */
+    @Deprecated
     protected @NonNull Cnf handleVariable(@NonNull Variable var) throws ConverterException {
-        Cnf result = new Cnf();
+        Cnf result = new Cnf(1);
         result.addRow(new CnfVariable(false, var.getName()));
         return result;
     }
     
     /**
-     * Converts a disjunction to CNF.
+     * Converts a disjunction to CNF. Converts both operands with {@link #convertPrivate(Formula)}, and combines them
+     * with {@link #handleOr(Cnf, Cnf)}.
      * 
      * @param call The disjunction to convert.
      * @return The resulting CNF representing the disjunction.
      * @throws ConverterException If an unexpected element is found in the tree.
+     * 
+     * @deprecated Override {@link #handleOr(Cnf, Cnf)} instead. Only called if a sub-class opts in with
+     *      {@link #RecursiveCnfConverter(boolean)}; see the class comment.
      */
+    @Deprecated
     protected @NonNull Cnf handleOr(@NonNull Disjunction call) throws ConverterException {
-        /*
-         * We have call = P v Q
-         * 
-         * CONVERT(P) must have the form P1 ^ P2 ^ ... ^ Pm, and
-         * CONVERT(Q) must have the form Q1 ^ Q2 ^ ... ^ Qn,
-         * where all the Pi and Qi are dijunctions of literals.
-         * So we need a CNF formula equivalent to
-         *    (P1 ^ P2 ^ ... ^ Pm) v (Q1 ^ Q2 ^ ... ^ Qn).
-         * So return (P1 v Q1) ^ (P1 v Q2) ^ ... ^ (P1 v Qn)
-         *         ^ (P2 v Q1) ^ (P2 v Q2) ^ ... ^ (P2 v Qn)
-         *           ...
-         *         ^ (Pm v Q1) ^ (Pm v Q2) ^ ... ^ (Pm v Qn)
-         */
-        
-        Cnf result = new Cnf();
-        
         Cnf leftSide = convertPrivate(call.getLeft());
         Cnf rightSide = convertPrivate(call.getRight());
         
-        for (List<CnfVariable> p : leftSide.getTable()) {
-            for (List<CnfVariable> q : rightSide.getTable()) {
-                
-                List<CnfVariable> row = new ArrayList<>(p.size() + q.size());
-                row.addAll(p);
-                row.addAll(q);
-                
-                result.addRow(notNull(row.toArray(new @NonNull CnfVariable[0])));
-            }
+        if (leftSide.getDictionary() != rightSide.getDictionary()) {
+            // handleOr(Cnf, Cnf) requires a common dictionary
+            VariableDictionary dictionary = new VariableDictionary();
+            leftSide = Cnf.concat(dictionary, notNull(Arrays.asList(leftSide)));
+            rightSide = Cnf.concat(dictionary, notNull(Arrays.asList(rightSide)));
         }
         
-        return result;
+        return handleOr(leftSide, rightSide);
     }
     
     /**
@@ -219,7 +437,11 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
      * @param call The conjunction to convert.
      * @return The resulting CNF representing the conjunction.
      * @throws ConverterException If an unexpected element is found in the tree.
+     * 
+     * @deprecated Only called if a sub-class opts in with {@link #RecursiveCnfConverter(boolean)}; see the class
+     *      comment.
      */
+    @Deprecated
     protected @NonNull Cnf handleAnd(@NonNull Conjunction call) throws ConverterException {
         /*
          * We have call = P ^ Q
@@ -242,14 +464,18 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
      * @param call The negation to convert.
      * @return The resulting CNF representing the negation.
      * @throws ConverterException If an unexpected element is found in the tree.
+     * 
+     * @deprecated Only called if a sub-class opts in with {@link #RecursiveCnfConverter(boolean)}; see the class
+     *      comment.
      */
+    @Deprecated
     protected @NonNull Cnf handleNot(@NonNull Negation call) throws ConverterException {
         Cnf result = null;
         
         if (call.getFormula() instanceof Variable) {
             // If call has the form ~A for some variable A, then return call.
             Variable var = (Variable) call.getFormula();
-            result = new Cnf();
+            result = new Cnf(1);
             result.addRow(new CnfVariable(true, var.getName()));
             
         } else if (call.getFormula() instanceof Negation) {
@@ -262,20 +488,13 @@ public class RecursiveCnfConverter implements IFormulaToCnfConverter {
             // If call has the form ~(P v Q), then return CONVERT(~P ^ ~Q). (de Morgan's Law)
             
             Disjunction innerCall = (Disjunction) call.getFormula();
-            
-            Formula p = innerCall.getLeft();
-            Formula q = innerCall.getRight();
-              
-            result = convertPrivate(and(not(p), not(q)));
+            result = convertPrivate(and(not(innerCall.getLeft()), not(innerCall.getRight())));
             
         } else if (call.getFormula() instanceof Conjunction) {
             // If call has the form ~(P ^ Q), then return CONVERT(~P v ~Q). (de Morgan's Law)
-            Conjunction innerCall = (Conjunction) call.getFormula();
             
-            Formula p = innerCall.getLeft();
-            Formula q = innerCall.getRight();
-              
-            result = convertPrivate(or(not(p), not(q)));
+            Conjunction innerCall = (Conjunction) call.getFormula();
+            result = convertPrivate(or(not(innerCall.getLeft()), not(innerCall.getRight())));
         
         } else {
             throw new ConverterException("Invalid element in not call: " + call.getFormula().getClass());
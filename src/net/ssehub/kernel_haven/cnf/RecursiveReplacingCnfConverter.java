@@ -15,13 +15,6 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
-import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
-
-import net.ssehub.kernel_haven.util.logic.Conjunction;
-import net.ssehub.kernel_haven.util.logic.Disjunction;
-import net.ssehub.kernel_haven.util.logic.Formula;
-import net.ssehub.kernel_haven.util.logic.Negation;
-import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
@@ -39,7 +32,7 @@ public class RecursiveReplacingCnfConverter extends RecursiveCnfConverter {
     private int uniqueCounter = 1;
     
     @Override
-    protected @NonNull Cnf handleOr(@NonNull Disjunction call) throws ConverterException {
+    protected @NonNull Cnf handleOr(@NonNull Cnf leftSide, @NonNull Cnf rightSide) {
         /*
          * We have call = P v Q
          * 
@@ -53,15 +46,15 @@ public class RecursiveReplacingCnfConverter extends RecursiveCnfConverter {
         
         Cnf result = null;
         
-        if (isComplex(call.getLeft()) && isComplex(call.getRight())) {
-            Variable z = new Variable("temp_" + (uniqueCounter++));
-            
-            Formula left = new Disjunction(not(z), call.getLeft());
-            Formula right = new Disjunction(z, call.getRight());
+        if (isComplex(leftSide) && isComplex(rightSide)) {
+            VariableDictionary dictionary = leftSide.getDictionary();
+            int z = dictionary.getId("temp_" + (uniqueCounter++));
             
-            result = convertPrivate(new Conjunction(left, right));
+            result = new Cnf(dictionary, leftSide.getRowCount() + rightSide.getRowCount());
+            addRows(result, -z, leftSide);
+            addRows(result, z, rightSide);
         } else {
-            result = super.handleOr(call);
+            result = super.handleOr(leftSide, rightSide);
         }
         
         
@@ -69,29 +62,31 @@ public class RecursiveReplacingCnfConverter extends RecursiveCnfConverter {
     }
     
     /**
-     * A formula is complex, if it contains more than one variable.
+     * Adds all rows of the given CNF to the result, each extended by the given literal.
      * 
-     * @param tree The formula to analyse.
-     * @return <tt>true</tt> if tree contains more than one variable
-     * @throws ConverterException If the formula contains unexpected elements.
+     * @param result The CNF to add the rows to.
+     * @param literal The literal to add to the front of each row.
+     * @param cnf The CNF to copy the rows from.
      */
-    private boolean isComplex(@NonNull Formula tree) throws ConverterException {
-        boolean result;
-        
-        if (tree instanceof Variable) {
-            result = false;
-            
-        } else if (tree instanceof Negation) {
-            result = isComplex(((Negation) tree).getFormula());
-            
-        } else if (tree instanceof Conjunction || tree instanceof Disjunction) {
-            result = true;
-            
-        } else {
-            throw new ConverterException("Invalid element in tree: " + tree);
+    private static void addRows(@NonNull Cnf result, int literal, @NonNull Cnf cnf) {
+        for (int i = 0; i < cnf.getRowCount(); i++) {
+            int[] row = new int[cnf.getRowLength(i) + 1];
+            row[0] = literal;
+            for (int j = 1; j < row.length; j++) {
+                row[j] = cnf.getLiteral(i, j - 1);
+            }
+            result.addLiteralRow(row);
         }
-        
-        return result;
+    }
+    
+    /**
+     * A formula is complex, if it contains more than one variable, i.e. its CNF is more than a single literal.
+     * 
+     * @param cnf The CNF of the formula to analyse.
+     * @return <tt>true</tt> if the formula contains more than one variable
+     */
+    private static boolean isComplex(@NonNull Cnf cnf) {
+        return cnf.getRowCount() != 1 || cnf.getRowLength(0) != 1;
     }
 
 }
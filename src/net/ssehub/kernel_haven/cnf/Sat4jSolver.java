@@ -15,25 +15,71 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import org.sat4j.core.VecInt;
 import org.sat4j.minisat.SolverFactory;
 import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
 import org.sat4j.specs.ISolver;
+import org.sat4j.specs.ISolverService;
 import org.sat4j.specs.TimeoutException;
+import org.sat4j.tools.SearchListenerAdapter;
+import org.sat4j.tools.xplain.Xplain;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * SAT solver based on <a href="https://www.sat4j.org/">Sat4j</a>.
+ * <p>
+ * Solving can be cancelled by interrupting the calling thread; the interrupted call then throws a
+ * {@link SolverException}. The {@link SolverLimits} are passed to Sat4j as its timeout; since Sat4j supports either
+ * a time or a conflict timeout, the conflicts are counted by a search listener if both are set. Without limits, the
+ * built-in timeout of Sat4j (180 seconds) applies.
  * 
  * @author Adam
  */
 class Sat4jSolver extends AbstractSingleShotSatSolver {
     
+    /**
+     * The different configurations of the Sat4j solver. They use different heuristics, so which one is the fastest
+     * depends on the problem.
+     */
+    enum Configuration {
+        
+        /**
+         * The default configuration of Sat4j.
+         */
+        DEFAULT,
+        
+        /**
+         * A configuration that quickly finds a model for satisfiable problems, with lots of random restarts.
+         */
+        GREEDY,
+        
+    }
+    
+    private @NonNull Configuration configuration;
+    
     /**
      * Creates a new and empty Sat solver.
      */
     public Sat4jSolver() {
+        this.configuration = Configuration.DEFAULT;
+    }
+    
+    /**
+     * Creates a new and empty Sat solver with the given configuration.
+     * 
+     * @param configuration The configuration of the Sat4j solver to use.
+     */
+    public Sat4jSolver(@NonNull Configuration configuration) {
+        this.configuration = configuration;
     }
     
     
@@ -45,7 +91,33 @@ class Sat4jSolver extends AbstractSingleShotSatSolver {
      * @param cnf The base CNF.
      */
     public Sat4jSolver(@NonNull Cnf cnf) {
+        this(cnf, Configuration.DEFAULT);
+    }
+    
+    /**
+     * Creates a SAT solver with the given CNF and configuration. See {@link #Sat4jSolver(Cnf)}.
+     * 
+     * @param cnf The base CNF.
+     * @param configuration The configuration of the Sat4j solver to use.
+     */
+    public Sat4jSolver(@NonNull Cnf cnf, @NonNull Configuration configuration) {
         super(cnf);
+        this.configuration = configuration;
+    }
+    
+    /**
+     * Creates a copy of the given solver; see {@link #copy()}.
+     * 
+     * @param other The solver to copy.
+     */
+    private Sat4jSolver(@NonNull Sat4jSolver other) {
+        super(other);
+        this.configuration = other.configuration;
+    }
+    
+    @Override
+    @NonNull Sat4jSolver copy() {
+        return new Sat4jSolver(this);
     }
     
     /**
@@ -54,35 +126,252 @@ class Sat4jSolver extends AbstractSingleShotSatSolver {
      * @return The solver that can be used.
      */
     private @NonNull ISolver createSolver() {
-        ISolver solver = SolverFactory.newDefault();
+        ISolver solver;
+        switch (configuration) {
+        case GREEDY:
+            solver = SolverFactory.newGreedySolver();
+            break;
+            
+        case DEFAULT:
+        default:
+            solver = SolverFactory.newDefault();
+            break;
+        }
         solver.setDBSimplificationAllowed(false);
         
+        InterruptListener listener = new InterruptListener(solver);
+        listener.setLimits(getLimits());
+        solver.setSearchListener(listener);
+        
         return solver;
     }
 
 
     @Override
-    protected boolean isSatisfiable(int numVars, int[][] clauses) throws SolverException {
-        boolean sat = false;
+    protected @NonNull SatResult solve(int numVars, int[][] clauses) throws SolverException {
+        return solve(numVars, clauses, new int[0]);
+    }
+    
+    @Override
+    protected @NonNull SatResult solve(int numVars, int[][] clauses, int @NonNull [] assumptions)
+            throws SolverException {
+        
+        SatResult result = SatResult.UNSAT;
         
         try {
-            ISolver solver = createSolver();
-
-            for (int[] clause : clauses) {
-                solver.addClause(new VecInt(clause));
+            ISolver solver = createSolver(numVars, clauses);
+            result = callSolver(solver, assumptions);
+        } catch (ContradictionException e) {
+            // result is already UNSAT
+        }
+        
+        return result;
+    }
+    
+    @Override
+    protected boolean @Nullable [] findModel(int numVars, int[][] clauses) throws SolverException {
+        boolean[] model = null;
+        
+        try {
+            ISolver solver = createSolver(numVars, clauses);
+            if (callSolver(solver, new int[0]).isSatisfiable()) {
+                model = new boolean[numVars + 1];
+                for (int i = 1; i <= numVars; i++) {
+                    model[i] = solver.model(i);
+                }
             }
-            
+        } catch (ContradictionException e) {
+            // model is already null
+        }
+        
+        return model;
+    }
+    
+    /**
+     * Finds a minimal core with Sat4j's {@link Xplain}, which guards each clause with its own selector variable and
+     * minimizes the core by removing clauses while the rest stays unsatisfiable.
+     */
+    @Override
+    protected int @Nullable [] findCore(int numVars, int[][] clauses) throws SolverException {
+        for (int i = 0; i < clauses.length; i++) {
+            if (clauses[i].length == 0) {
+                // an empty clause alone is a minimal core; Xplain would ignore it
+                return new int[] {i};
+            }
+        }
+        
+        Xplain<ISolver> solver = new Xplain<>(createSolver());
+        solver.newVar(numVars);
+        
+        Map<IConstr, Integer> indices = new IdentityHashMap<>();
+        try {
+            for (int i = 0; i < clauses.length; i++) {
+                IConstr constr = solver.addClause(new VecInt(clauses[i]));
+                if (constr != null) {
+                    indices.put(constr, i);
+                }
+            }
+        } catch (ContradictionException e) {
+            // can't happen, since each clause contains its own fresh selector variable
+            throw new SolverException(e);
+        }
+        
+        int[] core = null;
+        if (!callSolver(solver, new int[0]).isSatisfiable()) {
+            Collection<IConstr> explanation;
             try {
-                sat = solver.isSatisfiable();
+                explanation = solver.explain();
             } catch (TimeoutException e) {
-                throw new SolverException(e);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new SolverException("Solving was interrupted");
+                }
+                throw new SolverException("Limit reached while minimizing the unsatisfiable core");
             }
-        } catch (ContradictionException e) {
-            // sat is already false
+            
+            core = new int[explanation.size()];
+            int i = 0;
+            for (IConstr constr : explanation) {
+                core[i++] = notNull(indices.get(constr));
+            }
+        }
+        
+        return core;
+    }
+    
+    /**
+     * Creates a new solver with the given clauses.
+     * 
+     * @param numVars The number of variables used.
+     * @param clauses The clauses to add to the solver.
+     * 
+     * @return The solver, ready to be called.
+     * 
+     * @throws ContradictionException If the clauses are trivially unsatisfiable.
+     */
+    private @NonNull ISolver createSolver(int numVars, int[][] clauses) throws ContradictionException {
+        ISolver solver = createSolver();
+        solver.newVar(numVars);
+
+        for (int[] clause : clauses) {
+            solver.addClause(new VecInt(clause));
         }
         
-        return sat;
+        return solver;
+    }
+    
+    /**
+     * Calls the given solver with the given assumptions.
+     * 
+     * @param solver The solver to call.
+     * @param assumptions The literals that are assumed to be true.
+     * 
+     * @return Whether the clauses of the solver are satisfiable; {@link SatResult#UNKNOWN} if a limit was reached.
+     * 
+     * @throws SolverException If the calling thread is interrupted.
+     */
+    private @NonNull SatResult callSolver(@NonNull ISolver solver, int @NonNull [] assumptions)
+            throws SolverException {
+        
+        SatResult result;
+        try {
+            result = SatResult.of(solver.isSatisfiable(new VecInt(assumptions)));
+        } catch (TimeoutException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new SolverException("Solving was interrupted");
+            }
+            result = SatResult.UNKNOWN;
+        }
+        return result;
     }
     
+    /**
+     * Stops the search of a Sat4j solver if the solving thread is interrupted. Sat4j itself does not check the
+     * interrupted flag of the thread; this listener checks it on every decision and conflict.
+     * <p>
+     * This listener also applies the {@link SolverLimits} to the solver. Sat4j supports only one kind of timeout, so if
+     * both a time and a conflict limit are set, this listener counts the conflicts itself.
+     */
+    static class InterruptListener extends SearchListenerAdapter<ISolverService> {
+
+        private static final long serialVersionUID = -2530287318451218693L;
+        
+        private transient @NonNull ISolver solver;
+        
+        /**
+         * Whether the solver uses a conflict-based timeout. In this case, the solver must not be stopped while it
+         * handles a conflict: Sat4j fails with a {@link NullPointerException} if the timeout expires there.
+         */
+        private boolean conflictTimeout;
+        
+        /**
+         * The maximum number of conflicts per call, counted by this listener; 0 if this listener does not count.
+         */
+        private long maxConflicts;
+        
+        private long conflicts;
+        
+        /**
+         * Creates a listener for the given solver.
+         * 
+         * @param solver The solver to stop when the thread is interrupted.
+         */
+        public InterruptListener(@NonNull ISolver solver) {
+            this.solver = solver;
+        }
+        
+        /**
+         * Sets the timeout of the solver according to the given limits. Must not be called while the solver runs.
+         * <p>
+         * If the limits are {@link SolverLimits#NONE}, the built-in timeout of Sat4j (180 seconds, see
+         * {@link SolverLimits#DEFAULT}) is (re-)set, so that no call can run forever. All Sat4j based solvers call
+         * this when they create their Sat4j solver, so that they behave the same.
+         * 
+         * @param limits The limits for each call of the solver.
+         */
+        public void setLimits(@NonNull SolverLimits limits) {
+            conflictTimeout = false;
+            maxConflicts = 0;
+            
+            if (limits.getTimeoutMs() != 0) {
+                solver.setTimeoutMs(limits.getTimeoutMs());
+                maxConflicts = limits.getMaxConflicts();
+                
+            } else if (limits.getMaxConflicts() != 0) {
+                solver.setTimeoutOnConflicts((int) Math.min(limits.getMaxConflicts(), Integer.MAX_VALUE));
+                conflictTimeout = true;
+                
+            } else {
+                solver.setTimeoutMs(SolverLimits.DEFAULT.getTimeoutMs());
+            }
+        }
+        
+        /**
+         * Stops the solver if the current thread is interrupted, or the conflict limit is reached.
+         */
+        private void checkInterrupted() {
+            if (Thread.currentThread().isInterrupted() || (maxConflicts != 0 && conflicts >= maxConflicts)) {
+                solver.expireTimeout();
+            }
+        }
+        
+        @Override
+        public void start() {
+            conflicts = 0;
+        }
+        
+        @Override
+        public void assuming(int literal) {
+            checkInterrupted();
+        }
+        
+        @Override
+        public void conflictFound(IConstr confl, int dlevel, int trailLevel) {
+            conflicts++;
+            if (!conflictTimeout) {
+                checkInterrupted();
+            }
+        }
+        
+    }
     
 }
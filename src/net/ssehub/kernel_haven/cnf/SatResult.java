@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * The result of a SAT call that may hit the limits of the solver (see {@link SolverLimits}).
+ *
+ * @author Adam
+ */
+public enum SatResult {
+
+    /**
+     * The CNF is satisfiable.
+     */
+    SAT,
+    
+    /**
+     * The CNF is not satisfiable.
+     */
+    UNSAT,
+    
+    /**
+     * The solver reached its time or conflict limit before it found an answer.
+     */
+    UNKNOWN;
+    
+    /**
+     * Converts a boolean SAT answer into a {@link SatResult}.
+     * 
+     * @param satisfiable Whether the CNF is satisfiable.
+     * 
+     * @return {@link #SAT} or {@link #UNSAT}.
+     */
+    public static @NonNull SatResult of(boolean satisfiable) {
+        return satisfiable ? SAT : UNSAT;
+    }
+    
+    /**
+     * Converts this result into a boolean SAT answer.
+     * 
+     * @return Whether the CNF is satisfiable.
+     * 
+     * @throws SolverException If this result is {@link #UNKNOWN}.
+     */
+    public boolean isSatisfiable() throws SolverException {
+        if (this == UNKNOWN) {
+            throw new SolverException("Solver reached its limit before finding an answer");
+        }
+        return this == SAT;
+    }
+    
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A bounded cache for the results of SAT calls. The cache evicts entries according to an {@link EvictionPolicy} once
+ * its maximum size is reached; the size is measured either in entries or in (estimated) bytes. Optionally, entries
+ * expire after a fixed time.
+ * <p>
+ * Entries are looked up by the structure of the CNF (see {@link Cnf#equals(Object)}), so structurally identical CNFs
+ * from different sources share an entry.
+ * <p>
+ * This class is thread safe. A single cache may be shared by several {@link CachedSatSolver}s, e.g. one per analysis
+ * thread, as long as all of them use the same base CNF.
+ *
+ * @author Adam
+ */
+public class SatResultCache {
+
+    /**
+     * The strategies for choosing which entry to remove if the cache is full.
+     */
+    public static enum EvictionPolicy {
+
+        /**
+         * Removes the least recently used entry.
+         */
+        LRU,
+
+        /**
+         * Removes the least frequently used entry. Among entries with the same frequency, the least recently used one
+         * is removed.
+         */
+        LFU,
+    }
+
+    /**
+     * The unit in which the maximum size of the cache is measured.
+     */
+    public static enum SizeUnit {
+
+        /**
+         * The size is the number of entries.
+         */
+        ENTRIES,
+
+        /**
+         * The size is the estimated memory size of all cached CNFs in bytes, including their (compact) dictionaries.
+         */
+        BYTES,
+    }
+
+    /**
+     * A single entry of the cache.
+     */
+    private static class Entry {
+
+        private @NonNull Cnf key;
+
+        private boolean value;
+
+        private long weight;
+
+        private long creationTime;
+
+        private int frequency;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param key The key of this entry.
+         * @param value The cached value.
+         * @param weight The weight of this entry, in the unit of the cache size.
+         * @param creationTime The time this entry was created, in milliseconds.
+         */
+        public Entry(@NonNull Cnf key, boolean value, long weight, long creationTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.creationTime = creationTime;
+            this.frequency = 1;
+        }
+
+    }
+
+    private @NonNull EvictionPolicy policy;
+
+    private @NonNull SizeUnit sizeUnit;
+
+    private long maxSize;
+
+    private long expiryMillis;
+
+    /**
+     * All entries. For {@link EvictionPolicy#LRU}, this is in access-order.
+     */
+    private @NonNull Map<Cnf, Entry> entries;
+
+    /**
+     * For {@link EvictionPolicy#LFU}: all entries grouped by their frequency. Each group is in access-order.
+     */
+    private @NonNull Map<Integer, LinkedHashSet<Entry>> frequencies;
+
+    private int minFrequency;
+
+    private long currentSize;
+
+    private @NonNull LongAdder hits;
+
+    private @NonNull LongAdder misses;
+
+    private @NonNull LongAdder evictions;
+
+    /**
+     * Creates an unbounded cache.
+     */
+    public SatResultCache() {
+        this(EvictionPolicy.LRU, 0);
+    }
+
+    /**
+     * Creates a cache with the given maximum number of entries and no expiry.
+     *
+     * @param policy The policy to use for choosing entries to evict.
+     * @param maxEntries The maximum number of entries. &lt;= 0 means unbounded.
+     */
+    public SatResultCache(@NonNull EvictionPolicy policy, int maxEntries) {
+        this(policy, maxEntries, SizeUnit.ENTRIES, 0);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param policy The policy to use for choosing entries to evict.
+     * @param maxSize The maximum size of this cache, in the given unit. &lt;= 0 means unbounded.
+     * @param sizeUnit The unit of maxSize.
+     * @param expiryMillis The time in milliseconds after which an entry expires. &lt;= 0 means entries never expire.
+     */
+    public SatResultCache(@NonNull EvictionPolicy policy, long maxSize, @NonNull SizeUnit sizeUnit,
+            long expiryMillis) {
+
+        this.policy = policy;
+        this.maxSize = maxSize;
+        this.sizeUnit = sizeUnit;
+        this.expiryMillis = expiryMillis;
+
+        // LRU uses the access-order of the LinkedHashMap
+        this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+        this.frequencies = new HashMap<>();
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the cached result for the given CNF.
+     *
+     * @param cnf The CNF to get the result for.
+     *
+     * @return The cached result, or <code>null</code> if the CNF is not cached.
+     */
+    public @Nullable Boolean get(@NonNull Cnf cnf) {
+        Boolean result = null;
+
+        synchronized (this) {
+            Entry entry = entries.get(cnf);
+
+            if (entry != null && isExpired(entry)) {
+                remove(entry);
+                evictions.increment();
+                entry = null;
+            }
+
+            if (entry != null) {
+                if (policy == EvictionPolicy.LFU) {
+                    increaseFrequency(entry);
+                }
+                result = entry.value;
+            }
+        }
+
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores the result for the given CNF. If the cache is full, other entries are evicted. A {@link Cnf#compactCopy()
+     * compact copy} of the CNF is stored, so the given CNF may be modified afterwards, and the cache does not keep the
+     * dictionary of the given CNF alive.
+     *
+     * @param cnf The CNF to store the result for.
+     * @param result The result for the CNF.
+     */
+    public void put(@NonNull Cnf cnf, boolean result) {
+        // the cache is keyed by the structure of the CNF, so store a snapshot with its own, minimal dictionary
+        Cnf key = cnf.compactCopy();
+        long weight = sizeUnit == SizeUnit.BYTES ? getEstimatedMemorySize(key) : 1;
+
+        if (maxSize > 0 && weight > maxSize) {
+            // would evict everything else and still not fit
+            return;
+        }
+
+        synchronized (this) {
+            Entry old = entries.get(key);
+            if (old != null) {
+                remove(old);
+            }
+
+            // evict before inserting, so that the new entry is never the candidate
+            while (maxSize > 0 && currentSize + weight > maxSize) {
+                remove(findEvictionCandidate());
+                evictions.increment();
+            }
+
+            Entry entry = new Entry(key, result, weight, System.currentTimeMillis());
+            entries.put(key, entry);
+            currentSize += weight;
+
+            if (policy == EvictionPolicy.LFU) {
+                getFrequencyGroup(1).add(entry);
+                minFrequency = 1;
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory size of the given key, including its dictionary.
+     *
+     * @param key The key, as created by {@link Cnf#compactCopy()}.
+     *
+     * @return The estimated memory size in bytes.
+     */
+    static long getEstimatedMemorySize(@NonNull Cnf key) {
+        return key.getEstimatedMemorySize() + key.getDictionary().getEstimatedMemorySize();
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        frequencies.clear();
+        currentSize = 0;
+        minFrequency = 0;
+    }
+
+    /**
+     * Checks whether the given entry is expired.
+     *
+     * @param entry The entry to check.
+     *
+     * @return Whether the entry is expired.
+     */
+    private boolean isExpired(@NonNull Entry entry) {
+        return expiryMillis > 0 && System.currentTimeMillis() - entry.creationTime > expiryMillis;
+    }
+
+    /**
+     * Returns the group of entries with the given frequency. Creates an empty group, if needed.
+     *
+     * @param frequency The frequency.
+     *
+     * @return The group of entries with the given frequency.
+     */
+    private @NonNull LinkedHashSet<Entry> getFrequencyGroup(int frequency) {
+        LinkedHashSet<Entry> group = frequencies.get(frequency);
+        if (group == null) {
+            group = new LinkedHashSet<>();
+            frequencies.put(frequency, group);
+        }
+        return group;
+    }
+
+    /**
+     * Moves the given entry to the next frequency group.
+     *
+     * @param entry The entry that was accessed.
+     */
+    private void increaseFrequency(@NonNull Entry entry) {
+        LinkedHashSet<Entry> group = notNull(frequencies.get(entry.frequency));
+        group.remove(entry);
+        if (group.isEmpty()) {
+            frequencies.remove(entry.frequency);
+            if (minFrequency == entry.frequency) {
+                minFrequency++;
+            }
+        }
+
+        entry.frequency++;
+        getFrequencyGroup(entry.frequency).add(entry);
+    }
+
+    /**
+     * Finds the entry that should be evicted next, according to the {@link EvictionPolicy}.
+     *
+     * @return The entry to evict.
+     */
+    private @NonNull Entry findEvictionCandidate() {
+        Iterator<Entry> it;
+        if (policy == EvictionPolicy.LFU) {
+            it = notNull(frequencies.get(minFrequency)).iterator();
+        } else {
+            it = entries.values().iterator();
+        }
+        return notNull(it.next());
+    }
+
+    /**
+     * Removes the given entry from all internal data structures.
+     *
+     * @param entry The entry to remove.
+     */
+    private void remove(@NonNull Entry entry) {
+        entries.remove(entry.key);
+        currentSize -= entry.weight;
+
+        if (policy == EvictionPolicy.LFU) {
+            LinkedHashSet<Entry> group = notNull(frequencies.get(entry.frequency));
+            group.remove(entry);
+            if (group.isEmpty()) {
+                frequencies.remove(entry.frequency);
+                if (minFrequency == entry.frequency && !frequencies.isEmpty()) {
+                    // entries only ever move up by one, but removing may leave a gap
+                    int min = Integer.MAX_VALUE;
+                    for (Integer frequency : frequencies.keySet()) {
+                        min = Math.min(min, frequency);
+                    }
+                    minFrequency = min;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in this cache.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the current size of this cache, in the {@link SizeUnit} of this cache.
+     *
+     * @return The current size.
+     */
+    public synchronized long getSize() {
+        return currentSize;
+    }
+
+    /**
+     * Returns how often {@link #get(Cnf)} found a cached result.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how often {@link #get(Cnf)} did not find a cached result.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many entries were removed because the cache was full or because they expired.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public @NonNull String toString() {
+        return "SatResultCache[policy=" + policy + ", entries=" + getEntryCount() + ", size=" + getSize() + " "
+                + sizeUnit + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + "]";
+    }
+
+}
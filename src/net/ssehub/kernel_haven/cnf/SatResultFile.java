@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * An append-only file that stores the results of SAT calls across several runs. Each record stores the
+ * {@link Cnf#getFingerprint() fingerprint} and the {@link #getSize(Cnf) size} of the base CNF of the solver, the
+ * fingerprint and the size of the checked CNF, and the result.
+ * <p>
+ * When the file is opened, its content is memory-mapped and all records are loaded into memory. New results are
+ * appended to the end of the file. An incomplete record at the end of the file (e.g. if a previous run was killed
+ * while writing) is discarded. Files with an unknown header are overwritten.
+ * <p>
+ * Since only the fingerprints are stored, two different CNFs with the same fingerprint would share a record. With 64
+ * bit fingerprints, this is very unlikely, even for millions of records. As a cheap confirmation, a stored result is
+ * only returned if the number of rows and literals of both CNFs match, too.
+ * <p>
+ * This class is thread safe. While a file is open, it is exclusively locked; opening a file that is already used by
+ * another process (or another instance in this process) fails.
+ *
+ * @author Adam
+ */
+class SatResultFile implements Closeable {
+
+    /**
+     * "KHSR" (KernelHaven SAT results).
+     */
+    private static final int MAGIC = 0x4B485352;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Base fingerprint, base size, CNF fingerprint, CNF size, result.
+     */
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 8 + 1;
+
+    private @NonNull File file;
+
+    private @NonNull FileChannel channel;
+
+    /**
+     * Base fingerprint -&gt; CNF fingerprint -&gt; record.
+     */
+    private @NonNull Map<Long, Map<Long, Record>> results;
+
+    private @NonNull ByteBuffer writeBuffer;
+
+    /**
+     * The sizes and the result of a stored SAT call.
+     */
+    private static final class Record {
+
+        private final long baseSize;
+
+        private final long cnfSize;
+
+        private final boolean result;
+
+        /**
+         * Creates a record.
+         *
+         * @param baseSize The size of the base CNF.
+         * @param cnfSize The size of the checked CNF.
+         * @param result The result of the SAT call.
+         */
+        Record(long baseSize, long cnfSize, boolean result) {
+            this.baseSize = baseSize;
+            this.cnfSize = cnfSize;
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * Opens the given file and locks it exclusively. If it does not exist, it is created.
+     *
+     * @param file The file to store the results in.
+     *
+     * @throws IOException If opening, locking, reading or initializing the file fails.
+     */
+    public SatResultFile(@NonNull File file) throws IOException {
+        this.file = file;
+        this.results = new HashMap<>();
+        this.writeBuffer = ByteBuffer.allocate(RECORD_SIZE);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            lock();
+            load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Locks the whole file exclusively. The lock is released when the channel is closed.
+     *
+     * @throws IOException If the file is already locked, or locking fails.
+     */
+    private void lock() throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("SAT result file " + file + " is already used by another process");
+        }
+    }
+
+    /**
+     * Returns the size of the given CNF, as it is stored in the records of this file: the number of rows in the upper
+     * 32 bits, and the number of literals in the lower 32 bits.
+     *
+     * @param cnf The CNF to get the size of.
+     *
+     * @return The size of the CNF.
+     */
+    public static long getSize(@NonNull Cnf cnf) {
+        return ((long) cnf.getRowCount() << 32) | (cnf.getLiteralCount() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads all records from the file. Writes a new header, if the file is empty or has an invalid header.
+     *
+     * @throws IOException If reading or writing the file fails.
+     */
+    private void load() throws IOException {
+        long size = channel.size();
+        boolean validHeader = false;
+        long end = HEADER_SIZE;
+
+        if (size >= HEADER_SIZE) {
+            MappedByteBuffer content = channel.map(MapMode.READ_ONLY, 0, size);
+            validHeader = content.getInt() == MAGIC && content.getInt() == VERSION;
+
+            if (validHeader) {
+                while (content.remaining() >= RECORD_SIZE) {
+                    long base = content.getLong();
+                    long baseSize = content.getLong();
+                    long cnf = content.getLong();
+                    long cnfSize = content.getLong();
+                    boolean result = content.get() != 0;
+                    getResults(base).put(cnf, new Record(baseSize, cnfSize, result));
+                }
+                end = content.position();
+            }
+        }
+
+        if (!validHeader) {
+            results.clear();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            writeFully(header, 0);
+        }
+
+        // discard an incomplete record at the end
+        channel.truncate(end);
+        channel.position(end);
+    }
+
+    /**
+     * Returns the results for the given base fingerprint. Creates an empty map, if needed.
+     *
+     * @param base The fingerprint of the base CNF.
+     *
+     * @return The results for the base CNF.
+     */
+    private @NonNull Map<Long, Record> getResults(long base) {
+        Map<Long, Record> result = results.get(base);
+        if (result == null) {
+            result = new HashMap<>();
+            results.put(base, result);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given buffer completely to the given position in the file.
+     *
+     * @param buffer The buffer to write.
+     * @param position The position in the file.
+     *
+     * @throws IOException If writing fails.
+     */
+    private void writeFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    /**
+     * Returns the stored result. A result stored for CNFs with the same fingerprints, but different sizes, is not
+     * returned.
+     *
+     * @param base The fingerprint of the base CNF of the solver.
+     * @param baseSize The {@link #getSize(Cnf) size} of the base CNF of the solver.
+     * @param cnf The fingerprint of the checked CNF.
+     * @param cnfSize The {@link #getSize(Cnf) size} of the checked CNF.
+     *
+     * @return The stored result, or <code>null</code> if none is stored.
+     */
+    public synchronized @Nullable Boolean get(long base, long baseSize, long cnf, long cnfSize) {
+        Map<Long, Record> baseResults = results.get(base);
+        Record record = baseResults != null ? baseResults.get(cnf) : null;
+
+        Boolean result = null;
+        if (record != null && record.baseSize == baseSize && record.cnfSize == cnfSize) {
+            result = record.result;
+        }
+        return result;
+    }
+
+    /**
+     * Stores a result. The result is appended to the file, unless the same result is already stored.
+     *
+     * @param base The fingerprint of the base CNF of the solver.
+     * @param baseSize The {@link #getSize(Cnf) size} of the base CNF of the solver.
+     * @param cnf The fingerprint of the checked CNF.
+     * @param cnfSize The {@link #getSize(Cnf) size} of the checked CNF.
+     * @param result The result of the SAT call.
+     *
+     * @throws IOException If writing to the file fails.
+     */
+    public synchronized void put(long base, long baseSize, long cnf, long cnfSize, boolean result)
+            throws IOException {
+        Record old = getResults(base).put(cnf, new Record(baseSize, cnfSize, result));
+        if (old == null || old.baseSize != baseSize || old.cnfSize != cnfSize || old.result != result) {
+            writeBuffer.clear();
+            writeBuffer.putLong(base).putLong(baseSize).putLong(cnf).putLong(cnfSize).put((byte) (result ? 1 : 0))
+                    .flip();
+            writeFully(writeBuffer, channel.position());
+            channel.position(channel.position() + RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Returns the file that this object stores results in.
+     *
+     * @return The file.
+     */
+    public @NonNull File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+}
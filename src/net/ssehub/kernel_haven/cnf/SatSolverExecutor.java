@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * The thread pool shared by all SAT solvers that solve in parallel. The threads are daemon threads, so that they don't
+ * prevent the JVM from exiting.
+ *
+ * @author Adam
+ */
+final class SatSolverExecutor {
+
+    private static @Nullable ExecutorService executor;
+
+    /**
+     * Don't allow any instances.
+     */
+    private SatSolverExecutor() {
+    }
+
+    /**
+     * Returns the shared thread pool. Threads are created as needed, and re-used when they become idle.
+     *
+     * @return The thread pool.
+     */
+    public static synchronized @NonNull ExecutorService get() {
+        ExecutorService result = executor;
+        if (result == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            result = Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "SatSolver-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor = result;
+        }
+        return result;
+    }
+
+}
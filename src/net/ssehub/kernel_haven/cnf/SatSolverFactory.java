@@ -15,9 +15,18 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 import net.ssehub.kernel_haven.SetUpException;
+import net.ssehub.kernel_haven.cnf.SatResultCache.EvictionPolicy;
+import net.ssehub.kernel_haven.cnf.SatResultCache.SizeUnit;
 import net.ssehub.kernel_haven.config.Configuration;
 import net.ssehub.kernel_haven.config.EnumSetting;
+import net.ssehub.kernel_haven.config.Setting;
+import net.ssehub.kernel_haven.config.Setting.Type;
 import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.util.null_checks.Nullable;
@@ -32,8 +41,68 @@ public class SatSolverFactory {
     public static final @NonNull EnumSetting<@NonNull SolverType> SOLVER_SETTING
         = new EnumSetting<>("cnf.solver", SolverType.class, true, SolverType.SAT4J, "Defines which SAT solver to use.");
     
+    public static final @NonNull Setting<@NonNull Integer> CACHE_SIZE_SETTING
+        = new Setting<>("cnf.solver.cache.size", Type.INTEGER, true, "0", "The maximum size of the cache of "
+            + "cached SAT solvers, in the unit defined by cnf.solver.cache.size_unit. 0 means unlimited.");
+    
+    public static final @NonNull EnumSetting<@NonNull SizeUnit> CACHE_SIZE_UNIT_SETTING
+        = new EnumSetting<>("cnf.solver.cache.size_unit", SizeUnit.class, true, SizeUnit.ENTRIES,
+            "The unit of cnf.solver.cache.size: either the number of entries, or the estimated memory size in bytes.");
+    
+    public static final @NonNull EnumSetting<@NonNull EvictionPolicy> CACHE_POLICY_SETTING
+        = new EnumSetting<>("cnf.solver.cache.policy", EvictionPolicy.class, true, EvictionPolicy.LRU,
+            "Defines which entries are removed from the cache of cached SAT solvers if it is full.");
+    
+    public static final @NonNull Setting<@NonNull Integer> CACHE_EXPIRY_SETTING
+        = new Setting<>("cnf.solver.cache.expiry", Type.INTEGER, true, "0", "The time in milliseconds after which "
+            + "entries in the cache of cached SAT solvers expire. 0 means that entries never expire.");
+    
+    public static final @NonNull Setting<@Nullable File> CACHE_FILE_SETTING
+        = new Setting<>("cnf.solver.cache.file", Type.FILE, false, null, "A file to persistently store the results "
+            + "of SAT calls in. If set, all SAT solvers first look up the result in this file, and store new results "
+            + "in it. This way, results are re-used in later runs. The file is created if it does not exist.");
+    
+    public static final @NonNull Setting<@NonNull Integer> THREADS_SETTING
+        = new Setting<>("cnf.solver.threads", Type.INTEGER, true, "1", "The number of threads that a single "
+            + "CryptoMiniSat solver uses. Values greater than 1 let large single queries use idle cores. Must be at "
+            + "least 1.");
+    
+    public static final @NonNull Setting<@NonNull Integer> THREAD_BUDGET_SETTING
+        = new Setting<>("cnf.solver.threads.budget", Type.INTEGER, true, "0", "The maximum number of threads that "
+            + "all multi-threaded CryptoMiniSat solvers (see cnf.solver.threads) may use at the same time. If "
+            + "several analysis threads solve concurrently, the solve calls wait until enough threads are available, "
+            + "so that the machine is not oversubscribed. 0 means the number of available processors.");
+    
+    public static final @NonNull Setting<@NonNull Integer> TIMEOUT_SETTING
+        = new Setting<>("cnf.solver.timeout", Type.INTEGER, true, "180000", "The maximum time in milliseconds that "
+            + "a single SAT call may take. If it is reached, the call has no answer (UNKNOWN); isSatisfiable() throws "
+            + "a SolverException in this case. Defaults to 180000 (3 minutes), which is also the built-in timeout of "
+            + "Sat4j. 0 means no limit; Sat4j based solvers still stop after their built-in timeout in this case.");
+    
+    public static final @NonNull Setting<@NonNull Integer> MAX_CONFLICTS_SETTING
+        = new Setting<>("cnf.solver.max_conflicts", Type.INTEGER, true, "0", "The maximum number of conflicts "
+            + "that a single SAT call may encounter. If it is reached, the call has no answer (UNKNOWN); "
+            + "isSatisfiable() throws a SolverException in this case. 0 means no limit.");
+    
     private static @NonNull SolverType configuredType = SolverType.SAT4J;
     
+    private static @NonNull SolverLimits configuredLimits = SolverLimits.DEFAULT;
+    
+    private static int configuredThreads = 1;
+    
+    private static @NonNull SolverThreadBudget threadBudget
+            = new SolverThreadBudget(Runtime.getRuntime().availableProcessors());
+    
+    private static int configuredCacheSize = 0;
+    
+    private static @NonNull SizeUnit configuredCacheSizeUnit = SizeUnit.ENTRIES;
+    
+    private static @NonNull EvictionPolicy configuredCachePolicy = EvictionPolicy.LRU;
+    
+    private static int configuredCacheExpiry = 0;
+    
+    private static @Nullable SatResultFile resultFile;
+    
     /**
      * Enumeration of all supported Sat solvers.
      */
@@ -45,11 +114,26 @@ public class SatSolverFactory {
          */
         SAT4J,
         
+        /**
+         * A solver using <a href="https://www.sat4j.org/">Sat4j</a>, which keeps a single solver instance for all
+         * calls. The base CNF is only loaded once, and learned clauses are kept between calls. This is a lot faster
+         * than {@link #SAT4J} if a lot of CNFs are checked against the same base CNF.
+         */
+        SAT4J_INCREMENTAL,
+        
         /**
          * A solver using <a href="https://github.com/msoos/cryptominisat">CryptoMiniSat</a>. This uses JNI to use the
          * C++ sat solver; currently only Linux 64 bit is supported. This solver is probalby a lot faster than Sat4j.
          */
         CRYPTOMINISAT,
+        
+        /**
+         * Runs several differently configured solvers (Sat4j with different heuristics, and CryptoMiniSat if
+         * available) in parallel, and uses the answer of the first one that finishes. The others are cancelled. This
+         * is useful for hard problems on machines with a lot of cores, since it is about as fast as the best solver
+         * for each problem.
+         */
+        PORTFOLIO,
     }
     
     /**
@@ -62,10 +146,100 @@ public class SatSolverFactory {
     public static void initialize(@NonNull Configuration config) throws SetUpException {
         config.registerSetting(SOLVER_SETTING);
         configuredType = config.getValue(SOLVER_SETTING);
+        
+        config.registerSetting(CACHE_SIZE_SETTING);
+        config.registerSetting(CACHE_SIZE_UNIT_SETTING);
+        config.registerSetting(CACHE_POLICY_SETTING);
+        config.registerSetting(CACHE_EXPIRY_SETTING);
+        configuredCacheSize = config.getValue(CACHE_SIZE_SETTING);
+        configuredCacheSizeUnit = config.getValue(CACHE_SIZE_UNIT_SETTING);
+        configuredCachePolicy = config.getValue(CACHE_POLICY_SETTING);
+        configuredCacheExpiry = config.getValue(CACHE_EXPIRY_SETTING);
+        
+        config.registerSetting(CACHE_FILE_SETTING);
+        File cacheFile = config.getValue(CACHE_FILE_SETTING);
+        setResultFile(cacheFile);
+        
+        config.registerSetting(THREADS_SETTING);
+        config.registerSetting(THREAD_BUDGET_SETTING);
+        setThreads(config.getValue(THREADS_SETTING), config.getValue(THREAD_BUDGET_SETTING));
+        
+        config.registerSetting(TIMEOUT_SETTING);
+        config.registerSetting(MAX_CONFLICTS_SETTING);
+        int timeout = config.getValue(TIMEOUT_SETTING);
+        int maxConflicts = config.getValue(MAX_CONFLICTS_SETTING);
+        if (timeout < 0 || maxConflicts < 0) {
+            throw new SetUpException(TIMEOUT_SETTING.getKey() + " and " + MAX_CONFLICTS_SETTING.getKey()
+                    + " must not be negative");
+        }
+        setLimits(new SolverLimits(timeout, maxConflicts));
 
         Logger.get().logDebug2("Creating SAT solvers of type ", configuredType);
     }
     
+    /**
+     * Sets the limits for each SAT call. Only affects solvers that are created afterwards.
+     * 
+     * @param limits The limits for each call.
+     */
+    static synchronized void setLimits(@NonNull SolverLimits limits) {
+        configuredLimits = limits;
+    }
+    
+    /**
+     * Sets the number of threads that CryptoMiniSat solvers use, and the budget for all of their threads. Only affects
+     * solvers that are created afterwards.
+     * 
+     * @param numThreads The number of threads of a single solver.
+     * @param budget The maximum number of threads of all solvers; 0 for the number of available processors.
+     * 
+     * @throws SetUpException If one of the values is out of range.
+     */
+    static synchronized void setThreads(int numThreads, int budget) throws SetUpException {
+        if (numThreads < 1) {
+            throw new SetUpException(THREADS_SETTING.getKey() + " must be at least 1, got " + numThreads);
+        }
+        if (budget < 0) {
+            throw new SetUpException(THREAD_BUDGET_SETTING.getKey() + " must not be negative, got " + budget);
+        }
+        
+        configuredThreads = numThreads;
+        threadBudget = new SolverThreadBudget(budget != 0 ? budget : Runtime.getRuntime().availableProcessors());
+        
+        if (numThreads > threadBudget.getSize()) {
+            Logger.get().logWarning("CryptoMiniSat solvers are limited to the thread budget of "
+                    + threadBudget.getSize() + " threads, instead of " + numThreads);
+        }
+    }
+    
+    /**
+     * Sets the file to persistently store SAT results in. Closes the previously used file, if there was one.
+     * 
+     * @param file The file to store results in; <code>null</code> to disable the persistent cache.
+     * 
+     * @throws SetUpException If opening the file fails.
+     */
+    static synchronized void setResultFile(@Nullable File file) throws SetUpException {
+        SatResultFile old = resultFile;
+        resultFile = null;
+        if (old != null) {
+            try {
+                old.close();
+            } catch (IOException e) {
+                Logger.get().logExceptionWarning("Could not close SAT result file " + old.getFile(), e);
+            }
+        }
+        
+        if (file != null) {
+            try {
+                resultFile = new SatResultFile(file);
+            } catch (IOException e) {
+                throw new SetUpException("Could not open SAT result file " + file, e);
+            }
+            Logger.get().logDebug2("Storing SAT results in ", file);
+        }
+    }
+    
     /**
      * Creates a SAT solver as specified in the configuration. By default, is Sat4j (unless configured otherwise).
      * 
@@ -91,6 +265,103 @@ public class SatSolverFactory {
         return createSolver(configuredType, cnf, cached);
     }
     
+    /**
+     * Creates a cached SAT solver as specified in the configuration, which stores its results in the given cache. A
+     * single cache can be shared between several solvers (e.g. one per thread) that all use the same base CNF.
+     * 
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * @param cache The cache to store results in; see {@link #createCache()}.
+     * 
+     * @return The solver.
+     */
+    public static @NonNull ISatSolver createSolver(@Nullable Cnf cnf, @NonNull SatResultCache cache) {
+        return new CachedSatSolver(createSolver(configuredType, cnf, false), cache);
+    }
+    
+    /**
+     * Creates a new, empty cache for SAT results, with the size, eviction policy and expiry time specified in the
+     * configuration.
+     * 
+     * @return A new cache.
+     */
+    public static @NonNull SatResultCache createCache() {
+        return new SatResultCache(configuredCachePolicy, configuredCacheSize, configuredCacheSizeUnit,
+                configuredCacheExpiry);
+    }
+    
+    /**
+     * Creates a batch SAT solver, which solves the CNFs of a batch in parallel on all available processors. It uses
+     * one solver of the type specified in the configuration per thread.
+     * 
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * 
+     * @return The batch solver.
+     */
+    public static @NonNull IBatchSatSolver createBatchSolver(@Nullable Cnf cnf) {
+        return createBatchSolver(cnf, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Creates a batch SAT solver, which solves the CNFs of a batch in parallel. It uses one solver of the type
+     * specified in the configuration per thread.
+     * 
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * @param numThreads The maximum number of threads to use for a single batch. Must be at least 1.
+     * 
+     * @return The batch solver.
+     */
+    public static @NonNull IBatchSatSolver createBatchSolver(@Nullable Cnf cnf, int numThreads) {
+        return new ParallelBatchSatSolver(createInstanceSupplier(configuredType, cnf), numThreads);
+    }
+    
+    /**
+     * Creates a thread-safe SAT solver, which is backed by a pool of solvers of the type specified in the
+     * configuration. Each call borrows a solver from the pool; if all solvers are in use, the call waits until one
+     * is available. Solvers are only created as needed, but never more than the given size.
+     * <p>
+     * A single pooled solver should be shared by all threads that check CNFs against the same base CNF. This is
+     * much cheaper than creating a solver per thread: the clauses of the base CNF are only computed once and shared
+     * by all solvers in the pool, and the size of the pool bounds the memory used by the solvers.
+     * 
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * @param size The maximum number of solvers in the pool, i.e. the maximum number of concurrent calls. Must be at
+     *      least 1.
+     * 
+     * @return The thread-safe solver.
+     */
+    public static @NonNull ISatSolver createPooledSolver(@Nullable Cnf cnf, int size) {
+        return new PooledSatSolver(createInstanceSupplier(configuredType, cnf), size);
+    }
+    
+    /**
+     * Creates a supplier for independent solver instances with the same base CNF. For single-shot solvers, all
+     * instances share the clauses of the base CNF.
+     * 
+     * @param type The type of solver to create.
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * 
+     * @return A supplier for new solver instances.
+     */
+    private static @NonNull Supplier<@NonNull ISatSolver> createInstanceSupplier(@NonNull SolverType type,
+            @Nullable Cnf cnf) {
+        
+        ISatSolver prototype = createUncachedSolver(type, cnf);
+        AtomicReference<@Nullable ISatSolver> unused = new AtomicReference<>(prototype);
+        
+        return () -> {
+            // the prototype itself is the first instance
+            ISatSolver instance = unused.getAndSet(null);
+            if (instance == null) {
+                if (prototype instanceof AbstractSingleShotSatSolver) {
+                    instance = ((AbstractSingleShotSatSolver) prototype).copy();
+                } else {
+                    instance = createUncachedSolver(type, cnf);
+                }
+            }
+            return addPersistentCache(instance, cnf);
+        };
+    }
+    
     /**
      * Creates a SAT solver instance with the given type.
      * 
@@ -117,6 +388,62 @@ public class SatSolverFactory {
      */
     public static @NonNull ISatSolver createSolver(@NonNull SolverType type, @Nullable Cnf cnf, boolean cached) {
         
+        ISatSolver result = addPersistentCache(createUncachedSolver(type, cnf), cnf);
+        
+        if (cached) {
+            result = new CachedSatSolver(result, createCache());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Wraps a {@link PersistentCachedSatSolver} around the given solver, if a result file is configured.
+     * 
+     * @param solver The solver to wrap.
+     * @param cnf The base CNF of the solver; <code>null</code> if it has none.
+     * 
+     * @return The wrapped solver, or the given solver if no result file is configured.
+     */
+    private static @NonNull ISatSolver addPersistentCache(@NonNull ISatSolver solver, @Nullable Cnf cnf) {
+        ISatSolver result = solver;
+        
+        SatResultFile file = resultFile;
+        if (file != null) {
+            result = new PersistentCachedSatSolver(result, cnf != null ? cnf : new Cnf(), file);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Sets the configured {@link SolverLimits} on the given solver.
+     * 
+     * @param solver A solver created by {@link #createUncachedSolver(SolverType, Cnf)}.
+     */
+    private static void applyLimits(@NonNull ISatSolver solver) {
+        SolverLimits limits = configuredLimits;
+        if (limits.isLimited()) {
+            if (solver instanceof AbstractSingleShotSatSolver) {
+                ((AbstractSingleShotSatSolver) solver).setLimits(limits);
+            } else if (solver instanceof IncrementalSat4jSolver) {
+                ((IncrementalSat4jSolver) solver).setLimits(limits);
+            } else if (solver instanceof PortfolioSatSolver) {
+                ((PortfolioSatSolver) solver).setLimits(limits);
+            }
+        }
+    }
+    
+    /**
+     * Creates a SAT solver instance with the given type, without any caches.
+     * 
+     * @param type The type of solver to create.
+     * @param cnf The base CNF. Leave this as <code>null</code> if no base CNF is wanted.
+     * 
+     * @return An instance of the given solver.
+     */
+    private static @NonNull ISatSolver createUncachedSolver(@NonNull SolverType type, @Nullable Cnf cnf) {
+        
         ISatSolver result;
         
         switch (type) {
@@ -129,11 +456,27 @@ public class SatSolverFactory {
             }
             break;
             
+        case SAT4J_INCREMENTAL:
+            if (cnf != null) {
+                result = new IncrementalSat4jSolver(cnf);
+            } else {
+                result = new IncrementalSat4jSolver();
+            }
+            break;
+            
         case CRYPTOMINISAT:
             if (cnf != null) {
-                result = new CryptoMiniSatSolver(cnf);
+                result = new CryptoMiniSatSolver(cnf, configuredThreads, threadBudget);
             } else {
-                result = new CryptoMiniSatSolver();
+                result = new CryptoMiniSatSolver(configuredThreads, threadBudget);
+            }
+            break;
+            
+        case PORTFOLIO:
+            if (cnf != null) {
+                result = new PortfolioSatSolver(cnf, configuredThreads, threadBudget);
+            } else {
+                result = new PortfolioSatSolver(configuredThreads, threadBudget);
             }
             break;
             
@@ -142,9 +485,7 @@ public class SatSolverFactory {
             throw new RuntimeException("Unsupported type of solver: " + type);
         }
         
-        if (cached) {
-            result = new CachedSatSolver(result);
-        }
+        applyLimits(result);
         
         return result;
     }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * The limits for a single SAT call. If a solver reaches one of these limits, the call returns
+ * {@link SatResult#UNKNOWN}. Instances of this class are immutable.
+ *
+ * @author Adam
+ */
+public class SolverLimits {
+
+    /**
+     * No limits at all.
+     */
+    public static final @NonNull SolverLimits NONE = new SolverLimits(0, 0);
+    
+    /**
+     * The default limits: a timeout of 180 seconds, which is also the built-in timeout of Sat4j.
+     */
+    public static final @NonNull SolverLimits DEFAULT = new SolverLimits(180000, 0);
+    
+    private long timeoutMs;
+    
+    private long maxConflicts;
+    
+    /**
+     * Creates new {@link SolverLimits}.
+     * 
+     * @param timeoutMs The maximum wall-clock time of a single call, in milliseconds. 0 means no limit.
+     * @param maxConflicts The maximum number of conflicts of a single call. 0 means no limit.
+     */
+    public SolverLimits(long timeoutMs, long maxConflicts) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative, got " + timeoutMs);
+        }
+        if (maxConflicts < 0) {
+            throw new IllegalArgumentException("Maximum number of conflicts must not be negative, got "
+                    + maxConflicts);
+        }
+        this.timeoutMs = timeoutMs;
+        this.maxConflicts = maxConflicts;
+    }
+    
+    /**
+     * Returns the maximum wall-clock time of a single call.
+     * 
+     * @return The timeout in milliseconds; 0 if there is no limit.
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+    
+    /**
+     * Returns the maximum number of conflicts of a single call.
+     * 
+     * @return The maximum number of conflicts; 0 if there is no limit.
+     */
+    public long getMaxConflicts() {
+        return maxConflicts;
+    }
+    
+    /**
+     * Returns whether any limit is set.
+     * 
+     * @return Whether a timeout or a maximum number of conflicts is set.
+     */
+    public boolean isLimited() {
+        return timeoutMs != 0 || maxConflicts != 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "SolverLimits[timeoutMs=" + timeoutMs + ", maxConflicts=" + maxConflicts + "]";
+    }
+    
+}
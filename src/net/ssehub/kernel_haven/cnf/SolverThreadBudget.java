@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import java.util.concurrent.Semaphore;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A budget for the threads used by multi-threaded native solvers. Each solve call reserves as many threads as its
+ * solver uses, and waits if the budget is exhausted. This way, several analysis threads that each run a multi-threaded
+ * solver don't oversubscribe the machine.
+ *
+ * @author Adam
+ */
+class SolverThreadBudget {
+
+    private @NonNull Semaphore permits;
+
+    private int size;
+
+    /**
+     * Creates a new {@link SolverThreadBudget}.
+     *
+     * @param size The maximum number of solver threads that may run at the same time. Must be at least 1.
+     */
+    public SolverThreadBudget(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Thread budget must be at least 1, got " + size);
+        }
+        this.permits = new Semaphore(size, true);
+        this.size = size;
+    }
+
+    /**
+     * Returns the maximum number of solver threads that may run at the same time.
+     *
+     * @return The size of this budget.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Reserves the given number of threads. Waits until enough threads are available. Requests for more threads
+     * than the size of this budget are limited to the size. Each call must be followed by a call to
+     * {@link #release(int)} with the returned number.
+     *
+     * @param numThreads The number of threads to reserve. Must be at least 1.
+     *
+     * @return The number of threads that have been reserved; at most {@link #getSize()}.
+     *
+     * @throws SolverException If the thread is interrupted while waiting.
+     */
+    public int acquire(int numThreads) throws SolverException {
+        int result = Math.min(numThreads, size);
+        try {
+            permits.acquire(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException("Interrupted while waiting for solver threads");
+        }
+        return result;
+    }
+
+    /**
+     * Releases threads that have been reserved by {@link #acquire(int)}.
+     *
+     * @param numThreads The number of threads returned by {@link #acquire(int)}.
+     */
+    public void release(int numThreads) {
+        permits.release(numThreads);
+    }
+
+    /**
+     * Returns the number of threads that are currently not reserved.
+     *
+     * @return The number of available threads.
+     */
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A CNF converter using the Tseitin transformation: every conjunction and disjunction that is not on the top level of
+ * the formula is replaced by a new variable, which is defined to be equivalent to it. The resulting CNF is
+ * equisatisfiable to the formula, and its size is linear in the size of the formula.
+ * <p>
+ * The conversion works on the negation normal form of the formula (see {@link NnfFormula}): nested conjunctions and
+ * disjunctions are flattened, so <code>A || B || C</code> needs only one new variable, and constants are propagated
+ * away. The conversion does not use recursion, so arbitrarily deep formulas can be converted. Structurally equal
+ * sub-formulas are only handled once, so the conversion time is proportional to the number of distinct
+ * sub-formulas.
+ * <p>
+ * The new variables are named {@value #AUX_PREFIX} followed by a hash of the sub-formula that they stand for. Thus,
+ * structurally equal formulas are converted to equal CNFs, and CNFs created by different conversions can safely be
+ * combined: the same new variable always has the same meaning. Variables in the formula must not start with
+ * {@value #AUX_PREFIX}.
+ *
+ * @author Adam
+ */
+public class TseitinCnfConverter implements IFormulaToCnfConverter {
+
+    /**
+     * The prefix of the names of new variables.
+     */
+    public static final @NonNull String AUX_PREFIX = "TSEITIN_";
+
+    /**
+     * The "literal" of a sub-formula that is constantly true. The negation is {@link #FALSE}.
+     */
+    private static final int TRUE = Integer.MAX_VALUE;
+
+    /**
+     * The "literal" of a sub-formula that is constantly false. The negation is {@link #TRUE}.
+     */
+    private static final int FALSE = -TRUE;
+
+    private static final int POSITIVE = 1;
+
+    private static final int NEGATIVE = 2;
+
+    private static final int BOTH = POSITIVE | NEGATIVE;
+
+    private static final long SEED = 0x4f1bbcdcbfa53e0bL;
+
+    private boolean polarityAware;
+
+    /**
+     * Creates a converter that uses the full Tseitin transformation, i.e. each new variable is equivalent to the
+     * sub-formula it replaces.
+     */
+    public TseitinCnfConverter() {
+        this(false);
+    }
+
+    /**
+     * Creates a converter.
+     *
+     * @param polarityAware If <code>true</code>, new variables are only defined in the direction that is needed by
+     *      the polarity of the sub-formula they replace (Plaisted-Greenbaum); otherwise, both directions are defined.
+     */
+    protected TseitinCnfConverter(boolean polarityAware) {
+        this.polarityAware = polarityAware;
+    }
+
+    @Override
+    public @NonNull Cnf convert(@NonNull Formula formula) throws ConverterException {
+        return convert(formula, new VariableDictionary());
+    }
+    
+    @Override
+    public @NonNull Cnf convert(@NonNull Formula formula, @NonNull VariableDictionary dictionary)
+            throws ConverterException {
+        
+        return new Conversion(dictionary).convert(NnfFormula.create(formula));
+    }
+
+    /**
+     * The state of a single conversion.
+     */
+    private class Conversion {
+
+        private @NonNull Cnf result;
+
+        private @NonNull VariableDictionary dictionary;
+
+        /**
+         * The polarities in which new variables are already defined.
+         */
+        private @NonNull Map<Integer, Integer> defined;
+
+        /**
+         * Creates the state for a new conversion.
+         * 
+         * @param dictionary The dictionary for the result.
+         */
+        public Conversion(@NonNull VariableDictionary dictionary) {
+            this.result = new Cnf(dictionary, 1);
+            this.dictionary = dictionary;
+            this.defined = new HashMap<>();
+        }
+
+        /**
+         * Converts the given formula.
+         *
+         * @param nnf The formula to convert.
+         *
+         * @return The CNF for the formula.
+         */
+        public @NonNull Cnf convert(@NonNull NnfFormula nnf) {
+            if (nnf.isFalse()) {
+                addRow(new int[0]);
+            } else if (!nnf.isTrue()) {
+                convertNodes(nnf);
+            }
+            return result;
+        }
+
+        /**
+         * Converts the nodes of the given (non-constant) formula, and adds the rows to the result.
+         *
+         * @param nnf The formula to convert.
+         */
+        private void convertNodes(@NonNull NnfFormula nnf) {
+            // the top level conjunction is split into separate rows, and disjunctions directly below it are rows
+            int root = nnf.getRoot();
+            List<int @NonNull []> rows = new ArrayList<>();
+            int[] conjuncts = nnf.getKind(root) == NnfFormula.AND ? getOperands(nnf, root) : new int[] {root};
+            for (int conjunct : conjuncts) {
+                if (nnf.getKind(conjunct) == NnfFormula.OR) {
+                    rows.add(getOperands(nnf, conjunct));
+                } else {
+                    rows.add(new int[] {conjunct});
+                }
+            }
+
+            // only the nodes below the rows need a literal; operands always come before the node itself
+            boolean[] needed = new boolean[nnf.getNumNodes()];
+            for (int[] row : rows) {
+                for (int node : row) {
+                    needed[node] = true;
+                }
+            }
+            for (int node = root; node >= 0; node--) {
+                if (needed[node]) {
+                    for (int i = 0; i < nnf.getNumOperands(node); i++) {
+                        needed[nnf.getOperand(node, i)] = true;
+                    }
+                }
+            }
+
+            int[] literals = new int[nnf.getNumNodes()];
+            for (int node = 0; node <= root; node++) {
+                if (!needed[node]) {
+                    continue;
+                }
+                if (nnf.getKind(node) == NnfFormula.LITERAL) {
+                    int literal = nnf.getLiteral(node);
+                    int id = dictionary.getId(nnf.getVariableName(Math.abs(literal)));
+                    literals[node] = literal < 0 ? -id : id;
+                } else {
+                    int[] operandLiterals = new int[nnf.getNumOperands(node)];
+                    for (int i = 0; i < operandLiterals.length; i++) {
+                        operandLiterals[i] = literals[nnf.getOperand(node, i)];
+                    }
+                    literals[node] = define(nnf.getKind(node) == NnfFormula.AND, operandLiterals);
+                }
+            }
+
+            for (int[] row : rows) {
+                int[] rowLiterals = new int[row.length];
+                for (int i = 0; i < row.length; i++) {
+                    rowLiterals[i] = literals[row[i]];
+                }
+                addRow(rowLiterals);
+            }
+        }
+
+        /**
+         * Returns the operands of the given node.
+         *
+         * @param nnf The formula that the node belongs to.
+         * @param node An AND or OR node.
+         *
+         * @return The operand nodes.
+         */
+        private int @NonNull [] getOperands(@NonNull NnfFormula nnf, int node) {
+            int[] result = new int[nnf.getNumOperands(node)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = nnf.getOperand(node, i);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the literal for an AND or OR node. Creates a new variable and adds its definition to the result, if
+         * necessary.
+         *
+         * @param and Whether the node is a conjunction; otherwise, it is a disjunction.
+         * @param operandLiterals The literals of the operands of the node.
+         *
+         * @return The literal representing the node.
+         */
+        private int define(boolean and, int @NonNull [] operandLiterals) {
+
+            // an AND is the negation of an OR with negated operands
+            int[] clause = operandLiterals;
+            if (and) {
+                for (int i = 0; i < clause.length; i++) {
+                    clause[i] = -clause[i];
+                }
+            }
+            clause = simplifyClause(clause);
+
+            int literal;
+            if (clause == null) {
+                literal = TRUE;
+            } else if (clause.length == 0) {
+                literal = FALSE;
+            } else if (clause.length == 1) {
+                literal = clause[0];
+            } else {
+                int polarity = BOTH;
+                if (polarityAware) {
+                    // in negation normal form, every node occurs positively; for an AND, we define the OR with
+                    // negated operands, which occurs negatively
+                    polarity = and ? NEGATIVE : POSITIVE;
+                }
+                literal = defineOr(clause, polarity);
+            }
+
+            return and ? -literal : literal;
+        }
+
+        /**
+         * Creates (or re-uses) a new variable <code>x</code> for the disjunction of the given literals, and adds
+         * <code>x -&gt; (l1 || ... || ln)</code> for positive polarity, and <code>(l1 || ... || ln) -&gt; x</code> for
+         * negative polarity.
+         *
+         * @param clause The literals of the disjunction; at least two, no duplicates and no constants.
+         * @param polarity The polarity in which the variable is needed.
+         *
+         * @return The literal of the new variable.
+         */
+        private int defineOr(int @NonNull [] clause, int polarity) {
+            String name = AUX_PREFIX + Long.toHexString(hashClause(clause));
+            int aux = dictionary.getId(name);
+
+            Integer old = defined.get(aux);
+            int oldPolarity = old != null ? old : 0;
+            int missing = polarity & ~oldPolarity;
+
+            if ((missing & POSITIVE) != 0) {
+                // !x || l1 || ... || ln
+                int[] row = new int[clause.length + 1];
+                row[0] = -aux;
+                System.arraycopy(clause, 0, row, 1, clause.length);
+                result.addLiteralRow(row);
+            }
+            if ((missing & NEGATIVE) != 0) {
+                // x || !li for each i
+                for (int literal : clause) {
+                    result.addLiteralRow(aux, -literal);
+                }
+            }
+            defined.put(aux, oldPolarity | polarity);
+
+            return aux;
+        }
+
+        /**
+         * Computes a hash of the given clause, which does not depend on the order of the literals, or the IDs in the
+         * dictionary.
+         *
+         * @param clause The literals of the clause.
+         *
+         * @return The hash.
+         */
+        private long hashClause(int @NonNull [] clause) {
+            long sum = SEED;
+            for (int literal : clause) {
+                long hash = dictionary.getHash(Math.abs(literal));
+                sum += literal < 0 ? VariableDictionary.mix(~hash) : hash;
+            }
+            return VariableDictionary.mix(sum);
+        }
+
+        /**
+         * Removes constants and duplicates from the given disjunction of literals.
+         *
+         * @param clause The literals of the disjunction. May be modified.
+         *
+         * @return The simplified literals; empty if the disjunction is false; <code>null</code> if the disjunction
+         *      is true.
+         */
+        private int @Nullable [] simplifyClause(int @NonNull [] clause) {
+            Arrays.sort(clause);
+            int size = 0;
+            for (int i = 0; i < clause.length; i++) {
+                int literal = clause[i];
+                if (literal == TRUE) {
+                    return null;
+                }
+                if (literal != FALSE && (size == 0 || clause[size - 1] != literal)) {
+                    clause[size++] = literal;
+                }
+            }
+
+            int[] result = notNull(Arrays.copyOf(clause, size));
+            for (int i = 0; i < result.length; i++) {
+                // sorted, so the negation can be found with a binary search
+                if (result[i] < 0 && Arrays.binarySearch(result, -result[i]) >= 0) {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Adds the given disjunction of literals as a row to the result.
+         *
+         * @param clause The literals of the disjunction; may contain constants and duplicates.
+         */
+        private void addRow(int @NonNull [] clause) {
+            int[] simplified = simplifyClause(clause);
+            if (simplified != null) {
+                if (simplified.length == 0) {
+                    // an unsatisfiable row
+                    int pseudo = dictionary.getId("PSEUDO_FALSE");
+                    result.addLiteralRow(pseudo);
+                    result.addLiteralRow(-pseudo);
+                } else {
+                    result.addLiteralRow(simplified);
+                }
+            }
+        }
+
+    }
+
+}
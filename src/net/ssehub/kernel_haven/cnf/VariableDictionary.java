@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * A bidirectional mapping between variable names and dense integer IDs. The first ID is 1, so that IDs can directly
+ * be used as (positive) literals in the style of DIMACS; a negated literal is the negative ID.
+ * <p>
+ * A dictionary can be shared between several {@link Cnf}s (e.g. a variability model and all the queries checked
+ * against it). {@link Cnf}s that share a dictionary can be combined and solved without translating variable names.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Adam
+ */
+public class VariableDictionary {
+
+    private @NonNull Map<String, Integer> ids;
+
+    private @NonNull List<@NonNull String> names;
+
+    /**
+     * The 64 bit hashes of the variable names; index is the ID.
+     */
+    private long @NonNull [] hashes;
+
+    /**
+     * The shared {@link CnfVariable}s of all variables; index is <code>2 * ID</code> for the positive variable and
+     * <code>2 * ID + 1</code> for the negated variable.
+     */
+    private @NonNull CnfVariable @NonNull [] variables;
+
+    /**
+     * Creates a new, empty {@link VariableDictionary}.
+     */
+    public VariableDictionary() {
+        this.ids = new HashMap<>();
+        this.names = new ArrayList<>();
+        this.hashes = new long[16];
+        this.variables = new @NonNull CnfVariable[32];
+    }
+
+    /**
+     * Creates a copy of this dictionary. The copy assigns the same IDs to all names known so far; names added to one
+     * of the two dictionaries afterwards are not visible in the other.
+     *
+     * @return A copy of this dictionary.
+     */
+    @NonNull VariableDictionary copy() {
+        VariableDictionary result = new VariableDictionary();
+        result.ids = new HashMap<>(ids);
+        result.names = new ArrayList<>(names);
+        result.hashes = notNull(hashes.clone());
+        // the variables are immutable, so they can be shared
+        result.variables = notNull(variables.clone());
+        return result;
+    }
+
+    /**
+     * Returns the ID for the given variable name. If the name is not yet known, a new ID is assigned to it.
+     *
+     * @param name The name of the variable.
+     *
+     * @return The ID of the variable. Always &gt; 0.
+     */
+    public int getId(@NonNull String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            names.add(name);
+            id = names.size();
+            ids.put(name, id);
+
+            if (id >= hashes.length) {
+                hashes = notNull(Arrays.copyOf(hashes, hashes.length * 2));
+                variables = notNull(Arrays.copyOf(variables, variables.length * 2));
+            }
+            hashes[id] = hash(name);
+            
+            // created eagerly, so that reading them doesn't modify this dictionary
+            variables[2 * id] = new CnfVariable(false, name);
+            variables[2 * id + 1] = new CnfVariable(true, name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the ID for the given variable name, without assigning a new ID if the name is not known.
+     *
+     * @param name The name of the variable.
+     *
+     * @return The ID of the variable, or 0 if the name is not known to this dictionary.
+     */
+    public int lookupId(@NonNull String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Returns the name of the variable with the given ID.
+     *
+     * @param id The ID of the variable. Must be between 1 and {@link #getMaxId()} (inclusive).
+     *
+     * @return The name of the variable.
+     *
+     * @throws IndexOutOfBoundsException If the ID is not known to this dictionary.
+     */
+    public @NonNull String getName(int id) throws IndexOutOfBoundsException {
+        return notNull(names.get(id - 1));
+    }
+
+    /**
+     * Returns the shared {@link CnfVariable} for the given literal. This avoids creating a new {@link CnfVariable}
+     * (and its name string) every time a literal is converted.
+     *
+     * @param literal The ID of the variable; negative if the variable is negated.
+     *
+     * @return The {@link CnfVariable} representing the literal.
+     *
+     * @throws IndexOutOfBoundsException If the ID is not known to this dictionary.
+     */
+    @NonNull CnfVariable getVariable(int literal) throws IndexOutOfBoundsException {
+        int id = Math.abs(literal);
+        if (id == 0 || id > getMaxId()) {
+            throw new IndexOutOfBoundsException("Variable " + id + " does not exist; max ID is " + getMaxId());
+        }
+        return notNull(variables[literal < 0 ? 2 * id + 1 : 2 * id]);
+    }
+
+    /**
+     * Returns a 64 bit hash of the name of the variable with the given ID. In contrast to the ID, this hash only
+     * depends on the name, so it is the same in all dictionaries.
+     *
+     * @param id The ID of the variable. Must be between 1 and {@link #getMaxId()} (inclusive).
+     *
+     * @return The hash of the variable name.
+     */
+    long getHash(int id) {
+        return hashes[id];
+    }
+
+    /**
+     * Computes a 64 bit hash of the given name (FNV-1a, followed by the finalizer of SplitMix64).
+     *
+     * @param name The name to hash.
+     *
+     * @return The hash of the name.
+     */
+    private static long hash(@NonNull String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Scrambles the bits of the given value (the finalizer of SplitMix64).
+     *
+     * @param value The value to scramble.
+     *
+     * @return The scrambled value.
+     */
+    static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Estimates the memory used by this dictionary in bytes. The name strings are counted, even though they may be
+     * shared with other dictionaries.
+     *
+     * @return The estimated memory size in bytes.
+     */
+    long getEstimatedMemorySize() {
+        // object header, fields and the empty collections, plus the two arrays
+        long result = 96 + 8L * hashes.length + 4L * variables.length;
+        for (String name : names) {
+            // map entry and Integer, list slot, the two CnfVariables, and the string with its characters
+            result += 48 + 4 + 2 * 24 + 40 + 2L * name.length();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the highest ID that was assigned so far. This is also the number of variables in this dictionary.
+     *
+     * @return The highest assigned ID; 0 if this dictionary is empty.
+     */
+    public int getMaxId() {
+        return names.size();
+    }
+
+}
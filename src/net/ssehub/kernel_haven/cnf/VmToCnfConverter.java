@@ -17,11 +17,14 @@ package net.ssehub.kernel_haven.cnf;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -35,9 +38,20 @@ import net.ssehub.kernel_haven.variability_model.VariabilityVariable;
 /**
  * This class is only for converting the VariabilityModel to a CNF Table. Then
  * it can be Solved.
+ * <p>
+ * The DIMACS file is memory-mapped and parsed directly from its bytes. Files larger than
+ * {@link #DEFAULT_WINDOW_SIZE} are mapped in consecutive windows, since a single mapping is limited to 2 GB. Comment
+ * lines (starting with <code>c</code>)
+ * are allowed anywhere, numbers may be separated by any number of spaces or tabs, and clauses are terminated by
+ * <code>0</code>, so they may span multiple lines or share a line. A line starting with <code>%</code> ends the
+ * clauses, as in the SATLIB benchmark files.
+ * <p>
+ * Optionally, the CNF is stored off-heap (see {@link Cnf#createOffHeap(VariableDictionary, int)}), so that large
+ * models do not burden the garbage collector.
  * 
  * @author Johannes
  * @author malek
+ * @author Adam
  */
 public class VmToCnfConverter {
 
@@ -47,11 +61,40 @@ public class VmToCnfConverter {
     
     public static final int CNF_START_LINE_LENGTH = 4;
     
+    /**
+     * The size of the windows in which the DIMACS file is memory-mapped (1 GB).
+     */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    
+    private boolean offHeap;
+    
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    
     /**
      * Creates a new {@link VmToCnfConverter}.
      */
     public VmToCnfConverter() {
-        
+        this(false);
+    }
+    
+    /**
+     * Creates a new {@link VmToCnfConverter}.
+     * 
+     * @param offHeap Whether the converted {@link Cnf}s should be stored off-heap; see
+     *      {@link Cnf#createOffHeap(VariableDictionary, int)}.
+     */
+    public VmToCnfConverter(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+    
+    /**
+     * Sets the size of the windows in which the DIMACS file is memory-mapped. Only used by test cases, to check
+     * parsing across window boundaries with small files.
+     * 
+     * @param windowSize The size of each mapped window in bytes. Must be positive.
+     */
+    void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
     }
     
     /**
@@ -63,125 +106,394 @@ public class VmToCnfConverter {
      * @throws FormatException If the constraint model file of the {@link VariabilityModel} is not a DIMACS file.
      */
     public @NonNull Cnf convertVmToCnf(@NonNull VariabilityModel vm) throws FormatException {
+        return convertVmToCnf(vm, new VariableDictionary());
+    }
+    
+    /**
+     * This method converts the vm into a cnf representation that uses the given {@link VariableDictionary}. If the
+     * formulas that are checked against the CNF of the vm are converted with the same dictionary (see
+     * {@link IFormulaToCnfConverter#convert(net.ssehub.kernel_haven.util.logic.Formula, VariableDictionary)}), a SAT
+     * solver with the CNF of the vm as its base does not need to map any variable names.
+     * 
+     * @param vm The vm. This has to have a DIMACS model as the constraint model.
+     * @param dictionary The dictionary for the resulting cnf; the variables of the vm are added to it.
+     * @return returns the cnf of the vm.
+     * 
+     * @throws FormatException If the constraint model file of the {@link VariabilityModel} is not a DIMACS file.
+     */
+    public @NonNull Cnf convertVmToCnf(@NonNull VariabilityModel vm, @NonNull VariableDictionary dictionary)
+            throws FormatException {
+        
         if (vm.getDescriptor().getConstraintFileType() != ConstraintFileType.DIMACS) {
             throw new FormatException("Descriptor says constraint file type is not DIMACS");
         }
         
         File dimacsModel = vm.getConstraintModel();
-        Cnf cnf = null;
         Map<Integer, String> vmMap = getMapOfVM(vm);
-        LineNumberReader br = null;
-        try {
-            br = new LineNumberReader(new BufferedReader(new FileReader(dimacsModel)));
-            String line = br.readLine();
-            // iterating over variability variables.
-            while (line != null && !line.contains(CNF_START_INDICATOR)) {
-                line = br.readLine();
-            }
-            if (line == null) {
-                // we are at the end of file without finding the proper start indicator
-                throw new FormatException("Missing \"p cnf\" line");
+        
+        try (FileChannel channel = FileChannel.open(dimacsModel.toPath(), StandardOpenOption.READ)) {
+            return new DimacsParser(channel, windowSize, vmMap, dictionary, offHeap).parse();
+            
+        } catch (IOException e) {
+            throw new FormatException(e);
+        }
+    }
+
+    /**
+     * This Method converts a Map from a VariabilityModel.
+     * This Method could be included in the VariabilityModel.
+     * @param vm the Variability Model.
+     * @return a Map with the DimacsNumber as Key and the VariableName as Value.
+     */
+    private @NonNull Map<Integer, String> getMapOfVM(@NonNull VariabilityModel vm) {
+        Set<VariabilityVariable> set = vm.getVariables();
+        HashMap<Integer, String> map = new HashMap<>();
+        for (VariabilityVariable variabilityVariable : set) {
+            variabilityVariable.getDimacsMapping(map);
+        }
+        return map;
+    }
+    
+    /**
+     * Parses the bytes of a DIMACS file into a {@link Cnf}. Numbers are read directly into the literal IDs of the
+     * {@link VariableDictionary} of the result; the variable name of each DIMACS number is only looked up once.
+     * <p>
+     * The file is memory-mapped in windows; positions are absolute positions in the file, and the window is moved
+     * whenever a position outside of it is read.
+     */
+    private static class DimacsParser {
+        
+        private @NonNull FileChannel channel;
+        
+        private int windowSize;
+        
+        /**
+         * The currently mapped part of the file; <code>null</code> before the first read.
+         */
+        private MappedByteBuffer window;
+        
+        /**
+         * The position of {@link #window} in the file.
+         */
+        private long windowStart;
+        
+        private @NonNull Map<Integer, String> vmMap;
+        
+        private @NonNull VariableDictionary dictionary;
+        
+        private long position;
+        
+        private long limit;
+        
+        private int lineNumber;
+        
+        private int maxNumber;
+        
+        private boolean offHeap;
+        
+        private @NonNull Cnf cnf;
+        
+        /**
+         * The dictionary ID for each DIMACS number; 0 if the number was not encountered yet.
+         */
+        private int @NonNull [] ids;
+        
+        /**
+         * Creates a parser for the given DIMACS file.
+         * 
+         * @param channel The DIMACS file. Must stay open while parsing.
+         * @param windowSize The size of the windows in which the file is memory-mapped.
+         * @param vmMap The mapping of DIMACS number to variable name.
+         * @param dictionary The dictionary for the resulting {@link Cnf}.
+         * @param offHeap Whether to store the resulting {@link Cnf} off-heap.
+         * 
+         * @throws IOException If reading the size of the file fails.
+         */
+        public DimacsParser(@NonNull FileChannel channel, int windowSize, @NonNull Map<Integer, String> vmMap,
+                @NonNull VariableDictionary dictionary, boolean offHeap) throws IOException {
+            this.channel = channel;
+            this.windowSize = windowSize;
+            this.vmMap = vmMap;
+            this.dictionary = dictionary;
+            this.offHeap = offHeap;
+            this.position = 0;
+            this.limit = channel.size();
+            this.lineNumber = 1;
+            this.cnf = new Cnf();
+            this.ids = new int[0];
+        }
+        
+        /**
+         * Parses the DIMACS file.
+         * 
+         * @return The CNF of the DIMACS file.
+         * 
+         * @throws FormatException If the DIMACS file is malformed.
+         */
+        public @NonNull Cnf parse() throws FormatException {
+            int numClauses = parseHeader();
+            
+            int[] row = new int[16];
+            int rowLength = 0;
+            int count = 0;
+            
+            while (position < limit) {
+                byte current = byteAt(position);
+                
+                if (current == '\n') {
+                    lineNumber++;
+                    position++;
+                    
+                } else if (isBlank(current)) {
+                    position++;
+                    
+                } else if (current == 'c') {
+                    skipLine();
+                    
+                } else if (current == '%') {
+                    break;
+                    
+                } else {
+                    int number = parseNumber();
+                    if (number == 0) {
+                        count++;
+                        if (count > numClauses) {
+                            throw new FormatException("Too many lines found (current line " + lineNumber + ")");
+                        }
+                        cnf.addLiteralRow(row, rowLength);
+                        rowLength = 0;
+                        
+                    } else {
+                        if (rowLength == row.length) {
+                            row = notNull(Arrays.copyOf(row, row.length * 2));
+                        }
+                        int id = getId(Math.abs(number));
+                        row[rowLength++] = number < 0 ? -id : id;
+                    }
+                }
             }
             
-            String[] startline = line.split(ROW_DELIMITER);
-            if (startline.length != CNF_START_LINE_LENGTH) {
-                throw new FormatException("Invalid \"p cnf\" line in linenumber " + br.getLineNumber() + ": " + line);
+            if (rowLength > 0) {
+                // the last clause is not terminated by a 0
+                count++;
+                if (count > numClauses) {
+                    throw new FormatException("Too many lines found (current line " + lineNumber + ")");
+                }
+                cnf.addLiteralRow(row, rowLength);
+            }
+            
+            if (count < numClauses) {
+                throw new FormatException("Reached end of file with too few lines found");
+            }
+            
+            return cnf;
+        }
+        
+        /**
+         * Skips everything up to and including the "p cnf" line and parses it.
+         * 
+         * @return The number of clauses specified in the "p cnf" line.
+         * 
+         * @throws FormatException If the "p cnf" line is missing or malformed.
+         */
+        private int parseHeader() throws FormatException {
+            while (true) {
+                while (position < limit && isBlank(byteAt(position))) {
+                    position++;
+                }
+                if (position >= limit) {
+                    // we are at the end of file without finding the proper start indicator
+                    throw new FormatException("Missing \"p cnf\" line");
+                }
+                if (byteAt(position) == 'p') {
+                    break;
+                }
+                
+                // comments and other lines before the "p cnf" line are ignored
+                skipLine();
+                if (position < limit) {
+                    lineNumber++;
+                    position++;
+                }
             }
             
+            long start = position;
+            skipLine();
+            String line = new String(readBytes(start, position), StandardCharsets.US_ASCII).trim();
+            
             // p cnf 2 4
-            int initialLenght = Integer.parseInt(startline[3]);
-            cnf = new Cnf(initialLenght);
+            String[] startline = line.split("\\s+");
+            if (startline.length != CNF_START_LINE_LENGTH || !startline[0].equals("p")
+                    || !startline[1].equals("cnf")) {
+                throw new FormatException("Invalid \"p cnf\" line in linenumber " + lineNumber + ": " + line);
+            }
+            
+            int numClauses;
+            try {
+                maxNumber = Integer.parseInt(startline[2]);
+                numClauses = Integer.parseInt(startline[3]);
+            } catch (NumberFormatException e) {
+                throw new FormatException("Error parsing number in line " + lineNumber + ": " + e.getMessage());
+            }
+            if (maxNumber < 0 || numClauses < 0) {
+                throw new FormatException("Invalid \"p cnf\" line in linenumber " + lineNumber + ": " + line);
+            }
             
-            int maxNumber = Integer.parseInt(startline[2]);
+            cnf = offHeap ? Cnf.createOffHeap(dictionary, numClauses) : new Cnf(dictionary, numClauses);
+            // kernel models use almost all of their variables, but don't trust a huge header blindly
+            ids = new int[Math.min(maxNumber, 1 << 20) + 1];
+            return numClauses;
+        }
+        
+        /**
+         * Parses the number starting at the current position. Afterwards, the position is directly behind the
+         * number.
+         * 
+         * @return The parsed number.
+         * 
+         * @throws FormatException If the current token is not a valid number, or its absolute value is higher than
+         *      the number of variables specified in the "p cnf" line.
+         */
+        private int parseNumber() throws FormatException {
+            long start = position;
+            boolean negative = byteAt(position) == '-';
+            if (negative) {
+                position++;
+            }
             
-            line = br.readLine();
-            int count = 0;
-            while (line != null) {
-                count++;
-                if (count > initialLenght) {
-                    throw new FormatException("Too many lines found (current line " + br.getLineNumber() + ")");
+            long digitsStart = position;
+            long value = 0;
+            while (position < limit) {
+                byte current = byteAt(position);
+                if (current < '0' || current > '9') {
+                    break;
                 }
-                
-                cnf.addRow(parseLine(line, vmMap, maxNumber, br.getLineNumber()));
-                
-                line = br.readLine();
+                value = value * 10 + (current - '0');
+                if (value > Integer.MAX_VALUE) {
+                    break;
+                }
+                position++;
             }
             
-            if (count < initialLenght) {
-                throw new FormatException("Reached end of file with too few lines found");
+            if (position == digitsStart || (position < limit && !isWhitespace(byteAt(position)))) {
+                while (position < limit && !isWhitespace(byteAt(position))) {
+                    position++;
+                }
+                String token = new String(readBytes(start, position), StandardCharsets.US_ASCII);
+                throw new FormatException("Error parsing number in line " + lineNumber + ": " + token);
             }
-        } catch (NumberFormatException e) {
-            if (br != null) {
-                throw new FormatException("Error parsing number in line " + br.getLineNumber() + ": " + e.getMessage());
-            } else {
-                throw new FormatException("Error parsing number: " + e.getMessage());
+            
+            if (value > maxNumber) {
+                throw new FormatException("Too high number in line " + lineNumber + ": " + value);
             }
-        } catch (IOException e) {
-            throw new FormatException(e);
-        } finally {
-            if (br != null) {
-                try {
-                    br.close();
-                } catch (IOException e) {
+            
+            return (int) (negative ? -value : value);
+        }
+        
+        /**
+         * Returns the dictionary ID for the given DIMACS number. Adds the variable to the dictionary, if it is
+         * encountered for the first time.
+         * 
+         * @param number The DIMACS number, between 1 and the maximum number specified in the "p cnf" line.
+         * 
+         * @return The ID in the dictionary of the result.
+         */
+        private int getId(int number) {
+            if (number >= ids.length) {
+                ids = notNull(Arrays.copyOf(ids, (int) Math.min(Math.max(number + 1L, ids.length * 2L),
+                        maxNumber + 1L)));
+            }
+            
+            int id = ids[number];
+            if (id == 0) {
+                String name = vmMap.get(number);
+                if (name == null) {
+                    // we have no mapping, so just generate a number
+                    name = "VARIABLE_" + number;
                 }
+                id = cnf.getDictionary().getId(name);
+                ids[number] = id;
             }
+            return id;
         }
-        return cnf;
-    }
-
-    /**
-     * Reads a single line and converts it to a CNF line. This converts the numbers to the appropriate
-     * variable names.
-     * 
-     * @param vmMap The mapping of number -> variable name.
-     * @param line The line to parse.
-     * @param maxNumber The maximum allowed variable number.
-     * @param currentLineNumber The current line number in the DIMACS file (for error messages).
-     * @return The CNF line.
-     * @throws FormatException If the format is wrong.
-     */
-    private @NonNull CnfVariable @NonNull [] parseLine(@NonNull String line, @NonNull Map<Integer, String> vmMap,
-            int maxNumber, int currentLineNumber) throws FormatException {
         
-        String[] dimacsModelLine = line.split(ROW_DELIMITER);
-        // the loop makes sure that every entry is filled with non null
-        @NonNull CnfVariable[] cnfRow = new  @NonNull CnfVariable[dimacsModelLine.length - 1];
+        /**
+         * Moves the position to the line break at the end of the current line (or the end of the file).
+         * 
+         * @throws FormatException If reading the file fails.
+         */
+        private void skipLine() throws FormatException {
+            while (position < limit && byteAt(position) != '\n') {
+                position++;
+            }
+        }
         
-        for (int i = 0; i < dimacsModelLine.length - 1; i++) {
-            int dimacsNumber = Integer.parseInt(dimacsModelLine[i]);
-            int absolutDimacsNumber = Math.abs(dimacsNumber);
-            boolean isNot = dimacsNumber < 0;
-            
-            if (absolutDimacsNumber > maxNumber) {
-                throw new FormatException("Too high number in line " + currentLineNumber + ": " + absolutDimacsNumber);
+        /**
+         * Copies the given range of the file content.
+         * 
+         * @param from The start position, inclusive.
+         * @param to The end position, exclusive.
+         * 
+         * @return The bytes in the range.
+         * 
+         * @throws FormatException If reading the file fails.
+         */
+        private byte @NonNull [] readBytes(long from, long to) throws FormatException {
+            byte[] result = new byte[(int) (to - from)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = byteAt(from + i);
             }
-            
-            if (!vmMap.containsKey(absolutDimacsNumber)) {
-                // we have no mapping, so just generate a number
-                cnfRow[i] = new CnfVariable(isNot, "VARIABLE_" + absolutDimacsNumber);
-            } else {
-                cnfRow[i] = new CnfVariable(isNot, notNull(vmMap.get(absolutDimacsNumber)));
+            return result;
+        }
+        
+        /**
+         * Returns the byte at the given position of the file. Maps the window that starts at this position, if the
+         * position is outside of the current window.
+         * 
+         * @param filePosition The position in the file; must be less than the size of the file.
+         * 
+         * @return The byte at the position.
+         * 
+         * @throws FormatException If mapping the file fails.
+         */
+        private byte byteAt(long filePosition) throws FormatException {
+            long offset = filePosition - windowStart;
+            MappedByteBuffer window = this.window;
+            if (window == null || offset < 0 || offset >= window.limit()) {
+                try {
+                    window = channel.map(MapMode.READ_ONLY, filePosition, Math.min(windowSize, limit - filePosition));
+                } catch (IOException e) {
+                    throw new FormatException(e);
+                }
+                this.window = window;
+                this.windowStart = filePosition;
+                offset = 0;
             }
+            return window.get((int) offset);
         }
         
-        return cnfRow; 
-    }
-    
-
-    /**
-     * This Method converts a Map from a VariabilityModel.
-     * This Method could be included in the VariabilityModel.
-     * @param vm the Variability Model.
-     * @return a Map with the DimacsNumber as Key and the VariableName as Value.
-     */
-    private @NonNull Map<Integer, String> getMapOfVM(@NonNull VariabilityModel vm) {
-        Set<VariabilityVariable> set = vm.getVariables();
-        HashMap<Integer, String> map = new HashMap<>();
-        for (VariabilityVariable variabilityVariable : set) {
-            variabilityVariable.getDimacsMapping(map);
+        /**
+         * Checks whether the given character separates numbers on the same line.
+         * 
+         * @param character The character to check.
+         * 
+         * @return Whether the character is a space, tab, or carriage return.
+         */
+        private static boolean isBlank(byte character) {
+            return character == ' ' || character == '\t' || character == '\r';
         }
-        return map;
+        
+        /**
+         * Checks whether the given character separates numbers.
+         * 
+         * @param character The character to check.
+         * 
+         * @return Whether the character is blank or a line break.
+         */
+        private static boolean isWhitespace(byte character) {
+            return isBlank(character) || character == '\n';
+        }
+        
     }
     
-    
 }
@@ -20,9 +20,9 @@ import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
 import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.util.LinkedList;
 import java.util.List;
 
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
 import net.ssehub.kernel_haven.util.PerformanceProbe;
 import net.ssehub.kernel_haven.util.logic.Conjunction;
 import net.ssehub.kernel_haven.util.logic.Disjunction;
@@ -57,44 +57,69 @@ public class AdamsAwesomeSimplifier {
     
     /**
      * Moves all {@link Negation}s inwards as much as possible. After this, negations only occur around
-     * {@link Variable}s, {@link True} and {@link False}.
+     * {@link Variable}s, {@link True} and {@link False}. This uses {@link FormulaTraversal} instead of recursion,
+     * so that deep formulas do not overflow the stack.
      * 
      * @param formula The formula to move the negation inwards for.
      * 
      * @return The formula with moved negations.
      */
     private static @NonNull Formula moveNegationInwards(@NonNull Formula formula) {
-        
-        Formula result;
-        
-        if (formula instanceof Disjunction) {
-            Disjunction dis = (Disjunction) formula;
-            result = new Disjunction(moveNegationInwards(dis.getLeft()), moveNegationInwards(dis.getRight()));
-            
-        } else if (formula instanceof Conjunction) {
-            Conjunction con = (Conjunction) formula;
-            result = new Conjunction(moveNegationInwards(con.getLeft()), moveNegationInwards(con.getRight()));
-            
-        } else if (formula instanceof Negation) {
-            Formula nested = ((Negation) formula).getFormula();
-            
-            if (nested instanceof Disjunction) {
-                Disjunction dis = (Disjunction) nested;
-                result = and(moveNegationInwards(not(dis.getLeft())), moveNegationInwards(not(dis.getRight())));
+        return FormulaTraversal.postOrder(formula, new IPostOrderHandler<@NonNull Formula>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                Formula[] result = FormulaTraversal.getOperands(formula);
                 
-            } else if (nested instanceof Conjunction) {
-                Conjunction con = (Conjunction) nested;
-                result = or(moveNegationInwards(not(con.getLeft())), moveNegationInwards(not(con.getRight())));
+                if (formula instanceof Negation) {
+                    Formula nested = ((Negation) formula).getFormula();
+                    
+                    if (nested instanceof Disjunction) {
+                        Disjunction dis = (Disjunction) nested;
+                        result = new @NonNull Formula[] {not(dis.getLeft()), not(dis.getRight())};
+                        
+                    } else if (nested instanceof Conjunction) {
+                        Conjunction con = (Conjunction) nested;
+                        result = new @NonNull Formula[] {not(con.getLeft()), not(con.getRight())};
+                        
+                    } else {
+                        result = new @NonNull Formula[0];
+                    }
+                }
                 
-            } else {
-                result = formula;
+                return result;
             }
-            
-        } else {
-            result = formula;
-        }
-        
-        return result;
+
+            @Override
+            public @NonNull Formula handle(@NonNull Formula formula, @NonNull List<@NonNull Formula> operandResults) {
+                Formula result;
+                
+                if (formula instanceof Disjunction) {
+                    result = new Disjunction(notNull(operandResults.get(0)), notNull(operandResults.get(1)));
+                    
+                } else if (formula instanceof Conjunction) {
+                    result = new Conjunction(notNull(operandResults.get(0)), notNull(operandResults.get(1)));
+                    
+                } else if (formula instanceof Negation) {
+                    Formula nested = ((Negation) formula).getFormula();
+                    
+                    if (nested instanceof Disjunction) {
+                        result = and(operandResults.get(0), operandResults.get(1));
+                        
+                    } else if (nested instanceof Conjunction) {
+                        result = or(operandResults.get(0), operandResults.get(1));
+                        
+                    } else {
+                        result = formula;
+                    }
+                    
+                } else {
+                    result = formula;
+                }
+                
+                return result;
+            }
+        });
     }
     
     /**
@@ -106,73 +131,82 @@ public class AdamsAwesomeSimplifier {
      * @return The formula with moved negations.
      */
     private static @NonNull Formula moveNegationOutwards(@NonNull Formula formula) {
-        Formula result;
+        NaryFormula nary = new NaryFormula();
+        int root = nary.addFormula(formula);
         
-        if (formula instanceof Disjunction) {
-            Disjunction dis = (Disjunction) formula;
-            List<@NonNull Formula> allTerms = new LinkedList<>();
-            FormulaStructureChecker.getAllDisjunctionTerms(dis).stream()
-                    .map((term) -> moveNegationOutwards(term))
-                    .forEach(allTerms::add);
-            
-            boolean allNegated = true;
-            for (Formula f : allTerms) {
-                if (!(f instanceof Negation)) {
-                    allNegated = false;
-                    break;
+        // find the nodes that are needed for the root: the flattened terms of dis- and conjunctions, and the nested
+        // nodes of negations. Operands always have smaller numbers than their node, so no recursion is needed.
+        int[][] operands = new int[root + 1][];
+        operands[root] = getOperands(nary, root);
+        for (int node = root; node >= 0; node--) {
+            if (operands[node] != null) {
+                for (int operand : operands[node]) {
+                    if (operands[operand] == null) {
+                        operands[operand] = getOperands(nary, operand);
+                    }
                 }
             }
-            
-            if (allNegated) {
-                result = ((Negation) notNull(allTerms.remove(0))).getFormula();
-                for (Formula f : allTerms) {
-                    result = and(result, ((Negation) f).getFormula());
-                }
-                result = new Negation(result);
-                
-            } else {
-                result = notNull(allTerms.remove(0));
-                for (Formula term : allTerms) {
-                    result = or(result, term);
-                }
+        }
+        
+        int[] results = new int[root + 1];
+        for (int node = 0; node <= root; node++) {
+            int[] nodeOperands = operands[node];
+            if (nodeOperands == null) {
+                continue;
             }
             
-        } else if (formula instanceof Conjunction) {
-            Conjunction con = (Conjunction) formula;
-            List<@NonNull Formula> allTerms = new LinkedList<>();
-            FormulaStructureChecker.getAllConjunctionTerms(con).stream()
-                    .map((term) -> moveNegationOutwards(term))
-                    .forEach(allTerms::add);
-            
-            boolean allNegated = true;
-            for (Formula f : allTerms) {
-                if (!(f instanceof Negation)) {
-                    allNegated = false;
-                    break;
+            byte kind = nary.getKind(node);
+            int result;
+            if (kind == NaryFormula.DISJUNCTION || kind == NaryFormula.CONJUNCTION) {
+                int[] terms = new int[nodeOperands.length];
+                boolean allNegated = true;
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = results[nodeOperands[i]];
+                    allNegated &= nary.getKind(terms[i]) == NaryFormula.NEGATION;
                 }
-            }
-            
-            if (allNegated) {
-                result = ((Negation) notNull(allTerms.remove(0))).getFormula();
-                for (Formula f : allTerms) {
-                    result = or(result, ((Negation) f).getFormula());
+                
+                if (allNegated) {
+                    // !A || !B -> !(A && B); !A && !B -> !(A || B)
+                    for (int i = 0; i < terms.length; i++) {
+                        terms[i] = nary.getOperand(terms[i], 0);
+                    }
+                    byte dualKind = kind == NaryFormula.DISJUNCTION
+                            ? NaryFormula.CONJUNCTION : NaryFormula.DISJUNCTION;
+                    result = nary.negation(nary.operator(dualKind, terms, terms.length));
+                } else {
+                    result = nary.operator(kind, terms, terms.length);
                 }
-                result = new Negation(result);
+                
+            } else if (kind == NaryFormula.NEGATION) {
+                result = nary.negation(results[nodeOperands[0]]);
                 
             } else {
-                result = notNull(allTerms.remove(0));
-                for (Formula term : allTerms) {
-                    result = and(result, term);
-                }
+                result = node;
             }
-            
-        } else if (formula instanceof Negation) {
-            result = new Negation(moveNegationOutwards(((Negation) formula).getFormula()));
-            
-        } else {
-            result = formula;
+            results[node] = result;
         }
         
+        return nary.toFormula(results[root]);
+    }
+    
+    /**
+     * Returns the operands that {@link #moveNegationOutwards(Formula)} handles before the given node.
+     * 
+     * @param nary The formula that contains the node.
+     * @param node The node.
+     * 
+     * @return The flattened terms of a dis- or conjunction, the nested node of a negation, or an empty array.
+     */
+    private static int @NonNull [] getOperands(@NonNull NaryFormula nary, int node) {
+        int[] result;
+        byte kind = nary.getKind(node);
+        if (kind == NaryFormula.DISJUNCTION || kind == NaryFormula.CONJUNCTION) {
+            result = nary.getTerms(node);
+        } else if (kind == NaryFormula.NEGATION) {
+            result = new int[] {nary.getOperand(node, 0)};
+        } else {
+            result = new int[0];
+        }
         return result;
     }
     
@@ -235,19 +269,22 @@ public class AdamsAwesomeSimplifier {
      * @return The simplified formula.
      */
     public static @NonNull Formula simplify(@NonNull Formula formula) {
-        int shortestLength = formula.toString().length();
+        // the results of successive iterations share a lot of sub-trees, so they are measured with the same cache
+        FormulaMetrics metrics = new FormulaMetrics();
+        
+        long shortestLength = metrics.getLength(formula);
         Formula shortest = formula;
         
         int iteration = 0;
         
-        int previousLength;
-        int currentLength = formula.toString().length();
+        long previousLength;
+        long currentLength = shortestLength;
         do {
             PerformanceProbe p = new PerformanceProbe("AAS iteration " + (++iteration));
             
             previousLength = currentLength;
             formula = simplifyImpl(formula);
-            currentLength = formula.toString().length();
+            currentLength = metrics.getLength(formula);
             
             if (currentLength < shortestLength) {
                 shortestLength = currentLength;
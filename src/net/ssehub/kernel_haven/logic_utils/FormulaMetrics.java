@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Calculates structural size metrics of {@link Formula}s: the number of nodes in the formula tree, the nesting depth,
+ * and the length of the string representation. Unlike <code>formula.toString().length()</code>, this does not build
+ * a string. The metrics are cached for
+ * each (sub-)formula instance, so measuring many formulas that share sub-trees (e.g. the sub-trees of a single
+ * formula, or the results of successive simplification steps) only visits each instance once. The calculation does
+ * not use recursion.
+ * <p>
+ * An instance keeps all measured formulas in its cache, so it should not be kept longer than the formulas are needed.
+ * For single measurements, {@link LogicUtils#getSize(Formula)} and {@link LogicUtils#getDepth(Formula)} can be used.
+ *
+ * @author Adam
+ */
+public class FormulaMetrics {
+
+    private final @NonNull Map<Formula, Metrics> cache;
+
+    /**
+     * Creates a new instance with an empty cache.
+     */
+    public FormulaMetrics() {
+        this.cache = new IdentityHashMap<>();
+    }
+
+    /**
+     * Returns the size of the given formula: the number of variables, constants and operators in the formula tree.
+     * Sub-formulas that occur multiple times are counted each time.
+     *
+     * @param formula The formula to measure.
+     *
+     * @return The size of the formula; at least 1.
+     */
+    public long getSize(@NonNull Formula formula) {
+        return getMetrics(formula).size;
+    }
+
+    /**
+     * Returns the depth of the given formula: the number of nodes on the longest path from the formula to a variable
+     * or constant.
+     *
+     * @param formula The formula to measure.
+     *
+     * @return The depth of the formula; 1 for variables and constants.
+     */
+    public int getDepth(@NonNull Formula formula) {
+        return getMetrics(formula).depth;
+    }
+
+    /**
+     * Returns the length of the string representation of the given formula, i.e. the same as
+     * <code>formula.toString().length()</code>, without building the string. Only the string representations of
+     * variables, constants and other formulas without operands are used.
+     *
+     * @param formula The formula to measure.
+     *
+     * @return The length of the string representation of the formula.
+     */
+    public long getLength(@NonNull Formula formula) {
+        return getMetrics(formula).length;
+    }
+
+    /**
+     * Returns the (cached) metrics for the given formula. Calculates the metrics for all sub-formulas that are not yet
+     * cached.
+     *
+     * @param formula The formula to measure.
+     *
+     * @return The metrics of the formula.
+     */
+    private @NonNull Metrics getMetrics(@NonNull Formula formula) {
+        Metrics result = cache.get(formula);
+        if (result != null) {
+            return result;
+        }
+
+        Deque<@NonNull Formula> stack = new ArrayDeque<>();
+        stack.push(formula);
+
+        while (!stack.isEmpty()) {
+            Formula current = notNull(stack.peek());
+            if (cache.containsKey(current)) {
+                stack.pop();
+                continue;
+            }
+
+            Formula[] operands = FormulaTraversal.getOperands(current);
+            boolean operandsDone = true;
+            for (Formula operand : operands) {
+                if (!cache.containsKey(operand)) {
+                    stack.push(operand);
+                    operandsDone = false;
+                }
+            }
+
+            if (operandsDone) {
+                long size = 1;
+                int depth = 0;
+                long length;
+                if (operands.length == 0) {
+                    length = current.toString().length();
+                } else {
+                    // "!" for negations, " && " or " || " between the two operands of con- and disjunctions
+                    length = operands.length == 1 ? 1 : 4;
+                }
+
+                for (Formula operand : operands) {
+                    Metrics operandMetrics = notNull(cache.get(operand));
+                    size += operandMetrics.size;
+                    depth = Math.max(depth, operandMetrics.depth);
+                    length += operandMetrics.length;
+                    if (operand.getPrecedence() < current.getPrecedence()) {
+                        // brackets around the operand
+                        length += 2;
+                    }
+                }
+                cache.put(current, new Metrics(size, depth + 1, length));
+                stack.pop();
+            }
+        }
+
+        return notNull(cache.get(formula));
+    }
+
+    /**
+     * The metrics of a single formula.
+     */
+    private static final class Metrics {
+
+        private final long size;
+
+        private final int depth;
+
+        private final long length;
+
+        /**
+         * Creates the metrics.
+         *
+         * @param size The size of the formula.
+         * @param depth The depth of the formula.
+         * @param length The length of the string representation of the formula.
+         */
+        Metrics(long size, int depth, long length) {
+            this.size = size;
+            this.depth = depth;
+            this.length = length;
+        }
+
+    }
+
+}
@@ -15,6 +15,13 @@
  */
 package net.ssehub.kernel_haven.logic_utils;
 
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
 import net.ssehub.kernel_haven.util.logic.Conjunction;
 import net.ssehub.kernel_haven.util.logic.Disjunction;
 import net.ssehub.kernel_haven.util.logic.False;
@@ -38,6 +45,8 @@ import net.ssehub.kernel_haven.util.null_checks.Nullable;
  */
 public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Formula> {
 
+    private static final @NonNull Formula @NonNull [] NO_OPERANDS = new @NonNull Formula[0];
+
     @Override
     public Formula visitFalse(@NonNull False falseConstant) {
         return falseConstant;
@@ -55,8 +64,62 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
 
     @Override
     public Formula visitNegation(@NonNull Negation formula) {
-        Formula inner = formula.getFormula().accept(this);
+        return simplify(formula);
+    }
+
+    @Override
+    public Formula visitDisjunction(@NonNull Disjunction formula) {
+        return simplify(formula);
+    }
+
+    @Override
+    public Formula visitConjunction(@NonNull Conjunction formula) {
+        return simplify(formula);
+    }
+
+    /**
+     * Simplifies the given formula bottom-up. This uses {@link FormulaTraversal} instead of recursion, so that deep
+     * formulas do not overflow the stack.
+     * 
+     * @param formula The formula to simplify.
+     * @return The simplified formula, or the same instance if it could not be simplified.
+     */
+    private @NonNull Formula simplify(@NonNull Formula formula) {
+        return FormulaTraversal.postOrder(formula, new IPostOrderHandler<@NonNull Formula>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                return FormulaTraversal.getOperands(formula);
+            }
+
+            @Override
+            public @NonNull Formula handle(@NonNull Formula formula, @NonNull List<@NonNull Formula> operandResults) {
+                Formula result;
+                if (formula instanceof Negation) {
+                    result = simplifyNegation((Negation) formula, notNull(operandResults.get(0)));
+                } else if (formula instanceof Disjunction) {
+                    result = simplifyDisjunction((Disjunction) formula, notNull(operandResults.get(0)),
+                            notNull(operandResults.get(1)));
+                } else if (formula instanceof Conjunction) {
+                    result = simplifyConjunction((Conjunction) formula, notNull(operandResults.get(0)),
+                            notNull(operandResults.get(1)));
+                } else {
+                    // variables and constants
+                    result = formula;
+                }
+                return result;
+            }
+        });
+    }
 
+    /**
+     * Simplifies a {@link Negation}.
+     * 
+     * @param formula The negation to simplify.
+     * @param inner The already simplified nested formula.
+     * @return The simplified formula, or the same instance if it could not be simplified.
+     */
+    private @NonNull Formula simplifyNegation(@NonNull Negation formula, @NonNull Formula inner) {
         Formula result;
         
         if (inner instanceof Negation) {
@@ -78,13 +141,19 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
         return result;
     }
 
-    @Override
-    public Formula visitDisjunction(@NonNull Disjunction formula) {
-        Formula left = formula.getLeft().accept(this);
-        Formula right = formula.getRight().accept(this);
+    /**
+     * Simplifies a {@link Disjunction}.
+     * 
+     * @param formula The disjunction to simplify.
+     * @param left The already simplified left side.
+     * @param right The already simplified right side.
+     * @return The simplified formula, or the same instance if it could not be simplified.
+     */
+    private @NonNull Formula simplifyDisjunction(@NonNull Disjunction formula, @NonNull Formula left,
+            @NonNull Formula right) {
         
         Formula result = null;
-        if (left.equals(right)) {
+        if (FormulaTraversal.isEqual(left, right)) {
             // Idempotence: A v A -> A
             result = left;
         } else if (left instanceof False) {
@@ -99,10 +168,10 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
         } else if (right instanceof True) {
             // Annihilator: A v true -> true
             result = right;
-        } else if (left instanceof Negation && ((Negation) left).getFormula().equals(right)) {
+        } else if (left instanceof Negation && FormulaTraversal.isEqual(((Negation) left).getFormula(), right)) {
             // Complementation: !A v A -> true
             result = True.INSTANCE;
-        } else if (right instanceof Negation && ((Negation) right).getFormula().equals(left)) {
+        } else if (right instanceof Negation && FormulaTraversal.isEqual(((Negation) right).getFormula(), left)) {
             // Complementation: A v !A -> true
             result = True.INSTANCE;
         } else if (left instanceof Variable) {
@@ -168,15 +237,21 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
         return result;
     }
 
+    /**
+     * Simplifies a {@link Conjunction}.
+     * 
+     * @param formula The conjunction to simplify.
+     * @param left The already simplified left side.
+     * @param right The already simplified right side.
+     * @return The simplified formula, or the same instance if it could not be simplified.
+     */
     // CHECKSTYLE:OFF
-    @Override
-    public Formula visitConjunction(@NonNull Conjunction formula) {
+    private @NonNull Formula simplifyConjunction(@NonNull Conjunction formula, @NonNull Formula left,
+            @NonNull Formula right) {
     // CHECKSTYLE:ON
-        Formula left = formula.getLeft().accept(this);
-        Formula right = formula.getRight().accept(this);
         
         Formula result = null;
-        if (left.equals(right)) {
+        if (FormulaTraversal.isEqual(left, right)) {
             // Idempotence: A ^ A -> A
             result = left;
         } else if (left instanceof True) {
@@ -191,10 +266,10 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
         } else if (right instanceof False) {
             // Annihilator: A ^ false -> false
             result = right;
-        } else if (left instanceof Negation && ((Negation) left).getFormula().equals(right)) {
+        } else if (left instanceof Negation && FormulaTraversal.isEqual(((Negation) left).getFormula(), right)) {
             // Complementation: !A ^ A -> false
             result = False.INSTANCE;
-        } else if (right instanceof Negation && ((Negation) right).getFormula().equals(left)) {
+        } else if (right instanceof Negation && FormulaTraversal.isEqual(((Negation) right).getFormula(), left)) {
             // Complementation: A ^ !A -> false
             result = False.INSTANCE;
             
@@ -326,27 +401,30 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
     }
 
     /**
-     * Recursive test if a conjunction fulfills the absorption rule.
+     * Tests if a conjunction fulfills the absorption rule.
      * @param var The variable of a conjunction.
-     * @param disjunction The disjunction of a conjunction (will be recursively traversed if a compound disjunction).
+     * @param disjunction The disjunction of a conjunction (will be traversed if a compound disjunction).
      * @return <tt>true</tt> if it fulfills the absorption rule, i.e., if it can be simplified, <tt>false</tt>
      *     otherwise.
      */
     private boolean isAndAbsorption(Variable var, Disjunction disjunction) {
-        Formula left = disjunction.getLeft();
-        Formula right = disjunction.getRight();
-        
-        boolean result = var.equals(left) || var.equals(right);
-        
-        // Recursive part
-        if (!result) {
-            if (left instanceof Disjunction) {
-                result = isAndAbsorption(var, (Disjunction) left);
-            }
-        }
-        if (!result) {
+        Deque<Disjunction> todo = new ArrayDeque<>();
+        todo.push(disjunction);
+        
+        boolean result = false;
+        while (!result && !todo.isEmpty()) {
+            Disjunction current = todo.pop();
+            Formula left = current.getLeft();
+            Formula right = current.getRight();
+            
+            result = var.equals(left) || var.equals(right);
+            
+            // Nested part; left before right
             if (right instanceof Disjunction) {
-                result = isAndAbsorption(var, (Disjunction) right);
+                todo.push((Disjunction) right);
+            }
+            if (left instanceof Disjunction) {
+                todo.push((Disjunction) left);
             }
         }
         
@@ -360,34 +438,47 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
      * @param conjunction The conjunction to test (right side of the example).
      * @return The simplified structure or <code>null</code> if the absorption rule could not be found.
      */
-    private @Nullable Formula nestedAndAbsorbtion(@NonNull Variable var, Conjunction conjunction) {
-        Formula left = conjunction.getLeft();
-        @NonNull Formula right = conjunction.getRight();
-        
-        Formula result = null;
-        if (left instanceof Disjunction && isAndAbsorption(var, (Disjunction) left)) {
-            left = var;
-        } else if (right instanceof Disjunction && isAndAbsorption(var, (Disjunction) right)) {
-            right = var;
-        }
-        
-        // Recursive part
-        if (left instanceof Conjunction) {
-            Formula tmp = nestedAndAbsorbtion(var, (Conjunction) left);
-            left = null != tmp ? tmp : left;
-        }
-        if (right instanceof Conjunction) {
-            Formula tmp = nestedAndAbsorbtion(var, (Conjunction) right);
-            right = null != tmp ? tmp : right;
-        }
-        
-        // Return new (simplified) conjunction only if one of the sides has been changed
-        if (left != conjunction.getLeft() || right != conjunction.getRight()) {
-            result = new Conjunction(left, right);
-            result = result.accept(this);
-        }
+    private @Nullable Formula nestedAndAbsorbtion(@NonNull Variable var, @NonNull Conjunction conjunction) {
+        // Nested conjunctions are handled first, bottom-up
+        Formula simplified = FormulaTraversal.postOrder(conjunction, new IPostOrderHandler<@NonNull Formula>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                return formula instanceof Conjunction ? FormulaTraversal.getOperands(formula) : NO_OPERANDS;
+            }
+
+            @Override
+            public @NonNull Formula handle(@NonNull Formula formula, @NonNull List<@NonNull Formula> operandResults) {
+                Formula result = formula;
+                if (formula instanceof Conjunction) {
+                    Conjunction current = (Conjunction) formula;
+                    Formula left = current.getLeft();
+                    Formula right = current.getRight();
+                    
+                    if (left instanceof Disjunction && isAndAbsorption(var, (Disjunction) left)) {
+                        left = var;
+                    } else if (right instanceof Disjunction && isAndAbsorption(var, (Disjunction) right)) {
+                        right = var;
+                    }
+                    
+                    // Nested part (already handled)
+                    if (left instanceof Conjunction) {
+                        left = notNull(operandResults.get(0));
+                    }
+                    if (right instanceof Conjunction) {
+                        right = notNull(operandResults.get(1));
+                    }
+                    
+                    // Return new (simplified) conjunction only if one of the sides has been changed
+                    if (left != current.getLeft() || right != current.getRight()) {
+                        result = new Conjunction(left, right).accept(FormulaSimplificationVisitor.this);
+                    }
+                }
+                return result;
+            }
+        });
         
-        return result;
+        return simplified != conjunction ? simplified : null;
     }
     
     /**
@@ -453,27 +544,30 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
     }
     
     /**
-     * Recursive test if a disjunction fulfills the absorption rule.
+     * Tests if a disjunction fulfills the absorption rule.
      * @param var The variable of a disjunction.
-     * @param conjunction The conjunction of a disjunction (will be recursively traversed if a compound conjunction).
+     * @param conjunction The conjunction of a disjunction (will be traversed if a compound conjunction).
      * @return <tt>true</tt> if it fulfills the absorption rule, i.e., if it can be simplified, <tt>false</tt>
      *     otherwise.
      */
     private boolean isOrAbsorbtion(Variable var, Conjunction conjunction) {
-        Formula left = conjunction.getLeft();
-        Formula right = conjunction.getRight();
-        
-        boolean result = var.equals(left) || var.equals(right);
-        
-        // Recursive part
-        if (!result) {
-            if (left instanceof Conjunction) {
-                result = isOrAbsorbtion(var, (Conjunction) left);
-            }
-        }
-        if (!result) {
+        Deque<Conjunction> todo = new ArrayDeque<>();
+        todo.push(conjunction);
+        
+        boolean result = false;
+        while (!result && !todo.isEmpty()) {
+            Conjunction current = todo.pop();
+            Formula left = current.getLeft();
+            Formula right = current.getRight();
+            
+            result = var.equals(left) || var.equals(right);
+            
+            // Nested part; left before right
             if (right instanceof Conjunction) {
-                result = isOrAbsorbtion(var, (Conjunction) right);
+                todo.push((Conjunction) right);
+            }
+            if (left instanceof Conjunction) {
+                todo.push((Conjunction) left);
             }
         }
         
@@ -487,33 +581,46 @@ public class FormulaSimplificationVisitor implements IFormulaVisitor<@NonNull Fo
      * @param disjunction The disjunction to test (right side of the example).
      * @return The simplified structure or <tt>null</tt> if the absorption rule could not be found.
      */
-    private @Nullable Formula nestedOrAbsorbtion(@NonNull Variable var, Disjunction disjunction) {
-        Formula left = disjunction.getLeft();
-        @NonNull Formula right = disjunction.getRight();
-        
-        Formula result = null;
-        if (left instanceof Conjunction && isOrAbsorbtion(var, (Conjunction) left)) {
-            left = var;
-        } else if (right instanceof Conjunction && isOrAbsorbtion(var, (Conjunction) right)) {
-            right = var;
-        }
-        
-        // Recursive part
-        if (left instanceof Disjunction) {
-            Formula tmp = nestedOrAbsorbtion(var, (Disjunction) left);
-            left = null != tmp ? tmp : left;
-        }
-        if (right instanceof Disjunction) {
-            Formula tmp = nestedOrAbsorbtion(var, (Disjunction) right);
-            right = null != tmp ? tmp : right;
-        }
-        
-        // Return new (simplified) disjunction only if one of the sides has been changed
-        if (left != disjunction.getLeft() || right != disjunction.getRight()) {
-            result = new Disjunction(left, right);
-            result = result.accept(this);
-        }
+    private @Nullable Formula nestedOrAbsorbtion(@NonNull Variable var, @NonNull Disjunction disjunction) {
+        // Nested disjunctions are handled first, bottom-up
+        Formula simplified = FormulaTraversal.postOrder(disjunction, new IPostOrderHandler<@NonNull Formula>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                return formula instanceof Disjunction ? FormulaTraversal.getOperands(formula) : NO_OPERANDS;
+            }
+
+            @Override
+            public @NonNull Formula handle(@NonNull Formula formula, @NonNull List<@NonNull Formula> operandResults) {
+                Formula result = formula;
+                if (formula instanceof Disjunction) {
+                    Disjunction current = (Disjunction) formula;
+                    Formula left = current.getLeft();
+                    Formula right = current.getRight();
+                    
+                    if (left instanceof Conjunction && isOrAbsorbtion(var, (Conjunction) left)) {
+                        left = var;
+                    } else if (right instanceof Conjunction && isOrAbsorbtion(var, (Conjunction) right)) {
+                        right = var;
+                    }
+                    
+                    // Nested part (already handled)
+                    if (left instanceof Disjunction) {
+                        left = notNull(operandResults.get(0));
+                    }
+                    if (right instanceof Disjunction) {
+                        right = notNull(operandResults.get(1));
+                    }
+                    
+                    // Return new (simplified) disjunction only if one of the sides has been changed
+                    if (left != current.getLeft() || right != current.getRight()) {
+                        result = new Disjunction(left, right).accept(FormulaSimplificationVisitor.this);
+                    }
+                }
+                return result;
+            }
+        });
         
-        return result;
+        return simplified != disjunction ? simplified : null;
     }
 }
@@ -15,15 +15,13 @@
  */
 package net.ssehub.kernel_haven.logic_utils;
 
-import static net.ssehub.kernel_haven.logic_utils.FormulaStructureChecker.getAllConjunctionTerms;
-import static net.ssehub.kernel_haven.logic_utils.FormulaStructureChecker.getAllDisjunctionTerms;
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.ssehub.kernel_haven.util.logic.Conjunction;
 import net.ssehub.kernel_haven.util.logic.Disjunction;
@@ -42,10 +40,11 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
  * Applies rules of the <a href="https://en.wikipedia.org/wiki/Boolean_algebra#Laws">Boolean algebra</a> and
  * combinations of these rules.
  * <p>
- * This is based on {@link FormulaSimplificationVisitor}, but it uses
+ * This is based on {@link FormulaSimplificationVisitor}, but it flattens dis- and conjunction hierarchies (like
  * {@link FormulaStructureChecker#getAllConjunctionTerms(Conjunction)} and
- * {@link FormulaStructureChecker#getAllDisjunctionTerms(Disjunction)} to flatten dis- and conjunction hierarchies
- * before applying the rules.
+ * {@link FormulaStructureChecker#getAllDisjunctionTerms(Disjunction)}) before applying the rules. The rules are
+ * applied on a {@link NaryFormula}, so that the flattened terms and the intermediate results do not have to be
+ * re-built as {@link Formula}s; only the final result is converted back.
  * 
  * @author Adam
  * @author El-Sharkawy
@@ -69,652 +68,519 @@ public class FormulaSimplificationVisitor2 implements IFormulaVisitor<@NonNull F
 
     @Override
     public Formula visitNegation(@NonNull Negation formula) {
-        Formula inner = formula.getFormula().accept(this);
-
-        Formula result;
-        
-        if (inner instanceof Negation) {
-            // Double negation
-            result = ((Negation) inner).getFormula();
-        } else if (inner instanceof True) {
-            result = False.INSTANCE;
-        } else if (inner instanceof False) {
-            result = True.INSTANCE;
-        } else {
-            // only create new instance if nested changed
-            if (inner != formula.getFormula()) {
-                result = new Negation(inner);
-            } else {
-                result = formula;
-            }
-        }
-        
-        return result;
+        return simplify(formula);
     }
 
-
-    // CHECKSTYLE:OFF // method too long
     @Override
     public Formula visitDisjunction(@NonNull Disjunction formula) {
-    // CHECKSTYLE:ON
-        
-        List<Formula> terms = new ArrayList<>();
-        
-        AtomicBoolean containsTrue = new AtomicBoolean(false);
-        getAllDisjunctionTerms(formula).stream()
-                .map((term) -> term.accept(this))
-                .forEach((term) -> {
-                    if (term == True.INSTANCE) {
-                        containsTrue.set(true);
-                    } else if (term != False.INSTANCE) {
-                        terms.add(term);
-                    }
-                });
-        
-        if (containsTrue.get()) {
-            return True.INSTANCE;
-        }
-        
-        if (terms.isEmpty()) {
-            return False.INSTANCE; // we didn't find a single non-false item
-        }
-        
-        for (int li = 0; li < terms.size(); li++) {
-            for (int ri = li + 1; ri < terms.size(); ri++) {
-                Formula left = notNull(terms.get(li)); 
-                Formula right = notNull(terms.get(ri)); 
-                
-                if (isSameVariable(left, right)) {
-                    // Idempotence: A v A -> A
-                    // remove right term and continue
-                    terms.remove(ri);
-                    ri--;
-                    
-                } else if (isNegation(left) && isSameVariable(((Negation) left).getFormula(), right)) {
-                    // Complementation: !A v A -> true
-                    // whole disjunction becomes true
-                    return True.INSTANCE;
-                    
-                } else if (isNegation(right) && isSameVariable(((Negation) right).getFormula(), left)) {
-                    // Complementation: A v !A -> true
-                    // whole disjunction becomes true
-                    return True.INSTANCE;
-                    
-                } else if (isOrAbsorption(left, right)) {
-                    // Classical Absorption: A v (A ^ B) -> A
-                    // remove right term and continue
-                    terms.remove(ri);
-                    ri--;
-                    
-                } else if (isOrAbsorption(right, left)) {
-                    // Classical Absorption: (A ^ B) v A -> A
-                    // remove left term and continue
-                    terms.remove(li);
-                    li--;
-                    break; // break inner loop, since we modified li
-                    
-                } else if (isNegatedOrAbsorption(left, right)) {
-                    // Negated Absorption: !A v (A ^ B) -> !A v B
-                    // replace right term
-                    Formula replacement = getLeftOverNegatedOrAbsorption(getNegatedVariable(left), (Conjunction) right);
-                    terms.set(ri, replacement);
-                    li = -1; // restart
-                    break;
-                    
-                } else if (isNegatedOrAbsorption(right, left)) {
-                    // Negated Absorption: (A ^ B) v !A -> B v !A
-                    // replace left term
-                    Formula replacement = getLeftOverNegatedOrAbsorption(getNegatedVariable(right), (Conjunction) left);
-                    terms.set(li, replacement);
-                    li = -1; // restart
-                    break;
-                    
-                }
-            }
-        }
-        
-        // use newTerms from now on, so that terms is "effectively final" and can be used in lambda above
-        List<Formula> newTerms = terms;
-        
-        // Factoring out: (A ^ B) v (A ^ C) -> A ^ (B v C)
-        // 1) check if all terms are Conjunctions
-        boolean allConjunctions = true;
-        for (Formula term : newTerms) {
-            allConjunctions &= term instanceof Conjunction;
-            if (!allConjunctions) {
-                break;
-            }
-        }
-        Set<Variable> factoredOutvars = null;
-        if (allConjunctions) {
-            // 2) find variables that appear in all of the terms
-            factoredOutvars = findVarThatAppearsInAllConjunctions(newTerms);
-            if (!factoredOutvars.isEmpty()) {
-                // 3) remove the variables from all the given terms
-                newTerms = removeFromAllConjunctions(newTerms, factoredOutvars);
-            }
-        }
-        
-        Formula result;
-        // construct normal disjunction
-        // newTerms can't be empty
-        result = notNull(newTerms.get(0));
-        for (int i = 1; i < newTerms.size(); i++) {
-            result = new Disjunction(result, notNull(newTerms.get(i)));
-        }
-        
-        if (factoredOutvars != null && !factoredOutvars.isEmpty()) {
-            // 4) add factored-out part
-            for (Variable var : factoredOutvars) {
-                result = new Conjunction(notNull(var), result);
-            }
-            result = result.accept(this); // do simplification for the re-factored result
-        }
-        
-        return result;
+        return simplify(formula);
     }
 
-    // CHECKSTYLE:OFF // method too long
     @Override
     public Formula visitConjunction(@NonNull Conjunction formula) {
-    // CHECKSTYLE:ON
-        
-        List<Formula> terms = new ArrayList<>();
-        
-        AtomicBoolean containsFalse = new AtomicBoolean(false);
-        getAllConjunctionTerms(formula).stream()
-                .map((term) -> term.accept(this))
-                .forEach((term) -> {
-                    if (term == False.INSTANCE) {
-                        containsFalse.set(true);
-                    } else if (term != True.INSTANCE) {
-                        terms.add(term);
-                    }
-                });
+        return simplify(formula);
+    }
 
-        if (containsFalse.get()) {
-            return False.INSTANCE;
-        }
-        
-        if (terms.isEmpty()) {
-            return True.INSTANCE; // we didn't find a single non-true item
+    /**
+     * Simplifies the given formula.
+     * 
+     * @param formula The formula to simplify.
+     * @return The simplified formula.
+     */
+    private static @NonNull Formula simplify(@NonNull Formula formula) {
+        NaryFormula nary = new NaryFormula();
+        int root = nary.addFormula(formula);
+        return nary.toFormula(new Simplification(nary).simplify(root));
+    }
+    
+    /**
+     * The simplification of a single {@link NaryFormula}. All rules work on the node numbers; each node is only
+     * simplified once.
+     */
+    private static final class Simplification {
+        
+        private final @NonNull NaryFormula nary;
+        
+        /**
+         * The simplified node for each node; -1 if not yet simplified.
+         */
+        private int @NonNull [] simplified;
+        
+        /**
+         * Creates a simplification.
+         * 
+         * @param nary The formula that contains the nodes to simplify. New nodes are added to it.
+         */
+        Simplification(@NonNull NaryFormula nary) {
+            this.nary = nary;
+            this.simplified = new int[0];
         }
         
-        for (int li = 0; li < terms.size(); li++) {
-            for (int ri = li + 1; ri < terms.size(); ri++) {
-                Formula left = notNull(terms.get(li)); 
-                Formula right = notNull(terms.get(ri)); 
+        /**
+         * Simplifies the given node bottom-up. This uses an explicit stack instead of recursion, so that deep
+         * formulas do not overflow the stack. The operands of a dis- or conjunction are its flattened terms.
+         * 
+         * @param root The node to simplify.
+         * @return The simplified node.
+         */
+        int simplify(int root) {
+            int result = getSimplified(root);
+            
+            Deque<int @NonNull []> stack = new ArrayDeque<>();
+            if (result < 0) {
+                stack.push(getOperands(root));
+            }
+            
+            // each stack element is: node, number of handled operands, operands...
+            while (!stack.isEmpty()) {
+                int[] top = notNull(stack.peek());
                 
-                if (isSameVariable(left, right)) {
-                    // Idempotence: A ^ A -> A
-                    // remove right term and continue
-                    terms.remove(ri);
-                    ri--;
-                    
-                } else if (isNegation(left) && isSameVariable(((Negation) left).getFormula(), right)) {
-                    // Complementation: !A ^ A -> false
-                    // whole conjunction becomes false
-                    return False.INSTANCE;
-                    
-                } else if (isNegation(right) && isSameVariable(((Negation) right).getFormula(), left)) {
-                    // Complementation: A ^ !A -> false
-                    // whole conjunction becomes false
-                    return False.INSTANCE;
-                    
-                } else if (isAndAbsorption(left, right)) {
-                    // Classical Absorption: A ^ (A v B) -> A
-                    // remove right term and continue
-                    terms.remove(ri);
-                    ri--;
-                    
-                } else if (isAndAbsorption(right, left)) {
-                    // Classical Absorption: (A v B) ^ A -> A
-                    // remove left term and continue
-                    terms.remove(li);
-                    li--;
-                    break; // break inner loop, since we modified li
+                if (top[1] < top.length - 2) {
+                    int operand = top[top[1] + 2];
+                    int operandResult = getSimplified(operand);
+                    if (operandResult >= 0) {
+                        top[top[1]++ + 2] = operandResult;
+                    } else {
+                        stack.push(getOperands(operand));
+                    }
                     
-                } else if (isNegatedAndAbsorption(left, right)) {
-                    // Negated Absorption: !A ^ (A v B) -> !A ^ B
-                    // replace right term
-                    Formula replacement
-                        = getLeftOverNegatedAndAbsorption(getNegatedVariable(left), (Disjunction) right);
-                    terms.set(ri, replacement);
-                    li = -1; // restart
-                    break;
+                } else {
+                    stack.pop();
+                    int node = top[0];
+                    int nodeResult = handle(node, top);
+                    setSimplified(node, nodeResult);
                     
-                } else if (isNegatedAndAbsorption(right, left)) {
-                    // Negated Absorption: (A v B) ^ !A -> B ^ !A
-                    // replace left term
-                    Formula replacement
-                        = getLeftOverNegatedAndAbsorption(getNegatedVariable(right), (Disjunction) left);
-                    terms.set(li, replacement);
-                    li = -1; // restart
-                    break;
+                    int[] parent = stack.peek();
+                    if (parent != null) {
+                        parent[parent[1]++ + 2] = nodeResult;
+                    } else {
+                        result = nodeResult;
+                    }
                 }
-                
             }
+            
+            return result;
         }
         
-        // use newTerms from now on, so that terms is "effectively final" and can be used in lambda above
-        List<Formula> newTerms = terms;
-        
-        // Factoring out: (A v B) ^ (A v C) -> A v (B ^ C)
-        // 1) check if all terms are Disjunctions
-        boolean allDisjunctions = true;
-        for (Formula term : newTerms) {
-            allDisjunctions &= term instanceof Disjunction;
-            if (!allDisjunctions) {
-                break;
+        /**
+         * Creates the stack element for the given node, see {@link #simplify(int)}.
+         * 
+         * @param node The node.
+         * @return The node, followed by 0 and the operands that need to be simplified first.
+         */
+        private int @NonNull [] getOperands(int node) {
+            int[] result;
+            byte kind = nary.getKind(node);
+            if (kind == NaryFormula.CONJUNCTION || kind == NaryFormula.DISJUNCTION) {
+                int[] terms = nary.getTerms(node);
+                result = new int[terms.length + 2];
+                System.arraycopy(terms, 0, result, 2, terms.length);
+            } else if (kind == NaryFormula.NEGATION) {
+                result = new int[] {node, 0, nary.getOperand(node, 0)};
+            } else {
+                result = new int[2];
             }
+            result[0] = node;
+            return result;
         }
-        Set<Variable> factoredOutvars = null;
-        if (allDisjunctions) {
-            // 2) find variables that appear in all of the terms
-            factoredOutvars = findVarThatAppearsInAllDisjunctions(newTerms);
-            if (!factoredOutvars.isEmpty()) {
-                // 3) remove the variables from all the given terms
-                newTerms = removeFromAllDisjunctions(newTerms, factoredOutvars);
+        
+        /**
+         * Simplifies a node, after all its operands are simplified.
+         * 
+         * @param node The node to simplify.
+         * @param stackElement The stack element of the node; contains the simplified operands after the first two
+         *      entries.
+         * @return The simplified node.
+         */
+        private int handle(int node, int @NonNull [] stackElement) {
+            int result;
+            byte kind = nary.getKind(node);
+            if (kind == NaryFormula.NEGATION) {
+                result = simplifyNegation(node, stackElement[2]);
+            } else if (kind == NaryFormula.CONJUNCTION || kind == NaryFormula.DISJUNCTION) {
+                result = simplifyJunction(kind, notNull(Arrays.copyOfRange(stackElement, 2, stackElement.length)));
+            } else {
+                // variables and constants
+                result = node;
             }
+            return result;
         }
         
-        Formula result;
-        // construct normal conjunction
-        // newTerms can't be empty
-        result = notNull(newTerms.get(0));
-        for (int i = 1; i < newTerms.size(); i++) {
-            result = new Conjunction(result, notNull(newTerms.get(i)));
+        /**
+         * Returns the already simplified node for the given node.
+         * 
+         * @param node The node.
+         * @return The simplified node, or -1 if the node is not yet simplified.
+         */
+        private int getSimplified(int node) {
+            return node < simplified.length ? simplified[node] : -1;
         }
         
-        if (factoredOutvars != null && !factoredOutvars.isEmpty()) {
-            // 4) add factored-out part
-            for (Variable var : factoredOutvars) {
-                result = new Disjunction(notNull(var), result);
+        /**
+         * Stores the simplified node for the given node.
+         * 
+         * @param node The node.
+         * @param result The simplified node.
+         */
+        private void setSimplified(int node, int result) {
+            if (node >= simplified.length) {
+                int oldLength = simplified.length;
+                simplified = notNull(Arrays.copyOf(simplified, Math.max(node + 1, oldLength * 2)));
+                Arrays.fill(simplified, oldLength, simplified.length, -1);
             }
-            result = result.accept(this); // do simplification for the re-factored result
+            simplified[node] = result;
         }
         
-        return result;
-    }
-    
-    /**
-     * Finds a set of variables that appear in all of the given conjunctions.
-     * 
-     * @param terms A list of {@link Conjunction}s.
-     * 
-     * @return A set of variables that appear in all conjunctions; may be empty.
-     */
-    private @NonNull Set<@NonNull Variable> findVarThatAppearsInAllConjunctions(@NonNull List<Formula> terms) {
-        Set<@NonNull Variable> result = null;
-        
-        for (Formula term : terms) {
-            List<@NonNull Formula> subTerms = getAllConjunctionTerms((Conjunction) notNull(term));
-            Set<@NonNull Variable> vars = new HashSet<>(subTerms.size());
-            for (Formula subTerm : subTerms) {
-                if (isVariable(subTerm)) {
-                    vars.add((Variable) subTerm);
-                }
-            }
+        /**
+         * Simplifies a negation.
+         * 
+         * @param node The negation to simplify.
+         * @param inner The already simplified nested node.
+         * @return The simplified node.
+         */
+        private int simplifyNegation(int node, int inner) {
+            int result;
             
-            if (result == null) {
-                result = vars;
+            if (nary.getKind(inner) == NaryFormula.NEGATION) {
+                // Double negation
+                result = nary.getOperand(inner, 0);
+            } else if (inner == NaryFormula.TRUE_NODE) {
+                result = NaryFormula.FALSE_NODE;
+            } else if (inner == NaryFormula.FALSE_NODE) {
+                result = NaryFormula.TRUE_NODE;
             } else {
-                result.retainAll(vars);
+                // only create new node if nested changed
+                if (inner != nary.getOperand(node, 0)) {
+                    result = nary.negation(inner);
+                } else {
+                    result = node;
+                }
             }
+            
+            return result;
         }
         
-        return notNull(result);
-    }
-    
-    /**
-     * Finds a set of variables that appear in all of the given disjunctions.
-     * 
-     * @param terms A list of {@link Disjunction}s.
-     * 
-     * @return A set of variables that appear in all disjunctions; may be empty.
-     */
-    private @NonNull Set<@NonNull Variable> findVarThatAppearsInAllDisjunctions(@NonNull List<Formula> terms) {
-        Set<@NonNull Variable> result = null;
-        
-        for (Formula term : terms) {
-            List<@NonNull Formula> subTerms = getAllDisjunctionTerms((Disjunction) notNull(term));
-            Set<@NonNull Variable> vars = new HashSet<>(subTerms.size());
-            for (Formula subTerm : subTerms) {
-                if (isVariable(subTerm)) {
-                    vars.add((Variable) subTerm);
+        /**
+         * Simplifies a conjunction or disjunction. The comments describe the rules for disjunctions; for conjunctions,
+         * the dual rules apply (i.e. swap &and; and &or;, true and false).
+         * 
+         * @param kind {@link NaryFormula#DISJUNCTION} or {@link NaryFormula#CONJUNCTION}.
+         * @param simplifiedTerms The already simplified terms of the flattened dis- or conjunction.
+         * @return The simplified node.
+         */
+        // CHECKSTYLE:OFF // method too long
+        private int simplifyJunction(byte kind, int @NonNull [] simplifiedTerms) {
+        // CHECKSTYLE:ON
+            boolean disjunction = kind == NaryFormula.DISJUNCTION;
+            byte dualKind = disjunction ? NaryFormula.CONJUNCTION : NaryFormula.DISJUNCTION;
+            int absorbing = disjunction ? NaryFormula.TRUE_NODE : NaryFormula.FALSE_NODE;
+            int neutral = disjunction ? NaryFormula.FALSE_NODE : NaryFormula.TRUE_NODE;
+            
+            int[] terms = new int[simplifiedTerms.length];
+            int numTerms = 0;
+            
+            for (int term : simplifiedTerms) {
+                if (term == absorbing) {
+                    return absorbing;
+                } else if (term != neutral) {
+                    terms[numTerms++] = term;
                 }
             }
             
-            if (result == null) {
-                result = vars;
-            } else {
-                result.retainAll(vars);
+            if (numTerms == 0) {
+                return neutral; // we didn't find a single non-false item
             }
-        }
-        
-        return notNull(result);
-    }
-    
-    /**
-     * Constructs a new list of conjunctions, with all the given variables removed.
-     * 
-     * @param terms The list of conjunctions to remove the variables from.
-     * @param vars The variables to remove from all conjunctions.
-     * 
-     * @return A new list of conjunctions, with all the variables removed.
-     */
-    private @NonNull List<Formula> removeFromAllConjunctions(@NonNull List<Formula> terms,
-            @NonNull Set<Variable> vars) {
-        
-        List<Formula> result = new ArrayList<>(terms.size());
-        
-        for (Formula term : terms) {
-            List<@NonNull Formula> subTerms = getAllConjunctionTerms((Conjunction) notNull(term));
-            List<@NonNull Formula> newSubTerms = new ArrayList<>(subTerms.size());
+            
+            for (int li = 0; li < numTerms; li++) {
+                for (int ri = li + 1; ri < numTerms; ri++) {
+                    int left = terms[li];
+                    int right = terms[ri];
                     
-            for (Formula subTerm : subTerms) {
-                if (!isVariable(subTerm) || !vars.contains(subTerm)) {
-                    newSubTerms.add(subTerm);
+                    if (isSameVariable(left, right)) {
+                        // Idempotence: A v A -> A
+                        // remove right term and continue
+                        numTerms = remove(terms, numTerms, ri);
+                        ri--;
+                        
+                    } else if (isNegation(left) && isSameVariable(nary.getOperand(left, 0), right)) {
+                        // Complementation: !A v A -> true
+                        // whole disjunction becomes true
+                        return absorbing;
+                        
+                    } else if (isNegation(right) && isSameVariable(nary.getOperand(right, 0), left)) {
+                        // Complementation: A v !A -> true
+                        // whole disjunction becomes true
+                        return absorbing;
+                        
+                    } else if (isAbsorption(dualKind, left, right)) {
+                        // Classical Absorption: A v (A ^ B) -> A
+                        // remove right term and continue
+                        numTerms = remove(terms, numTerms, ri);
+                        ri--;
+                        
+                    } else if (isAbsorption(dualKind, right, left)) {
+                        // Classical Absorption: (A ^ B) v A -> A
+                        // remove left term and continue
+                        numTerms = remove(terms, numTerms, li);
+                        li--;
+                        break; // break inner loop, since we modified li
+                        
+                    } else if (isNegatedAbsorption(dualKind, left, right)) {
+                        // Negated Absorption: !A v (A ^ B) -> !A v B
+                        // replace right term
+                        int replacement = getLeftOverNegatedAbsorption(nary.getOperand(left, 0), right);
+                        if (replacement == absorbing) {
+                            // !A v (A ^ A) -> !A v true
+                            return absorbing;
+                        }
+                        terms[ri] = replacement;
+                        li = -1; // restart
+                        break;
+                        
+                    } else if (isNegatedAbsorption(dualKind, right, left)) {
+                        // Negated Absorption: (A ^ B) v !A -> B v !A
+                        // replace left term
+                        int replacement = getLeftOverNegatedAbsorption(nary.getOperand(right, 0), left);
+                        if (replacement == absorbing) {
+                            // (A ^ A) v !A -> true v !A
+                            return absorbing;
+                        }
+                        terms[li] = replacement;
+                        li = -1; // restart
+                        break;
+                    }
                 }
             }
             
-            if (!newSubTerms.isEmpty()) {
-                Formula newSubTerm = notNull(newSubTerms.get(0));
-                for (int i = 1; i < newSubTerms.size(); i++) {
-                    newSubTerm = new Conjunction(newSubTerm, newSubTerms.get(i));
+            // Factoring out: (A ^ B) v (A ^ C) -> A ^ (B v C)
+            // 1) check if all terms are Conjunctions
+            boolean allDual = true;
+            for (int i = 0; i < numTerms; i++) {
+                if (nary.getKind(terms[i]) != dualKind) {
+                    allDual = false;
+                    break;
                 }
-                result.add(newSubTerm);
-            } else {
-                // all variables were removed, add True (A == A && true)
-                result.add(True.INSTANCE);
             }
-        }
-        
-        return result;
-    }
-    
-    /**
-     * Constructs a new list of disjunctions, with all the given variables removed.
-     * 
-     * @param terms The list of disjunctions to remove the variables from.
-     * @param vars The variables to remove from all disjunctions.
-     * 
-     * @return A new list of disjunctions, with all the variables removed.
-     */
-    private @NonNull List<Formula> removeFromAllDisjunctions(@NonNull List<Formula> terms,
-            @NonNull Set<Variable> vars) {
-        
-        List<Formula> result = new ArrayList<>(terms.size());
-        
-        for (Formula term : terms) {
-            List<@NonNull Formula> subTerms = getAllDisjunctionTerms((Disjunction) notNull(term));
-            List<@NonNull Formula> newSubTerms = new ArrayList<>(subTerms.size());
-                    
-            for (Formula subTerm : subTerms) {
-                if (!isVariable(subTerm) || !vars.contains(subTerm)) {
-                    newSubTerms.add(subTerm);
+            Set<@NonNull Variable> factoredOutvars = null;
+            if (allDual) {
+                // 2) find variables that appear in all of the terms
+                factoredOutvars = findVarThatAppearsInAll(terms, numTerms);
+                if (!factoredOutvars.isEmpty()) {
+                    // 3) remove the variables from all the given terms
+                    removeFromAll(terms, numTerms, factoredOutvars, absorbing);
                 }
             }
             
-            if (!newSubTerms.isEmpty()) {
-                Formula newSubTerm = notNull(newSubTerms.get(0));
-                for (int i = 1; i < newSubTerms.size(); i++) {
-                    newSubTerm = new Disjunction(newSubTerm, newSubTerms.get(i));
+            // construct normal disjunction
+            // terms can't be empty
+            int result = nary.operator(kind, terms, numTerms);
+            
+            if (factoredOutvars != null && !factoredOutvars.isEmpty()) {
+                // 4) add factored-out part
+                int[] operands = new int[2];
+                for (Variable var : factoredOutvars) {
+                    operands[0] = nary.variable(notNull(var));
+                    operands[1] = result;
+                    result = nary.operator(dualKind, operands, 2);
                 }
-                result.add(newSubTerm);
-            } else {
-                // all variables were removed, add False -> (A == A || 0)
-                result.add(False.INSTANCE);
+                result = simplify(result); // do simplification for the re-factored result
             }
+            
+            return result;
         }
         
-        return result;
-    }
-
-    /**
-     * Checks if the absorption rule applies. A &or; (A &and; B) &rarr; A.
-     * 
-     * @param possibleVar The variable that absorbs the conjunction (A in the example).
-     * @param possibleConjunction The conjunction that is absorbed ((A &and; B) in the example).
-     * 
-     * @return Whether the absorption rule applies to the given formulas.
-     */
-    private boolean isOrAbsorption(@NonNull Formula possibleVar, @NonNull Formula possibleConjunction) {
-        boolean result = false;
+        /**
+         * Removes an element from the given array.
+         * 
+         * @param array The array to remove from.
+         * @param length The number of used elements in the array.
+         * @param index The index of the element to remove.
+         * @return The new number of used elements.
+         */
+        private static int remove(int @NonNull [] array, int length, int index) {
+            System.arraycopy(array, index + 1, array, index, length - index - 1);
+            return length - 1;
+        }
         
-        if (isVariable(possibleVar) && isConjunction(possibleConjunction)) {
-            Variable var = (Variable) possibleVar;
-            List<@NonNull Formula> terms = getAllConjunctionTerms((Conjunction) possibleConjunction);
+        /**
+         * Finds a set of variables that appear in all of the given conjunctions (or disjunctions).
+         * 
+         * @param terms The conjunction (or disjunction) nodes.
+         * @param numTerms The number of used elements in terms.
+         * 
+         * @return A set of variables that appear in all terms; may be empty.
+         */
+        private @NonNull Set<@NonNull Variable> findVarThatAppearsInAll(int @NonNull [] terms, int numTerms) {
+            Set<@NonNull Variable> result = null;
             
-            for (Formula term : terms) {
-                if (isSameVariable(var, term)) {
-                    result = true;
-                    break;
+            for (int i = 0; i < numTerms; i++) {
+                int[] subTerms = nary.getTerms(terms[i]);
+                Set<@NonNull Variable> vars = new HashSet<>(subTerms.length);
+                for (int subTerm : subTerms) {
+                    if (isVariable(subTerm)) {
+                        vars.add(nary.getVariable(subTerm));
+                    }
+                }
+                
+                if (result == null) {
+                    result = vars;
+                } else {
+                    result.retainAll(vars);
                 }
             }
+            
+            return notNull(result);
         }
         
-        return result;
-    }
-    
-    /**
-     * Checks if the negated absorption rule applies. !A &or; (A &and; B) &rarr; !A &or; B.
-     * 
-     * @param possibleNegatedVar The negated variable that absorbs parts of the conjunction (!A in the example).
-     * @param possibleConjunction The conjunction that is partly absorbed ((A &and; B) in the example).
-     * 
-     * @return Whether the negated absorption rule applies to the given formulas.
-     */
-    private boolean isNegatedOrAbsorption(@NonNull Formula possibleNegatedVar, @NonNull Formula possibleConjunction) {
-        boolean result = false;
-        
-        if (isNegatedVariable(possibleNegatedVar) && isConjunction(possibleConjunction)) {
-            Variable var = getNegatedVariable(possibleNegatedVar);
-            List<@NonNull Formula> terms = getAllConjunctionTerms((Conjunction) possibleConjunction);
+        /**
+         * Removes the given variables from all the given conjunctions (or disjunctions).
+         * 
+         * @param terms The conjunction (or disjunction) nodes. Each is replaced by the node with the variables
+         *      removed.
+         * @param numTerms The number of used elements in terms.
+         * @param vars The variables to remove from all terms.
+         * @param empty The node to use if all terms of an element are removed; true for conjunctions
+         *      (A == A &and; true), false for disjunctions (A == A &or; false).
+         */
+        private void removeFromAll(int @NonNull [] terms, int numTerms, @NonNull Set<@NonNull Variable> vars,
+                int empty) {
             
-            for (Formula term : terms) {
-                if (isSameVariable(var, term)) {
-                    result = true;
-                    break;
+            for (int i = 0; i < numTerms; i++) {
+                byte kind = nary.getKind(terms[i]);
+                int[] subTerms = nary.getTerms(terms[i]);
+                int numSubTerms = 0;
+                
+                for (int subTerm : subTerms) {
+                    if (!isVariable(subTerm) || !vars.contains(nary.getVariable(subTerm))) {
+                        subTerms[numSubTerms++] = subTerm;
+                    }
                 }
-            }
-        }
-        
-        return result;
-    }
-    
-    /**
-     * Returns the left-over conjunction that remains after the negated or absoprtion.
-     * !A &or; (A &and; B) &rarr; !A &or; B.
-     * 
-     * @param var The variable that absorbs parts of the conjunction (A in the example).
-     * @param conjunction The conjunction that is partly absorbed ((A &and; B) in the example).
-     * 
-     * @return The left-over conjunction. (B in the example).
-     * 
-     * @see #isNegatedOrAbsorption(Formula, Formula)
-     */
-    private @NonNull Formula getLeftOverNegatedOrAbsorption(@NonNull Variable var, @NonNull Conjunction conjunction) {
-        List<@NonNull Formula> terms = getAllConjunctionTerms(conjunction);
-        Formula result = null;
-        
-        for (Formula term : terms) {
-            if (!isSameVariable(term, var)) {
-                if (result == null) {
-                    result = term;
+                
+                if (numSubTerms > 0) {
+                    terms[i] = nary.operator(kind, subTerms, numSubTerms);
                 } else {
-                    result = new Conjunction(result, term);
+                    // all variables were removed
+                    terms[i] = empty;
                 }
             }
         }
         
-        return notNull(result);
-    }
-    
-    /**
-     * Checks if the absorption rule applies. A &and; (A &or; B) &rarr; A.
-     * 
-     * @param possibleVar The variable that absorbs the disjunction (A in the example).
-     * @param possibleDisjunction The disjunction that is absorbed ((A &or; B) in the example).
-     * 
-     * @return Whether the absorption rule applies to the given formulas.
-     */
-    private boolean isAndAbsorption(@NonNull Formula possibleVar, @NonNull Formula possibleDisjunction) {
-        boolean result = false;
+        /**
+         * Checks if the absorption rule applies. A &or; (A &and; B) &rarr; A, or A &and; (A &or; B) &rarr; A.
+         * 
+         * @param dualKind The kind of the absorbed node.
+         * @param possibleVar The variable that absorbs the other node (A in the example).
+         * @param possibleDual The node that is absorbed ((A &and; B) in the example).
+         * 
+         * @return Whether the absorption rule applies to the given nodes.
+         */
+        private boolean isAbsorption(byte dualKind, int possibleVar, int possibleDual) {
+            return isVariable(possibleVar) && nary.getKind(possibleDual) == dualKind
+                    && containsTerm(possibleDual, possibleVar);
+        }
         
-        if (isVariable(possibleVar) && isDisjunction(possibleDisjunction)) {
-            Variable var = (Variable) possibleVar;
-            List<@NonNull Formula> terms = getAllDisjunctionTerms((Disjunction) possibleDisjunction);
-            
-            for (Formula term : terms) {
+        /**
+         * Checks if the negated absorption rule applies. !A &or; (A &and; B) &rarr; !A &or; B, or
+         * !A &and; (A &or; B) &rarr; !A &and; B.
+         * 
+         * @param dualKind The kind of the partly absorbed node.
+         * @param possibleNegatedVar The negated variable that absorbs parts of the other node (!A in the example).
+         * @param possibleDual The node that is partly absorbed ((A &and; B) in the example).
+         * 
+         * @return Whether the negated absorption rule applies to the given nodes.
+         */
+        private boolean isNegatedAbsorption(byte dualKind, int possibleNegatedVar, int possibleDual) {
+            return isNegation(possibleNegatedVar) && isVariable(nary.getOperand(possibleNegatedVar, 0))
+                    && nary.getKind(possibleDual) == dualKind
+                    && containsTerm(possibleDual, nary.getOperand(possibleNegatedVar, 0));
+        }
+        
+        /**
+         * Checks whether the flattened terms of the given conjunction (or disjunction) contain the given variable.
+         * 
+         * @param node The conjunction (or disjunction).
+         * @param var The variable node.
+         * 
+         * @return Whether the variable is a term of the node.
+         */
+        private boolean containsTerm(int node, int var) {
+            boolean result = false;
+            for (int term : nary.getTerms(node)) {
                 if (isSameVariable(var, term)) {
                     result = true;
                     break;
                 }
             }
+            return result;
         }
         
-        return result;
-    }
-    
-    /**
-     * Checks if the negated absorption rule applies. !A &and; (A &or; B) &rarr; !A &and; B.
-     * 
-     * @param possibleNegatedVar The negated variable that absorbs parts of the disjunction (!A in the example).
-     * @param possibleDisjunction The disjunction that is partly absorbed ((A &or; B) in the example).
-     * 
-     * @return Whether the negated absorption rule applies to the given formulas.
-     */
-    private boolean isNegatedAndAbsorption(@NonNull Formula possibleNegatedVar, @NonNull Formula possibleDisjunction) {
-        boolean result = false;
-        
-        if (isNegatedVariable(possibleNegatedVar) && isDisjunction(possibleDisjunction)) {
-            Variable var = getNegatedVariable(possibleNegatedVar);
-            List<@NonNull Formula> terms = getAllDisjunctionTerms((Disjunction) possibleDisjunction);
+        /**
+         * Returns the left-over node that remains after the negated absorption.
+         * !A &or; (A &and; B) &rarr; !A &or; B.
+         * 
+         * @param var The variable that absorbs parts of the other node (A in the example).
+         * @param node The conjunction (or disjunction) that is partly absorbed ((A &and; B) in the example).
+         * 
+         * @return The left-over node (B in the example). If nothing is left over, this is true for conjunctions and
+         *      false for disjunctions.
+         * 
+         * @see #isNegatedAbsorption(byte, int, int)
+         */
+        private int getLeftOverNegatedAbsorption(int var, int node) {
+            byte kind = nary.getKind(node);
+            int[] terms = nary.getTerms(node);
+            int numTerms = 0;
             
-            for (Formula term : terms) {
-                if (isSameVariable(var, term)) {
-                    result = true;
-                    break;
+            for (int term : terms) {
+                if (!isSameVariable(term, var)) {
+                    terms[numTerms++] = term;
                 }
             }
+            
+            int result;
+            if (numTerms > 0) {
+                result = nary.operator(kind, terms, numTerms);
+            } else {
+                // the variable appeared multiple times, e.g. (A ^ A)
+                result = kind == NaryFormula.CONJUNCTION ? NaryFormula.TRUE_NODE : NaryFormula.FALSE_NODE;
+            }
+            return result;
         }
         
-        return result;
-    }
-    
-    /**
-     * Returns the left-over disjunction that remains after the negated and absoprtion.
-     * !A &and; (A &or; B) &rarr; !A &and; B.
-     * 
-     * @param var The variable that absorbs parts of the disjunction (A in the example).
-     * @param disjunction The disjunction that is partly absorbed ((A &or; B) in the example).
-     * 
-     * @return The left-over disjunction. (B in the example).
-     * 
-     * @see #isNegatedAndAbsorption(Formula, Formula)
-     */
-    private @NonNull Formula getLeftOverNegatedAndAbsorption(@NonNull Variable var, @NonNull Disjunction disjunction) {
-        List<@NonNull Formula> terms = getAllDisjunctionTerms(disjunction);
-        Formula result = null;
-        
-        for (Formula term : terms) {
-            if (!isSameVariable(term, var)) {
-                if (result == null) {
-                    result = term;
-                } else {
-                    result = new Disjunction(result, term);
-                }
-            }
+        /**
+         * Checks if the given node is a negation.
+         * 
+         * @param node The node to check.
+         * 
+         * @return Whether the node is a negation.
+         */
+        private boolean isNegation(int node) {
+            return nary.getKind(node) == NaryFormula.NEGATION;
         }
         
-        return notNull(result);
-    }
-    
-    /**
-     * Checks if the given formula is a conjunction.
-     * 
-     * @param formula The formula to check.
-     * 
-     * @return Whether the formula is a conjunction.
-     */
-    private static boolean isConjunction(@NonNull Formula formula) {
-        return formula instanceof Conjunction;
-    }
-    
-    /**
-     * Checks if the given formula is a disjunction.
-     * 
-     * @param formula The formula to check.
-     * 
-     * @return Whether the formula is a disjunction.
-     */
-    private static boolean isDisjunction(@NonNull Formula formula) {
-        return formula instanceof Disjunction;
-    }
-    
-    /**
-     * Checks if the given formula is a negation.
-     * 
-     * @param formula The formula to check.
-     * 
-     * @return Whether the formula is a negation.
-     */
-    private static boolean isNegation(@NonNull Formula formula) {
-        return formula instanceof Negation;
-    }
-    
-    /**
-     * Checks if the given formula is a variable.
-     * 
-     * @param formula The formula to check.
-     * 
-     * @return Whether the formula is a variable.
-     */
-    private static boolean isVariable(@NonNull Formula formula) {
-        return formula instanceof Variable;
-    }
-    
-    /**
-     * Checks if the given formula is a negated variable.
-     * 
-     * @param formula The formula to check.
-     * 
-     * @return Whether the formula is a negated variable.
-     */
-    private static boolean isNegatedVariable(@NonNull Formula formula) {
-        return isNegation(formula) && isVariable(((Negation) formula).getFormula()); 
-    }
-    
-    /**
-     * Returns the variable that is nested inside the given negation.
-     * 
-     * @param formula A {@link Negation} that contains a {@link Variable}.
-     * 
-     * @return The variable that is inside the given negation.
-     * 
-     * @see #isNegatedVariable(Formula).
-     */
-    private static @NonNull Variable getNegatedVariable(@NonNull Formula formula) {
-        return (Variable) ((Negation) formula).getFormula();
-    }
-    
-    /**
-     * Checks if the two given formulas are {@link Variable}s and equal.
-     * 
-     * @param f1 The first formula.
-     * @param f2 The second formula.
-     * 
-     * @return Whether the two formulas are the same {@link Variable}.
-     */
-    private static boolean isSameVariable(@NonNull Formula f1, @NonNull Formula f2) {
-        boolean result = false;
+        /**
+         * Checks if the given node is a variable.
+         * 
+         * @param node The node to check.
+         * 
+         * @return Whether the node is a variable.
+         */
+        private boolean isVariable(int node) {
+            return nary.getKind(node) == NaryFormula.VARIABLE;
+        }
         
-        if (isVariable(f1) && isVariable(f2)) {
-            result = f1.equals(f2);
+        /**
+         * Checks if the two given nodes are the same variable.
+         * 
+         * @param n1 The first node.
+         * @param n2 The second node.
+         * 
+         * @return Whether the two nodes are the same variable.
+         */
+        private boolean isSameVariable(int n1, int n2) {
+            return n1 == n2 && isVariable(n1);
         }
         
-        return result;
     }
     
 }
@@ -17,10 +17,16 @@ package net.ssehub.kernel_haven.logic_utils;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
 import net.ssehub.kernel_haven.util.logic.Conjunction;
 import net.ssehub.kernel_haven.util.logic.Disjunction;
 import net.ssehub.kernel_haven.util.logic.False;
@@ -29,6 +35,7 @@ import net.ssehub.kernel_haven.util.logic.Negation;
 import net.ssehub.kernel_haven.util.logic.True;
 import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
 
 /**
  * Tests if two {@link Formula}s are structurally equal.
@@ -62,17 +69,8 @@ public class FormulaStructureChecker {
     public static boolean isStructurallyEqual(@NonNull Formula f1, @NonNull Formula f2) {
         boolean result = false;
         if (f1.getClass() == f2.getClass()) {
-            
-            if (f1 instanceof Variable || f1 instanceof True || f1 instanceof False) {
-                result = f1.equals(f2);
-            } else if (f1 instanceof Negation) {
-                result = isStructurallyEqual(((Negation) f1).getFormula(), ((Negation) f2).getFormula());
-            } else if (f1 instanceof Disjunction) {
-                result = checkDisjunction((Disjunction) f1, (Disjunction) f2);
-            } else if (f1 instanceof Conjunction) {
-                result = checkConjunction((Conjunction) f1, (Conjunction) f2);
-            }
-            
+            StructureIds ids = new StructureIds();
+            result = ids.getId(f1) == ids.getId(f2);
         }
         
         return result;
@@ -88,92 +86,25 @@ public class FormulaStructureChecker {
      * @return The list of all terms that are combined with a disjunction.
      */
     public static @NonNull List<@NonNull Formula> getAllDisjunctionTerms(@NonNull Disjunction dis) {
-        List<@NonNull Formula> toCheck = new LinkedList<>();
+        List<@NonNull Formula> result = new ArrayList<>();
+        
+        // breadth-first, i.e. terms are ordered by their nesting depth
+        Deque<@NonNull Formula> toCheck = new ArrayDeque<>();
         toCheck.add(dis.getLeft());
         toCheck.add(dis.getRight());
-        
-        boolean foundDisjunction;
-        
-        do {
-            foundDisjunction = false;
-            
-            List<@NonNull Formula> toAdd = new LinkedList<>();
-            
-            Iterator<@NonNull Formula> it = toCheck.iterator();
-            while (it.hasNext()) {
-                Formula f = notNull(it.next());
-                if (f instanceof Disjunction) {
-                    foundDisjunction = true;
-                    it.remove();
-                    
-                    toAdd.add(((Disjunction) f).getLeft());
-                    toAdd.add(((Disjunction) f).getRight());
-                }
+        while (!toCheck.isEmpty()) {
+            Formula f = notNull(toCheck.poll());
+            if (f instanceof Disjunction) {
+                toCheck.add(((Disjunction) f).getLeft());
+                toCheck.add(((Disjunction) f).getRight());
+            } else {
+                result.add(f);
             }
-            
-            toCheck.addAll(toAdd);
-            
-        } while (foundDisjunction);
-        
-        return toCheck;
-    }
-    
-    /**
-     * Checks if the two given lists of terms are structurally equal. The term-order does not matter.
-     * 
-     * @param toCheckL The first list to check.
-     * @param toCheckR The second list to check.
-     * 
-     * @return Whether the two term lists are equal.
-     */
-    private static boolean termsAreEqual(@NonNull List<@NonNull Formula> toCheckL,
-            @NonNull List<@NonNull Formula> toCheckR) {
-        
-        boolean result;
-        
-        if (toCheckL.size() != toCheckR.size()) {
-            result = false;
-            
-        } else {
-            
-            for (Formula left : toCheckL) {
-                
-                boolean found = false;
-                Iterator<@NonNull Formula> itR = toCheckR.iterator();
-                while (itR.hasNext()) {
-                    Formula right = notNull(itR.next());
-                    
-                    if (isStructurallyEqual(left, right)) {
-                        itR.remove();
-                        found = true;
-                        break;
-                    }
-                }
-                
-                if (!found) {
-                    break;
-                }
-            }
-            
-            result = toCheckR.isEmpty();
         }
         
-        
         return result;
     }
     
-    /**
-     * Checks if the two given {@link Disjunction}s are structurally equal.
-     * 
-     * @param f1 The first disjunction.
-     * @param f2 The second disjunction.
-     * 
-     * @return Whether the two disjunctions are structurally equal.
-     */
-    private static boolean checkDisjunction(@NonNull Disjunction f1, @NonNull Disjunction f2) {
-        return termsAreEqual(getAllDisjunctionTerms(f1), getAllDisjunctionTerms(f2));
-    }
-    
     /**
      * Creates a list of all terms that are in the given {@link Conjunction}. This also considers further
      * {@link Conjunction}s that are nested elements of the given {@link Conjunction}. E.g., the formula
@@ -184,46 +115,150 @@ public class FormulaStructureChecker {
      * @return The list of all terms that are combined with a conjunction.
      */
     public static @NonNull List<@NonNull Formula> getAllConjunctionTerms(@NonNull Conjunction con) {
-        List<@NonNull Formula> toCheck = new LinkedList<>();
+        List<@NonNull Formula> result = new ArrayList<>();
+        
+        // breadth-first, i.e. terms are ordered by their nesting depth
+        Deque<@NonNull Formula> toCheck = new ArrayDeque<>();
         toCheck.add(con.getLeft());
         toCheck.add(con.getRight());
+        while (!toCheck.isEmpty()) {
+            Formula f = notNull(toCheck.poll());
+            if (f instanceof Conjunction) {
+                toCheck.add(((Conjunction) f).getLeft());
+                toCheck.add(((Conjunction) f).getRight());
+            } else {
+                result.add(f);
+            }
+        }
         
-        boolean foundConjunction;
+        return result;
+    }
+    
+    /**
+     * Assigns an ID to the structure of formulas, such that two formulas are structurally equal iff they have the
+     * same ID. The ID of a dis- or conjunction is derived from the sorted IDs of its (flattened) terms, so the
+     * term-order and nesting structure do not matter. The IDs are computed with {@link FormulaTraversal}, i.e.
+     * without recursion.
+     */
+    private static final class StructureIds implements IPostOrderHandler<@NonNull Integer> {
         
-        do {
-            foundConjunction = false;
-            
-            List<@NonNull Formula> toAdd = new LinkedList<>();
+        private static final int VARIABLE = 0;
+        
+        private static final int TRUE = 1;
+        
+        private static final int FALSE = 2;
+        
+        private static final int NEGATION = 3;
+        
+        private static final int DISJUNCTION = 4;
+        
+        private static final int CONJUNCTION = 5;
+        
+        private final @NonNull Map<StructureKey, @NonNull Integer> ids = new HashMap<>();
+        
+        private int nextId;
+        
+        /**
+         * Returns the ID of the given formula.
+         * 
+         * @param formula The formula.
+         * 
+         * @return The ID of the structure of the formula.
+         */
+        public int getId(@NonNull Formula formula) {
+            return FormulaTraversal.postOrder(formula, this);
+        }
+        
+        @Override
+        public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+            Formula[] result;
+            if (formula instanceof Disjunction) {
+                result = getAllDisjunctionTerms((Disjunction) formula).toArray(new @NonNull Formula[0]);
+            } else if (formula instanceof Conjunction) {
+                result = getAllConjunctionTerms((Conjunction) formula).toArray(new @NonNull Formula[0]);
+            } else {
+                result = FormulaTraversal.getOperands(formula);
+            }
+            return notNull(result);
+        }
+        
+        @Override
+        public @NonNull Integer handle(@NonNull Formula formula, @NonNull List<@NonNull Integer> operandResults) {
+            StructureKey key;
+            if (formula instanceof Variable) {
+                key = new StructureKey(VARIABLE, ((Variable) formula).getName(), operandResults);
+            } else if (formula instanceof True) {
+                key = new StructureKey(TRUE, null, operandResults);
+            } else if (formula instanceof False) {
+                key = new StructureKey(FALSE, null, operandResults);
+            } else if (formula instanceof Negation) {
+                key = new StructureKey(NEGATION, null, operandResults);
+            } else if (formula instanceof Disjunction) {
+                key = new StructureKey(DISJUNCTION, null, operandResults);
+            } else if (formula instanceof Conjunction) {
+                key = new StructureKey(CONJUNCTION, null, operandResults);
+            } else {
+                // unknown formulas are not equal to anything
+                key = null;
+            }
             
-            Iterator<@NonNull Formula> it = toCheck.iterator();
-            while (it.hasNext()) {
-                Formula f = notNull(it.next());
-                if (f instanceof Conjunction) {
-                    foundConjunction = true;
-                    it.remove();
-                    
-                    toAdd.add(((Conjunction) f).getLeft());
-                    toAdd.add(((Conjunction) f).getRight());
+            Integer result = key != null ? ids.get(key) : null;
+            if (result == null) {
+                result = nextId++;
+                if (key != null) {
+                    ids.put(key, result);
                 }
             }
-            
-            toCheck.addAll(toAdd);
-            
-        } while (foundConjunction);
+            return result;
+        }
         
-        return toCheck;
     }
     
     /**
-     * Checks if the two given {@link Conjunction}s are structurally equal.
-     * 
-     * @param f1 The first conjunction.
-     * @param f2 The second conjunction.
-     * 
-     * @return Whether the two conjunctions are structurally equal.
+     * The structure of a single formula: its type, and the name of a variable or the IDs of its operands. The
+     * operand IDs are sorted, so that their order does not matter.
      */
-    private static boolean checkConjunction(@NonNull Conjunction f1, @NonNull Conjunction f2) {
-        return termsAreEqual(getAllConjunctionTerms(f1), getAllConjunctionTerms(f2));
+    private static final class StructureKey {
+        
+        private final int type;
+        
+        private final @Nullable String name;
+        
+        private final int @NonNull [] operands;
+        
+        /**
+         * Creates a key.
+         * 
+         * @param type The type of the formula.
+         * @param name The name of the variable; <code>null</code> for other types.
+         * @param operands The IDs of the operands.
+         */
+        StructureKey(int type, @Nullable String name, @NonNull List<@NonNull Integer> operands) {
+            this.type = type;
+            this.name = name;
+            this.operands = new int[operands.size()];
+            for (int i = 0; i < this.operands.length; i++) {
+                this.operands[i] = operands.get(i);
+            }
+            Arrays.sort(this.operands);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type + Objects.hashCode(name)) + Arrays.hashCode(operands);
+        }
+        
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            boolean result = false;
+            if (obj instanceof StructureKey) {
+                StructureKey other = (StructureKey) obj;
+                result = type == other.type && Objects.equals(name, other.name)
+                        && Arrays.equals(operands, other.operands);
+            }
+            return result;
+        }
+        
     }
 
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.IFormulaVisitor;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Traverses {@link Formula}s without recursion. Visitors based on {@link Formula#accept(IFormulaVisitor)} recurse
+ * once per nesting level, so deep formulas (e.g. the long left-deep disjunction chains of big presence conditions)
+ * overflow the thread stack. The methods here keep their state in explicit stacks on the heap, so they handle formulas
+ * with millions of nodes with a constant thread stack usage.
+ *
+ * @author Adam
+ */
+public class FormulaTraversal {
+
+    private static final @NonNull Formula @NonNull [] NO_OPERANDS = new @NonNull Formula[0];
+
+    /**
+     * Handles the formulas of a post-order traversal, see {@link FormulaTraversal#postOrder(Formula, IPostOrderHandler)}.
+     *
+     * @param <T> The type of the result for each formula.
+     */
+    public static interface IPostOrderHandler<T> {
+
+        /**
+         * Returns the operands of the given formula that need to be handled before the formula itself. For example,
+         * this is {@link FormulaTraversal#getOperands(Formula)}, or the flattened terms of a {@link Disjunction}.
+         *
+         * @param formula The formula to get the operands for.
+         *
+         * @return The operands of the formula; empty if the formula has no operands to handle.
+         */
+        public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula);
+
+        /**
+         * Handles the given formula, after all of its operands have been handled.
+         *
+         * @param formula The formula to handle.
+         * @param operandResults The results for the operands returned by {@link #getOperands(Formula)}, in the same
+         *      order.
+         *
+         * @return The result for the formula.
+         */
+        public @NonNull T handle(@NonNull Formula formula, @NonNull List<@NonNull T> operandResults);
+
+    }
+
+    /**
+     * Don't allow any instances.
+     */
+    private FormulaTraversal() {
+    }
+
+    /**
+     * Returns the direct operands of the given formula: the left and right side of a {@link Conjunction} or
+     * {@link Disjunction}, or the nested formula of a {@link Negation}.
+     *
+     * @param formula The formula to get the operands of.
+     *
+     * @return The operands; empty for variables and constants.
+     */
+    public static @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+        Formula[] result;
+        if (formula instanceof Conjunction) {
+            result = new @NonNull Formula[] {((Conjunction) formula).getLeft(), ((Conjunction) formula).getRight()};
+        } else if (formula instanceof Disjunction) {
+            result = new @NonNull Formula[] {((Disjunction) formula).getLeft(), ((Disjunction) formula).getRight()};
+        } else if (formula instanceof Negation) {
+            result = new @NonNull Formula[] {((Negation) formula).getFormula()};
+        } else {
+            result = NO_OPERANDS;
+        }
+        return result;
+    }
+
+    /**
+     * Traverses the given formula in post-order, i.e. each formula is handled after all of its operands. Which
+     * operands are visited is defined by the handler. Sub-formulas that occur multiple times are handled multiple
+     * times.
+     *
+     * @param <T> The type of the result for each formula.
+     *
+     * @param formula The formula to traverse.
+     * @param handler The handler for the visited formulas.
+     *
+     * @return The result of the handler for the given formula.
+     */
+    public static <T> @NonNull T postOrder(@NonNull Formula formula, @NonNull IPostOrderHandler<T> handler) {
+        Deque<@NonNull Frame<T>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(formula, handler.getOperands(formula)));
+
+        T result = null;
+        while (result == null) {
+            Frame<T> top = notNull(stack.peek());
+
+            if (top.results.size() < top.operands.length) {
+                Formula operand = top.operands[top.results.size()];
+                stack.push(new Frame<>(operand, handler.getOperands(operand)));
+
+            } else {
+                T topResult = handler.handle(top.formula, top.results);
+                stack.pop();
+
+                Frame<T> parent = stack.peek();
+                if (parent != null) {
+                    parent.results.add(topResult);
+                } else {
+                    result = topResult;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the two given formulas are equal, in the sense of {@link Formula#equals(Object)}: they have the
+     * same tree structure and the same variables. Unlike {@link Formula#equals(Object)}, this does not use recursion.
+     *
+     * @param f1 The first formula.
+     * @param f2 The second formula.
+     *
+     * @return Whether the two formulas are equal.
+     */
+    public static boolean isEqual(@NonNull Formula f1, @NonNull Formula f2) {
+        Deque<@NonNull Formula> todo = new ArrayDeque<>();
+        todo.push(f1);
+        todo.push(f2);
+
+        boolean result = true;
+        while (result && !todo.isEmpty()) {
+            Formula current2 = todo.pop();
+            Formula current1 = todo.pop();
+
+            if (current1 == current2) {
+                continue;
+            }
+
+            if (current1.getClass() != current2.getClass()) {
+                result = false;
+
+            } else {
+                Formula[] operands1 = getOperands(current1);
+                Formula[] operands2 = getOperands(current2);
+                if (operands1.length == 0) {
+                    // variables and constants
+                    result = current1.equals(current2);
+                }
+                for (int i = 0; i < operands1.length; i++) {
+                    todo.push(operands1[i]);
+                    todo.push(operands2[i]);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * A formula on the stack of {@link FormulaTraversal#postOrder(Formula, IPostOrderHandler)}.
+     *
+     * @param <T> The type of the result for each formula.
+     */
+    private static final class Frame<T> {
+
+        private final @NonNull Formula formula;
+
+        private final @NonNull Formula @NonNull [] operands;
+
+        private final @NonNull List<@NonNull T> results;
+
+        /**
+         * Creates a frame.
+         *
+         * @param formula The formula to handle.
+         * @param operands The operands to handle before the formula.
+         */
+        Frame(@NonNull Formula formula, @NonNull Formula @NonNull [] operands) {
+            this.formula = formula;
+            this.operands = operands;
+            this.results = new ArrayList<>(operands.length);
+        }
+
+    }
+
+}
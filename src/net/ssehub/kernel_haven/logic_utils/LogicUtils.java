@@ -131,6 +131,35 @@ public class LogicUtils {
         return formula;
     }
     
+    /**
+     * Returns the size of the given {@link Formula}: the number of variables, constants and operators in it. This is
+     * much cheaper than the length of {@link Formula#toString()}, and can be used to decide how much simplification
+     * effort to spend on a formula. When measuring many formulas that share sub-trees, use a single
+     * {@link FormulaMetrics} instance instead.
+     * 
+     * @param formula The formula to measure. Must not be <code>null</code>.
+     * 
+     * @return The size of the formula; at least 1.
+     * 
+     * @see FormulaMetrics#getSize(Formula)
+     */
+    public static long getSize(@NonNull Formula formula) {
+        return new FormulaMetrics().getSize(formula);
+    }
+    
+    /**
+     * Returns the nesting depth of the given {@link Formula}.
+     * 
+     * @param formula The formula to measure. Must not be <code>null</code>.
+     * 
+     * @return The depth of the formula; 1 for variables and constants.
+     * 
+     * @see FormulaMetrics#getDepth(Formula)
+     */
+    public static int getDepth(@NonNull Formula formula) {
+        return new FormulaMetrics().getDepth(formula);
+    }
+    
     /**
      * Initialization method called by KernelHaven. See loadClasses.txt
      * 
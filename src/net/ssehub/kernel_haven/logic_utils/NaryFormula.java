@@ -0,0 +1,509 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+import net.ssehub.kernel_haven.util.null_checks.Nullable;
+
+/**
+ * A compact representation of {@link Formula}s for the simplifiers. Nodes are numbers, and are stored in arrays;
+ * conjunctions and disjunctions are n-ary. Simplifiers can work on node numbers instead of creating (and flattening)
+ * many intermediate {@link Formula} objects; only the final result is converted back.
+ * <p>
+ * An n-ary node stands for the left-deep chain of its operands, i.e. a conjunction with the operands
+ * <code>A, B, C</code> is <code>(A &amp;&amp; B) &amp;&amp; C</code>. An operand may itself be a node of the same
+ * kind; this is how other nesting structures are represented. Thus, the conversion from and to {@link Formula} is
+ * lossless: {@link #toFormula(int)} of {@link #addFormula(Formula)} is equal to the original formula.
+ * <p>
+ * Each distinct {@link Variable} (in the sense of {@link Variable#equals(Object)}) has exactly one node, so variables
+ * can be compared by their node number. The operands of a node always have smaller numbers than the node itself.
+ * Nodes are never modified; the simplifiers create new ones. None of the methods use recursion.
+ *
+ * @author Adam
+ */
+final class NaryFormula {
+
+    static final byte FALSE = 0;
+
+    static final byte TRUE = 1;
+
+    static final byte VARIABLE = 2;
+
+    static final byte NEGATION = 3;
+
+    static final byte CONJUNCTION = 4;
+
+    static final byte DISJUNCTION = 5;
+
+    /**
+     * Any other {@link Formula}; treated like a variable that is only equal to itself.
+     */
+    static final byte OTHER = 6;
+
+    /**
+     * The node of {@link False}.
+     */
+    static final int FALSE_NODE = 0;
+
+    /**
+     * The node of {@link True}.
+     */
+    static final int TRUE_NODE = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte @NonNull [] kinds;
+
+    /**
+     * For negations, conjunctions and disjunctions: the start index of the operands in {@link #operands}.
+     */
+    private int @NonNull [] starts;
+
+    private int @NonNull [] sizes;
+
+    private int @NonNull [] operands;
+
+    /**
+     * The {@link Formula} for each node; created lazily by {@link #toFormula(int)}. For variables and nodes created by
+     * {@link #addFormula(Formula)}, this is the original formula.
+     */
+    private @Nullable Formula @NonNull [] formulas;
+
+    private int numNodes;
+
+    private int numOperands;
+
+    private final @NonNull Map<Variable, Integer> variableNodes;
+
+    /**
+     * The nodes of all formulas added via {@link #addFormula(Formula)}; keyed by identity.
+     */
+    private final @NonNull Map<Formula, Integer> addedFormulas;
+
+    /**
+     * Creates an empty formula representation, containing only {@link #FALSE_NODE} and {@link #TRUE_NODE}.
+     */
+    NaryFormula() {
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.sizes = new int[INITIAL_CAPACITY];
+        this.operands = new int[INITIAL_CAPACITY];
+        this.formulas = new @Nullable Formula[INITIAL_CAPACITY];
+        this.variableNodes = new HashMap<>();
+        this.addedFormulas = new IdentityHashMap<>();
+
+        addNode(FALSE, False.INSTANCE);
+        addNode(TRUE, True.INSTANCE);
+    }
+
+    /**
+     * Returns the kind of the given node.
+     *
+     * @param node The node.
+     *
+     * @return One of the kind constants, e.g. {@link #CONJUNCTION}.
+     */
+    byte getKind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * Returns the number of operands of the given node.
+     *
+     * @param node The node.
+     *
+     * @return The number of operands; 1 for negations, at least 2 for conjunctions and disjunctions, 0 otherwise.
+     */
+    int getNumOperands(int node) {
+        return sizes[node];
+    }
+
+    /**
+     * Returns an operand of the given node.
+     *
+     * @param node The node.
+     * @param index The index of the operand.
+     *
+     * @return The operand node.
+     */
+    int getOperand(int node, int index) {
+        return operands[starts[node] + index];
+    }
+
+    /**
+     * Returns the variable of the given {@link #VARIABLE} node.
+     *
+     * @param node The variable node.
+     *
+     * @return The variable.
+     */
+    @NonNull Variable getVariable(int node) {
+        return (Variable) notNull(formulas[node]);
+    }
+
+    /**
+     * Returns the node of the given variable. Creates it, if necessary.
+     *
+     * @param variable The variable.
+     *
+     * @return The node of the variable; the same for all equal variables.
+     */
+    int variable(@NonNull Variable variable) {
+        Integer result = variableNodes.get(variable);
+        if (result == null) {
+            result = addNode(VARIABLE, variable);
+            variableNodes.put(variable, result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new negation node.
+     *
+     * @param operand The negated node.
+     *
+     * @return The new node.
+     */
+    int negation(int operand) {
+        int result = addNode(NEGATION, null);
+        starts[result] = numOperands;
+        sizes[result] = 1;
+        addOperand(operand);
+        return result;
+    }
+
+    /**
+     * Creates a new conjunction or disjunction node. If there is only one operand, that operand is returned instead;
+     * this is the same as building a chain of binary {@link Formula}s from the operands.
+     *
+     * @param kind {@link #CONJUNCTION} or {@link #DISJUNCTION}.
+     * @param nodeOperands The array containing the operands.
+     * @param length The number of operands (at least 1) to use from the array.
+     *
+     * @return The new node, or the single operand.
+     */
+    int operator(byte kind, int @NonNull [] nodeOperands, int length) {
+        int result;
+        if (length == 1) {
+            result = nodeOperands[0];
+        } else {
+            result = addNode(kind, null);
+            starts[result] = numOperands;
+            sizes[result] = length;
+            for (int i = 0; i < length; i++) {
+                addOperand(nodeOperands[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the flattened terms of the given conjunction or disjunction, i.e. all nested operands that are not of
+     * the same kind. The terms are in the same order as {@link FormulaStructureChecker#getAllConjunctionTerms(
+     * Conjunction)} and {@link FormulaStructureChecker#getAllDisjunctionTerms(Disjunction)} would return for
+     * {@link #toFormula(int)}: breadth-first, i.e. ordered by their nesting depth in the binary formula.
+     *
+     * @param node A {@link #CONJUNCTION} or {@link #DISJUNCTION} node.
+     *
+     * @return The term nodes.
+     */
+    int @NonNull [] getTerms(int node) {
+        byte kind = kinds[node];
+        int[] result = new int[sizes[node]];
+        int numTerms = 0;
+
+        // queue of binary sub-formulas: the chain of the first <length> operands of <node>; length 0 for terms
+        int[] queueNodes = new int[INITIAL_CAPACITY];
+        int[] queueLengths = new int[INITIAL_CAPACITY];
+        int head = 0;
+        int tail = 0;
+        queueNodes[tail] = node;
+        queueLengths[tail++] = sizes[node];
+
+        while (head < tail) {
+            int current = queueNodes[head];
+            int length = queueLengths[head++];
+
+            if (length == 0) {
+                if (numTerms == result.length) {
+                    result = notNull(Arrays.copyOf(result, numTerms * 2));
+                }
+                result[numTerms++] = current;
+
+            } else {
+                if (tail + 2 > queueNodes.length) {
+                    // drop the consumed part of the queue
+                    int size = tail - head;
+                    int[] newNodes = new int[Math.max(size * 2 + 2, INITIAL_CAPACITY)];
+                    int[] newLengths = new int[newNodes.length];
+                    System.arraycopy(queueNodes, head, newNodes, 0, size);
+                    System.arraycopy(queueLengths, head, newLengths, 0, size);
+                    queueNodes = newNodes;
+                    queueLengths = newLengths;
+                    head = 0;
+                    tail = size;
+                }
+
+                // (chain of first length - 1 operands) op (last operand)
+                if (length > 2) {
+                    queueNodes[tail] = current;
+                    queueLengths[tail++] = length - 1;
+                } else {
+                    int first = getOperand(current, 0);
+                    queueNodes[tail] = first;
+                    queueLengths[tail++] = kinds[first] == kind ? sizes[first] : 0;
+                }
+                int last = getOperand(current, length - 1);
+                queueNodes[tail] = last;
+                queueLengths[tail++] = kinds[last] == kind ? sizes[last] : 0;
+            }
+        }
+
+        return notNull(Arrays.copyOf(result, numTerms));
+    }
+
+    /**
+     * Adds the given formula. Chains of binary conjunctions or disjunctions that are nested in their left operand
+     * become a single n-ary node; all other operands become separate nodes. Sub-formulas that are already added
+     * (the same object) are re-used.
+     *
+     * @param formula The formula to add.
+     *
+     * @return The node of the formula.
+     */
+    int addFormula(@NonNull Formula formula) {
+        // post-order: a formula is added once all the operands of its node are added
+        Deque<@NonNull Frame> stack = new ArrayDeque<>();
+        Integer result = addedFormulas.get(formula);
+        if (result == null) {
+            result = addLeaf(formula);
+            if (result == null) {
+                stack.push(new Frame(formula));
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            Frame top = notNull(stack.peek());
+
+            if (top.numResults < top.children.size()) {
+                Formula child = notNull(top.children.get(top.numResults));
+                Integer childResult = addedFormulas.get(child);
+                if (childResult == null) {
+                    childResult = addLeaf(child);
+                }
+                if (childResult != null) {
+                    top.results[top.numResults++] = childResult;
+                } else {
+                    stack.push(new Frame(child));
+                }
+
+            } else {
+                stack.pop();
+                int node;
+                if (top.formula instanceof Negation) {
+                    node = negation(top.results[0]);
+                } else {
+                    node = operator(top.formula instanceof Conjunction ? CONJUNCTION : DISJUNCTION, top.results,
+                            top.results.length);
+                }
+                formulas[node] = top.formula;
+                addedFormulas.put(top.formula, node);
+
+                Frame parent = stack.peek();
+                if (parent != null) {
+                    parent.results[parent.numResults++] = node;
+                } else {
+                    result = node;
+                }
+            }
+        }
+
+        return notNull(result);
+    }
+
+    /**
+     * Adds the given formula, if it has no operands.
+     *
+     * @param formula The formula to add.
+     *
+     * @return The node of the formula; <code>null</code> if it is a negation, conjunction or disjunction.
+     */
+    private @Nullable Integer addLeaf(@NonNull Formula formula) {
+        Integer result = null;
+        if (formula instanceof Variable) {
+            result = variable((Variable) formula);
+        } else if (formula instanceof True) {
+            result = TRUE_NODE;
+        } else if (formula instanceof False) {
+            result = FALSE_NODE;
+        } else if (!(formula instanceof Negation || formula instanceof Conjunction
+                || formula instanceof Disjunction)) {
+            result = addNode(OTHER, formula);
+            addedFormulas.put(formula, result);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the given node to a {@link Formula}. Conjunctions and disjunctions become left-deep chains of binary
+     * formulas. The result for each node is cached, so converting many nodes that share operands is cheap.
+     *
+     * @param node The node to convert.
+     *
+     * @return The formula for the node.
+     */
+    @NonNull Formula toFormula(int node) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+
+        while (!stack.isEmpty()) {
+            int current = notNull(stack.peek());
+            if (formulas[current] != null) {
+                stack.pop();
+                continue;
+            }
+
+            boolean operandsDone = true;
+            for (int i = sizes[current] - 1; i >= 0; i--) {
+                int operand = getOperand(current, i);
+                if (formulas[operand] == null) {
+                    stack.push(operand);
+                    operandsDone = false;
+                }
+            }
+
+            if (operandsDone) {
+                Formula result = notNull(formulas[getOperand(current, 0)]);
+                if (kinds[current] == NEGATION) {
+                    result = new Negation(result);
+                } else {
+                    for (int i = 1; i < sizes[current]; i++) {
+                        Formula operand = notNull(formulas[getOperand(current, i)]);
+                        result = kinds[current] == CONJUNCTION
+                                ? new Conjunction(result, operand) : new Disjunction(result, operand);
+                    }
+                }
+                formulas[current] = result;
+                stack.pop();
+            }
+        }
+
+        return notNull(formulas[node]);
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param kind The kind of the node.
+     * @param formula The formula of the node, if already known.
+     *
+     * @return The new node.
+     */
+    private int addNode(byte kind, @Nullable Formula formula) {
+        if (numNodes == kinds.length) {
+            kinds = notNull(Arrays.copyOf(kinds, numNodes * 2));
+            starts = notNull(Arrays.copyOf(starts, numNodes * 2));
+            sizes = notNull(Arrays.copyOf(sizes, numNodes * 2));
+            formulas = notNull(Arrays.copyOf(formulas, numNodes * 2));
+        }
+        kinds[numNodes] = kind;
+        formulas[numNodes] = formula;
+        return numNodes++;
+    }
+
+    /**
+     * Adds an operand to the node that was added last.
+     *
+     * @param operand The operand node.
+     */
+    private void addOperand(int operand) {
+        if (numOperands == operands.length) {
+            operands = notNull(Arrays.copyOf(operands, numOperands * 2));
+        }
+        operands[numOperands++] = operand;
+    }
+
+    /**
+     * A formula that is being added by {@link NaryFormula#addFormula(Formula)}.
+     */
+    private static final class Frame {
+
+        private final @NonNull Formula formula;
+
+        /**
+         * The formulas for the operands of the node: the nested formula of a negation, or the operands of the
+         * left-deep chain of a conjunction or disjunction.
+         */
+        private final @NonNull List<@NonNull Formula> children;
+
+        private final int @NonNull [] results;
+
+        private int numResults;
+
+        /**
+         * Creates a frame.
+         *
+         * @param formula A {@link Negation}, {@link Conjunction} or {@link Disjunction}.
+         */
+        Frame(@NonNull Formula formula) {
+            this.formula = formula;
+            this.children = new ArrayList<>();
+
+            if (formula instanceof Negation) {
+                children.add(((Negation) formula).getFormula());
+
+            } else {
+                // walk down the left spine; the right operands are collected in reverse order
+                Class<?> type = formula.getClass();
+                Formula current = formula;
+                while (current.getClass() == type) {
+                    if (current instanceof Conjunction) {
+                        children.add(((Conjunction) current).getRight());
+                        current = ((Conjunction) current).getLeft();
+                    } else {
+                        children.add(((Disjunction) current).getRight());
+                        current = ((Disjunction) current).getLeft();
+                    }
+                }
+                children.add(current);
+                Collections.reverse(children);
+            }
+
+            this.results = new int[children.size()];
+        }
+
+    }
+
+}
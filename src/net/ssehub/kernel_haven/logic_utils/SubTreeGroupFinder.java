@@ -21,11 +21,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
 import net.ssehub.kernel_haven.util.logic.Conjunction;
 import net.ssehub.kernel_haven.util.logic.Disjunction;
 import net.ssehub.kernel_haven.util.logic.False;
 import net.ssehub.kernel_haven.util.logic.Formula;
-import net.ssehub.kernel_haven.util.logic.IFormulaVisitor;
 import net.ssehub.kernel_haven.util.logic.Negation;
 import net.ssehub.kernel_haven.util.logic.True;
 import net.ssehub.kernel_haven.util.logic.Variable;
@@ -62,7 +62,7 @@ public class SubTreeGroupFinder {
      * @see FormulaStructureChecker#isStructurallyEqual(Formula, Formula)
      */
     public @NonNull List<@NonNull List<@NonNull Formula>> findGroups(@NonNull Formula formula) {
-        formula.accept(new Visitor()); // this fills this.groups
+        FormulaTraversal.postOrder(formula, new Visitor()); // this fills this.groups
         
         @SuppressWarnings("null")
         List<@NonNull List<@NonNull Formula>> result = new ArrayList<>(groups.values());
@@ -79,75 +79,57 @@ public class SubTreeGroupFinder {
      * @param hash The hash of the sub-tree.
      */
     private void addSubTree(@NonNull Formula subTree, int hash) {
-        List<@NonNull Formula> group = groups.getOrDefault(hash, new LinkedList<>());
-        groups.putIfAbsent(hash, group);
-        
-        boolean add = true;
-        if (!group.isEmpty()) {
+        boolean added = false;
+        while (!added) {
+            List<@NonNull Formula> group = groups.getOrDefault(hash, new LinkedList<>());
+            groups.putIfAbsent(hash, group);
+            
             // check for actual equality, to avoid hash collisions
-            add = FormulaStructureChecker.isStructurallyEqual(group.get(0), subTree);
-        }
-        
-        if (add) {
-            group.add(subTree);
-        } else {
-            // detected hash collision -> add to next place
-            addSubTree(subTree, hash * 23);
+            added = group.isEmpty() || FormulaStructureChecker.isStructurallyEqual(group.get(0), subTree);
+            
+            if (added) {
+                group.add(subTree);
+            } else {
+                // detected hash collision -> try next place
+                hash = hash * 23;
+            }
         }
     }
     
     /**
-     * Visitor for finding all sub-trees in a formula. This will call
-     * {@link SubTreeGroupFinder#addSubTree(Formula, int)} for all found sub-trees. Additionally, the visit methods
-     * return the hash of the visited element. This way, calculation the hash of sub-trees is done in parallel while
-     * visiting the {@link Formula}. This avoids having to call {@link Formula#hashCode()} all the time, and thus
-     * avoids many recursive hashCode() evaluations.
+     * Handler for finding all sub-trees in a formula. This will call
+     * {@link SubTreeGroupFinder#addSubTree(Formula, int)} for all found sub-trees. Additionally, the handler returns
+     * the hash of the handled element. This way, calculation the hash of sub-trees is done in parallel while
+     * traversing the {@link Formula}. This avoids having to call {@link Formula#hashCode()} all the time, and thus
+     * avoids many recursive hashCode() evaluations. The traversal is done by {@link FormulaTraversal}, so deep
+     * formulas do not overflow the stack.
      */
-    private class Visitor implements IFormulaVisitor<@NonNull Integer> {
-
-        @Override
-        public @NonNull Integer visitFalse(@NonNull False falseConstant) {
-            return falseConstant.hashCode();
-        }
-
-        @Override
-        public @NonNull Integer visitTrue(@NonNull True trueConstant) {
-            return trueConstant.hashCode();
-        }
-
-        @Override
-        public @NonNull Integer visitVariable(@NonNull Variable variable) {
-            return variable.hashCode();
-        }
-
-        @Override
-        public @NonNull Integer visitNegation(@NonNull Negation formula) {
-            int nestedHash = formula.getFormula().accept(this);
-            
-            int hash = nestedHash * 123;
-            addSubTree(formula, hash);
-            
-            return hash;
-        }
+    private class Visitor implements IPostOrderHandler<@NonNull Integer> {
 
         @Override
-        public @NonNull Integer visitDisjunction(@NonNull Disjunction formula) {
-            int leftHash = formula.getLeft().accept(this);
-            int rightHash = formula.getRight().accept(this);
-            
-            int hash = (leftHash + rightHash) * 213;
-            addSubTree(formula, hash);
-            
-            return hash;
+        public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+            return FormulaTraversal.getOperands(formula);
         }
 
         @Override
-        public @NonNull Integer visitConjunction(@NonNull Conjunction formula) {
-            int leftHash = formula.getLeft().accept(this);
-            int rightHash = formula.getRight().accept(this);
-            
-            int hash = (leftHash + rightHash) * 4564;
-            addSubTree(formula, hash);
+        public @NonNull Integer handle(@NonNull Formula formula, @NonNull List<@NonNull Integer> operandResults) {
+            int hash;
+            if (formula instanceof Negation) {
+                hash = operandResults.get(0) * 123;
+                addSubTree(formula, hash);
+                
+            } else if (formula instanceof Disjunction) {
+                hash = (operandResults.get(0) + operandResults.get(1)) * 213;
+                addSubTree(formula, hash);
+                
+            } else if (formula instanceof Conjunction) {
+                hash = (operandResults.get(0) + operandResults.get(1)) * 4564;
+                addSubTree(formula, hash);
+                
+            } else {
+                // variables and constants
+                hash = formula.hashCode();
+            }
             
             return hash;
         }
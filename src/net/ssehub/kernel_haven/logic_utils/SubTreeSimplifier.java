@@ -19,9 +19,13 @@ import static net.ssehub.kernel_haven.logic_utils.FormulaStructureChecker.isStru
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
 import net.ssehub.kernel_haven.util.Logger;
 import net.ssehub.kernel_haven.util.PerformanceProbe;
 import net.ssehub.kernel_haven.util.logic.Conjunction;
@@ -51,7 +55,8 @@ public class SubTreeSimplifier {
     }
     
     /**
-     * Replaces all elements in toReplace found in formula with replacement.
+     * Replaces all elements in toReplace found in formula with replacement. This uses {@link FormulaTraversal}
+     * instead of recursion, so that deep formulas do not overflow the stack.
      * 
      * @param formula The formula to search in.
      * @param toReplace All instances that need to be replaced.
@@ -62,51 +67,66 @@ public class SubTreeSimplifier {
     private static @NonNull Formula replaceAll(@NonNull Formula formula, List<@NonNull Formula> toReplace,
             @NonNull Formula replacement) {
 
-        Formula result = formula;
-
-//        if (toReplace.stream().filter((element) -> element == formula).findAny().isPresent()) {
-        if (toReplace.contains(formula)) {
-            result = replacement;
-            
-        } else {
-
-            if (formula instanceof Disjunction) {
-                Disjunction dis = (Disjunction) formula;
-                
-                Formula left = replaceAll(dis.getLeft(), toReplace, replacement);
-                Formula right = replaceAll(dis.getRight(), toReplace, replacement);
-                
-                if (left != dis.getLeft() || right != dis.getRight()) {
-                    // only create new object if children actually changed
-                    result = new Disjunction(left, right);
+        // the sub-trees that are replaced; these are not traversed any further
+        Set<@NonNull Formula> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        
+        return FormulaTraversal.postOrder(formula, new IPostOrderHandler<@NonNull Formula>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                Formula[] result;
+                if (toReplace.stream().anyMatch((element) -> FormulaTraversal.isEqual(element, formula))) {
+                    replaced.add(formula);
+                    result = new @NonNull Formula[0];
+                } else {
+                    result = FormulaTraversal.getOperands(formula);
                 }
+                return result;
+            }
 
-            } else if (formula instanceof Conjunction) {
-                Conjunction con = (Conjunction) formula;
-                
-                Formula left = replaceAll(con.getLeft(), toReplace, replacement);
-                Formula right = replaceAll(con.getRight(), toReplace, replacement);
+            @Override
+            public @NonNull Formula handle(@NonNull Formula formula, @NonNull List<@NonNull Formula> operandResults) {
+                Formula result = formula;
                 
-                if (left != con.getLeft() || right != con.getRight()) {
-                    // only create new object if children actually changed
-                    result = new Conjunction(left, right);
+                if (replaced.contains(formula)) {
+                    result = replacement;
+                    
+                } else if (formula instanceof Disjunction) {
+                    Disjunction dis = (Disjunction) formula;
+                    
+                    Formula left = notNull(operandResults.get(0));
+                    Formula right = notNull(operandResults.get(1));
+                    
+                    if (left != dis.getLeft() || right != dis.getRight()) {
+                        // only create new object if children actually changed
+                        result = new Disjunction(left, right);
+                    }
+                    
+                } else if (formula instanceof Conjunction) {
+                    Conjunction con = (Conjunction) formula;
+                    
+                    Formula left = notNull(operandResults.get(0));
+                    Formula right = notNull(operandResults.get(1));
+                    
+                    if (left != con.getLeft() || right != con.getRight()) {
+                        // only create new object if children actually changed
+                        result = new Conjunction(left, right);
+                    }
+                    
+                } else if (formula instanceof Negation) {
+                    Negation neg = (Negation) formula;
+                    
+                    Formula nested = notNull(operandResults.get(0));
+                    
+                    if (nested != neg.getFormula()) {
+                        // only create new object if children actually changed
+                        result = new Negation(nested);
+                    }
                 }
                 
-            } else if (formula instanceof Negation) {
-                Negation neg = (Negation) formula;
-                
-                Formula nested = replaceAll(neg.getFormula(), toReplace, replacement);
-                
-                if (nested != neg.getFormula()) {
-                    // only create new object if children actually changed
-                    result = new Negation(nested);
-                }
+                return result;
             }
-
-        }
-        
-        return result;
-
+        });
     }
 
     /**
@@ -132,6 +152,7 @@ public class SubTreeSimplifier {
             }
             
             p = new PerformanceProbe("SubTreeSimplifier 1) Find Trees");
+            FormulaMetrics metrics = new FormulaMetrics();
             List<@NonNull List<@NonNull Formula>> trees = new LinkedList<>();
             subTreeFinder.findGroups(formula).stream()
                     .filter((list) -> list.size() > 1)
@@ -142,7 +163,7 @@ public class SubTreeSimplifier {
                     // sort descending by size of sub-tree
                     // this seems to perform better than the above (needs fewer overall iterations)
                     .sorted((l1, l2) ->
-                        Integer.compare(notNull(l2.get(0)).toString().length(), notNull(l1.get(0)).toString().length()))
+                        Long.compare(metrics.getLength(notNull(l2.get(0))), metrics.getLength(notNull(l1.get(0)))))
                     
                     .forEach(trees::add);
             p.close();
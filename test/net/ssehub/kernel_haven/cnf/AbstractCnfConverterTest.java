@@ -19,6 +19,7 @@ import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
 import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
 import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
@@ -26,6 +27,7 @@ import org.junit.Test;
 import net.ssehub.kernel_haven.util.logic.False;
 import net.ssehub.kernel_haven.util.logic.Formula;
 import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
@@ -285,4 +287,81 @@ public abstract class AbstractCnfConverterTest {
         assertThat(solver.isSatisfiable(cnf.combine(aB)), is(false));
     }
     
+    /**
+     * Tests that structurally equal (but not identical) sub-formulas are converted correctly, in the same and in
+     * opposite polarity.
+     * 
+     * @throws SolverException unwanted.
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testStructurallyEqualSubFormulas() throws SolverException, ConverterException {
+        IFormulaToCnfConverter converter = createConverter();
+        ISatSolver solver = SatSolverFactory.createSolver();
+        
+        // (A && B || C) && !(A && B || C) is unsatisfiable
+        Formula bool = and(or(and("A", "B"), "C"), not(or(and("A", "B"), "C")));
+        assertThat(solver.isSatisfiable(converter.convert(bool)), is(false));
+        
+        // (A && B || C) && (!(A && B) || C) is equivalent to C
+        bool = and(or(and("A", "B"), "C"), or(not(and("A", "B")), "C"));
+        Cnf cnf = converter.convert(bool);
+        
+        Cnf notC = new Cnf();
+        notC.addRow(new CnfVariable(true, "C"));
+        
+        Cnf notAnotBC = new Cnf();
+        notAnotBC.addRow(new CnfVariable(true, "A"));
+        notAnotBC.addRow(new CnfVariable(true, "B"));
+        notAnotBC.addRow(new CnfVariable(false, "C"));
+        
+        assertThat(solver.isSatisfiable(cnf.combine(notC)), is(false));
+        assertThat(solver.isSatisfiable(cnf.combine(notAnotBC)), is(true));
+    }
+    
+    
+    /**
+     * Tests that formulas converted with a given dictionary use this dictionary, and can be checked against a base
+     * CNF that shares it.
+     * 
+     * @throws SolverException unwanted.
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testConvertWithDictionary() throws SolverException, ConverterException {
+        IFormulaToCnfConverter converter = createConverter();
+        
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf base = converter.convert(or("A", "B"), dictionary);
+        assertThat(base.getDictionary(), sameInstance(dictionary));
+        
+        ISatSolver solver = SatSolverFactory.createSolver(base, false);
+        
+        Cnf cnf = converter.convert(not("A"), dictionary);
+        assertThat(cnf.getDictionary(), sameInstance(dictionary));
+        assertThat(solver.isSatisfiable(cnf), is(true));
+        
+        cnf = converter.convert(and(not("A"), not("B")), dictionary);
+        assertThat(solver.isSatisfiable(cnf), is(false));
+        
+        cnf = converter.convert(False.INSTANCE, dictionary);
+        assertThat(cnf.getDictionary(), sameInstance(dictionary));
+        assertThat(solver.isSatisfiable(cnf), is(false));
+    }
+    
+    /**
+     * Creates a left-deep chain <code>((START || V1) &amp;&amp; V2) || V3 ...</code> with the given number of operators.
+     * The operators alternate, so that a converter can't flatten the chain.
+     * 
+     * @param depth The number of operators in the chain.
+     * @return The chain.
+     */
+    protected static @NonNull Formula createAlternatingChain(int depth) {
+        Formula formula = new Variable("START");
+        for (int i = 1; i <= depth; i++) {
+            formula = i % 2 == 1 ? or(formula, "V" + i) : and(formula, "V" + i);
+        }
+        return formula;
+    }
+    
 }
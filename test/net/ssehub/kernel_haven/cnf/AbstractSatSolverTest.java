@@ -16,8 +16,16 @@
 package net.ssehub.kernel_haven.cnf;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
@@ -78,6 +86,37 @@ public abstract class AbstractSatSolverTest {
      * @return The SAT solver to test.
      */
     protected abstract @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf);
+    
+    /**
+     * Creates a CNF that states that <code>holes + 1</code> pigeons can be placed in <code>holes</code> holes, with
+     * at most one pigeon per hole. This is unsatisfiable, but very hard to prove for SAT solvers; with 12 holes, it
+     * takes minutes.
+     * 
+     * @param holes The number of holes.
+     * 
+     * @return The pigeonhole CNF.
+     */
+    protected static @NonNull Cnf createPigeonholeCnf(int holes) {
+        Cnf cnf = new Cnf();
+        for (int pigeon = 0; pigeon <= holes; pigeon++) {
+            // each pigeon is in some hole
+            @NonNull CnfVariable[] row = new @NonNull CnfVariable[holes];
+            for (int hole = 0; hole < holes; hole++) {
+                row[hole] = new CnfVariable("P" + pigeon + "_H" + hole);
+            }
+            cnf.addRow(row);
+        }
+        for (int hole = 0; hole < holes; hole++) {
+            // no two pigeons share a hole
+            for (int p1 = 0; p1 <= holes; p1++) {
+                for (int p2 = p1 + 1; p2 <= holes; p2++) {
+                    cnf.addRow(new CnfVariable(true, "P" + p1 + "_H" + hole),
+                            new CnfVariable(true, "P" + p2 + "_H" + hole));
+                }
+            }
+        }
+        return cnf;
+    }
 
     /**
      * Test satisfiability. <b>not A or B</b>
@@ -182,5 +221,328 @@ public abstract class AbstractSatSolverTest {
         // 1 | 1 | 0
         assertThat(solver.isSatisfiable(cnf2), is(false));
     }
+    
+    /**
+     * Tests whether the solver works with a pre-existing CNF set that shares its dictionary with the checked CNFs.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testExistingCnfSharedDictionary() throws SolverException {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf cnf1 = new Cnf(dictionary, 1);
+        cnf1.addRow(a, notB);
+        
+        ISatSolver solver = createSatSolver(cnf1);
+        
+        Cnf cnf2 = new Cnf(dictionary, 2);
+        cnf2.addRow(c);
+        assertThat(solver.isSatisfiable(cnf2), is(true));
+        
+        cnf2.addRow(notA);
+        cnf2.addRow(b);
+        assertThat(solver.isSatisfiable(cnf2), is(false));
+        
+        // a CNF with a different dictionary still maps the names correctly
+        Cnf cnf3 = new Cnf();
+        cnf3.addRow(c);
+        cnf3.addRow(b);
+        cnf3.addRow(notA);
+        assertThat(solver.isSatisfiable(cnf3), is(false));
+    }
+    
+    /**
+     * Tests that the solver still works if the dictionary of the base CNF grows between calls, because checked CNFs
+     * that share it add new variables.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testExistingCnfSharedDictionaryGrows() throws SolverException {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf base = new Cnf(dictionary, 2);
+        base.addRow(a);
+        base.addRow(notA, b);
+        
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf cnf1 = new Cnf(dictionary, 1);
+        cnf1.addRow(c);
+        assertThat(solver.isSatisfiable(cnf1), is(true));
+        
+        // D gets the next ID of the dictionary, which must not clash with C (or anything else) in the solver
+        Cnf cnf2 = new Cnf(dictionary, 1);
+        cnf2.addRow(new CnfVariable("D"));
+        assertThat(solver.isSatisfiable(cnf2), is(true));
+        
+        Cnf cnf3 = new Cnf(dictionary, 2);
+        cnf3.addRow(new CnfVariable(true, "C"));
+        cnf3.addRow(new CnfVariable("D"));
+        assertThat(solver.isSatisfiable(cnf3), is(true));
+        
+        Cnf cnf4 = new Cnf(dictionary, 2);
+        cnf4.addRow(new CnfVariable("D"));
+        cnf4.addRow(notB, new CnfVariable(true, "D"));
+        assertThat(solver.isSatisfiable(cnf4), is(false));
+        
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable("D"), new CnfVariable(true, "C"))), is(true));
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable("D"), notB)), is(false));
+    }
+    
+    /**
+     * Tests whether the solver works with an off-heap base CNF.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testExistingCnfOffHeap() throws SolverException {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf base = Cnf.createOffHeap(dictionary, 1);
+        base.addRow(a, notB);
+        base.addRow(b, c);
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf cnf1 = new Cnf(dictionary, 1);
+        cnf1.addRow(notA);
+        assertThat(solver.isSatisfiable(cnf1), is(true));
+        
+        cnf1.addRow(new CnfVariable(true, "C"));
+        assertThat(solver.isSatisfiable(cnf1), is(false));
+        
+        Cnf cnf2 = new Cnf();
+        cnf2.addRow(new CnfVariable(true, "C"));
+        cnf2.addRow(a);
+        assertThat(solver.isSatisfiable(cnf2), is(true));
+    }
+    
+    /**
+     * Tests several CNFs with the same dictionary, which is different from the dictionary of the base CNF. The
+     * dictionary grows between the calls.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testExistingCnfOtherSharedDictionary() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, notB);
+        ISatSolver solver = createSatSolver(base);
+        
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf cnf1 = new Cnf(dictionary, 1);
+        cnf1.addRow(c);
+        cnf1.addRow(b);
+        assertThat(solver.isSatisfiable(cnf1), is(true));
+        
+        Cnf cnf2 = new Cnf(dictionary, 2);
+        cnf2.addRow(b);
+        cnf2.addRow(new CnfVariable("D"));
+        cnf2.addRow(notA);
+        assertThat(solver.isSatisfiable(cnf2), is(false));
+        
+        Cnf cnf3 = new Cnf(dictionary, 1);
+        cnf3.addRow(new CnfVariable(true, "D"));
+        cnf3.addRow(notA);
+        assertThat(solver.isSatisfiable(cnf3), is(true));
+    }
+    
+    /**
+     * Tests the assumption-based isSatisfiable() with {@link CnfVariable}s.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testVariableAssumptions() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, notB);
+        ISatSolver solver = createSatSolver(base);
+        
+        assertThat(solver.isSatisfiable(Arrays.asList(notA)), is(true));
+        assertThat(solver.isSatisfiable(Arrays.asList(notA, b)), is(false));
+        assertThat(solver.isSatisfiable(Arrays.asList(a, b)), is(true));
+        
+        // variables that are not part of the base CNF
+        assertThat(solver.isSatisfiable(Arrays.asList(c, notB)), is(true));
+        assertThat(solver.isSatisfiable(Arrays.asList(c, new CnfVariable(true, "C"))), is(false));
+        
+        // no assumptions at all
+        assertThat(solver.isSatisfiable(Arrays.<CnfVariable>asList()), is(true));
+    }
+    
+    /**
+     * Tests the assumption-based isSatisfiable() with literals of the base CNF.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testLiteralAssumptions() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, notB);
+        base.addRow(notA, c);
+        ISatSolver solver = createSatSolver(base);
+        
+        int idA = base.getDictionary().lookupId("A");
+        int idB = base.getDictionary().lookupId("B");
+        int idC = base.getDictionary().lookupId("C");
+        
+        assertThat(solver.isSatisfiable(new int[] {idB}), is(true));
+        assertThat(solver.isSatisfiable(new int[] {idB, -idC}), is(false));
+        assertThat(solver.isSatisfiable(new int[] {-idA, -idB, -idC}), is(true));
+        
+        // assumptions don't influence the following calls
+        assertThat(solver.isSatisfiable(new int[] {-idC}), is(true));
+    }
+    
+    /**
+     * Tests that the assumption-based isSatisfiable() rejects literals that are not part of the base CNF.
+     * 
+     * @throws SolverException wanted.
+     */
+    @Test(expected = SolverException.class)
+    public void testUnknownLiteralAssumption() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a);
+        ISatSolver solver = createSatSolver(base);
+        
+        solver.isSatisfiable(new int[] {2});
+    }
+    
+    /**
+     * Tests that solve() returns the same answers as isSatisfiable() if no limits are set.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testSolveWithoutLimits() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, b);
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf query = new Cnf();
+        query.addRow(notA);
+        assertThat(solver.solve(query), is(SatResult.SAT));
+        
+        query.addRow(notB);
+        assertThat(solver.solve(query), is(SatResult.UNSAT));
+    }
+    
+    /**
+     * Tests that findModel() returns a model that contains the variables of the base CNF and the given CNF.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testFindModel() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, b);
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf query = new Cnf();
+        query.addRow(notA);
+        query.addRow(c);
+        
+        Map<String, Boolean> model = solver.findModel(query);
+        assertThat(model, notNullValue());
+        assertThat(model.size(), is(3));
+        assertThat(model.get("A"), is(false));
+        assertThat(model.get("B"), is(true));
+        assertThat(model.get("C"), is(true));
+        
+        query.addRow(notB);
+        assertThat(solver.findModel(query), nullValue());
+    }
+    
+    /**
+     * Tests that enumerateModels() finds all models exactly once, and respects the limit.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testEnumerateModels() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, b);
+        ISatSolver solver = createSatSolver(base);
+        
+        // (A || B) && (!A || C) has 4 models: A, C and any B; or !A, B and any C
+        Cnf query = new Cnf();
+        query.addRow(notA, c);
+        
+        List<Map<String, Boolean>> models = new ArrayList<>();
+        assertThat(solver.enumerateModels(query, 0, models::add), is(4));
+        assertThat(new HashSet<>(models).size(), is(4));
+        for (Map<String, Boolean> model : models) {
+            assertThat(model.get("A") || model.get("B"), is(true));
+            assertThat(!model.get("A") || model.get("C"), is(true));
+        }
+        
+        models.clear();
+        assertThat(solver.enumerateModels(query, 2, models::add), is(2));
+        assertThat(models.size(), is(2));
+        
+        // the blocking clauses don't influence later calls
+        assertThat(solver.isSatisfiable(query), is(true));
+    }
+    
+    /**
+     * Tests that models of a CNF that shares its dictionary with the base CNF only contain the variables of the base
+     * CNF and the given CNF, not the variables that other CNFs added to the dictionary.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testEnumerateModelsSharedDictionary() throws SolverException {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf base = new Cnf(dictionary, 1);
+        base.addRow(a, b);
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf query = new Cnf(dictionary, 1);
+        query.addRow(notA, c);
+        // wrapping solvers create their solvers lazily; make sure that this happens before D is added
+        assertThat(solver.isSatisfiable(query), is(true));
+        
+        // an unrelated CNF adds D to the dictionary
+        Cnf other = new Cnf(dictionary, 1);
+        other.addRow(new CnfVariable("D"));
+        assertThat(solver.isSatisfiable(other), is(true));
+        
+        Map<String, Boolean> model = solver.findModel(query);
+        assertThat(model, notNullValue());
+        assertThat(model.keySet(), is(new HashSet<>(Arrays.asList("A", "B", "C"))));
+        
+        // D must not double the number of models
+        List<Map<String, Boolean>> models = new ArrayList<>();
+        assertThat(solver.enumerateModels(query, 0, models::add), is(4));
+        assertThat(new HashSet<>(models).size(), is(4));
+        for (Map<String, Boolean> m : models) {
+            assertThat(m.keySet(), is(new HashSet<>(Arrays.asList("A", "B", "C"))));
+        }
+    }
+    
+    /**
+     * Tests that explainUnsat() returns a minimal core with rows of the base CNF and the given CNF.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testExplainUnsat() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(a, b);
+        base.addRow(notA, c);
+        base.addRow(a, c);
+        ISatSolver solver = createSatSolver(base);
+        
+        Cnf query = new Cnf();
+        query.addRow(notB, new CnfVariable("D"));
+        assertThat(solver.explainUnsat(query), nullValue());
+        
+        // !C makes (!A || C) && (A || C) unsatisfiable; (A || B) and (!B || D) are not needed
+        query.addRow(new CnfVariable(true, "C"));
+        Cnf core = solver.explainUnsat(query);
+        assertThat(core, notNullValue());
+        assertThat(core.getRowCount(), is(3));
+        assertThat(core.getRow(0), is(Arrays.asList(notA, c)));
+        assertThat(core.getRow(1), is(Arrays.asList(a, c)));
+        assertThat(core.getRow(2), is(Arrays.asList(new CnfVariable(true, "C"))));
+    }
 
 }
@@ -26,12 +26,22 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     VmToCnfConverterTest.class,
     Sat4jSolverTest.class,
+    PortfolioSatSolverTest.class,
+    PooledSatSolverTest.class,
+    ParallelBatchSatSolverTest.class,
+    IncrementalSat4jSolverTest.class,
     CryptoMiniSatSolverTest.class,
+    SolverThreadBudgetTest.class,
     CnfTest.class,
     RecursiveCnfConverterTest.class,
     RecursiveReplacingCnfConverterTest.class,
+    TseitinCnfConverterTest.class,
+    PlaistedGreenbaumCnfConverterTest.class,
     CachedSatSolverTest.class,
+    SatResultCacheTest.class,
+    PersistentCachedSatSolverTest.class,
     FormulaToCnfConverterFactoryTest.class,
+    NnfFormulaTest.class,
     })
 public class AllCNFTests {
 
@@ -88,5 +88,34 @@ public class CachedSatSolverTest extends AbstractSatSolverTest {
             }
         }
     }
+    
+    /**
+     * Tests that structurally equal CNFs share a cache entry.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testStructurallyEqualCnfsHit() throws SolverException {
+        CachedSatSolver solver = new CachedSatSolver(new Sat4jSolver());
+        
+        Cnf cnf1 = new Cnf();
+        cnf1.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        cnf1.addRow(new CnfVariable(true, "A"));
+        
+        Cnf cnf2 = new Cnf();
+        cnf2.addRow(new CnfVariable(true, "A"));
+        cnf2.addRow(new CnfVariable("B"), new CnfVariable("A"));
+        
+        assertThat(solver.isSatisfiable(cnf1), is(true));
+        assertThat(solver.isSatisfiable(cnf2), is(true));
+        
+        assertThat(solver.getCache().getMissCount(), is(1L));
+        assertThat(solver.getCache().getHitCount(), is(1L));
+        
+        // modifying a CNF after solving it does not change the cached entry
+        cnf1.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(cnf1), is(false));
+        assertThat(solver.isSatisfiable(cnf2), is(true));
+    }
 
 }
@@ -20,8 +20,14 @@ import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
 import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertThat;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.util.logic.Formula;
@@ -97,5 +103,271 @@ public class CnfTest {
         
         assertThat(formula, instanceOf(True.class));
     }
+    
+    /**
+     * Tests that rows added via literals and via {@link CnfVariable}s are stored in the same dictionary.
+     */
+    @Test
+    public void testLiteralRows() {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        
+        int a = cnf.getDictionary().getId("A");
+        int b = cnf.getDictionary().getId("B");
+        cnf.addLiteralRow(-a, b);
+        cnf.addLiteralRow();
+        
+        assertThat(cnf.getRowCount(), is(3));
+        assertThat(cnf.getRowLength(0), is(2));
+        assertThat(cnf.getLiteral(0, 0), is(a));
+        assertThat(cnf.getLiteral(0, 1), is(-b));
+        assertThat(cnf.getRow(1), is(Arrays.asList(new CnfVariable(true, "A"), new CnfVariable("B"))));
+        assertThat(cnf.getRow(2).size(), is(0));
+        assertThat(cnf.getAllVarNames(), is(new HashSet<>(Arrays.asList("A", "B"))));
+    }
+    
+    /**
+     * Tests the combine method with two CNFs that have different dictionaries.
+     */
+    @Test
+    public void testCombineDifferentDictionaries() {
+        Cnf cnf1 = new Cnf();
+        cnf1.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        Cnf cnf2 = new Cnf();
+        cnf2.addRow(new CnfVariable(true, "C"), new CnfVariable("A"));
+        
+        Cnf result = cnf1.combine(cnf2);
+        
+        assertNotSame(cnf1.getDictionary(), result.getDictionary());
+        assertThat(result.getRow(1), is(Arrays.asList(new CnfVariable(true, "C"), new CnfVariable("A"))));
+        assertThat(result.getLiteral(1, 1), is(result.getLiteral(0, 0)));
+        assertThat(result.getLiteral(0, 0), is(cnf1.getLiteral(0, 0)));
+        
+        // the original CNFs and their dictionaries are not modified
+        assertThat(cnf1.getRowCount(), is(1));
+        assertThat(cnf2.getRowCount(), is(1));
+        assertThat(cnf1.getDictionary().getMaxId(), is(2));
+        assertThat(cnf1.getDictionary().lookupId("C"), is(0));
+    }
+    
+    /**
+     * Tests the combine method with two CNFs that share a dictionary.
+     */
+    @Test
+    public void testCombineSharedDictionary() {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf cnf1 = new Cnf(dictionary, 1);
+        cnf1.addRow(new CnfVariable("A"));
+        Cnf cnf2 = new Cnf(dictionary, 2);
+        cnf2.addRow(new CnfVariable(true, "B"));
+        cnf2.addRow(new CnfVariable(true, "A"), new CnfVariable("B"));
+        
+        Cnf result = cnf1.combine(cnf2);
+        
+        assertThat(dictionary.getMaxId(), is(2));
+        assertThat(result.getRowCount(), is(3));
+        assertThat(result.getTable(), is(Arrays.asList(
+                Arrays.asList(new CnfVariable("A")),
+                Arrays.asList(new CnfVariable(true, "B")),
+                Arrays.asList(new CnfVariable(true, "A"), new CnfVariable("B")))));
+        
+        // adding to the result does not modify the shared dictionary
+        result.addRow(new CnfVariable("C"));
+        assertThat(dictionary.getMaxId(), is(2));
+        assertThat(result.getDictionary().getMaxId(), is(3));
+    }
+    
+    /**
+     * Tests that accessing a non-existing row throws an exception, even if the internal storage is larger.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetRowOutOfBounds() {
+        Cnf cnf = new Cnf(10);
+        cnf.addRow(new CnfVariable("A"));
+        cnf.getRow(1);
+    }
+    
+    /**
+     * Tests that an off-heap store which would need more than {@link Integer#MAX_VALUE} bytes is rejected instead of
+     * overflowing the byte size of its buffer.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOffHeapStoreTooLarge() {
+        IntStore.create(IntStore.maxCapacity(true) + 1, true);
+    }
+    
+    /**
+     * Tests that Cnfs are equal independent of the order of rows and variables, and independent of the dictionary.
+     */
+    @Test
+    public void testStructuralEquality() {
+        Cnf cnf1 = new Cnf();
+        cnf1.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        cnf1.addRow(new CnfVariable("C"));
+        
+        Cnf cnf2 = new Cnf();
+        cnf2.addRow(new CnfVariable("C"));
+        cnf2.addRow(new CnfVariable(true, "B"), new CnfVariable("A"));
+        
+        assertThat(cnf1.equals(cnf2), is(true));
+        assertThat(cnf2.equals(cnf1), is(true));
+        assertThat(cnf1.hashCode(), is(cnf2.hashCode()));
+        assertThat(cnf1.getFingerprint(), is(cnf2.getFingerprint()));
+        
+        // duplicate rows and variables don't matter
+        cnf2.addRow(new CnfVariable("C"), new CnfVariable("C"));
+        assertThat(cnf1.equals(cnf2), is(true));
+        assertThat(cnf1.getFingerprint(), is(cnf2.getFingerprint()));
+    }
+    
+    /**
+     * Tests that structurally different Cnfs are not equal.
+     */
+    @Test
+    public void testStructuralInequality() {
+        Cnf cnf1 = new Cnf();
+        cnf1.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        
+        Cnf negated = new Cnf();
+        negated.addRow(new CnfVariable(true, "A"), new CnfVariable("B"));
+        
+        Cnf split = new Cnf();
+        split.addRow(new CnfVariable("A"));
+        split.addRow(new CnfVariable(true, "B"));
+        
+        Cnf otherName = new Cnf();
+        otherName.addRow(new CnfVariable("A"), new CnfVariable(true, "C"));
+        
+        assertThat(cnf1.equals(negated), is(false));
+        assertThat(cnf1.equals(split), is(false));
+        assertThat(cnf1.equals(otherName), is(false));
+        assertThat(cnf1.getFingerprint() == negated.getFingerprint(), is(false));
+        assertThat(cnf1.getFingerprint() == split.getFingerprint(), is(false));
+        assertThat(cnf1.getFingerprint() == otherName.getFingerprint(), is(false));
+        assertThat(cnf1.equals("A"), is(false));
+    }
+    
+    /**
+     * Tests that the cached fingerprint is updated when the Cnf is modified.
+     */
+    @Test
+    public void testFingerprintUpdatedOnModification() {
+        Cnf cnf1 = new Cnf();
+        cnf1.addRow(new CnfVariable("A"));
+        Cnf cnf2 = new Cnf();
+        cnf2.addRow(new CnfVariable("A"));
+        
+        assertThat(cnf1.equals(cnf2), is(true));
+        
+        cnf1.addRow(new CnfVariable("B"));
+        assertThat(cnf1.equals(cnf2), is(false));
+        
+        cnf2.addRow(new CnfVariable("B"));
+        assertThat(cnf1.equals(cnf2), is(true));
+        assertThat(cnf1.getFingerprint(), is(cnf2.getFingerprint()));
+    }
+    
+    /**
+     * Tests that a copy is equal, but independent of the original.
+     */
+    @Test
+    public void testCopy() {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        
+        Cnf copy = cnf.copy();
+        assertThat(copy.equals(cnf), is(true));
+        assertThat(copy.getDictionary(), is(cnf.getDictionary()));
+        
+        cnf.addRow(new CnfVariable("C"));
+        assertThat(copy.getRowCount(), is(1));
+        assertThat(copy.equals(cnf), is(false));
+    }
+    
+    /**
+     * Tests that a compact copy is equal, but only knows the variables it uses.
+     */
+    @Test
+    public void testCompactCopy() {
+        VariableDictionary dictionary = new VariableDictionary();
+        dictionary.getId("X");
+        Cnf cnf = new Cnf(dictionary, 1);
+        cnf.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        
+        Cnf copy = cnf.compactCopy();
+        assertNotSame(cnf.getDictionary(), copy.getDictionary());
+        assertThat(copy.getDictionary().getMaxId(), is(2));
+        assertThat(copy.getRow(0), is(cnf.getRow(0)));
+        assertThat(copy.equals(cnf), is(true));
+        assertThat(copy.getFingerprint(), is(cnf.getFingerprint()));
+        
+        cnf.addRow(new CnfVariable("C"));
+        assertThat(copy.getRowCount(), is(1));
+        assertThat(copy.getDictionary().getMaxId(), is(2));
+    }
+    
+    /**
+     * Tests that the variables returned by a Cnf are shared per variable and polarity.
+     */
+    @Test
+    public void testSharedVariables() {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable(true, "A"));
+        cnf.addRow(new CnfVariable("A"));
+        
+        assertThat(cnf.getElement(0, 0), sameInstance(cnf.getElement(1, 0)));
+        assertThat(cnf.getElement(0, 0), is(new CnfVariable("A")));
+        assertThat(cnf.getElement(0, 1), is(new CnfVariable(true, "A")));
+        assertThat(cnf.getElement(0, 0).hashCode(), is(new CnfVariable("A").hashCode()));
+    }
+    
+    /**
+     * Tests that the rows are written in the length-prefixed form, with and without mapping and guard literal.
+     */
+    @Test
+    public void testWriteClauses() {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable(true, "B"));
+        cnf.addRow(new CnfVariable("B"));
+        assertThat(cnf.getClauseBufferSize(), is(5));
+        
+        IntBuffer buffer = IntBuffer.allocate(cnf.getClauseBufferSize());
+        cnf.writeClauses(buffer, null, 0);
+        assertThat(buffer.array(), is(new int[] {2, 1, -2, 1, 2}));
+        
+        // A -> 5, B -> 7; guarded by !9
+        buffer = IntBuffer.allocate(cnf.getClauseBufferSize() + cnf.getRowCount());
+        cnf.writeClauses(buffer, new int[] {0, 5, 7}, -9);
+        assertThat(buffer.array(), is(new int[] {3, 5, -7, -9, 2, 7, -9}));
+    }
+    
+    /**
+     * Tests that an off-heap Cnf grows, copies and combines like a normal Cnf.
+     */
+    @Test
+    public void testOffHeap() {
+        Cnf cnf = Cnf.createOffHeap(new VariableDictionary(), 1);
+        Cnf expected = new Cnf();
+        for (int i = 0; i < 20; i++) {
+            cnf.addRow(new CnfVariable("A" + i), new CnfVariable(true, "B"), new CnfVariable("C"));
+            expected.addRow(new CnfVariable("A" + i), new CnfVariable(true, "B"), new CnfVariable("C"));
+        }
+        assertThat(cnf.isOffHeap(), is(true));
+        assertThat(cnf.getRowCount(), is(20));
+        assertThat(cnf.getElement(19, 0), is(new CnfVariable("A19")));
+        assertThat(cnf, is(expected));
+        
+        Cnf copy = cnf.copy();
+        assertThat(copy.isOffHeap(), is(true));
+        assertThat(copy, is(cnf));
+        
+        Cnf other = new Cnf();
+        other.addRow(new CnfVariable("D"));
+        Cnf combined = cnf.combine(other);
+        assertThat(combined.isOffHeap(), is(true));
+        assertThat(combined.getRowCount(), is(21));
+        assertThat(combined, is(expected.combine(other)));
+        assertThat(other.combine(cnf).isOffHeap(), is(true));
+    }
 
 }
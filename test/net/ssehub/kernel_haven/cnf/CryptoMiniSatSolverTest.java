@@ -15,6 +15,12 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import net.ssehub.kernel_haven.test_utils.RunOnlyOnLinux;
@@ -28,6 +34,16 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
 @RunWith(RunOnlyOnLinux.class)
 public class CryptoMiniSatSolverTest extends AbstractSatSolverTest {
 
+    /**
+     * Makes sure that the JNI library is up-to-date. Otherwise, all tests would silently test the single-shot
+     * fallback, instead of the native solver instances.
+     */
+    @BeforeClass
+    public static void checkLibraryVersion() {
+        assertEquals("CryptoMiniSat JNI library is outdated, rebuild it (see jni/README)",
+                CryptoMiniSatSolver.LIBRARY_VERSION, CryptoMiniSatSolver.getLibraryVersion());
+    }
+
     @Override
     protected @NonNull ISatSolver createSatSolver() {
         return new CryptoMiniSatSolver();
@@ -37,5 +53,154 @@ public class CryptoMiniSatSolverTest extends AbstractSatSolverTest {
     protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
         return new CryptoMiniSatSolver(cnf);
     }
-
+    
+    /**
+     * Creates a base CNF: A or B.
+     * 
+     * @return The base CNF.
+     */
+    private static @NonNull Cnf createBaseCnf() {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        return base;
+    }
+    
+    /**
+     * Creates a query that fixes the value of a variable.
+     * 
+     * @param name The name of the variable.
+     * @param value The value of the variable.
+     * 
+     * @return The query.
+     */
+    private static @NonNull Cnf createQuery(@NonNull String name, boolean value) {
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(!value, name));
+        return query;
+    }
+    
+    /**
+     * Tests that the clauses of a query don't affect later queries on the same solver.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testQueriesIndependent() throws SolverException {
+        CryptoMiniSatSolver solver = new CryptoMiniSatSolver(createBaseCnf());
+        
+        Cnf notAnotB = createQuery("A", false);
+        notAnotB.addRow(new CnfVariable(true, "B"));
+        
+        assertThat(solver.isSatisfiable(notAnotB), is(false));
+        assertThat(solver.isSatisfiable(createQuery("A", false)), is(true));
+        assertThat(solver.isSatisfiable(createQuery("B", false)), is(true));
+        assertThat(solver.isSatisfiable(notAnotB), is(false));
+        
+        // variables that are not in the base CNF
+        Cnf cAndNotC = createQuery("C", true);
+        cAndNotC.addRow(new CnfVariable(true, "C"));
+        assertThat(solver.isSatisfiable(cAndNotC), is(false));
+        assertThat(solver.isSatisfiable(createQuery("C", false)), is(true));
+        assertThat(solver.isSatisfiable(createQuery("D", true)), is(true));
+        
+        solver.close();
+    }
+    
+    /**
+     * Tests that the solver can still be used after {@link CryptoMiniSatSolver#close()}.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testUseAfterClose() throws SolverException {
+        CryptoMiniSatSolver solver = new CryptoMiniSatSolver(createBaseCnf());
+        
+        assertThat(solver.isSatisfiable(createQuery("A", false)), is(true));
+        solver.close();
+        solver.close(); // closing twice does nothing
+        
+        Cnf notAnotB = createQuery("A", false);
+        notAnotB.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(notAnotB), is(false));
+        assertThat(solver.isSatisfiable(createQuery("B", true)), is(true));
+        
+        solver.close();
+    }
+    
+    /**
+     * Tests that the native solver is rebuilt once too many extra variables have accumulated in it, and still gives
+     * correct results afterwards.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testRebuild() throws SolverException {
+        CryptoMiniSatSolver solver = new CryptoMiniSatSolver(createBaseCnf());
+        solver.setRebuildThreshold(5);
+        
+        // !A && !B && C
+        Cnf unsat = createQuery("A", false);
+        unsat.addRow(new CnfVariable(true, "B"));
+        unsat.addRow(new CnfVariable("C"));
+        
+        // !A && C
+        Cnf sat = createQuery("A", false);
+        sat.addRow(new CnfVariable("C"));
+        
+        for (int i = 0; i < 20; i++) {
+            assertThat(solver.isSatisfiable(unsat), is(false));
+            assertThat(solver.isSatisfiable(sat), is(true));
+            assertThat(solver.getExtraVariableCount() <= 6, is(true));
+        }
+        
+        solver.close();
+    }
+    
+    /**
+     * Tests a multi-threaded solver, whose threads are limited by a budget.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testMultiThreaded() throws SolverException {
+        SolverThreadBudget budget = new SolverThreadBudget(2);
+        CryptoMiniSatSolver solver = new CryptoMiniSatSolver(createBaseCnf(), 4, budget);
+        assertThat(solver.getNumThreads(), is(2));
+        
+        Cnf notAnotB = createQuery("A", false);
+        notAnotB.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(notAnotB), is(false));
+        assertThat(solver.isSatisfiable(createQuery("A", false)), is(true));
+        
+        // all threads are released after each call
+        assertThat(budget.getAvailable(), is(2));
+        
+        solver.close();
+    }
+    
+    /**
+     * Tests that a heap base CNF is not frozen, although its clauses are only created when they are needed, that later
+     * changes to it don't affect the solver, and that explaining still reports the rows of the base CNF.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testHeapBaseNotFrozen() throws SolverException {
+        Cnf base = createBaseCnf();
+        CryptoMiniSatSolver solver = new CryptoMiniSatSolver(base);
+        
+        assertThat(base.isFrozen(), is(false));
+        base.addRow(new CnfVariable(true, "A"));
+        base.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(new Cnf()), is(true));
+        
+        Cnf notAnotB = createQuery("A", false);
+        notAnotB.addRow(new CnfVariable(true, "B"));
+        Cnf core = solver.explainUnsat(notAnotB);
+        assertThat(core.getRowCount(), is(3));
+        assertThat(core.getRow(0), is(base.getRow(0)));
+        
+        solver.close();
+    }
+    
 }
@@ -45,6 +45,9 @@ public class FormulaToCnfConverterFactoryTest {
         assertThat(FormulaToCnfConverterFactory.create(Strategy.RECURISVE), instanceOf(RecursiveCnfConverter.class));
         assertThat(FormulaToCnfConverterFactory.create(Strategy.RECURISVE_REPLACING),
                 instanceOf(RecursiveReplacingCnfConverter.class));
+        assertThat(FormulaToCnfConverterFactory.create(Strategy.TSEITIN), instanceOf(TseitinCnfConverter.class));
+        assertThat(FormulaToCnfConverterFactory.create(Strategy.PLAISTED_GREENBAUM),
+                instanceOf(PlaistedGreenbaumCnfConverter.class));
     }
     
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link IncrementalSat4jSolver} class.
+ *
+ * @author Adam
+ */
+public class IncrementalSat4jSolverTest extends AbstractSatSolverTest {
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver() {
+        return new IncrementalSat4jSolver();
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
+        return new IncrementalSat4jSolver(cnf);
+    }
+    
+    /**
+     * Tests that an unsatisfiable query does not influence the following queries.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testQueriesAreIndependent() throws SolverException {
+        // A -> B
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable(true, "A"), new CnfVariable("B"));
+        ISatSolver solver = createSatSolver(base);
+        
+        // A && !B
+        Cnf unsat = new Cnf();
+        unsat.addRow(new CnfVariable("A"));
+        unsat.addRow(new CnfVariable(true, "B"));
+        
+        // !B
+        Cnf notB = new Cnf();
+        notB.addRow(new CnfVariable(true, "B"));
+        
+        // A
+        Cnf a = new Cnf();
+        a.addRow(new CnfVariable("A"));
+        
+        for (int i = 0; i < 3; i++) {
+            assertThat(solver.isSatisfiable(unsat), is(false));
+            assertThat(solver.isSatisfiable(notB), is(true));
+            assertThat(solver.isSatisfiable(a), is(true));
+        }
+    }
+    
+    /**
+     * Tests that variables that are not in the base CNF keep their meaning only within a single query.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testAdditionalVariables() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"));
+        ISatSolver solver = createSatSolver(base);
+        
+        // C && !A
+        Cnf query1 = new Cnf();
+        query1.addRow(new CnfVariable("C"));
+        query1.addRow(new CnfVariable(true, "A"));
+        assertThat(solver.isSatisfiable(query1), is(false));
+        
+        // C
+        Cnf query2 = new Cnf();
+        query2.addRow(new CnfVariable("C"));
+        assertThat(solver.isSatisfiable(query2), is(true));
+        
+        // !C
+        Cnf query3 = new Cnf();
+        query3.addRow(new CnfVariable(true, "C"));
+        assertThat(solver.isSatisfiable(query3), is(true));
+    }
+    
+    /**
+     * Tests that the solver is rebuilt once too many extra variables have been allocated, and still gives correct
+     * results afterwards.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testRebuild() throws SolverException {
+        // A -> B
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable(true, "A"), new CnfVariable("B"));
+        IncrementalSat4jSolver solver = new IncrementalSat4jSolver(base);
+        solver.setRebuildThreshold(5);
+        
+        // A && !B && C
+        Cnf unsat = new Cnf();
+        unsat.addRow(new CnfVariable("A"));
+        unsat.addRow(new CnfVariable(true, "B"));
+        unsat.addRow(new CnfVariable("C"));
+        
+        // !B && C
+        Cnf sat = new Cnf();
+        sat.addRow(new CnfVariable(true, "B"));
+        sat.addRow(new CnfVariable("C"));
+        
+        for (int i = 0; i < 20; i++) {
+            assertThat(solver.isSatisfiable(unsat), is(false));
+            assertThat(solver.isSatisfiable(sat), is(true));
+            assertThat(solver.getExtraVariableCount() <= 6, is(true));
+        }
+        
+        base.addRow(new CnfVariable("A"));
+        // rows added to the base CNF later on are not loaded when rebuilding
+        for (int i = 0; i < 5; i++) {
+            assertThat(solver.isSatisfiable(sat), is(true));
+        }
+    }
+    
+    /**
+     * Tests a base CNF that is unsatisfiable on its own.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testUnsatisfiableBase() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"));
+        base.addRow(new CnfVariable(true, "A"));
+        ISatSolver solver = createSatSolver(base);
+        
+        assertThat(solver.isSatisfiable(new Cnf()), is(false));
+    }
+    
+    /**
+     * Tests that reaching the conflict limit only aborts the current call.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testConflictLimit() throws SolverException {
+        Cnf base = createPigeonholeCnf(12);
+        IncrementalSat4jSolver solver = new IncrementalSat4jSolver(base);
+        solver.setLimits(new SolverLimits(0, 100));
+        
+        assertThat(solver.solve(new Cnf()), is(SatResult.UNKNOWN));
+        
+        // queries that are trivially unsatisfiable are still answered
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable("X"));
+        query.addRow(new CnfVariable(true, "X"));
+        assertThat(solver.solve(query), is(SatResult.UNSAT));
+    }
+
+}
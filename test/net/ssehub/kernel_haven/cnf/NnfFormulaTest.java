@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+
+/**
+ * Tests the {@link NnfFormula}.
+ *
+ * @author Adam
+ */
+public class NnfFormulaTest {
+
+    /**
+     * Tests that constants are propagated away.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testConstants() throws ConverterException {
+        assertThat(NnfFormula.create(and("A", False.INSTANCE)).isFalse(), is(true));
+        assertThat(NnfFormula.create(or("A", True.INSTANCE)).isTrue(), is(true));
+        assertThat(NnfFormula.create(not(or(True.INSTANCE, "A"))).isFalse(), is(true));
+        
+        NnfFormula nnf = NnfFormula.create(and("A", not(or("B", not(True.INSTANCE)))));
+        assertThat(nnf.isTrue(), is(false));
+        assertThat(nnf.isFalse(), is(false));
+        int root = nnf.getRoot();
+        assertThat(nnf.getKind(root), is(NnfFormula.AND));
+        assertThat(nnf.getNumOperands(root), is(2));
+        assertThat(nnf.getLiteral(nnf.getOperand(root, 0)), is(1));
+        assertThat(nnf.getLiteral(nnf.getOperand(root, 1)), is(-2));
+        assertThat(nnf.getVariableName(1), is("A"));
+        assertThat(nnf.getVariableName(2), is("B"));
+    }
+    
+    /**
+     * Tests that negations are pushed down to the variables.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testNegationNormalForm() throws ConverterException {
+        // !(A || (B && !C)) -> !A && (!B || C)
+        NnfFormula nnf = NnfFormula.create(not(or("A", and("B", not("C")))));
+        
+        int root = nnf.getRoot();
+        assertThat(nnf.getKind(root), is(NnfFormula.AND));
+        assertThat(nnf.getNumOperands(root), is(2));
+        
+        int left = nnf.getOperand(root, 0);
+        assertThat(nnf.getKind(left), is(NnfFormula.LITERAL));
+        assertThat(nnf.getLiteral(left), is(-1));
+        
+        int right = nnf.getOperand(root, 1);
+        assertThat(nnf.getKind(right), is(NnfFormula.OR));
+        assertThat(nnf.getLiteral(nnf.getOperand(right, 0)), is(-2));
+        assertThat(nnf.getLiteral(nnf.getOperand(right, 1)), is(3));
+        assertThat(right < root, is(true));
+    }
+    
+    /**
+     * Tests that chains of conjunctions and disjunctions are flattened.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testFlattening() throws ConverterException {
+        // (A || B) || (C || !(D && E)) -> A || B || C || !D || !E
+        NnfFormula nnf = NnfFormula.create(or(or("A", "B"), or("C", not(and("D", "E")))));
+        int root = nnf.getRoot();
+        assertThat(nnf.getKind(root), is(NnfFormula.OR));
+        assertThat(nnf.getNumOperands(root), is(5));
+        assertThat(nnf.getNumNodes(), is(6));
+        
+        // A && ((B && C) || false) -> A && B && C; the node for B && C is not used
+        nnf = NnfFormula.create(and("A", or(and("B", "C"), False.INSTANCE)));
+        root = nnf.getRoot();
+        assertThat(nnf.getKind(root), is(NnfFormula.AND));
+        assertThat(nnf.getNumOperands(root), is(3));
+        
+        int[] uses = nnf.countUses();
+        int unused = 0;
+        for (int node = 0; node < nnf.getNumNodes(); node++) {
+            if (uses[node] == 0) {
+                unused++;
+                assertThat(nnf.getKind(node), is(NnfFormula.AND));
+            }
+        }
+        assertThat(unused, is(1));
+    }
+    
+    /**
+     * Tests that structurally equal sub-formulas are mapped to the same node.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testSharing() throws ConverterException {
+        NnfFormula nnf = NnfFormula.create(or(and("A", "B"), and("C", not(not(and("A", "B"))))));
+        
+        // A, B, A && B, C, C && A && B, the disjunction
+        assertThat(nnf.getNumNodes(), is(6));
+        
+        int root = nnf.getRoot();
+        int shared = nnf.getOperand(root, 0);
+        int other = nnf.getOperand(root, 1);
+        assertThat(nnf.getKind(shared), is(NnfFormula.AND));
+        assertThat(nnf.getNumOperands(other), is(3));
+        assertThat(nnf.getOperand(other, 1), is(nnf.getOperand(shared, 0)));
+        assertThat(nnf.countUses()[nnf.getOperand(shared, 0)], is(2));
+    }
+    
+    /**
+     * Tests that very deep formulas can be handled.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testDeepFormula() throws ConverterException {
+        Formula formula = new Variable("A");
+        for (int i = 0; i < 100000; i++) {
+            formula = or(and(formula, "B"), "C");
+        }
+        
+        NnfFormula nnf = NnfFormula.create(formula);
+        assertThat(nnf.getNumNodes(), is(200003));
+        assertThat(nnf.getKind(nnf.getRoot()), is(NnfFormula.OR));
+        assertThat(nnf.getNumVariables(), is(3));
+    }
+
+}
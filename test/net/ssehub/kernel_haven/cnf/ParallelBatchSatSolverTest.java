@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link ParallelBatchSatSolver}.
+ *
+ * @author Adam
+ */
+public class ParallelBatchSatSolverTest extends AbstractSatSolverTest {
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver() {
+        return new ParallelBatchSatSolver(() -> new Sat4jSolver(), 4);
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
+        return new ParallelBatchSatSolver(() -> new Sat4jSolver(cnf), 4);
+    }
+    
+    /**
+     * Creates a base CNF: <code>A || B</code>.
+     * 
+     * @return The base CNF.
+     */
+    private static @NonNull Cnf createBase() {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        return base;
+    }
+    
+    /**
+     * Creates a CNF with a single row of one variable.
+     * 
+     * @param negated Whether the variable is negated.
+     * @param name The name of the variable.
+     * 
+     * @return The CNF.
+     */
+    private static @NonNull Cnf createQuery(boolean negated, @NonNull String name) {
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(negated, name));
+        return query;
+    }
+    
+    /**
+     * Creates a batch of 100 queries against {@link #createBase()}; every third query is unsatisfiable.
+     * 
+     * @param expected Is filled with the expected results.
+     * 
+     * @return The batch.
+     */
+    private static @NonNull List<@NonNull Cnf> createBatch(boolean @NonNull [] expected) {
+        List<@NonNull Cnf> batch = new ArrayList<>();
+        for (int i = 0; i < expected.length; i++) {
+            Cnf query = createQuery(true, "A");
+            if (i % 3 == 0) {
+                query.addRow(new CnfVariable(true, "B"));
+            } else {
+                query.addRow(new CnfVariable("VAR_" + i));
+            }
+            batch.add(query);
+            expected[i] = i % 3 != 0;
+        }
+        return batch;
+    }
+    
+    /**
+     * Tests that a batch is solved correctly and the results are in the order of the batch.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testBatch() throws SolverException {
+        boolean[] expected = new boolean[100];
+        List<@NonNull Cnf> batch = createBatch(expected);
+        
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> new Sat4jSolver(createBase()), 4);
+        assertArrayEquals(expected, solver.isSatisfiableBatch(batch));
+    }
+    
+    /**
+     * Tests the asynchronous batch call.
+     * 
+     * @throws InterruptedException unwanted.
+     * @throws ExecutionException unwanted.
+     */
+    @Test
+    public void testBatchAsync() throws InterruptedException, ExecutionException {
+        boolean[] expected = new boolean[100];
+        List<@NonNull Cnf> batch = createBatch(expected);
+        
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> new Sat4jSolver(createBase()), 4);
+        assertArrayEquals(expected, solver.isSatisfiableBatchAsync(batch).get());
+    }
+    
+    /**
+     * Tests that an empty batch gives an empty result.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testEmptyBatch() throws SolverException {
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> new Sat4jSolver(), 4);
+        assertThat(solver.isSatisfiableBatch(new ArrayList<>()).length, is(0));
+    }
+    
+    /**
+     * Tests that structurally equal CNFs in a batch are only solved once.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testDuplicatesSolvedOnce() throws SolverException {
+        AtomicInteger calls = new AtomicInteger();
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> {
+            ISatSolver real = new Sat4jSolver(createBase());
+            return (cnf) -> {
+                calls.incrementAndGet();
+                return real.isSatisfiable(cnf);
+            };
+        }, 4);
+        
+        List<@NonNull Cnf> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // separate, but equal instances
+            Cnf unsat = createQuery(true, "A");
+            unsat.addRow(new CnfVariable(true, "B"));
+            batch.add(unsat);
+            batch.add(createQuery(true, "A"));
+        }
+        
+        boolean[] result = solver.isSatisfiableBatch(batch);
+        
+        for (int i = 0; i < result.length; i++) {
+            assertThat(result[i], is(i % 2 == 1));
+        }
+        assertThat(calls.get(), is(2));
+    }
+    
+    /**
+     * Tests that solver instances are re-used, and at most one instance per thread is created.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testSolversReused() throws SolverException {
+        AtomicInteger created = new AtomicInteger();
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> {
+            created.incrementAndGet();
+            return new Sat4jSolver(createBase());
+        }, 3);
+        
+        boolean[] expected = new boolean[100];
+        List<@NonNull Cnf> batch = createBatch(expected);
+        
+        assertArrayEquals(expected, solver.isSatisfiableBatch(batch));
+        assertArrayEquals(expected, solver.isSatisfiableBatch(batch));
+        assertTrue("Created " + created.get() + " solvers", created.get() <= 3);
+    }
+    
+    /**
+     * Tests that an exception of a solver is thrown by the batch call.
+     * 
+     * @throws SolverException wanted.
+     */
+    @Test(expected = SolverException.class)
+    public void testExceptionPropagated() throws SolverException {
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> (cnf) -> {
+            if (cnf.getRowCount() > 1) {
+                throw new SolverException("Expected exception");
+            }
+            return true;
+        }, 4);
+        
+        Cnf failing = createQuery(false, "A");
+        failing.addRow(new CnfVariable("B"));
+        
+        solver.isSatisfiableBatch(Arrays.asList(createQuery(false, "A"), failing, createQuery(false, "B")));
+    }
+    
+    /**
+     * Creates a solver that returns {@link SatResult#UNKNOWN} for all CNFs with more than one row, and
+     * {@link SatResult#SAT} otherwise.
+     * 
+     * @return The solver.
+     */
+    private static @NonNull ISatSolver createUnknownSolver() {
+        return new ISatSolver() {
+            
+            @Override
+            public @NonNull SatResult solve(@NonNull Cnf cnf) {
+                return cnf.getRowCount() > 1 ? SatResult.UNKNOWN : SatResult.SAT;
+            }
+            
+            @Override
+            public boolean isSatisfiable(@NonNull Cnf cnf) throws SolverException {
+                return solve(cnf).isSatisfiable();
+            }
+        };
+    }
+    
+    /**
+     * Tests that solve() and solveBatch() return {@link SatResult#UNKNOWN} for CNFs where the solver reaches its
+     * limits, without failing the other CNFs of the batch.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testUnknownResults() throws SolverException {
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> createUnknownSolver(), 4);
+        
+        Cnf unknown = createQuery(false, "A");
+        unknown.addRow(new CnfVariable("B"));
+        
+        assertThat(solver.solve(unknown), is(SatResult.UNKNOWN));
+        assertThat(solver.solve(createQuery(false, "A")), is(SatResult.SAT));
+        
+        assertArrayEquals(new SatResult[] {SatResult.SAT, SatResult.UNKNOWN, SatResult.SAT},
+                solver.solveBatch(Arrays.asList(createQuery(false, "A"), unknown, createQuery(false, "B"))));
+    }
+    
+    /**
+     * Tests that isSatisfiableBatch() throws an exception if the solver reaches its limits for any CNF.
+     * 
+     * @throws SolverException wanted.
+     */
+    @Test(expected = SolverException.class)
+    public void testUnknownInBooleanBatch() throws SolverException {
+        IBatchSatSolver solver = new ParallelBatchSatSolver(() -> createUnknownSolver(), 4);
+        
+        Cnf unknown = createQuery(false, "A");
+        unknown.addRow(new CnfVariable("B"));
+        
+        solver.isSatisfiableBatch(Arrays.asList(createQuery(false, "A"), unknown, createQuery(false, "B")));
+    }
+    
+    /**
+     * Tests that an invalid number of threads is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new ParallelBatchSatSolver(() -> new Sat4jSolver(), 0);
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link PersistentCachedSatSolver} and the {@link SatResultFile}.
+ *
+ * @author Adam
+ */
+public class PersistentCachedSatSolverTest extends AbstractSatSolverTest {
+
+    private File tempFile;
+
+    private SatResultFile resultFile;
+
+    /**
+     * Creates a fresh result file.
+     *
+     * @throws IOException unwanted.
+     */
+    @Before
+    public void createFile() throws IOException {
+        tempFile = File.createTempFile("sat_results", ".bin");
+        tempFile.deleteOnExit();
+        resultFile = new SatResultFile(tempFile);
+    }
+
+    /**
+     * Closes and deletes the result file.
+     *
+     * @throws IOException unwanted.
+     */
+    @After
+    public void deleteFile() throws IOException {
+        resultFile.close();
+        tempFile.delete();
+    }
+
+    /**
+     * Returns the result stored in {@link #resultFile}.
+     *
+     * @param base The base CNF.
+     * @param cnf The checked CNF.
+     *
+     * @return The stored result.
+     */
+    private Boolean get(@NonNull Cnf base, @NonNull Cnf cnf) {
+        return resultFile.get(base.getFingerprint(), SatResultFile.getSize(base), cnf.getFingerprint(),
+                SatResultFile.getSize(cnf));
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver() {
+        return new PersistentCachedSatSolver(new Sat4jSolver(), new Cnf(), resultFile);
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
+        return new PersistentCachedSatSolver(new Sat4jSolver(cnf), cnf, resultFile);
+    }
+
+    /**
+     * Tests that results are available after re-opening the file.
+     *
+     * @throws IOException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testResultsPersisted() throws IOException, SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "A"));
+        query.addRow(new CnfVariable(true, "B"));
+
+        assertThat(createSatSolver(base).isSatisfiable(query), is(false));
+        resultFile.close();
+
+        resultFile = new SatResultFile(tempFile);
+        assertThat(get(base, query), is(false));
+
+        // a solver that would give the wrong answer shows that the stored result is used
+        ISatSolver solver = new PersistentCachedSatSolver(new Sat4jSolver(), base, resultFile);
+        assertThat(solver.isSatisfiable(query), is(false));
+    }
+
+    /**
+     * Tests that results are stored separately for different base CNFs.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testDifferentBases() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"));
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "A"));
+
+        assertThat(createSatSolver(base).isSatisfiable(query), is(false));
+        assertThat(createSatSolver().isSatisfiable(query), is(true));
+
+        assertThat(get(base, query), is(false));
+        assertThat(get(new Cnf(), query), is(true));
+    }
+
+    /**
+     * Tests that an incomplete record at the end of the file is discarded.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testIncompleteRecordDiscarded() throws IOException {
+        resultFile.put(1, 0, 2, 0, true);
+        resultFile.close();
+
+        long validLength = tempFile.length();
+        try (FileOutputStream out = new FileOutputStream(tempFile, true)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        resultFile = new SatResultFile(tempFile);
+        assertThat(tempFile.length(), is(validLength));
+        assertThat(resultFile.get(1, 0, 2, 0), is(true));
+
+        resultFile.put(3, 0, 4, 0, false);
+        resultFile.close();
+
+        resultFile = new SatResultFile(tempFile);
+        assertThat(resultFile.get(1, 0, 2, 0), is(true));
+        assertThat(resultFile.get(3, 0, 4, 0), is(false));
+    }
+
+    /**
+     * Tests that a file with an invalid header is overwritten.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testInvalidHeader() throws IOException {
+        resultFile.close();
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write("this is not a result file".getBytes());
+        }
+
+        resultFile = new SatResultFile(tempFile);
+        assertThat(resultFile.get(1, 0, 2, 0), nullValue());
+        resultFile.put(1, 0, 2, 0, true);
+        resultFile.close();
+
+        resultFile = new SatResultFile(tempFile);
+        assertThat(resultFile.get(1, 0, 2, 0), is(true));
+    }
+
+    /**
+     * Tests that a result is not returned if the sizes of the CNFs do not match, even if the fingerprints do.
+     *
+     * @throws IOException unwanted.
+     */
+    @Test
+    public void testSizeMismatch() throws IOException {
+        resultFile.put(1, 10, 2, 20, true);
+
+        assertThat(resultFile.get(1, 10, 2, 20), is(true));
+        assertThat(resultFile.get(1, 11, 2, 20), nullValue());
+        assertThat(resultFile.get(1, 10, 2, 21), nullValue());
+
+        resultFile.close();
+        resultFile = new SatResultFile(tempFile);
+        assertThat(resultFile.get(1, 10, 2, 20), is(true));
+        assertThat(resultFile.get(1, 10, 2, 21), nullValue());
+    }
+
+    /**
+     * Tests that a file can not be opened while it is already open.
+     *
+     * @throws IOException wanted.
+     */
+    @Test(expected = IOException.class)
+    public void testAlreadyLocked() throws IOException {
+        new SatResultFile(tempFile).close();
+    }
+
+}
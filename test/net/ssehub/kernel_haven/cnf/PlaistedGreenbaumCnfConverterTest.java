@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link PlaistedGreenbaumCnfConverter}.
+ *
+ * @author Adam
+ */
+public class PlaistedGreenbaumCnfConverterTest extends AbstractCnfConverterTest {
+
+    @Override
+    protected @NonNull IFormulaToCnfConverter createConverter() {
+        return new PlaistedGreenbaumCnfConverter();
+    }
+
+    /**
+     * Tests that fewer rows are created than with the full Tseitin transformation.
+     *
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testFewerRowsThanTseitin() throws ConverterException {
+        // (A && B) || (C && D): both conjunctions only occur positively
+        Formula formula = or(and("A", "B"), and("C", "D"));
+
+        Cnf tseitin = new TseitinCnfConverter().convert(formula);
+        Cnf pg = new PlaistedGreenbaumCnfConverter().convert(formula);
+
+        // top level row, plus 3 rows for each conjunction
+        assertThat(tseitin.getRowCount(), is(7));
+        // top level row, plus 2 rows for each conjunction
+        assertThat(pg.getRowCount(), is(5));
+    }
+
+    /**
+     * Tests that a left-deep chain of 100 000 alternating operators is converted without recursion, and that the
+     * result is linear in the size of the chain.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testLeftDeepChain() throws ConverterException, SolverException {
+        int depth = 100000;
+        Cnf cnf = createConverter().convert(createAlternatingChain(depth));
+
+        // at most 3 rows per new variable, and one new variable per operator
+        assertThat(cnf.getRowCount() <= 3 * depth, is(true));
+
+        // the chain ends with && V_depth
+        Cnf notLast = new Cnf();
+        notLast.addRow(new CnfVariable(true, "V" + depth));
+        Cnf allButLast = new Cnf();
+        allButLast.addRow(new CnfVariable(true, "START"));
+        for (int i = 1; i < depth; i++) {
+            allButLast.addRow(new CnfVariable(true, "V" + i));
+        }
+        allButLast.addRow(new CnfVariable("V" + depth));
+
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf), is(true));
+        assertThat(solver.isSatisfiable(cnf.combine(notLast)), is(false));
+        assertThat(solver.isSatisfiable(cnf.combine(allButLast)), is(false));
+    }
+
+    /**
+     * Tests a sub-formula that occurs both negated and not negated.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testBothPolarities() throws ConverterException, SolverException {
+        // (A || B) && !(A || B) is unsatisfiable
+        Formula aOrB = or("A", "B");
+        Formula formula = or(and("C", aOrB), and("D", not(aOrB)));
+
+        Cnf cnf = createConverter().convert(formula);
+
+        Cnf notC = new Cnf();
+        notC.addRow(new CnfVariable(true, "C"));
+        Cnf notA = new Cnf();
+        notA.addRow(new CnfVariable(true, "A"));
+        notA.addRow(new CnfVariable(true, "B"));
+
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf.combine(notA)), is(true)); // D must hold
+        assertThat(solver.isSatisfiable(cnf.combine(notA).combine(notC)), is(true));
+
+        Cnf notD = new Cnf();
+        notD.addRow(new CnfVariable(true, "D"));
+        assertThat(solver.isSatisfiable(cnf.combine(notA).combine(notD)), is(false));
+    }
+
+}
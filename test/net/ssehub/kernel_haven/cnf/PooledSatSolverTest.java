@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link PooledSatSolver}.
+ *
+ * @author Adam
+ */
+public class PooledSatSolverTest extends AbstractSatSolverTest {
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver() {
+        return new PooledSatSolver(() -> new Sat4jSolver(), 2);
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
+        return new PooledSatSolver(() -> new Sat4jSolver(cnf), 2);
+    }
+    
+    /**
+     * Tests that concurrent calls from many threads never use more solver instances than the size of the pool, and
+     * that no instance is used by two threads at the same time.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 30000)
+    public void testBoundedConcurrentUse() throws InterruptedException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicReference<String> error = new AtomicReference<>();
+        PooledSatSolver pool = new PooledSatSolver(() -> {
+            ISatSolver real = new Sat4jSolver(base);
+            AtomicInteger inUse = new AtomicInteger();
+            return (cnf) -> {
+                if (inUse.incrementAndGet() != 1) {
+                    error.set("Instance used concurrently");
+                }
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    return real.isSatisfiable(cnf);
+                } finally {
+                    concurrent.decrementAndGet();
+                    inUse.decrementAndGet();
+                }
+            };
+        }, 2);
+        
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "A"));
+        query.addRow(new CnfVariable(true, "B"));
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 50; j++) {
+                        if (pool.isSatisfiable(query)) {
+                            error.set("Wrong result");
+                        }
+                    }
+                } catch (SolverException e) {
+                    error.set(e.toString());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(error.get(), nullValue());
+        assertTrue("Created " + pool.getNumCreated() + " instances", pool.getNumCreated() <= 2);
+        assertTrue("Max concurrent " + maxConcurrent.get(), maxConcurrent.get() <= 2);
+    }
+    
+    /**
+     * Tests a pooled solver created by the {@link SatSolverFactory}, whose instances share the base clauses.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testFactory() throws SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        ISatSolver solver = SatSolverFactory.createPooledSolver(base, 2);
+        
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "A"));
+        assertThat(solver.isSatisfiable(query), is(true));
+        query.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(query), is(false));
+    }
+    
+    /**
+     * Tests that an invalid size is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new PooledSatSolver(() -> new Sat4jSolver(), 0);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link PortfolioSatSolver}.
+ *
+ * @author Adam
+ */
+public class PortfolioSatSolverTest extends AbstractSatSolverTest {
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver() {
+        return new PortfolioSatSolver();
+    }
+
+    @Override
+    protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
+        return new PortfolioSatSolver(cnf);
+    }
+    
+    /**
+     * Tests that interrupting the calling thread stops the portfolio, and that the solver can still be used
+     * afterwards.
+     * 
+     * @throws InterruptedException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testInterrupt() throws InterruptedException, SolverException {
+        Cnf base = createPigeonholeCnf(12);
+        PortfolioSatSolver solver = new PortfolioSatSolver(base);
+        // CryptoMiniSat can't be cancelled; the limit stops it shortly after this test
+        solver.setLimits(new SolverLimits(2000, 0));
+        
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                solver.isSatisfiable(new Cnf());
+            } catch (SolverException e) {
+                thrown.set(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(200);
+        thread.interrupt();
+        thread.join();
+        
+        assertThat(thrown.get(), instanceOf(SolverException.class));
+        
+        // an easy query: pigeons 0 and 1 share hole 0
+        int[] assumptions = {base.getDictionary().lookupId("P0_H0"), base.getDictionary().lookupId("P1_H0")};
+        assertThat(solver.isSatisfiable(assumptions), is(false));
+    }
+
+}
@@ -15,6 +15,20 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
@@ -28,5 +42,108 @@ public class RecursiveCnfConverterTest extends AbstractCnfConverterTest {
     protected @NonNull IFormulaToCnfConverter createConverter() {
         return new RecursiveCnfConverter();
     }
+    
+    /**
+     * Tests that sub-classes that override the deprecated {@link Formula} based handle methods and opt in to them
+     * still work.
+     * 
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedHandleMethods() throws ConverterException, SolverException {
+        AtomicInteger orCalls = new AtomicInteger();
+        RecursiveCnfConverter converter = new RecursiveCnfConverter(true) {
+            
+            @Override
+            protected @NonNull Cnf handleVariable(@NonNull Variable var) throws ConverterException {
+                // renames all variables
+                return super.handleVariable(new Variable("X_" + var.getName()));
+            }
+            
+            @Override
+            protected @NonNull Cnf handleOr(@NonNull Disjunction call) throws ConverterException {
+                orCalls.incrementAndGet();
+                return super.handleOr(call);
+            }
+            
+        };
+        
+        // (A || B) && (A || C) && TRUE
+        Cnf cnf = converter.convert(and(and(or("A", "B"), or("A", "C")), True.INSTANCE));
+        
+        assertThat(orCalls.get(), is(2));
+        assertThat(cnf.getAllVarNames().contains("A"), is(false));
+        
+        ISatSolver solver = SatSolverFactory.createSolver(cnf, false);
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable(true, "X_A"), new CnfVariable("X_B"),
+                new CnfVariable("X_C"))), is(true));
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable(true, "X_A"), new CnfVariable("X_B"),
+                new CnfVariable(true, "X_C"))), is(false));
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable(true, "X_A"), new CnfVariable(true, "X_B"))),
+                is(false));
+    }
+    
+    /**
+     * Tests that the deprecated {@link Formula} based handle methods are not called without opting in, even if a
+     * sub-class overrides them.
+     * 
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedHandleMethodsWithoutOptIn() throws ConverterException {
+        AtomicInteger orCalls = new AtomicInteger();
+        RecursiveCnfConverter converter = new RecursiveCnfConverter() {
+            
+            @Override
+            protected @NonNull Cnf handleOr(@NonNull Disjunction call) throws ConverterException {
+                orCalls.incrementAndGet();
+                return super.handleOr(call);
+            }
+            
+        };
+        
+        Cnf cnf = converter.convert(and(or("A", "B"), or("A", "C")));
+        
+        assertThat(orCalls.get(), is(0));
+        assertThat(cnf.getRowCount(), is(2));
+    }
+    
+    /**
+     * Tests that left-deep chains of 100 000 operators are converted without recursion. The operators don't
+     * alternate, since distributing alternating operators would make the result quadratic in the depth.
+     * 
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testLeftDeepChain() throws ConverterException, SolverException {
+        int depth = 100000;
+        
+        // ((START && (A1 || B1)) && (A2 || B2)) ...
+        Formula conjunction = new Variable("START");
+        // ((START || A1) || A2) ...
+        Formula disjunction = new Variable("START");
+        for (int i = 1; i <= depth; i++) {
+            conjunction = and(conjunction, or("A" + i, "B" + i));
+            disjunction = or(disjunction, "A" + i);
+        }
+        
+        Cnf cnf = createConverter().convert(conjunction);
+        assertThat(cnf.getRowCount(), is(depth + 1));
+        
+        Cnf notLast = new Cnf();
+        notLast.addRow(new CnfVariable(true, "A" + depth));
+        notLast.addRow(new CnfVariable(true, "B" + depth));
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf), is(true));
+        assertThat(solver.isSatisfiable(cnf.combine(notLast)), is(false));
+        
+        cnf = createConverter().convert(disjunction);
+        assertThat(cnf.getRowCount(), is(1));
+        assertThat(cnf.getRow(0).size(), is(depth + 1));
+    }
 
 }
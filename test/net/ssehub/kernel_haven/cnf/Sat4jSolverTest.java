@@ -15,6 +15,29 @@
  */
 package net.ssehub.kernel_haven.cnf;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ISolver;
+
+import net.ssehub.kernel_haven.cnf.AbstractSingleShotSatSolver.Translation;
+import net.ssehub.kernel_haven.cnf.Sat4jSolver.Configuration;
+import net.ssehub.kernel_haven.cnf.Sat4jSolver.InterruptListener;
+import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 
 /**
@@ -33,5 +56,206 @@ public class Sat4jSolverTest extends AbstractSatSolverTest {
     protected @NonNull ISatSolver createSatSolver(@NonNull Cnf cnf) {
         return new Sat4jSolver(cnf);
     }
+    
+    /**
+     * Tests that the greedy configuration gives correct answers.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testGreedyConfiguration() throws SolverException {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        cnf.addRow(new CnfVariable(true, "A"));
+        
+        ISatSolver solver = new Sat4jSolver(cnf, Configuration.GREEDY);
+        assertThat(solver.isSatisfiable(new Cnf()), is(true));
+        
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(query), is(false));
+    }
+    
+    /**
+     * Tests that formulas that are converted with a common dictionary only need to be translated to the base CNF
+     * once, while a fresh dictionary for each conversion needs a new translation.
+     * 
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testTranslationCacheSharedConversionDictionary() throws ConverterException, SolverException {
+        Cnf base = new Cnf();
+        base.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        Sat4jSolver solver = new Sat4jSolver(base);
+        
+        IFormulaToCnfConverter converter = new RecursiveCnfConverter();
+        Variable a = new Variable("A");
+        Variable b = new Variable("B");
+        
+        VariableDictionary dictionary = new VariableDictionary();
+        assertThat(solver.isSatisfiable(converter.convert(or(a, not(b)), dictionary)), is(true));
+        Translation translation = solver.getTranslation();
+        assertThat(translation, notNullValue());
+        
+        // same dictionary: the cached translation is used as-is
+        assertThat(solver.isSatisfiable(converter.convert(and(not(a), not(b)), dictionary)), is(false));
+        assertThat(solver.getTranslation(), sameInstance(translation));
+        
+        // a fresh dictionary from convert(Formula) needs a new translation
+        assertThat(solver.isSatisfiable(converter.convert(and(not(a), not(b)))), is(false));
+        assertNotSame(translation, solver.getTranslation());
+    }
+    
+    /**
+     * Tests that a copy of a solver uses the same base CNF.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testCopy() throws SolverException {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable("A"), new CnfVariable("B"));
+        cnf.addRow(new CnfVariable(true, "A"));
+        
+        ISatSolver copy = new Sat4jSolver(cnf).copy();
+        
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "B"));
+        assertThat(copy.isSatisfiable(query), is(false));
+        assertThat(copy.isSatisfiable(new Cnf()), is(true));
+    }
+    
+    /**
+     * Tests that an off-heap base CNF is frozen, and that variables that are added to its dictionary afterwards are
+     * not treated as variables of the base CNF.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testOffHeapBaseFrozen() throws SolverException {
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf base = Cnf.createOffHeap(dictionary, 1);
+        base.addRow(new CnfVariable("A"));
+        ISatSolver solver = new Sat4jSolver(base);
+        
+        assertThat(base.isFrozen(), is(true));
+        try {
+            base.addRow(new CnfVariable(true, "A"));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        
+        Cnf query = new Cnf(dictionary, 1);
+        query.addRow(new CnfVariable(true, "B"));
+        assertThat(solver.isSatisfiable(query), is(true));
+        assertThat(solver.findModel(query).keySet(), is(new HashSet<>(Arrays.asList("A", "B"))));
+        
+        // B is now part of the dictionary, but not of the base CNF
+        assertThat(solver.isSatisfiable(Arrays.asList(new CnfVariable("B"))), is(true));
+        try {
+            solver.isSatisfiable(new int[] {dictionary.lookupId("B")});
+            fail("Expected SolverException");
+        } catch (SolverException e) {
+            // expected
+        }
+    }
+    
+    /**
+     * Tests that interrupting the solving thread stops the solver.
+     * 
+     * @throws InterruptedException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testInterrupt() throws InterruptedException {
+        ISatSolver solver = createSatSolver(createPigeonholeCnf(12));
+        
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                solver.isSatisfiable(new Cnf());
+            } catch (SolverException e) {
+                thrown.set(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(200);
+        thread.interrupt();
+        thread.join();
+        
+        assertThat(thrown.get(), instanceOf(SolverException.class));
+    }
+    
+    /**
+     * Tests that a solver without limits keeps the built-in timeout of Sat4j, also after other limits were set.
+     */
+    @Test
+    public void testNoLimitsKeepDefaultTimeout() {
+        ISolver sat4j = SolverFactory.newDefault();
+        InterruptListener listener = new InterruptListener(sat4j);
+        
+        listener.setLimits(SolverLimits.NONE);
+        assertThat(sat4j.getTimeoutMs(), is(SolverLimits.DEFAULT.getTimeoutMs()));
+        
+        listener.setLimits(new SolverLimits(200, 0));
+        assertThat(sat4j.getTimeoutMs(), is(200L));
+        
+        listener.setLimits(SolverLimits.NONE);
+        assertThat(sat4j.getTimeoutMs(), is(SolverLimits.DEFAULT.getTimeoutMs()));
+    }
+    
+    /**
+     * Tests that a solver that reaches its conflict limit returns {@link SatResult#UNKNOWN}, and that
+     * isSatisfiable() throws an exception in this case.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testConflictLimit() throws SolverException {
+        Sat4jSolver solver = new Sat4jSolver(createPigeonholeCnf(12));
+        solver.setLimits(new SolverLimits(0, 100));
+        
+        assertThat(solver.solve(new Cnf()), is(SatResult.UNKNOWN));
+        
+        try {
+            solver.isSatisfiable(new Cnf());
+            fail("Expected SolverException");
+        } catch (SolverException e) {
+            // expected
+        }
+        
+        // easy queries are still answered
+        Cnf easy = new Cnf();
+        easy.addRow(new CnfVariable("A"));
+        easy.addRow(new CnfVariable(true, "A"));
+        assertThat(solver.copy().solve(easy), is(SatResult.UNSAT));
+    }
+    
+    /**
+     * Tests that a solver that reaches its timeout returns {@link SatResult#UNKNOWN}.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testTimeout() throws SolverException {
+        Sat4jSolver solver = new Sat4jSolver(createPigeonholeCnf(12));
+        solver.setLimits(new SolverLimits(200, 0));
+        
+        assertThat(solver.solve(new Cnf()), is(SatResult.UNKNOWN));
+    }
+    
+    /**
+     * Tests that the conflict limit is enforced if a timeout is set, too.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testTimeoutAndConflictLimit() throws SolverException {
+        Sat4jSolver solver = new Sat4jSolver(createPigeonholeCnf(12));
+        solver.setLimits(new SolverLimits(60000, 100));
+        
+        assertThat(solver.solve(new Cnf()), is(SatResult.UNKNOWN));
+    }
 
 }
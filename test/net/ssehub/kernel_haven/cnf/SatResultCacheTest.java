@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.cnf.SatResultCache.EvictionPolicy;
+import net.ssehub.kernel_haven.cnf.SatResultCache.SizeUnit;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link SatResultCache}.
+ *
+ * @author Adam
+ */
+public class SatResultCacheTest {
+
+    /**
+     * Creates a simple CNF with a single unit clause.
+     *
+     * @param name The name of the variable.
+     *
+     * @return The CNF.
+     */
+    private static @NonNull Cnf cnf(@NonNull String name) {
+        Cnf cnf = new Cnf();
+        cnf.addRow(new CnfVariable(name));
+        return cnf;
+    }
+
+    /**
+     * Tests that an unbounded cache stores all results.
+     */
+    @Test
+    public void testUnbounded() {
+        SatResultCache cache = new SatResultCache();
+
+        List<@NonNull Cnf> cnfs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Cnf cnf = cnf("VAR_" + i);
+            cnfs.add(cnf);
+            cache.put(cnf, i % 2 == 0);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(cache.get(cnfs.get(i)), is(i % 2 == 0));
+        }
+        assertThat(cache.getEntryCount(), is(100));
+        assertThat(cache.getEvictionCount(), is(0L));
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted.
+     */
+    @Test
+    public void testLruEviction() {
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LRU, 2);
+        Cnf a = cnf("A");
+        Cnf b = cnf("B");
+        Cnf c = cnf("C");
+
+        cache.put(a, true);
+        cache.put(b, false);
+        cache.get(a); // b is now least recently used
+        cache.put(c, true);
+
+        assertThat(cache.get(a), is(true));
+        assertThat(cache.get(b), nullValue());
+        assertThat(cache.get(c), is(true));
+        assertThat(cache.getEntryCount(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+    }
+
+    /**
+     * Tests that the least frequently used entry is evicted.
+     */
+    @Test
+    public void testLfuEviction() {
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LFU, 2);
+        Cnf a = cnf("A");
+        Cnf b = cnf("B");
+        Cnf c = cnf("C");
+
+        cache.put(a, true);
+        cache.put(b, false);
+        cache.get(a);
+        cache.get(a);
+        cache.get(b); // b is more recently used, but less frequently
+        cache.put(c, true);
+
+        assertThat(cache.get(a), is(true));
+        assertThat(cache.get(b), nullValue());
+        assertThat(cache.get(c), is(true));
+
+        // c (2 accesses) is now less frequently used than a (4 accesses)
+        cache.put(b, false);
+        assertThat(cache.get(c), nullValue());
+        assertThat(cache.get(a), is(true));
+        assertThat(cache.get(b), is(false));
+    }
+
+    /**
+     * Tests a cache that is limited in bytes.
+     */
+    @Test
+    public void testByteLimit() {
+        // all variable names have the same length, so all entries have the same size
+        long size = SatResultCache.getEstimatedMemorySize(cnf("VAR_X").compactCopy());
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LRU, size * 3, SizeUnit.BYTES, 0);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(cnf("VAR_" + i), true);
+        }
+
+        assertThat(cache.getEntryCount(), is(3));
+        assertThat(cache.getSize(), is(size * 3));
+        assertThat(cache.getEvictionCount(), is(7L));
+    }
+
+    /**
+     * Tests that the size of an entry does not depend on the dictionary of the stored CNF.
+     */
+    @Test
+    public void testDictionaryNotRetained() {
+        VariableDictionary dictionary = new VariableDictionary();
+        for (int i = 0; i < 1000; i++) {
+            dictionary.getId("VAR_" + i);
+        }
+        Cnf large = new Cnf(dictionary, 1);
+        large.addRow(new CnfVariable("VAR_X"));
+
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LRU, 0, SizeUnit.BYTES, 0);
+        cache.put(large, true);
+
+        assertThat(cache.getSize(), is(SatResultCache.getEstimatedMemorySize(cnf("VAR_X").compactCopy())));
+        assertThat(cache.get(large), is(true));
+        assertThat(cache.get(cnf("VAR_X")), is(true));
+    }
+
+    /**
+     * Tests that entries expire.
+     *
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testExpiry() throws InterruptedException {
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LRU, 0, SizeUnit.ENTRIES, 50);
+        Cnf a = cnf("A");
+
+        cache.put(a, true);
+        assertThat(cache.get(a), is(true));
+
+        Thread.sleep(100);
+
+        assertThat(cache.get(a), nullValue());
+        assertThat(cache.getEntryCount(), is(0));
+        assertThat(cache.getEvictionCount(), is(1L));
+    }
+
+    /**
+     * Tests the hit and miss counters.
+     */
+    @Test
+    public void testCounters() {
+        SatResultCache cache = new SatResultCache();
+        Cnf a = cnf("A");
+
+        assertThat(cache.get(a), nullValue());
+        cache.put(a, false);
+        assertThat(cache.get(a), is(false));
+        assertThat(cache.get(a), is(false));
+
+        assertThat(cache.getHitCount(), is(2L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    /**
+     * Tests that several threads can use the same cache.
+     *
+     * @throws InterruptedException unwanted.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        SatResultCache cache = new SatResultCache(EvictionPolicy.LFU, 50);
+
+        List<@NonNull Cnf> cnfs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            cnfs.add(cnf("VAR_" + i));
+        }
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    Cnf cnf = cnfs.get(i % cnfs.size());
+                    if (cache.get(cnf) == null) {
+                        cache.put(cnf, true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(cache.getEntryCount(), is(50));
+        assertThat(cache.getHitCount() + cache.getMissCount(), is(40000L));
+    }
+
+    /**
+     * Tests that two {@link CachedSatSolver}s can share one cache.
+     *
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testSharedBetweenSolvers() throws SolverException {
+        SatResultCache cache = new SatResultCache();
+        Cnf base = cnf("A");
+
+        CachedSatSolver solver1 = new CachedSatSolver(new Sat4jSolver(base), cache);
+        CachedSatSolver solver2 = new CachedSatSolver(new Sat4jSolver(base), cache);
+
+        Cnf query = new Cnf();
+        query.addRow(new CnfVariable(true, "A"));
+
+        assertThat(solver1.isSatisfiable(query), is(false));
+        assertThat(solver2.isSatisfiable(query), is(false));
+
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+    }
+
+}
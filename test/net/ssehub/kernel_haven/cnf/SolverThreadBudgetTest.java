@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link SolverThreadBudget}.
+ *
+ * @author Adam
+ */
+public class SolverThreadBudgetTest {
+
+    /**
+     * Tests that acquiring and releasing threads updates the available threads.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testAcquireAndRelease() throws SolverException {
+        SolverThreadBudget budget = new SolverThreadBudget(4);
+        
+        assertThat(budget.acquire(3), is(3));
+        assertThat(budget.getAvailable(), is(1));
+        assertThat(budget.acquire(1), is(1));
+        assertThat(budget.getAvailable(), is(0));
+        
+        budget.release(3);
+        budget.release(1);
+        assertThat(budget.getAvailable(), is(4));
+    }
+    
+    /**
+     * Tests that requests for more threads than the budget are limited to the budget.
+     * 
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testAcquireMoreThanSize() throws SolverException {
+        SolverThreadBudget budget = new SolverThreadBudget(2);
+        
+        int acquired = budget.acquire(8);
+        assertThat(acquired, is(2));
+        assertThat(budget.getAvailable(), is(0));
+        
+        budget.release(acquired);
+        assertThat(budget.getAvailable(), is(2));
+    }
+    
+    /**
+     * Tests that acquiring waits until enough threads are released.
+     * 
+     * @throws Exception unwanted.
+     */
+    @Test(timeout = 10000)
+    public void testAcquireWaits() throws Exception {
+        SolverThreadBudget budget = new SolverThreadBudget(2);
+        budget.acquire(2);
+        
+        Thread waiting = new Thread(() -> {
+            try {
+                budget.release(budget.acquire(1));
+            } catch (SolverException e) {
+                // the assertion below fails
+            }
+        });
+        waiting.start();
+        
+        waiting.join(200);
+        assertThat(waiting.isAlive(), is(true));
+        
+        budget.release(2);
+        waiting.join();
+        assertThat(budget.getAvailable(), is(2));
+    }
+    
+    /**
+     * Tests that a budget with less than 1 thread is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new SolverThreadBudget(0);
+    }
+
+}
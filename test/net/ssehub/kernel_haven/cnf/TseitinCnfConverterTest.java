@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.cnf;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link TseitinCnfConverter}.
+ *
+ * @author Adam
+ */
+public class TseitinCnfConverterTest extends AbstractCnfConverterTest {
+
+    @Override
+    protected @NonNull IFormulaToCnfConverter createConverter() {
+        return new TseitinCnfConverter();
+    }
+
+    /**
+     * Tests that a formula which already is in CNF is converted without new variables.
+     *
+     * @throws ConverterException unwanted.
+     */
+    @Test
+    public void testCnfStaysUnchanged() throws ConverterException {
+        Formula formula = and(and(or("A", not("B")), "C"), or(or("D", "A"), not("C")));
+
+        Cnf cnf = createConverter().convert(formula);
+
+        assertThat(cnf.getRowCount(), is(3));
+        assertThat(cnf.getAllVarNames().size(), is(4));
+    }
+
+    /**
+     * Tests that a very deep formula can be converted, and that the result is linear in the size of the formula.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testDeepFormula() throws ConverterException, SolverException {
+        // (((A1 || B1) && C1) || ...) && C_n: alternating, so nothing can be flattened
+        int depth = 50000;
+        Formula formula = new Variable("START");
+        for (int i = 0; i < depth; i++) {
+            formula = and(or(formula, "B" + i), "C" + i);
+        }
+
+        Cnf cnf = createConverter().convert(formula);
+
+        // at most 3 rows per new variable, and one new variable per operator
+        assertThat(cnf.getRowCount() <= 3 * 2 * depth, is(true));
+
+        Cnf notStartNorB = new Cnf();
+        notStartNorB.addRow(new CnfVariable(true, "START"));
+        for (int i = 0; i < depth; i++) {
+            notStartNorB.addRow(new CnfVariable(true, "B" + i));
+        }
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf), is(true));
+        assertThat(solver.isSatisfiable(cnf.combine(notStartNorB)), is(false));
+    }
+
+    /**
+     * Tests that a left-deep chain of 100 000 alternating operators is converted without recursion, and that the
+     * result is linear in the size of the chain.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testLeftDeepChain() throws ConverterException, SolverException {
+        int depth = 100000;
+        Cnf cnf = createConverter().convert(createAlternatingChain(depth));
+
+        // at most 3 rows per new variable, and one new variable per operator
+        assertThat(cnf.getRowCount() <= 3 * depth, is(true));
+
+        // the chain ends with && V_depth
+        Cnf notLast = new Cnf();
+        notLast.addRow(new CnfVariable(true, "V" + depth));
+        Cnf allButLast = new Cnf();
+        allButLast.addRow(new CnfVariable(true, "START"));
+        for (int i = 1; i < depth; i++) {
+            allButLast.addRow(new CnfVariable(true, "V" + i));
+        }
+        allButLast.addRow(new CnfVariable("V" + depth));
+
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf), is(true));
+        assertThat(solver.isSatisfiable(cnf.combine(notLast)), is(false));
+        assertThat(solver.isSatisfiable(cnf.combine(allButLast)), is(false));
+    }
+
+    /**
+     * Tests that structurally equal formulas are converted to equal CNFs, and that CNFs of different conversions can
+     * be combined.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testSeparateConversionsCombined() throws ConverterException, SolverException {
+        Formula formula1 = or(and("A", "B"), and("C", "D"));
+        Formula formula2 = or(and("D", "C"), and("B", "A"));
+
+        Cnf cnf1 = new TseitinCnfConverter().convert(formula1);
+        Cnf cnf2 = new TseitinCnfConverter().convert(formula2);
+        assertThat(cnf1.equals(cnf2), is(true));
+
+        // (A && B) || (C && D), and !(A && B) and !(C && D)
+        Cnf cnf3 = new TseitinCnfConverter().convert(and(not(and("A", "B")), not(and("C", "D"))));
+
+        ISatSolver solver = SatSolverFactory.createSolver();
+        assertThat(solver.isSatisfiable(cnf1), is(true));
+        assertThat(solver.isSatisfiable(cnf3), is(true));
+        assertThat(solver.isSatisfiable(cnf1.combine(cnf3)), is(false));
+    }
+
+    /**
+     * Tests formulas that are constant.
+     *
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testConstantFormulas() throws ConverterException, SolverException {
+        ISatSolver solver = SatSolverFactory.createSolver();
+
+        Cnf tautology = createConverter().convert(or("A", or(not("A"), "B")));
+        assertThat(tautology.getRowCount(), is(0));
+
+        Cnf trueCnf = createConverter().convert(and(True.INSTANCE, or(False.INSTANCE, True.INSTANCE)));
+        assertThat(trueCnf.getRowCount(), is(0));
+
+        Cnf contradiction = createConverter().convert(and("A", or(and(not("A"), "B"), False.INSTANCE)));
+        assertThat(solver.isSatisfiable(contradiction), is(false));
+
+        Cnf falseCnf = createConverter().convert(False.INSTANCE);
+        assertThat(solver.isSatisfiable(falseCnf), is(false));
+    }
+
+}
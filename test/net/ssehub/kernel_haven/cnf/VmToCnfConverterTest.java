@@ -16,6 +16,8 @@
 package net.ssehub.kernel_haven.cnf;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -27,6 +29,7 @@ import java.util.Set;
 import org.junit.Test;
 
 import net.ssehub.kernel_haven.util.FormatException;
+import net.ssehub.kernel_haven.util.logic.Variable;
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import net.ssehub.kernel_haven.variability_model.VariabilityModel;
 import net.ssehub.kernel_haven.variability_model.VariabilityModelDescriptor;
@@ -113,6 +116,37 @@ public class VmToCnfConverterTest {
         new VmToCnfConverter().convertVmToCnf(vm);
     }
     
+    /**
+     * Tests that a VM converted with a given dictionary uses it, so that formulas converted with the same dictionary
+     * are checked against it without translating their variable names.
+     * 
+     * @throws FormatException unwanted.
+     * @throws ConverterException unwanted.
+     * @throws SolverException unwanted.
+     */
+    @Test
+    public void testSharedDictionary() throws FormatException, ConverterException, SolverException {
+        Set<VariabilityVariable> set = new HashSet<VariabilityVariable>();
+        @NonNull String[] variables = new @NonNull String[] {"ALPHA", "ALPHA_MODULE", "GAMMA", "BETA_MODULE", "BETA"};
+        for (int i = 0; i < variables.length; i++) {
+            set.add(new VariabilityVariable(variables[i], "bool", i + 1));
+        }
+        VariabilityModel vm = new VariabilityModel(new File("testdata/vm_to_cnf_converter/testmodel.dimacs"), set);
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        
+        VariableDictionary dictionary = new VariableDictionary();
+        Cnf cnf = new VmToCnfConverter().convertVmToCnf(vm, dictionary);
+        assertThat(cnf.getDictionary(), sameInstance(dictionary));
+        
+        Sat4jSolver solver = new Sat4jSolver(cnf);
+        IFormulaToCnfConverter converter = new TseitinCnfConverter();
+        
+        // GAMMA implies ALPHA and !ALPHA (-3 1, -3 -1)
+        assertThat(solver.isSatisfiable(converter.convert(new Variable("GAMMA"), dictionary)), is(false));
+        assertThat(solver.isSatisfiable(converter.convert(new Variable("BETA"), dictionary)), is(true));
+        assertThat(solver.getTranslation(), nullValue());
+    }
+    
     /**
      * Tests whether a DIMACS file with a non-number in it correctly throws an exception.
      * 
@@ -240,6 +274,99 @@ public class VmToCnfConverterTest {
         new VmToCnfConverter().convertVmToCnf(vm);
     }
     
+    /**
+     * Tests that comments, multiple spaces and tabs, Windows line endings, and clauses spanning several lines are
+     * parsed correctly.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @SuppressWarnings("null")
+    @Test
+    public void testWhitespaceAndComments() throws FormatException {
+        VariabilityModel vm = new VariabilityModel(
+                new File("testdata/vm_to_cnf_converter/whitespace.dimacs"), new HashSet<>());
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        
+        Cnf cnf = new VmToCnfConverter().convertVmToCnf(vm);
+        
+        Cnf expected = new Cnf();
+        expected.addRow(new CnfVariable(true, "VARIABLE_1"), new CnfVariable("VARIABLE_2"));
+        expected.addRow(new CnfVariable(true, "VARIABLE_3"), new CnfVariable(true, "VARIABLE_1"));
+        expected.addRow(new CnfVariable(true, "VARIABLE_4"), new CnfVariable(true, "VARIABLE_5"),
+                new CnfVariable(true, "VARIABLE_2"));
+        
+        assertThat(cnf.getRowCount(), is(3));
+        assertThat(cnf.getRow(2).size(), is(3));
+        assertThat(cnf, is(expected));
+    }
+    
+    /**
+     * Tests that converting into an off-heap {@link Cnf} yields the same rows as the normal conversion.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @SuppressWarnings("null")
+    @Test
+    public void testOffHeap() throws FormatException {
+        VariabilityModel vm = new VariabilityModel(
+                new File("testdata/vm_to_cnf_converter/whitespace.dimacs"), new HashSet<>());
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        
+        Cnf heap = new VmToCnfConverter().convertVmToCnf(vm);
+        Cnf offHeap = new VmToCnfConverter(true).convertVmToCnf(vm);
+        
+        assertThat(heap.isOffHeap(), is(false));
+        assertThat(offHeap.isOffHeap(), is(true));
+        assertThat(offHeap.getRowCount(), is(3));
+        assertThat(offHeap.getRow(2).size(), is(3));
+        assertThat(offHeap, is(heap));
+        assertThat(offHeap.getFingerprint(), is(heap.getFingerprint()));
+    }
+    
+    /**
+     * Tests that parsing a file that is memory-mapped in several small windows yields the same rows as parsing it in
+     * a single window.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @SuppressWarnings("null")
+    @Test
+    public void testSmallWindows() throws FormatException {
+        VariabilityModel vm = new VariabilityModel(
+                new File("testdata/vm_to_cnf_converter/whitespace.dimacs"), new HashSet<>());
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        
+        Cnf expected = new VmToCnfConverter().convertVmToCnf(vm);
+        
+        for (int windowSize = 1; windowSize <= 8; windowSize++) {
+            VmToCnfConverter converter = new VmToCnfConverter();
+            converter.setWindowSize(windowSize);
+            Cnf cnf = converter.convertVmToCnf(vm);
+            
+            assertThat(cnf.getRowCount(), is(3));
+            assertThat(cnf, is(expected));
+        }
+    }
+    
+    /**
+     * Tests that a last clause without a terminating 0 is accepted.
+     * 
+     * @throws FormatException unwanted.
+     */
+    @SuppressWarnings("null")
+    @Test
+    public void testUnterminatedLastClause() throws FormatException {
+        VariabilityModel vm = new VariabilityModel(
+                new File("testdata/vm_to_cnf_converter/unterminated.dimacs"), new HashSet<>());
+        vm.getDescriptor().setConstraintFileType(ConstraintFileType.DIMACS);
+        
+        Cnf cnf = new VmToCnfConverter().convertVmToCnf(vm);
+        
+        assertThat(cnf.getRowCount(), is(2));
+        assertThat(cnf.getRow(1).size(), is(1));
+        assertThat(cnf.getRow(1).get(0).getName(), is("VARIABLE_1"));
+    }
+    
     /**
      * Tests whether a non existing DIMACS file correctly throws an exception.
      * 
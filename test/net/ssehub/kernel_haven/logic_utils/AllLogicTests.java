@@ -43,9 +43,12 @@ import net.ssehub.kernel_haven.util.null_checks.NonNull;
     FormulaSimplificationVisitorTest.class,
     FormulaSimplificationVisitor2Test.class,
     FormulaEqualityCheckerTest.class,
+    FormulaMetricsTest.class,
     FormulaTreePrinterTest.class,
     FormulaStructureCheckerTest.class,
     FormulaStructureCheckerTermSplitTest.class,
+    FormulaTraversalTest.class,
+    NaryFormulaTest.class,
     SubTreeGroupFinderTest.class,
     SubTreeSimplifierTest.class,
     RandomSubTreeSimplifierTest.class,
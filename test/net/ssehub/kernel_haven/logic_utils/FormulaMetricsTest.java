@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+
+/**
+ * Tests the {@link FormulaMetrics}.
+ *
+ * @author Adam
+ */
+public class FormulaMetricsTest {
+
+    /**
+     * Tests the metrics of variables and constants.
+     */
+    @Test
+    public void testLeaves() {
+        FormulaMetrics metrics = new FormulaMetrics();
+        
+        assertThat(metrics.getSize(new Variable("VAR")), is(1L));
+        assertThat(metrics.getDepth(new Variable("VAR")), is(1));
+        assertThat(metrics.getLength(new Variable("VAR")), is(3L));
+        
+        assertThat(metrics.getSize(True.INSTANCE), is(1L));
+        assertThat(metrics.getDepth(False.INSTANCE), is(1));
+    }
+    
+    /**
+     * Tests the size and depth of nested formulas.
+     */
+    @Test
+    public void testSizeAndDepth() {
+        FormulaMetrics metrics = new FormulaMetrics();
+        Formula formula = and(or("A", not("B")), "C");
+        
+        assertThat(metrics.getSize(formula), is(6L));
+        assertThat(metrics.getDepth(formula), is(4));
+    }
+    
+    /**
+     * Tests that sub-formulas that occur multiple times are counted each time.
+     */
+    @Test
+    public void testSharedSubFormulas() {
+        Formula shared = or("A", "B");
+        Formula formula = and(shared, shared);
+        for (int i = 0; i < 20; i++) {
+            formula = and(formula, formula);
+        }
+        
+        FormulaMetrics metrics = new FormulaMetrics();
+        assertThat(metrics.getSize(and(shared, shared)), is(7L));
+        assertThat(metrics.getSize(formula), is((1L << 20) * 8 - 1));
+        assertThat(metrics.getDepth(formula), is(23));
+        assertThat(metrics.getLength(formula), is((long) formula.toString().length()));
+    }
+    
+    /**
+     * Tests that the length is the same as the length of {@link Formula#toString()}.
+     */
+    @Test
+    public void testLength() {
+        FormulaMetrics metrics = new FormulaMetrics();
+        assertThat(metrics.getLength(not(or("A", "B"))), is((long) "!(A || B)".length()));
+        assertThat(metrics.getLength(and(or("A", "B"), not(and("C", "D")))),
+                is((long) "(A || B) && !(C && D)".length()));
+        
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            Formula formula = AllLogicTests.generateRandomFormula(random, 0);
+            assertThat(metrics.getLength(formula), is((long) formula.toString().length()));
+        }
+    }
+    
+    /**
+     * Tests that very deep formulas are handled without overflowing the stack.
+     */
+    @Test
+    public void testDeepFormula() {
+        Formula formula = new Variable("V0");
+        for (int i = 1; i < 100000; i++) {
+            formula = i % 2 == 0 ? new Disjunction(formula, new Variable("V"))
+                    : new Conjunction(formula, True.INSTANCE);
+        }
+        
+        FormulaMetrics metrics = new FormulaMetrics();
+        assertThat(metrics.getSize(formula), is(199999L));
+        assertThat(metrics.getDepth(formula), is(100000));
+    }
+    
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.logic_utils.FormulaTraversal.IPostOrderHandler;
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.Negation;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link FormulaTraversal}, and that the visitors based on it handle deep formulas.
+ *
+ * @author Adam
+ */
+public class FormulaTraversalTest {
+
+    private static final int DEPTH = 100000;
+    
+    /**
+     * Tests that {@link FormulaTraversal#postOrder(Formula, IPostOrderHandler)} handles the operands before the
+     * formula, from left to right.
+     */
+    @Test
+    public void testPostOrder() {
+        Variable a = new Variable("A");
+        Variable b = new Variable("B");
+        Variable c = new Variable("C");
+        Negation notB = new Negation(b);
+        Disjunction or = new Disjunction(a, notB);
+        Conjunction formula = new Conjunction(or, c);
+        
+        List<@NonNull Formula> handled = new ArrayList<>();
+        int numNodes = FormulaTraversal.postOrder(formula, new IPostOrderHandler<@NonNull Integer>() {
+
+            @Override
+            public @NonNull Formula @NonNull [] getOperands(@NonNull Formula formula) {
+                return FormulaTraversal.getOperands(formula);
+            }
+
+            @Override
+            public @NonNull Integer handle(@NonNull Formula formula, @NonNull List<@NonNull Integer> operandResults) {
+                handled.add(formula);
+                int result = 1;
+                for (int operandResult : operandResults) {
+                    result += operandResult;
+                }
+                return result;
+            }
+        });
+        
+        assertThat(numNodes, is(6));
+        assertThat(handled.size(), is(6));
+        assertThat(handled.get(0), sameInstance(a));
+        assertThat(handled.get(1), sameInstance(b));
+        assertThat(handled.get(2), sameInstance(notB));
+        assertThat(handled.get(3), sameInstance(or));
+        assertThat(handled.get(4), sameInstance(c));
+        assertThat(handled.get(5), sameInstance(formula));
+    }
+    
+    /**
+     * Tests {@link FormulaTraversal#isEqual(Formula, Formula)}.
+     */
+    @Test
+    public void testIsEqual() {
+        assertThat(FormulaTraversal.isEqual(and("A", or("B", "C")), and("A", or("B", "C"))), is(true));
+        assertThat(FormulaTraversal.isEqual(new Negation(True.INSTANCE), new Negation(True.INSTANCE)), is(true));
+        
+        assertThat(FormulaTraversal.isEqual(and("A", or("B", "C")), and("A", or("C", "B"))), is(false));
+        assertThat(FormulaTraversal.isEqual(and("A", "B"), or("A", "B")), is(false));
+        assertThat(FormulaTraversal.isEqual(True.INSTANCE, False.INSTANCE), is(false));
+        assertThat(FormulaTraversal.isEqual(new Variable("A"), new Negation(new Variable("A"))), is(false));
+    }
+    
+    /**
+     * Tests that a very deep formula can be traversed and compared without a {@link StackOverflowError}.
+     */
+    @Test
+    public void testDeepFormula() {
+        Formula leftDeep = new Variable("VAR_0");
+        for (int i = 1; i < DEPTH; i++) {
+            leftDeep = new Disjunction(leftDeep, new Variable("VAR_" + i));
+        }
+        Formula rightDeep = new Variable("VAR_" + (DEPTH - 1));
+        for (int i = DEPTH - 2; i >= 0; i--) {
+            rightDeep = new Disjunction(new Variable("VAR_" + i), rightDeep);
+        }
+        
+        assertThat(FormulaTraversal.isEqual(leftDeep, leftDeep), is(true));
+        assertThat(FormulaTraversal.isEqual(leftDeep, rightDeep), is(false));
+        assertThat(FormulaStructureChecker.isStructurallyEqual(leftDeep, rightDeep), is(true));
+        assertThat(FormulaStructureChecker.getAllDisjunctionTerms((Disjunction) leftDeep).size(), is(DEPTH));
+        
+        // all disjunctions are different sub-trees
+        assertThat(new SubTreeGroupFinder().findGroups(leftDeep).size(), is(DEPTH - 1));
+    }
+    
+    /**
+     * Tests that the simplification visitors handle a very deep formula without a {@link StackOverflowError}.
+     */
+    @Test
+    public void testDeepSimplification() {
+        Formula formula = new Variable("A");
+        for (int i = 0; i < DEPTH + 1; i++) {
+            formula = new Negation(formula);
+        }
+        
+        assertThat(new FormulaSimplificationVisitor().visit(formula), is(new Negation(new Variable("A"))));
+        assertThat(new FormulaSimplificationVisitor2().visit(formula), is(new Negation(new Variable("A"))));
+    }
+    
+}
@@ -107,4 +107,17 @@ public class LogicUtilsTest {
         assertEquals(or("A", middlePart), simplified);
     }
     
+    /**
+     * Tests the size and depth metrics.
+     */
+    @Test
+    public void testSizeAndDepth() {
+        Formula formula = or(and("A", not("B")), "C");
+        
+        assertEquals(6, LogicUtils.getSize(formula));
+        assertEquals(4, LogicUtils.getDepth(formula));
+        assertEquals(1, LogicUtils.getSize(new Variable("A")));
+        assertEquals(1, LogicUtils.getDepth(new Variable("A")));
+    }
+    
 }
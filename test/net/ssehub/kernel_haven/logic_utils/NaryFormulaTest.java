@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017-2019 University of Hildesheim, Software Systems Engineering
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ssehub.kernel_haven.logic_utils;
+
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.and;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.not;
+import static net.ssehub.kernel_haven.util.logic.FormulaBuilder.or;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.ssehub.kernel_haven.util.logic.Conjunction;
+import net.ssehub.kernel_haven.util.logic.Disjunction;
+import net.ssehub.kernel_haven.util.logic.False;
+import net.ssehub.kernel_haven.util.logic.Formula;
+import net.ssehub.kernel_haven.util.logic.True;
+import net.ssehub.kernel_haven.util.logic.Variable;
+import net.ssehub.kernel_haven.util.null_checks.NonNull;
+
+/**
+ * Tests the {@link NaryFormula}.
+ *
+ * @author Adam
+ */
+public class NaryFormulaTest {
+
+    /**
+     * Tests that constants and variables are mapped to shared nodes.
+     */
+    @Test
+    public void testLeaves() {
+        NaryFormula nary = new NaryFormula();
+        
+        assertThat(nary.addFormula(True.INSTANCE), is(NaryFormula.TRUE_NODE));
+        assertThat(nary.addFormula(False.INSTANCE), is(NaryFormula.FALSE_NODE));
+        
+        int a = nary.addFormula(new Variable("A"));
+        assertThat(nary.getKind(a), is(NaryFormula.VARIABLE));
+        assertThat(nary.addFormula(new Variable("A")), is(a));
+        assertThat(nary.variable(new Variable("A")), is(a));
+        assertThat(nary.addFormula(new Variable("B")) != a, is(true));
+    }
+    
+    /**
+     * Tests that left-deep chains become a single n-ary node, while other nestings are kept.
+     */
+    @Test
+    public void testFlattening() {
+        NaryFormula nary = new NaryFormula();
+        
+        int leftDeep = nary.addFormula(or(or(or("A", "B"), "C"), "D"));
+        assertThat(nary.getKind(leftDeep), is(NaryFormula.DISJUNCTION));
+        assertThat(nary.getNumOperands(leftDeep), is(4));
+        assertThat(nary.getOperand(leftDeep, 0), is(nary.variable(new Variable("A"))));
+        assertThat(nary.getOperand(leftDeep, 3), is(nary.variable(new Variable("D"))));
+        
+        int rightDeep = nary.addFormula(or("A", or("B", "C")));
+        assertThat(nary.getNumOperands(rightDeep), is(2));
+        assertThat(nary.getKind(nary.getOperand(rightDeep, 1)), is(NaryFormula.DISJUNCTION));
+        
+        int mixed = nary.addFormula(and(or("A", "B"), "C"));
+        assertThat(nary.getKind(mixed), is(NaryFormula.CONJUNCTION));
+        assertThat(nary.getNumOperands(mixed), is(2));
+    }
+    
+    /**
+     * Tests that converting to a {@link Formula} restores the original structure.
+     */
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            Formula formula = AllLogicTests.generateRandomFormula(random, 0);
+            NaryFormula nary = new NaryFormula();
+            
+            assertThat(nary.toFormula(nary.addFormula(formula)), is(formula));
+        }
+    }
+    
+    /**
+     * Tests that nodes that were created from a {@link Formula} are converted back to the same instance.
+     */
+    @Test
+    public void testOriginalInstance() {
+        Formula formula = and(or("A", not("B")), "C");
+        NaryFormula nary = new NaryFormula();
+        
+        assertThat(nary.toFormula(nary.addFormula(formula)), sameInstance(formula));
+    }
+    
+    /**
+     * Tests creating new nodes.
+     */
+    @Test
+    public void testCreateNodes() {
+        NaryFormula nary = new NaryFormula();
+        int a = nary.variable(new Variable("A"));
+        int b = nary.variable(new Variable("B"));
+        int c = nary.variable(new Variable("C"));
+        
+        assertThat(nary.operator(NaryFormula.CONJUNCTION, new int[] {a}, 1), is(a));
+        
+        int or = nary.operator(NaryFormula.DISJUNCTION, new int[] {a, b, c}, 3);
+        int notOr = nary.negation(or);
+        int and = nary.operator(NaryFormula.CONJUNCTION, new int[] {notOr, a}, 2);
+        
+        assertThat(nary.toFormula(and), is(and(not(or(or("A", "B"), "C")), "A")));
+    }
+    
+    /**
+     * Tests that {@link NaryFormula#getTerms(int)} returns the same terms in the same order as
+     * {@link FormulaStructureChecker#getAllDisjunctionTerms(Disjunction)} and
+     * {@link FormulaStructureChecker#getAllConjunctionTerms(Conjunction)}.
+     */
+    @Test
+    public void testGetTerms() {
+        List<@NonNull Formula> formulas = new ArrayList<>();
+        formulas.add(or(or(or("A", "B"), "C"), "D"));
+        formulas.add(or("A", or("B", or("C", "D"))));
+        formulas.add(or(or("A", or("B", "C")), or(or("D", "E"), and("F", "G"))));
+        formulas.add(and(and("A", or("B", and("C", "D"))), and(not(and("E", "F")), "G")));
+        
+        for (Formula formula : formulas) {
+            NaryFormula nary = new NaryFormula();
+            int node = nary.addFormula(formula);
+            
+            List<@NonNull Formula> terms = new ArrayList<>();
+            for (int term : nary.getTerms(node)) {
+                terms.add(nary.toFormula(term));
+            }
+            
+            if (formula instanceof Disjunction) {
+                assertThat(terms, is(FormulaStructureChecker.getAllDisjunctionTerms((Disjunction) formula)));
+            } else {
+                assertThat(terms, is(FormulaStructureChecker.getAllConjunctionTerms((Conjunction) formula)));
+            }
+        }
+    }
+    
+    /**
+     * Tests that very deep formulas are handled without overflowing the stack.
+     */
+    @Test
+    public void testDeepFormula() {
+        Formula formula = new Variable("V0");
+        for (int i = 1; i < 100000; i++) {
+            formula = i % 2 == 0 ? new Disjunction(new Variable("V" + i), formula)
+                    : new Conjunction(formula, new Variable("V" + i));
+        }
+        
+        NaryFormula nary = new NaryFormula();
+        int node = nary.addFormula(formula);
+        assertThat(nary.getTerms(node).length, is(2));
+        
+        int[] operands = new int[2];
+        int created = nary.variable(new Variable("V0"));
+        for (int i = 1; i < 100000; i++) {
+            operands[0] = created;
+            operands[1] = nary.variable(new Variable("V" + i));
+            created = nary.negation(nary.operator(NaryFormula.CONJUNCTION, operands, 2));
+        }
+        Formula expected = new Variable("V0");
+        for (int i = 1; i < 100000; i++) {
+            expected = not(and(expected, "V" + i));
+        }
+        assertThat(FormulaTraversal.isEqual(nary.toFormula(created), expected), is(true));
+    }
+    
+}